@@ -0,0 +1,14 @@
+package org.example;
+
+public record BalanceCheck(String accountId) implements TransactionEvent {
+
+    @Override
+    public String getEventType() {
+        return "BALANCE";
+    }
+
+    @Override
+    public String toString() {
+        return String.format("BalanceCheck(%s)", accountId);
+    }
+}
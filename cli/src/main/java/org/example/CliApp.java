@@ -29,6 +29,8 @@ public final class CliApp {
                 System.out.println(" 3 - PrintStatus");
                 System.out.println(" 4 - PrintView");
                 System.out.println(" 5 - Continue with next set");
+                System.out.println(" 6 - PrintBatching");
+                System.out.println(" 7 - PrintStartup");
                 System.out.println(" 0 - Exit");
                 System.out.print("Choice: ");
                 String choice = sc.nextLine().trim();
@@ -62,6 +64,8 @@ public final class CliApp {
                         }
                         System.out.println("Set scheduled; processing continues in background.");
                     }
+                    case "6" -> printBatching();
+                    case "7" -> printStartup();
                     case "0" -> {
                         System.out.println("Exiting...");
                         return;
@@ -4,16 +4,29 @@ import com.google.protobuf.Message;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.example.config.Config;
+import org.example.consensus.ConsensusMessageTracker;
 import org.example.messaging.ClientMessageReceiver;
 import org.example.messaging.ClientMessageSender;
 
 import java.time.Duration;
+import java.util.Optional;
 import java.util.concurrent.TimeoutException;
 
 public class ClientNode extends Node {
     private static final Logger logger = LogManager.getLogger(ClientNode.class);
 
+    private final long READ_POLL_MILLIS = 10;
+
     private String primaryServerId;
+    private long lastTimestamp; // requests are issued from this client's sender thread only
+
+    // What matching replies must agree on; tentative and committed replies are counted apart
+    private record ReplyValue(boolean result, double balance, boolean tentative) {
+        static ReplyValue of(Message m) {
+            MessageServiceOuterClass.ClientReply r = (MessageServiceOuterClass.ClientReply) m;
+            return new ReplyValue(r.getResult(), r.getBalance(), r.getTentative());
+        }
+    }
 
     private final ClientMessageSender sender;
     private final ClientMessageReceiver receiver;
@@ -21,13 +34,13 @@ public class ClientNode extends Node {
     public ClientNode(String nodeId) {
         super(nodeId);
         this.sender = new ClientMessageSender(nodeId, commLogger, auth);
-        this.receiver = new ClientMessageReceiver(this, auth);
+        this.receiver = new ClientMessageReceiver(this, verificationStage);
 
         updatePrimary(1L); // Initial view
     }
 
     private void updatePrimary(long viewNumber) {
-        this.primaryServerId = "n" + (viewNumber % getServerCount());
+        this.primaryServerId = primaryIdFor(viewNumber);
         logger.info("Updated primary server to {} for view {}", primaryServerId, viewNumber);
     }
 
@@ -38,11 +51,24 @@ public class ClientNode extends Node {
      * @return ClientRequest proto message
      */
     private MessageServiceOuterClass.ClientRequest generateClientRequest(MessageServiceOuterClass.Transaction transaction) {
-        long timestamp = System.currentTimeMillis();
         MessageServiceOuterClass.Operation op = MessageServiceOuterClass.Operation.newBuilder()
                 .setTransfer(transaction)
                 .build();
-        return MessageServiceOuterClass.ClientRequest.newBuilder().setOperation(op).setTimestamp(timestamp).setClientId(transaction.getSender()).build();
+        return MessageServiceOuterClass.ClientRequest.newBuilder().setOperation(op).setTimestamp(nextTimestamp()).setClientId(transaction.getSender()).build();
+    }
+
+    private MessageServiceOuterClass.ClientRequest generateBalanceRequest(String accountId, boolean readOnly, boolean leaseRead) {
+        MessageServiceOuterClass.Operation op = MessageServiceOuterClass.Operation.newBuilder()
+                .setBalanceRequest(MessageServiceOuterClass.BalanceRequest.newBuilder().setAccountId(accountId))
+                .build();
+        return MessageServiceOuterClass.ClientRequest.newBuilder().setOperation(op).setTimestamp(nextTimestamp())
+                .setClientId(nodeId).setReadOnly(readOnly).setLeaseRead(leaseRead).build();
+    }
+
+    // Wall-clock millis, but strictly increasing so a fallback never reuses the read's request id
+    private long nextTimestamp() {
+        lastTimestamp = Math.max(System.currentTimeMillis(), lastTimestamp + 1);
+        return lastTimestamp;
     }
 
     // Send request(s) and await consensus; returns true if consensus reached, false on timeout.
@@ -51,12 +77,14 @@ public class ClientNode extends Node {
         long timestamp = clientRequest.getTimestamp();
         String requestId = requestIdFor(clientId, timestamp);
 
-        if (primaryServerId == null) {
+        if (Config.isDigestOrderingEnabled()) {
+            // Digest-only ordering: every replica gets the body from us, the primary orders only its digest
+            logger.info("Disseminating request {} to all servers", requestId);
+            this.sender.broadcastRequest(Config.getServerIds(), clientRequest);
+        } else if (primaryServerId == null) {
             // No known primary: broadcast to all servers concurrently
             logger.info("No primary known. Broadcasting request {} to all servers", requestId);
-            for (String serverId : Config.getServerIds()) {
-                this.sender.sendRequest(serverId, clientRequest);
-            }
+            this.sender.broadcastRequest(Config.getServerIds(), clientRequest);
         } else {
             // Send to known primary
             this.sender.sendRequest(primaryServerId, clientRequest);
@@ -79,21 +107,141 @@ public class ClientNode extends Node {
     }
 
     public void processTransaction(MessageServiceOuterClass.Transaction transaction) {
-        MessageServiceOuterClass.ClientRequest clientRequest = generateClientRequest(transaction);
+        processOrdered(generateClientRequest(transaction));
+    }
 
+    /**
+     * Read a balance. With the read-only path enabled, every replica answers from its executed
+     * state without ordering, and 2f+1 matching answers are enough: at least f+1 of them come from
+     * correct replicas, so the value was really there. If replicas disagree (a transfer is
+     * executing on some of them) or too few answer in time, the read is ordered like a write.
+     *
+     * With lease reads enabled, the known primary is asked alone first; its answer is taken if it
+     * comes with lease metadata, and otherwise the read falls back as above.
+     */
+    public void processBalanceRequest(String accountId) {
+        if (Config.isLeaseReadEnabled() && primaryServerId != null) {
+            MessageServiceOuterClass.ClientReply reply = readFromLeaseholder(generateBalanceRequest(accountId, true, true));
+            if (reply != null) {
+                handleOperationsResult(reply);
+                return;
+            }
+            logger.info("Primary {} holds no read lease, reading balance of {} from a quorum", primaryServerId, accountId);
+        }
+        if (Config.isReadOnlyEnabled()) {
+            MessageServiceOuterClass.ClientRequest read = generateBalanceRequest(accountId, true, false);
+            MessageServiceOuterClass.ClientReply reply = readFromQuorum(read);
+            if (reply != null) {
+                handleOperationsResult(reply);
+                return;
+            }
+            logger.info("No read-only quorum for balance of {}, ordering the read", accountId);
+        }
+        processOrdered(generateBalanceRequest(accountId, false, false));
+    }
+
+    // Ask the primary alone; accept its reply only if it is the primary of the view it names and holds a lease
+    private MessageServiceOuterClass.ClientReply readFromLeaseholder(MessageServiceOuterClass.ClientRequest request) {
+        String requestId = requestIdFor(request.getClientId(), request.getTimestamp());
+        String leaseholder = primaryServerId;
+        messageTracker.startTracking(
+                requestId,
+                1,
+                (Message m) -> {
+                    MessageServiceOuterClass.ClientReply r = (MessageServiceOuterClass.ClientReply) m;
+                    return requestIdFor(r.getClientId(), r.getTimestamp());
+                },
+                (Message m) -> ((MessageServiceOuterClass.ClientReply) m).getServerId(),
+                ReplyValue::of
+        );
+        this.sender.sendRequest(leaseholder, request);
+        try {
+            MessageServiceOuterClass.ClientReply reply = (MessageServiceOuterClass.ClientReply)
+                    messageTracker.awaitConsensus(requestId, Duration.ofMillis(Config.getReadOnlyTimeoutMillis()));
+            if (!reply.getServerId().equals(leaseholder) || !primaryIdFor(reply.getViewNumber()).equals(leaseholder)
+                    || reply.getLeaseRemainingMillis() <= 0) {
+                return null;
+            }
+            logger.info("Lease read for id {} answered by {} at seq={} with {} ms of lease left", requestId, leaseholder,
+                    reply.getExecutedSequenceNumber(), reply.getLeaseRemainingMillis());
+            return reply;
+        } catch (TimeoutException te) {
+            logger.info("Timed out waiting for lease read for id {} after {} ms", requestId, Config.getReadOnlyTimeoutMillis());
+            return null;
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            logger.warn("Interrupted while waiting for lease read for id {}", requestId);
+            return null;
+        } finally {
+            messageTracker.cancel(requestId);
+        }
+    }
+
+    // Broadcast a read-only request and wait for 2f+1 matching replies, giving up early once they cannot match
+    private MessageServiceOuterClass.ClientReply readFromQuorum(MessageServiceOuterClass.ClientRequest request) {
+        String requestId = requestIdFor(request.getClientId(), request.getTimestamp());
+        messageTracker.startTracking(
+                requestId,
+                quorumCount(),
+                (Message m) -> {
+                    MessageServiceOuterClass.ClientReply r = (MessageServiceOuterClass.ClientReply) m;
+                    return requestIdFor(r.getClientId(), r.getTimestamp());
+                },
+                (Message m) -> ((MessageServiceOuterClass.ClientReply) m).getServerId(),
+                ReplyValue::of
+        );
+        this.sender.broadcastRequest(Config.getServerIds(), request);
+
+        long deadline = System.currentTimeMillis() + Config.getReadOnlyTimeoutMillis();
+        try {
+            while (System.currentTimeMillis() < deadline) {
+                try {
+                    return (MessageServiceOuterClass.ClientReply) messageTracker.awaitConsensus(requestId, Duration.ofMillis(READ_POLL_MILLIS));
+                } catch (TimeoutException te) {
+                    Optional<ConsensusMessageTracker.Status> status = messageTracker.getStatus(requestId);
+                    if (status.isEmpty()) {
+                        return null;
+                    }
+                    int best = status.get().counts().values().stream().mapToInt(Integer::intValue).max().orElse(0);
+                    int unanswered = getServerCount() - status.get().uniqueResponders();
+                    if (best + unanswered < quorumCount()) {
+                        logger.info("Read-only replies for id {} disagree: {}", requestId, status.get().counts());
+                        return null;
+                    }
+                }
+            }
+            logger.info("Timed out waiting for read-only quorum for id {} after {} ms", requestId, Config.getReadOnlyTimeoutMillis());
+            return null;
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            logger.warn("Interrupted while waiting for read-only quorum for id {}", requestId);
+            return null;
+        } finally {
+            messageTracker.cancel(requestId);
+        }
+    }
+
+    private void processOrdered(MessageServiceOuterClass.ClientRequest clientRequest) {
         String requestId = requestIdFor(clientRequest.getClientId(), clientRequest.getTimestamp());
         logger.info("Processing transaction from client {} at ts {} (requestId={})", clientRequest.getClientId(), clientRequest.getTimestamp(), requestId);
 
         // Register a consensus bucket for this request ONCE. We do not cancel this between retries.
+        // Tentative replies may still be rolled back by a view change, so they need a 2f+1 quorum.
+        // A replica's tentative and committed replies are deduplicated apart, so its committed reply
+        // still counts when its tentative one was rolled back.
         messageTracker.startTracking(
                 requestId,
                 majorityCount(),
+                (ReplyValue value) -> value.tentative() ? quorumCount() : majorityCount(),
                 (Message m) -> {
                     MessageServiceOuterClass.ClientReply r = (MessageServiceOuterClass.ClientReply) m;
                     return requestIdFor(r.getClientId(), r.getTimestamp());
                 },
-                (Message m) -> ((MessageServiceOuterClass.ClientReply) m).getServerId(),
-                (Message m) -> ((MessageServiceOuterClass.ClientReply) m).getResult()
+                (Message m) -> {
+                    MessageServiceOuterClass.ClientReply r = (MessageServiceOuterClass.ClientReply) m;
+                    return r.getTentative() ? r.getServerId() + "/tentative" : r.getServerId();
+                },
+                ReplyValue::of
         );
 
         // Keep retrying forever until consensus is reached
@@ -109,8 +257,8 @@ public class ClientNode extends Node {
     }
 
     private void handleOperationsResult(MessageServiceOuterClass.ClientReply reply) {
-        logger.info("Consensus reached for id {}: result={}, from={}", requestIdFor(reply.getClientId(), reply.getTimestamp()),
-                reply.getResult(), reply.getServerId());
+        logger.info("Consensus reached for id {}: result={}, balance={}, tentative={}, from={}", requestIdFor(reply.getClientId(), reply.getTimestamp()),
+                reply.getResult(), reply.getBalance(), reply.getTentative(), reply.getServerId());
         updatePrimary(reply.getViewNumber());
     }
 
@@ -33,7 +33,8 @@ public final class SenderDispatcher implements AutoCloseable {
     }
 
     public void submit(TransactionEvent event) {
-        String sender = (event instanceof Transaction tx) ? tx.sender() : LF_SENDER;
+        String sender = (event instanceof Transaction tx) ? tx.sender()
+                : (event instanceof BalanceCheck check) ? check.accountId() : LF_SENDER;
         ExecutorService ex = executors.get(sender);
         if (ex == null) throw new IllegalStateException("No executor for sender " + sender);
         submitted.incrementAndGet();
@@ -43,6 +44,10 @@ public final class SenderDispatcher implements AutoCloseable {
                     ClientNode clientNode = clients.get(tx.sender());
                     clientNode.start();
                     clientNode.processTransaction(tx.toProtoTransaction());
+                } else if (event instanceof BalanceCheck check) {
+                    ClientNode clientNode = clients.get(check.accountId());
+                    clientNode.start();
+                    clientNode.processBalanceRequest(check.accountId());
                 }
             } finally {
                 completed.incrementAndGet();
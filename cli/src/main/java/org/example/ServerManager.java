@@ -82,6 +82,30 @@ public class ServerManager {
         }
     }
 
+    public static void printBatching() {
+        for (String serverId : Config.getServerIds()) {
+            try {
+                MessageServiceOuterClass.CLIResponse response =
+                        stubManager.getBlockingStub(serverId).getBatching(Empty.getDefaultInstance());
+                System.out.println("Batching at server " + serverId + " : " + response.getCliResponse());
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+        }
+    }
+
+    public static void printStartup() {
+        for (String serverId : Config.getServerIds()) {
+            try {
+                MessageServiceOuterClass.CLIResponse response =
+                        stubManager.getBlockingStub(serverId).getStartup(Empty.getDefaultInstance());
+                System.out.println("Startup at server " + serverId + " : " + response.getCliResponse());
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+        }
+    }
+
     public static void printView() {
         for (String serverId : Config.getServerIds()) {
             try {
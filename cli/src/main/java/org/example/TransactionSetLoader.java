@@ -17,6 +17,8 @@ public class TransactionSetLoader {
 
     // Regex to extract (Item1, Item2, Value) from the Transaction string
     private static final Pattern TRANSACTION_PATTERN = Pattern.compile("\\(([A-Z]+),\\s*([A-Z]+),\\s*(\\d+)\\)");
+    // Regex to extract (Account) from a balance check
+    private static final Pattern BALANCE_PATTERN = Pattern.compile("\\(([A-Z]+)\\)");
     private static final String LEADER_FAILURE_MARKER = "LF";
 
     /**
@@ -64,6 +66,8 @@ public class TransactionSetLoader {
 
                     // Check if this is a leader failure event
                     if (LEADER_FAILURE_MARKER.equals(transactionStr)) {
+                    } else if (BALANCE_PATTERN.matcher(transactionStr).matches()) {
+                        transactionSet.addTransactionEvent(parseBalanceCheck(transactionStr));
                     } else {
                         // Parse and add actual transaction
                         Transaction transaction = parseTransaction(transactionStr);
@@ -99,6 +103,14 @@ public class TransactionSetLoader {
         throw new IllegalArgumentException("Invalid transaction format: " + transactionStr);
     }
 
+    private static BalanceCheck parseBalanceCheck(String balanceStr) {
+        Matcher matcher = BALANCE_PATTERN.matcher(balanceStr);
+        if (matcher.matches()) {
+            return new BalanceCheck(matcher.group(1));
+        }
+        throw new IllegalArgumentException("Invalid balance check format: " + balanceStr);
+    }
+
     // Parses the comma-separated list of nodes
     private static List<String> parseNodes(String liveNodesStr) {
         // Remove square brackets if present
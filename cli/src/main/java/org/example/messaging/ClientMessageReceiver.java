@@ -2,11 +2,11 @@ package org.example.messaging;
 
 import org.example.ClientNode;
 import org.example.config.Config;
-import org.example.crypto.MessageAuthenticator;
+import org.example.crypto.VerificationStage;
 
 public class ClientMessageReceiver extends MessageReceiver {
 
-    public ClientMessageReceiver(ClientNode clientNode, MessageAuthenticator auth) {
-        super(clientNode.getNodeId(), Config.getClientPort(clientNode.getNodeId()), new ClientMessageService(clientNode, auth));
+    public ClientMessageReceiver(ClientNode clientNode, VerificationStage verificationStage) {
+        super(clientNode.getNodeId(), Config.getClientPort(clientNode.getNodeId()), new ClientMessageService(clientNode, verificationStage));
     }
 }
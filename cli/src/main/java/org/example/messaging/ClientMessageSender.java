@@ -1,10 +1,16 @@
 package org.example.messaging;
 
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.protobuf.Empty;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.example.MessageServiceGrpc;
 import org.example.MessageServiceOuterClass;
 import org.example.crypto.MessageAuthenticator;
 
+import java.util.Collection;
+import java.util.List;
+
 public class ClientMessageSender extends MessageSender {
 
     private static final Logger logger = LogManager.getLogger(ClientMessageSender.class);
@@ -14,6 +20,10 @@ public class ClientMessageSender extends MessageSender {
     }
 
     public void sendRequest(String targetNodeId, MessageServiceOuterClass.ClientRequest request) {
-        signAndSend(targetNodeId, request, (stub, signed) -> stub.request((MessageServiceOuterClass.ClientRequest) signed));
+        signAndSend(targetNodeId, request, MessageServiceGrpc.MessageServiceFutureStub::request);
+    }
+
+    public ListenableFuture<List<Empty>> broadcastRequest(Collection<String> targetNodeIds, MessageServiceOuterClass.ClientRequest request) {
+        return broadcast(targetNodeIds, request, MessageServiceGrpc.MessageServiceFutureStub::request);
     }
 }
@@ -7,28 +7,31 @@ import org.apache.logging.log4j.Logger;
 import org.example.ClientNode;
 import org.example.MessageServiceGrpc;
 import org.example.MessageServiceOuterClass;
-import org.example.crypto.MessageAuthenticator;
+import org.example.crypto.VerificationStage;
 
 public class ClientMessageService extends MessageServiceGrpc.MessageServiceImplBase {
 
     private static final Logger logger = LogManager.getLogger(ClientMessageService.class);
     private final ClientNode clientNode;
-    private final MessageAuthenticator auth;
+    private final VerificationStage verificationStage;
 
-    public ClientMessageService(ClientNode clientNode, MessageAuthenticator auth) {
+    public ClientMessageService(ClientNode clientNode, VerificationStage verificationStage) {
         this.clientNode = clientNode;
-        this.auth = auth;
+        this.verificationStage = verificationStage;
     }
 
     @Override
-    public void reply(MessageServiceOuterClass.ClientReply request, StreamObserver<Empty> responseObserver) {
-        // Verify signature
-        if (!auth.verify(request)) {
-            logger.warn("Invalid signature on ClientReply from {} for client {}", request.getServerId(), request.getClientId());
-        }
-        // Feed into consensus tracker
-        logger.info("Signature verified for ClientReply from {} for client {}", request.getServerId(), request.getClientId());
-        clientNode.onClientReply(request);
+    public void reply(MessageServiceOuterClass.SignedMessage request, StreamObserver<Empty> responseObserver) {
+        // Verify signature off the gRPC thread; forged replies never reach the consensus tracker
+        verificationStage.submit(request, MessageServiceOuterClass.ClientReply.getDefaultInstance(), verified -> {
+            MessageServiceOuterClass.ClientReply reply = verified.message();
+            if (!verified.signerId().equals(reply.getServerId())) {
+                logger.warn("ClientReply claiming server {} was signed by {}", reply.getServerId(), verified.signerId());
+                return;
+            }
+            logger.info("Signature verified for ClientReply from {} for client {}", reply.getServerId(), reply.getClientId());
+            clientNode.onClientReply(reply);
+        }, rejected -> logger.warn("Invalid signature on ClientReply from {}", rejected.getSignerId()));
 
         // Ack
         responseObserver.onNext(Empty.getDefaultInstance());
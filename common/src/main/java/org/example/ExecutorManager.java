@@ -2,6 +2,7 @@ package org.example;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.example.config.Config;
 
 import java.util.concurrent.*;
 
@@ -15,6 +16,8 @@ public class ExecutorManager {
     private final ExecutorService streamingExecutor;
     private final ExecutorService messageExecutor;
     private final ExecutorService listeningExecutor;
+    private final ScheduledExecutorService timerExecutor;
+    private final ThreadPoolExecutor verificationExecutor;
 
 
 
@@ -47,6 +50,23 @@ public class ExecutorManager {
         // Executor for listening to incoming messages - for use with grpc server
         this.listeningExecutor = Executors.newSingleThreadExecutor(createNamedThreadFactory("grpc-listener"));
 
+        // Timers: batch cut-offs and protocol timeouts. Tasks should only hand work off to other executors
+        this.timerExecutor = Executors.newSingleThreadScheduledExecutor(createNamedThreadFactory("timer"));
+
+        // Signature verification: CPU-bound, one worker per core by default, bounded queue.
+        // When the queue is full the submitting (gRPC) thread verifies itself, pushing back on the sender
+        int verificationParallelism = Config.getVerifyParallelism() > 0
+                ? Config.getVerifyParallelism()
+                : Runtime.getRuntime().availableProcessors();
+        this.verificationExecutor = new ThreadPoolExecutor(
+                verificationParallelism,
+                verificationParallelism,
+                0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(Config.getVerifyQueueCapacity()),
+                createNamedThreadFactory("verify"),
+                new ThreadPoolExecutor.CallerRunsPolicy()
+        );
+
     }
 
     public void submitStateTransition(Runnable task) {
@@ -73,8 +93,22 @@ public class ExecutorManager {
         return listeningExecutor.submit(task);
     }
 
+    public void submitVerification(Runnable task) {
+        verificationExecutor.execute(task);
+    }
+
+    public int getVerificationParallelism() {
+        return verificationExecutor.getMaximumPoolSize();
+    }
+
+    public ScheduledFuture<?> schedule(Runnable task, long delay, TimeUnit unit) {
+        return timerExecutor.schedule(task, delay, unit);
+    }
+
     public void shutdown() {
+        shutdownExecutor(timerExecutor, "Timer");
         shutdownExecutor(networkExecutor, "Network");
+        shutdownExecutor(verificationExecutor, "Verification");
         shutdownExecutor(streamingExecutor, "Streaming");
         shutdownExecutor(messageExecutor, "Message");
         shutdownExecutor(logExecutor, "Log");
@@ -4,6 +4,7 @@ import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.example.consensus.ConsensusMessageTracker;
 import org.example.crypto.MessageAuthenticator;
+import org.example.crypto.VerificationStage;
 import org.example.messaging.CommunicationLogger;
 import org.example.messaging.MessageReceiver;
 import org.example.messaging.MessageSender;
@@ -24,6 +25,8 @@ public class Node {
 
     protected final ExecutorManager executorManager;
 
+    protected final VerificationStage verificationStage;
+
     protected final ConsensusMessageTracker<String> messageTracker;
 
     private volatile Future<?> listenerFuture;
@@ -34,6 +37,7 @@ public class Node {
         this.auth = new MessageAuthenticator(nodeId);
 
         this.executorManager = new ExecutorManager(10);
+        this.verificationStage = new VerificationStage(executorManager, auth);
         this.messageTracker = new ConsensusMessageTracker<>();
     }
 
@@ -64,6 +68,27 @@ public class Node {
         return (n / 2) + 1;
     }
 
+    /**
+     * Number of Byzantine faults tolerated by the cluster (n = 3f + 1).
+     */
+    protected int maxFaulty() {
+        return (getServerCount() - 1) / 3;
+    }
+
+    /**
+     * Byzantine quorum threshold (2f + 1).
+     */
+    protected int quorumCount() {
+        return 2 * maxFaulty() + 1;
+    }
+
+    /**
+     * Primary for a view; views start at 1 and rotate through n1..nN.
+     */
+    protected String primaryIdFor(long viewNumber) {
+        return "n" + (((viewNumber - 1) % getServerCount()) + 1);
+    }
+
     /**
      * Client request timeout sourced from configuration.
      */
@@ -16,16 +16,58 @@ public class Config {
 
     private static final Logger logger = LogManager.getLogger(Config.class);
 
+    /**
+     * Signer and vote bitmaps are a uint64 over the sorted server ids
+     */
+    public static final int MAX_SERVERS = Long.SIZE;
+
     // Static configuration fields - accessible from anywhere
     private static Map<String, ServerDetails> servers;
+    private static List<String> sortedServerIds;
+    private static Map<String, Integer> serverIndexes;
     private static Map<String, ClientDetails> clients;
     private static Map<String, Double> clientBalances;
     private static String transactionSetsPath;
     private static String privateKeyDir;
     private static String publicKeyPath;
+    private static String blsPublicKeyPath;
+    private static boolean aggregateSignaturesEnabled;
+    private static boolean macAuthEnabled;
+    private static int verifyParallelism;
+    private static int verifyQueueCapacity;
+    private static int verifyCacheSize;
 
     private static long clientTimeoutMillis;
     private static int maxRetries;
+    private static boolean readOnlyEnabled;
+    private static long readOnlyTimeoutMillis;
+    private static boolean leaseReadEnabled;
+    private static long leaseMillis;
+    private static int windowSize;
+    private static int checkpointInterval;
+    private static String walDir;
+    private static String walDurability;
+    private static String logSegmentDir;
+    private static int logSegmentBytes;
+    private static int batchMaxRequests;
+    private static int batchMaxBytes;
+    private static long batchTimeoutMillis;
+    private static boolean batchAdaptiveEnabled;
+    private static boolean digestOrderingEnabled;
+    private static boolean tentativeExecutionEnabled;
+    private static boolean fastPathEnabled;
+    private static long fastPathTimeoutMillis;
+    private static boolean collectorRotationEnabled;
+    private static int collectorCount;
+    private static long collectorTimeoutMillis;
+    private static int requestStoreCapacity;
+    private static int batchAdaptiveMinRequests;
+    private static int batchAdaptiveWindow;
+    private static double batchAdaptiveTargetP50Millis;
+    private static boolean primaryMonitorEnabled;
+    private static long primaryMonitorIntervalMillis;
+    private static double primaryMonitorMinFraction;
+    private static int primaryMonitorWindow;
     private static boolean initialized = false;
 
     // Private constructor to prevent instantiation
@@ -69,22 +111,206 @@ public class Config {
                 "keys/manifest.json"
         );
 
+        blsPublicKeyPath = props.getProperty(
+                "bls.public.key.path",
+                "keys/bls_manifest.json"
+        );
+
+        aggregateSignaturesEnabled = Boolean.parseBoolean(props.getProperty(
+                "signature.aggregate.enabled",
+                "false"
+        ));
+
+        macAuthEnabled = Boolean.parseBoolean(props.getProperty(
+                "auth.mac.enabled",
+                "true"
+        ));
+
+        verifyParallelism = Integer.parseInt(props.getProperty(
+                "verify.parallelism",
+                "0"
+        ));
+
+        verifyQueueCapacity = Integer.parseInt(props.getProperty(
+                "verify.queue.capacity",
+                "1024"
+        ));
+
+        verifyCacheSize = Integer.parseInt(props.getProperty(
+                "verify.cache.size",
+                "65536"
+        ));
+
         clientTimeoutMillis = Long.parseLong(props.getProperty(
                 "client.timeout.millis",
                 "500"
         ));
 
+        readOnlyEnabled = Boolean.parseBoolean(props.getProperty(
+                "read.only.enabled",
+                "true"
+        ));
+
+        readOnlyTimeoutMillis = Long.parseLong(props.getProperty(
+                "read.only.timeout.millis",
+                "1000"
+        ));
+
+        leaseReadEnabled = Boolean.parseBoolean(props.getProperty(
+                "read.lease.enabled",
+                "false"
+        ));
+
+        leaseMillis = Long.parseLong(props.getProperty(
+                "read.lease.millis",
+                "500"
+        ));
+
         maxRetries = Integer.parseInt(props.getProperty(
                 "max.retries",
                 "src/main/resources/transactionSets.csv"
         ));
 
+        windowSize = Integer.parseInt(props.getProperty(
+                "consensus.window.size",
+                "100"
+        ));
+
+        checkpointInterval = Integer.parseInt(props.getProperty(
+                "checkpoint.interval",
+                "25"
+        ));
+
+        walDir = props.getProperty(
+                "wal.dir",
+                "wal"
+        );
+
+        walDurability = props.getProperty(
+                "wal.durability",
+                "sync"
+        );
+
+        logSegmentDir = props.getProperty(
+                "log.segment.dir",
+                "segments"
+        );
+
+        logSegmentBytes = Integer.parseInt(props.getProperty(
+                "log.segment.bytes",
+                "16777216"
+        ));
+
+        batchMaxRequests = Integer.parseInt(props.getProperty(
+                "batch.max.requests",
+                "16"
+        ));
+
+        batchMaxBytes = Integer.parseInt(props.getProperty(
+                "batch.max.bytes",
+                "65536"
+        ));
+
+        batchTimeoutMillis = Long.parseLong(props.getProperty(
+                "batch.timeout.millis",
+                "5"
+        ));
+
+        batchAdaptiveEnabled = Boolean.parseBoolean(props.getProperty(
+                "batch.adaptive.enabled",
+                "true"
+        ));
+
+        batchAdaptiveMinRequests = Integer.parseInt(props.getProperty(
+                "batch.adaptive.min.requests",
+                "1"
+        ));
+
+        batchAdaptiveWindow = Integer.parseInt(props.getProperty(
+                "batch.adaptive.window",
+                "64"
+        ));
+
+        batchAdaptiveTargetP50Millis = Double.parseDouble(props.getProperty(
+                "batch.adaptive.target.p50.millis",
+                "20"
+        ));
+
+        primaryMonitorEnabled = Boolean.parseBoolean(props.getProperty(
+                "primary.monitor.enabled",
+                "true"
+        ));
+
+        primaryMonitorIntervalMillis = Long.parseLong(props.getProperty(
+                "primary.monitor.interval.millis",
+                "500"
+        ));
+
+        primaryMonitorMinFraction = Double.parseDouble(props.getProperty(
+                "primary.monitor.min.fraction",
+                "0.5"
+        ));
+
+        primaryMonitorWindow = Integer.parseInt(props.getProperty(
+                "primary.monitor.window",
+                "32"
+        ));
+
+        digestOrderingEnabled = Boolean.parseBoolean(props.getProperty(
+                "ordering.digest.only",
+                "false"
+        ));
+
+        tentativeExecutionEnabled = Boolean.parseBoolean(props.getProperty(
+                "execution.tentative.enabled",
+                "false"
+        ));
+
+        fastPathEnabled = Boolean.parseBoolean(props.getProperty(
+                "fast.path.enabled",
+                "false"
+        ));
+
+        fastPathTimeoutMillis = Long.parseLong(props.getProperty(
+                "fast.path.timeout.millis",
+                "5"
+        ));
+
+        collectorRotationEnabled = Boolean.parseBoolean(props.getProperty(
+                "collector.rotation.enabled",
+                "true"
+        ));
+
+        collectorCount = Integer.parseInt(props.getProperty(
+                "collector.count",
+                "1"
+        ));
+
+        collectorTimeoutMillis = Long.parseLong(props.getProperty(
+                "collector.timeout.millis",
+                "50"
+        ));
+
+        requestStoreCapacity = Integer.parseInt(props.getProperty(
+                "ordering.request.store.capacity",
+                "65536"
+        ));
+
         logger.info("Using paths: server.details.path={}, client.details.path={}",
                 serverDetailsPath, clientDetailsPath);
 
         logger.info("Loading server details from: {}", serverDetailsPath);
         servers = ConfigLoader.loadServersFromConfig(serverDetailsPath);
         logger.info("Loaded {} servers", servers.size());
+        if (servers.size() > MAX_SERVERS) {
+            throw new IllegalStateException("At most " + MAX_SERVERS + " servers are supported, got " + servers.size());
+        }
+        sortedServerIds = servers.keySet().stream().sorted().toList();
+        Map<String, Integer> indexes = new HashMap<>();
+        for (int i = 0; i < sortedServerIds.size(); i++) {
+            indexes.put(sortedServerIds.get(i), i);
+        }
+        serverIndexes = Map.copyOf(indexes);
 
         logger.info("Loading client details from: {}", clientDetailsPath);
         clientBalances = ConfigLoader.loadClientBalances(clientDetailsPath);
@@ -199,6 +425,22 @@ public class Config {
         return servers.keySet().stream().filter(server -> !Objects.equals(server, serverId)).collect(Collectors.toSet());
     }
 
+    /**
+     * Server IDs in a fixed order shared by every node, e.g. for signer bitmaps
+     */
+    public static List<String> getSortedServerIds() {
+        ensureInitialized();
+        return sortedServerIds;
+    }
+
+    /**
+     * Position of a server in getSortedServerIds(), or -1 if it is not in the config
+     */
+    public static int getServerIndex(String serverId) {
+        ensureInitialized();
+        return serverId == null ? -1 : serverIndexes.getOrDefault(serverId, -1);
+    }
+
     /**
      * Get a specific server by ID
      */
@@ -257,6 +499,55 @@ public class Config {
         return publicKeyPath;
     }
 
+    /**
+     * Manifest of replica BLS public keys, written by BlsKeyTool
+     */
+    public static String getBlsPublicKeyPath() {
+        ensureInitialized();
+        return blsPublicKeyPath;
+    }
+
+    /**
+     * Whether quorum certificates carry one BLS aggregate instead of bundled Ed25519 signatures
+     */
+    public static boolean isAggregateSignaturesEnabled() {
+        ensureInitialized();
+        return aggregateSignaturesEnabled;
+    }
+
+    /**
+     * Whether replica-to-replica messages that need no transferable proof carry an HMAC under a
+     * pairwise session key instead of an Ed25519 signature
+     */
+    public static boolean isMacAuthEnabled() {
+        ensureInitialized();
+        return macAuthEnabled;
+    }
+
+    /**
+     * Signature verification workers; 0 means one per available core
+     */
+    public static int getVerifyParallelism() {
+        ensureInitialized();
+        return verifyParallelism;
+    }
+
+    /**
+     * Messages that may wait for a verification worker before submitters verify inline
+     */
+    public static int getVerifyQueueCapacity() {
+        ensureInitialized();
+        return verifyQueueCapacity;
+    }
+
+    /**
+     * Client request envelopes remembered as already verified; 0 disables the cache
+     */
+    public static int getVerifyCacheSize() {
+        ensureInitialized();
+        return verifyCacheSize;
+    }
+
     public static int getMaxRetries() {
         ensureInitialized();
         return maxRetries;
@@ -267,6 +558,231 @@ public class Config {
         return clientTimeoutMillis;
     }
 
+    /**
+     * Whether balance reads are first tried unordered against 2f+1 matching replicas
+     */
+    public static boolean isReadOnlyEnabled() {
+        ensureInitialized();
+        return readOnlyEnabled;
+    }
+
+    /**
+     * How long a client waits for a read-only quorum before ordering the read
+     */
+    public static long getReadOnlyTimeoutMillis() {
+        ensureInitialized();
+        return readOnlyTimeoutMillis;
+    }
+
+    /**
+     * Whether the primary serves balance reads alone under a lease granted by Prepare votes.
+     * Such reads trust the primary's answer; they stay linearizable across view changes only.
+     */
+    public static boolean isLeaseReadEnabled() {
+        ensureInitialized();
+        return leaseReadEnabled;
+    }
+
+    /**
+     * How long a Prepare vote keeps its sender from asking for a new view
+     */
+    public static long getLeaseMillis() {
+        ensureInitialized();
+        return leaseMillis;
+    }
+
+    /**
+     * Number of sequence numbers that may be in flight between the low and high watermarks
+     */
+    public static int getWindowSize() {
+        ensureInitialized();
+        return windowSize;
+    }
+
+    /**
+     * Sequence numbers between checkpoints; at most the window size, since the window only
+     * slides at a stable checkpoint
+     */
+    public static int getCheckpointInterval() {
+        ensureInitialized();
+        return checkpointInterval;
+    }
+
+    /**
+     * Directory holding a subdirectory of write-ahead log generations per server
+     */
+    public static String getWalDir() {
+        ensureInitialized();
+        return walDir;
+    }
+
+    /**
+     * none: written, never fsynced; async: fsynced in the background; sync: votes wait for the fsync
+     */
+    public static String getWalDurability() {
+        ensureInitialized();
+        return walDurability;
+    }
+
+    /**
+     * Directory holding a subdirectory of executed-log segments per server
+     */
+    public static String getLogSegmentDir() {
+        ensureInitialized();
+        return logSegmentDir;
+    }
+
+    /**
+     * Size of each memory-mapped log segment file
+     */
+    public static int getLogSegmentBytes() {
+        ensureInitialized();
+        return logSegmentBytes;
+    }
+
+    /**
+     * Maximum number of client requests ordered by a single PrePrepare
+     */
+    public static int getBatchMaxRequests() {
+        ensureInitialized();
+        return batchMaxRequests;
+    }
+
+    /**
+     * Maximum serialized size of the requests in a single batch
+     */
+    public static int getBatchMaxBytes() {
+        ensureInitialized();
+        return batchMaxBytes;
+    }
+
+    /**
+     * Longest time the first request of a batch waits before the batch is cut
+     */
+    public static long getBatchTimeoutMillis() {
+        ensureInitialized();
+        return batchTimeoutMillis;
+    }
+
+    /**
+     * Whether batch size and timeout are retuned at runtime, using the fixed values as upper bounds
+     */
+    public static boolean isBatchAdaptiveEnabled() {
+        ensureInitialized();
+        return batchAdaptiveEnabled;
+    }
+
+    public static int getBatchAdaptiveMinRequests() {
+        ensureInitialized();
+        return batchAdaptiveMinRequests;
+    }
+
+    /**
+     * Number of commit latency samples in the adaptive controller's moving window
+     */
+    public static int getBatchAdaptiveWindow() {
+        ensureInitialized();
+        return batchAdaptiveWindow;
+    }
+
+    public static double getBatchAdaptiveTargetP50Millis() {
+        ensureInitialized();
+        return batchAdaptiveTargetP50Millis;
+    }
+
+    /**
+     * Whether backups vote out a primary that orders well below the cluster's recent rate
+     */
+    public static boolean isPrimaryMonitorEnabled() {
+        ensureInitialized();
+        return primaryMonitorEnabled;
+    }
+
+    public static long getPrimaryMonitorIntervalMillis() {
+        ensureInitialized();
+        return primaryMonitorIntervalMillis;
+    }
+
+    /**
+     * Fraction of baseline throughput (and inverse fraction of baseline latency) below which an interval is slow
+     */
+    public static double getPrimaryMonitorMinFraction() {
+        ensureInitialized();
+        return primaryMonitorMinFraction;
+    }
+
+    /**
+     * Number of measurement intervals in the primary monitor's rolling baseline
+     */
+    public static int getPrimaryMonitorWindow() {
+        ensureInitialized();
+        return primaryMonitorWindow;
+    }
+
+    /**
+     * Whether clients send request bodies to every replica and PrePrepares carry only request digests
+     */
+    public static boolean isDigestOrderingEnabled() {
+        ensureInitialized();
+        return digestOrderingEnabled;
+    }
+
+    /**
+     * Request bodies a replica keeps for digest-only ordering and for serving peers' fetches
+     */
+    /**
+     * Whether replicas execute prepared batches before they commit and send tentative replies
+     */
+    public static boolean isTentativeExecutionEnabled() {
+        ensureInitialized();
+        return tentativeExecutionEnabled;
+    }
+
+    /**
+     * Whether a batch prepared by all n replicas commits without a commit round
+     */
+    public static boolean isFastPathEnabled() {
+        ensureInitialized();
+        return fastPathEnabled;
+    }
+
+    /**
+     * How long the collector waits past a prepare quorum for the remaining votes of the fast path
+     */
+    public static long getFastPathTimeoutMillis() {
+        ensureInitialized();
+        return fastPathTimeoutMillis;
+    }
+
+    /**
+     * Whether the collector role rotates across the backups by sequence number instead of staying with the primary
+     */
+    public static boolean isCollectorRotationEnabled() {
+        ensureInitialized();
+        return collectorRotationEnabled;
+    }
+
+    /**
+     * How many rotating collectors each vote is sent to
+     */
+    public static int getCollectorCount() {
+        ensureInitialized();
+        return collectorCount;
+    }
+
+    /**
+     * How long a replica waits for its collectors' certificate before sending its vote to the primary
+     */
+    public static long getCollectorTimeoutMillis() {
+        ensureInitialized();
+        return collectorTimeoutMillis;
+    }
+
+    public static int getRequestStoreCapacity() {
+        ensureInitialized();
+        return requestStoreCapacity;
+    }
+
     /**
      * Check if a server exists in the configuration
      */
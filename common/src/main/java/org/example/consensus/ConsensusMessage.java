@@ -9,10 +9,12 @@ import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Function;
+import java.util.function.ToIntFunction;
 
 /**
  * Generic per-request consensus collector that aggregates unique responses and
- * tracks counts per equivalence class (value key) until a threshold is met.
+ * tracks counts per equivalence class (value key) until a threshold is met. The threshold may
+ * depend on the value key (e.g. more tentative replies than committed ones are needed).
  *
  * K - request identifier type (e.g., String, composite key)
  * V - value-key used to group equivalent responses (e.g., boolean, enum, digest)
@@ -21,6 +23,7 @@ public class ConsensusMessage<K, V> {
 
     private final K requestId;
     private final int required;
+    private final ToIntFunction<V> requiredFor;
 
     private final Function<Message, K> requestIdExtractor;
     private final Function<Message, String> responderIdExtractor;
@@ -36,9 +39,23 @@ public class ConsensusMessage<K, V> {
                             Function<Message, K> requestIdExtractor,
                             Function<Message, String> responderIdExtractor,
                             Function<Message, V> valueExtractor) {
+        this(requestId, required, value -> required, requestIdExtractor, responderIdExtractor, valueExtractor);
+    }
+
+    /**
+     * @param required    the smallest threshold over all value keys, reported by required()
+     * @param requiredFor threshold for the replies matching a given value key
+     */
+    public ConsensusMessage(K requestId,
+                            int required,
+                            ToIntFunction<V> requiredFor,
+                            Function<Message, K> requestIdExtractor,
+                            Function<Message, String> responderIdExtractor,
+                            Function<Message, V> valueExtractor) {
         if (required <= 0) throw new IllegalArgumentException("required must be > 0");
         this.requestId = Objects.requireNonNull(requestId, "requestId");
         this.required = required;
+        this.requiredFor = Objects.requireNonNull(requiredFor, "requiredFor");
         this.requestIdExtractor = Objects.requireNonNull(requestIdExtractor, "requestIdExtractor");
         this.responderIdExtractor = Objects.requireNonNull(responderIdExtractor, "responderIdExtractor");
         this.valueExtractor = Objects.requireNonNull(valueExtractor, "valueExtractor");
@@ -71,7 +88,7 @@ public class ConsensusMessage<K, V> {
 
         int count = valueCounts.get(value).get();
 //        System.out.println("Request " + requestId + " received value " + value + " count " + count);
-        if (count >= required) {
+        if (count >= requiredFor.applyAsInt(value)) {
             future.complete(representative.get(value));
         }
     }
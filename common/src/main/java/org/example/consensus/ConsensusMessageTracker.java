@@ -9,6 +9,7 @@ import java.util.Map;
 import java.util.Optional;
 import java.util.concurrent.*;
 import java.util.function.Function;
+import java.util.function.ToIntFunction;
 
 /**
  * Heterogeneous consensus tracker keyed by request id (K). Each in-flight request is represented
@@ -41,6 +42,19 @@ public class ConsensusMessageTracker<K> {
         return cm;
     }
 
+    /** Convenience: as above, with a threshold that depends on the value key. */
+    public <V> ConsensusMessage<K, V> startTracking(K requestId,
+                                                    int required,
+                                                    ToIntFunction<V> requiredFor,
+                                                    Function<Message, K> requestIdExtractor,
+                                                    Function<Message, String> responderIdExtractor,
+                                                    Function<Message, V> valueExtractor) {
+        ConsensusMessage<K, V> cm = new ConsensusMessage<>(requestId, required, requiredFor,
+                requestIdExtractor, responderIdExtractor, valueExtractor);
+        startTracking(cm);
+        return cm;
+    }
+
     /** Record an incoming response by request id for O(1) lookup. */
     public boolean recordReply(K requestId, Message reply) {
         ConsensusMessage<K, ?> state = inFlight.get(requestId);
@@ -0,0 +1,42 @@
+package org.example.crypto;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.example.crypto.bls.Bls;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.PrivateKey;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Writes the BLS public key manifest for the replicas. Each replica's BLS secret key is
+ * derived from its Ed25519 private key, so no extra secrets are provisioned; only the
+ * manifest has to be distributed, next to keys/manifest.json.
+ *
+ * Usage: BlsKeyTool &lt;private key dir&gt; &lt;output manifest&gt; &lt;server id&gt;...
+ */
+public final class BlsKeyTool {
+
+    private BlsKeyTool() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 3) {
+            System.err.println("Usage: BlsKeyTool <private key dir> <output manifest> <server id>...");
+            System.exit(1);
+        }
+        Path privateKeyDir = Path.of(args[0]);
+        Map<String, String> manifest = new LinkedHashMap<>();
+        for (int i = 2; i < args.length; i++) {
+            PrivateKey privateKey = Pem.readEd25519Private(privateKeyDir.resolve(args[i] + ".pem"));
+            byte[] publicKey = Bls.publicKey(Bls.deriveSecretKey(privateKey.getEncoded()));
+            manifest.put(args[i], HexFormat.of().formatHex(publicKey));
+        }
+        Path output = Path.of(args[1]);
+        Files.writeString(output, new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT).writeValueAsString(manifest));
+        System.out.println("Wrote " + manifest.size() + " BLS public keys to " + output);
+    }
+}
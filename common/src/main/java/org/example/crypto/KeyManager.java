@@ -1,9 +1,17 @@
 package org.example.crypto;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.example.crypto.bls.Bls;
+import org.example.crypto.bls.G2Point;
+
+import java.math.BigInteger;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.security.PrivateKey;
 import java.security.PublicKey;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HexFormat;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 
@@ -12,10 +20,14 @@ public class KeyManager {
     private final String selfId;
     private final Map<String, PublicKey> publicKeys;
     private volatile PrivateKey privateKey;
+    private final Map<String, G2Point> blsPublicKeys; // decoded and subgroup-checked once, at load
+    private volatile BigInteger blsSecretKey;
+    private volatile SessionKeys sessionKeys;
 
     public KeyManager(String selfId) {
         this.selfId = selfId;
         this.publicKeys = new ConcurrentHashMap<>();
+        this.blsPublicKeys = new ConcurrentHashMap<>();
     }
 
     public String getSelfId() {
@@ -38,6 +50,57 @@ public class KeyManager {
         if (mine == null) throw new IllegalStateException("Missing public key for " + selfId);
     }
 
+    /**
+     * Load the replica BLS public keys and, if this node holds an Ed25519 private key, derive its
+     * BLS secret key from it. Must run after load(). A derived key that disagrees with the
+     * manifest means the manifest was generated from different Ed25519 keys.
+     */
+    public void loadBls(String blsManifestPath) {
+        if (blsManifestPath == null || !Files.exists(Path.of(blsManifestPath))) {
+            throw new IllegalStateException("BLS public key manifest not found: " + blsManifestPath);
+        }
+        try {
+            PublicKeyManifest manifest = new ObjectMapper().readValue(Files.readString(Path.of(blsManifestPath)), PublicKeyManifest.class);
+            for (Map.Entry<String, String> entry : manifest.getKeys().entrySet()) {
+                blsPublicKeys.put(entry.getKey(), Bls.decodePublicKey(HexFormat.of().parseHex(entry.getValue())));
+            }
+        } catch (Exception e) {
+            throw new IllegalStateException("Failed to load BLS public keys from manifest " + blsManifestPath, e);
+        }
+
+        G2Point mine = blsPublicKeys.get(selfId);
+        if (privateKey != null && mine != null) {
+            BigInteger derived = Bls.deriveSecretKey(privateKey.getEncoded());
+            if (!Bls.decodePublicKey(Bls.publicKey(derived)).equals(mine)) {
+                throw new IllegalStateException("BLS public key in manifest does not match the private key of " + selfId);
+            }
+            this.blsSecretKey = derived;
+        }
+    }
+
+    /**
+     * Derive pairwise HMAC session keys with the given peers from the loaded Ed25519 keys.
+     * Must run after load().
+     */
+    public void deriveSessionKeys(Collection<String> peerIds) {
+        Map<String, PublicKey> peers = new HashMap<>();
+        for (String peerId : peerIds) {
+            peers.put(peerId, getPublicKey(peerId));
+        }
+        this.sessionKeys = SessionKeys.derive(selfId, getPrivateKey(), peers);
+    }
+
+    SessionKeys getSessionKeys() {
+        if (sessionKeys == null) {
+            throw new IllegalStateException("Session keys not derived for " + selfId);
+        }
+        return sessionKeys;
+    }
+
+    public boolean hasPublicKey(String nodeId) {
+        return publicKeys.containsKey(nodeId);
+    }
+
     public PublicKey getPublicKey(String serverId) {
         if (!publicKeys.containsKey(serverId)) {
             throw new IllegalStateException("No public key loaded for " + serverId);
@@ -52,4 +115,19 @@ public class KeyManager {
         return privateKey;
     }
 
+    public G2Point getBlsPublicKey(String serverId) {
+        G2Point publicKey = blsPublicKeys.get(serverId);
+        if (publicKey == null) {
+            throw new IllegalStateException("No BLS public key loaded for " + serverId);
+        }
+        return publicKey;
+    }
+
+    public BigInteger getBlsSecretKey() {
+        if (blsSecretKey == null) {
+            throw new IllegalStateException("BLS secret key not loaded for " + selfId);
+        }
+        return blsSecretKey;
+    }
+
 }
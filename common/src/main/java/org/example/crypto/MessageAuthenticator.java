@@ -1,12 +1,31 @@
 package org.example.crypto;
 
+import com.google.protobuf.ByteString;
+import com.google.protobuf.Descriptors;
+import com.google.protobuf.InvalidProtocolBufferException;
 import com.google.protobuf.Message;
+import org.example.MessageServiceOuterClass;
 import org.example.config.Config;
+import org.example.crypto.bls.G2Point;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class MessageAuthenticator {
 
     private final String selfId;
     private final KeyManager keyManager;
+    private final boolean macEnabled;
+    private final Set<Descriptors.Descriptor> macTypes;
+    private final VerifiedRequestCache verifiedRequests = new VerifiedRequestCache(Config.getVerifyCacheSize());
+
+    // Signature domain per message type: full type name followed by a zero byte
+    private static final Map<Descriptors.Descriptor, byte[]> DOMAINS = new ConcurrentHashMap<>();
 
     public MessageAuthenticator(String selfId) {
         this.selfId = selfId;
@@ -15,37 +34,164 @@ public class MessageAuthenticator {
         String privateKeyDir = Config.getPrivateKeyDir();
         String publicKeyManifestPath = Config.getPublicKeyPath();
         keyManager.load(privateKeyDir, publicKeyManifestPath);
+        if (Config.isAggregateSignaturesEnabled()) {
+            keyManager.loadBls(Config.getBlsPublicKeyPath());
+        }
+
+        this.macEnabled = Config.isMacAuthEnabled() && Config.getServerIds().contains(selfId);
+        this.macTypes = macTypes(Config.isAggregateSignaturesEnabled());
+        if (macEnabled) {
+            keyManager.deriveSessionKeys(Config.getServerIdsExcept(selfId));
+        }
     }
 
-    private Message clearMessage(Message message) {
-        return message.toBuilder()
-                .clearField(message.getDescriptorForType().findFieldByName("signer_id"))
-                .clearField(message.getDescriptorForType().findFieldByName("signature"))
-                .build();
+    // Messages that are never relayed as proof. Certificate envelopes qualify because the
+    // certificate inside is itself transferable; Ed25519 votes do not, since their envelope
+    // signatures are what a quorum certificate bundles.
+    private static Set<Descriptors.Descriptor> macTypes(boolean aggregateSignatures) {
+        Set<Descriptors.Descriptor> types = new HashSet<>(List.of(
+                MessageServiceOuterClass.PrePrepareMessage.getDescriptor(),
+                MessageServiceOuterClass.PrepareCertificate.getDescriptor(),
+                MessageServiceOuterClass.CommitCertificate.getDescriptor(),
+                MessageServiceOuterClass.CheckpointCertificate.getDescriptor(),
+                MessageServiceOuterClass.RequestFetch.getDescriptor(),
+                MessageServiceOuterClass.StateTransferRequest.getDescriptor()));
+        if (aggregateSignatures) {
+            // Votes prove themselves through their BLS share
+            types.add(MessageServiceOuterClass.PrepareMessage.getDescriptor());
+            types.add(MessageServiceOuterClass.CommitMessage.getDescriptor());
+        }
+        return Set.copyOf(types);
+    }
+
+    /**
+     * Whether messages of this type sent to targetNodeId are authenticated with a session-key
+     * MAC rather than a signature.
+     */
+    public boolean usesMac(Descriptors.Descriptor type, String targetNodeId) {
+        return macEnabled && macTypes.contains(type) && keyManager.getSessionKeys().hasPeer(targetNodeId);
+    }
+
+    // The type name is signed along with the payload so identically shaped messages (e.g. Prepare and Commit votes) cannot stand in for each other
+    private static byte[] domain(Descriptors.Descriptor type) {
+        return DOMAINS.computeIfAbsent(type, t -> {
+            byte[] name = t.getFullName().getBytes(StandardCharsets.UTF_8);
+            byte[] domain = new byte[name.length + 1];
+            System.arraycopy(name, 0, domain, 0, name.length);
+            return domain;
+        });
+    }
+
+    private static byte[] signingBytes(Message unsigned) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.writeBytes(domain(unsigned.getDescriptorForType()));
+        out.writeBytes(unsigned.toByteArray());
+        return out.toByteArray();
     }
 
-    public Message sign(Message message) {
-        byte[] signature = SignerVerifier.signEd25519(clearMessage(message).toByteArray(), keyManager.getPrivateKey());
+    /**
+     * Serialize the message once and sign exactly those bytes.
+     */
+    public MessageServiceOuterClass.SignedMessage seal(Message message) {
+        return seal(message.toByteString(), message.getDescriptorForType());
+    }
 
-        return message.toBuilder()
-                .setField(message.getDescriptorForType().findFieldByName("signer_id"), selfId)
-                .setField(message.getDescriptorForType().findFieldByName("signature"), com.google.protobuf.ByteString.copyFrom(signature))
+    public MessageServiceOuterClass.SignedMessage seal(ByteString payload, Descriptors.Descriptor type) {
+        byte[] signature = SignerVerifier.signEd25519(domain(type), payload, keyManager.getPrivateKey());
+        return MessageServiceOuterClass.SignedMessage.newBuilder()
+                .setPayload(payload)
+                .setSignerId(selfId)
+                .setSignature(ByteString.copyFrom(signature))
                 .build();
     }
 
-    public boolean verify(Message message) {
-        byte[] signature = message.getField(message.getDescriptorForType().findFieldByName("signature")) instanceof com.google.protobuf.ByteString bs
-                ? bs.toByteArray()
-                : new byte[0];
-        String signerId = message.getField(message.getDescriptorForType().findFieldByName("signer_id")) instanceof String id
-                ? id
-                : "";
-        return SignerVerifier.verifyEd25519(clearMessage(message).toByteArray(), signature, keyManager.getPublicKey(signerId));
+    /**
+     * Seal the message for a single receiver: a session-key MAC where the type allows it,
+     * otherwise a signature.
+     */
+    public MessageServiceOuterClass.SignedMessage seal(Message message, String targetNodeId) {
+        if (usesMac(message.getDescriptorForType(), targetNodeId)) {
+            return macSeal(message.toByteString(), message.getDescriptorForType(), targetNodeId);
+        }
+        return seal(message);
     }
 
+    /**
+     * MAC an already serialized payload for one receiver, so a broadcast serializes once and
+     * only computes one HMAC per target.
+     */
+    public MessageServiceOuterClass.SignedMessage macSeal(ByteString payload, Descriptors.Descriptor type, String targetNodeId) {
+        byte[] mac = keyManager.getSessionKeys().mac(targetNodeId, domain(type), payload);
+        return MessageServiceOuterClass.SignedMessage.newBuilder()
+                .setPayload(payload)
+                .setSignerId(selfId)
+                .setMac(ByteString.copyFrom(mac))
+                .build();
+    }
+
+    /**
+     * Verify the envelope over its received payload bytes, then parse the payload as the
+     * expected type. Returns null if the signer is unknown, the signature or MAC does not
+     * verify, or the payload is not a valid message of that type.
+     */
+    @SuppressWarnings("unchecked")
+    public <T extends Message> Signed<T> open(MessageServiceOuterClass.SignedMessage envelope, T defaultInstance) {
+        if (!verify(envelope, defaultInstance.getDescriptorForType())) {
+            return null;
+        }
+        try {
+            T message = (T) defaultInstance.getParserForType().parseFrom(envelope.getPayload());
+            return new Signed<>(message, envelope);
+        } catch (InvalidProtocolBufferException e) {
+            return null;
+        }
+    }
 
+    private boolean verify(MessageServiceOuterClass.SignedMessage envelope, Descriptors.Descriptor type) {
+        if (envelope.getSignature().isEmpty()) {
+            // A MAC is only accepted from a replica peer and for types that never need to be relayed
+            return macEnabled && macTypes.contains(type)
+                    && keyManager.getSessionKeys().verify(envelope.getSignerId(), domain(type),
+                            envelope.getPayload(), envelope.getMac().toByteArray());
+        }
+        if (!keyManager.hasPublicKey(envelope.getSignerId())) {
+            return false;
+        }
+        // Client requests arrive directly, again inside PrePrepares and again on retransmission
+        boolean clientRequest = type == MessageServiceOuterClass.ClientRequest.getDescriptor();
+        if (clientRequest && verifiedRequests.contains(envelope)) {
+            return true;
+        }
+        boolean valid = SignerVerifier.verifyEd25519(domain(type), envelope.getPayload(),
+                envelope.getSignature().toByteArray(), keyManager.getPublicKey(envelope.getSignerId()));
+        if (valid && clientRequest) {
+            verifiedRequests.add(envelope);
+        }
+        return valid;
+    }
 
+    /**
+     * Verify a detached signature by signerId over a message rebuilt by the verifier,
+     * e.g. a vote reconstructed from a quorum certificate.
+     */
+    public boolean verify(String signerId, Message unsigned, byte[] signature) {
+        return SignerVerifier.verifyEd25519(domain(unsigned.getDescriptorForType()), unsigned.toByteString(), signature, keyManager.getPublicKey(signerId));
+    }
 
+    /**
+     * BLS share over a message that every signer builds identically (no replica_id), so that
+     * the shares of a quorum aggregate into one signature.
+     */
+    public byte[] signShare(Message unsigned) {
+        return SignerVerifier.signBls(signingBytes(unsigned), keyManager.getBlsSecretKey());
+    }
 
+    public boolean verifyShare(String signerId, Message unsigned, byte[] share) {
+        return SignerVerifier.verifyBls(signingBytes(unsigned), share, keyManager.getBlsPublicKey(signerId));
+    }
 
+    public boolean verifyAggregate(List<String> signerIds, Message unsigned, byte[] aggregateSignature) {
+        List<G2Point> publicKeys = signerIds.stream().map(keyManager::getBlsPublicKey).toList();
+        return SignerVerifier.verifyBlsAggregate(signingBytes(unsigned), aggregateSignature, publicKeys);
+    }
 }
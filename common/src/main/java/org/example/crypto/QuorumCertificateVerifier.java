@@ -0,0 +1,73 @@
+package org.example.crypto;
+
+import com.google.protobuf.Message;
+import org.example.MessageServiceOuterClass;
+import org.example.config.Config;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.BooleanSupplier;
+import java.util.function.Function;
+
+/**
+ * Checks every signature of a quorum certificate in a single pass over its signer bitmap.
+ *
+ * The structural checks (quorum size, no bits beyond the cluster, signature block length) run
+ * before any signature is verified; the per-signer checks are then spread over the
+ * verification stage, which stops at the first bad signature. A BLS
+ * aggregate certificate is checked with one pairing equation against the signers' keys.
+ */
+public class QuorumCertificateVerifier {
+
+    private final MessageAuthenticator auth;
+    private final VerificationStage verificationStage;
+
+    public QuorumCertificateVerifier(MessageAuthenticator auth, VerificationStage verificationStage) {
+        this.auth = auth;
+        this.verificationStage = verificationStage;
+    }
+
+    /**
+     * @param quorum          minimum number of distinct signers
+     * @param unsignedVoteFor rebuilds the vote a given replica signed for this certificate; called with
+     *                        an empty replica id for the common message behind BLS shares
+     */
+    public boolean verify(MessageServiceOuterClass.QuorumCertificate certificate,
+                          int quorum,
+                          Function<String, Message> unsignedVoteFor) {
+        List<String> serverIds = Config.getSortedServerIds();
+        long bitmap = certificate.getSignerBitmap();
+        int signerCount = Long.bitCount(bitmap);
+
+        if (signerCount < quorum) {
+            return false;
+        }
+        if (serverIds.size() < QuorumCertificates.MAX_REPLICAS && (bitmap >>> serverIds.size()) != 0) {
+            return false;
+        }
+        if (!certificate.getAggregateSignature().isEmpty()) {
+            return certificate.getSignatures().isEmpty()
+                    && certificate.getAggregateSignature().size() == SignerVerifier.BLS_SIGNATURE_LENGTH
+                    && auth.verifyAggregate(QuorumCertificates.signers(certificate), unsignedVoteFor.apply(""),
+                    certificate.getAggregateSignature().toByteArray());
+        }
+        if (certificate.getSignatures().size() != signerCount * SignerVerifier.ED25519_SIGNATURE_LENGTH) {
+            return false;
+        }
+
+        byte[] signatures = certificate.getSignatures().toByteArray();
+        List<BooleanSupplier> checks = new ArrayList<>(signerCount);
+        int offset = 0;
+        for (int i = 0; i < serverIds.size(); i++) {
+            if ((bitmap & (1L << i)) == 0) {
+                continue;
+            }
+            byte[] signature = Arrays.copyOfRange(signatures, offset, offset + SignerVerifier.ED25519_SIGNATURE_LENGTH);
+            offset += SignerVerifier.ED25519_SIGNATURE_LENGTH;
+            String signerId = serverIds.get(i);
+            checks.add(() -> auth.verify(signerId, unsignedVoteFor.apply(signerId), signature));
+        }
+        return verificationStage.verifyAll(checks);
+    }
+}
@@ -0,0 +1,91 @@
+package org.example.crypto;
+
+import com.google.protobuf.ByteString;
+import org.example.MessageServiceOuterClass;
+import org.example.config.Config;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Assembly and inspection of compact quorum certificates: a signer bitmap over the sorted
+ * server ids plus either the signers' vote signatures concatenated in bit order, or a single
+ * BLS aggregate of their shares when aggregate signatures are enabled.
+ * The bitmap is a uint64, so Config rejects clusters of more than 64 replicas.
+ */
+public final class QuorumCertificates {
+    public static final int MAX_REPLICAS = Config.MAX_SERVERS;
+
+    private QuorumCertificates() {
+    }
+
+    /**
+     * @param signatures vote signature per replica id; replicas not in the cluster are ignored
+     */
+    public static MessageServiceOuterClass.QuorumCertificate assemble(long viewNumber,
+                                                                      long sequenceNumber,
+                                                                      ByteString digest,
+                                                                      Map<String, ByteString> signatures) {
+        List<String> serverIds = Config.getSortedServerIds();
+        long bitmap = 0L;
+        ByteArrayOutputStream concatenated = new ByteArrayOutputStream(signatures.size() * SignerVerifier.ED25519_SIGNATURE_LENGTH);
+        for (int i = 0; i < serverIds.size(); i++) {
+            ByteString signature = signatures.get(serverIds.get(i));
+            if (signature != null) {
+                bitmap |= 1L << i;
+                concatenated.writeBytes(signature.toByteArray());
+            }
+        }
+        return MessageServiceOuterClass.QuorumCertificate.newBuilder()
+                .setViewNumber(viewNumber)
+                .setSequenceNumber(sequenceNumber)
+                .setDigest(digest)
+                .setSignerBitmap(bitmap)
+                .setSignatures(ByteString.copyFrom(concatenated.toByteArray()))
+                .build();
+    }
+
+    /**
+     * @param shares BLS share per replica id, already verified; replicas not in the cluster are ignored
+     */
+    public static MessageServiceOuterClass.QuorumCertificate assembleAggregate(long viewNumber,
+                                                                               long sequenceNumber,
+                                                                               ByteString digest,
+                                                                               Map<String, ByteString> shares) {
+        List<String> serverIds = Config.getSortedServerIds();
+        long bitmap = 0L;
+        List<byte[]> included = new ArrayList<>(shares.size());
+        for (int i = 0; i < serverIds.size(); i++) {
+            ByteString share = shares.get(serverIds.get(i));
+            if (share != null) {
+                bitmap |= 1L << i;
+                included.add(share.toByteArray());
+            }
+        }
+        return MessageServiceOuterClass.QuorumCertificate.newBuilder()
+                .setViewNumber(viewNumber)
+                .setSequenceNumber(sequenceNumber)
+                .setDigest(digest)
+                .setSignerBitmap(bitmap)
+                .setAggregateSignature(ByteString.copyFrom(SignerVerifier.aggregateBls(included)))
+                .build();
+    }
+
+    public static int signerCount(MessageServiceOuterClass.QuorumCertificate certificate) {
+        return Long.bitCount(certificate.getSignerBitmap());
+    }
+
+    public static List<String> signers(MessageServiceOuterClass.QuorumCertificate certificate) {
+        List<String> serverIds = Config.getSortedServerIds();
+        List<String> signers = new ArrayList<>();
+        long bitmap = certificate.getSignerBitmap();
+        for (int i = 0; i < serverIds.size(); i++) {
+            if ((bitmap & (1L << i)) != 0) {
+                signers.add(serverIds.get(i));
+            }
+        }
+        return signers;
+    }
+}
@@ -0,0 +1,133 @@
+package org.example.crypto;
+
+import com.google.protobuf.ByteString;
+
+import javax.crypto.KeyAgreement;
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.KeyFactory;
+import java.security.MessageDigest;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.security.interfaces.EdECPrivateKey;
+import java.security.interfaces.EdECPublicKey;
+import java.security.spec.NamedParameterSpec;
+import java.security.spec.XECPrivateKeySpec;
+import java.security.spec.XECPublicKeySpec;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Pairwise HMAC-SHA256 keys between this replica and every other replica.
+ *
+ * Each pair agrees on a shared secret with X25519 over their existing Ed25519 keys (mapped to
+ * the Montgomery form, as libsodium's ed25519-to-curve25519 conversion does), so no extra key
+ * material is provisioned. The secret is expanded with HKDF-SHA256 into one key per direction,
+ * so a MAC from A to B cannot be reflected back to A as if it came from B.
+ */
+final class SessionKeys {
+
+    private static final BigInteger CURVE25519_P = BigInteger.TWO.pow(255).subtract(BigInteger.valueOf(19));
+    private static final String HMAC = "HmacSHA256";
+    private static final String INFO_PREFIX = "pbft-session-key-v1:";
+
+    private static final ThreadLocal<Mac> MACS = ThreadLocal.withInitial(() -> {
+        try {
+            return Mac.getInstance(HMAC);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HmacSHA256 not available", e);
+        }
+    });
+
+    private final Map<String, SecretKeySpec> sendKeys;    // self -> peer
+    private final Map<String, SecretKeySpec> receiveKeys; // peer -> self
+
+    private SessionKeys(Map<String, SecretKeySpec> sendKeys, Map<String, SecretKeySpec> receiveKeys) {
+        this.sendKeys = sendKeys;
+        this.receiveKeys = receiveKeys;
+    }
+
+    static SessionKeys derive(String selfId, PrivateKey ownPrivateKey, Map<String, PublicKey> peerPublicKeys) {
+        try {
+            PrivateKey ownAgreementKey = toX25519(ownPrivateKey);
+            Map<String, SecretKeySpec> send = new HashMap<>();
+            Map<String, SecretKeySpec> receive = new HashMap<>();
+            for (Map.Entry<String, PublicKey> peer : peerPublicKeys.entrySet()) {
+                if (peer.getKey().equals(selfId)) {
+                    continue;
+                }
+                KeyAgreement agreement = KeyAgreement.getInstance("X25519");
+                agreement.init(ownAgreementKey);
+                agreement.doPhase(toX25519(peer.getValue()), true);
+                byte[] prk = hmac(new byte[32], agreement.generateSecret());
+                send.put(peer.getKey(), expand(prk, selfId + "->" + peer.getKey()));
+                receive.put(peer.getKey(), expand(prk, peer.getKey() + "->" + selfId));
+            }
+            return new SessionKeys(send, receive);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Failed to derive session keys for " + selfId, e);
+        }
+    }
+
+    boolean hasPeer(String peerId) {
+        return receiveKeys.containsKey(peerId);
+    }
+
+    byte[] mac(String receiverId, byte[] domain, ByteString payload) {
+        SecretKeySpec key = sendKeys.get(receiverId);
+        if (key == null) {
+            throw new IllegalStateException("No session key for " + receiverId);
+        }
+        return compute(key, domain, payload);
+    }
+
+    boolean verify(String senderId, byte[] domain, ByteString payload, byte[] mac) {
+        SecretKeySpec key = receiveKeys.get(senderId);
+        return key != null && MessageDigest.isEqual(compute(key, domain, payload), mac);
+    }
+
+    private static byte[] compute(SecretKeySpec key, byte[] domain, ByteString payload) {
+        Mac mac = MACS.get();
+        try {
+            mac.init(key);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Invalid session key", e);
+        }
+        mac.update(domain);
+        mac.update(payload.asReadOnlyByteBuffer());
+        return mac.doFinal();
+    }
+
+    // HKDF-SHA256 (RFC 5869) with a single output block
+    private static SecretKeySpec expand(byte[] prk, String direction) throws GeneralSecurityException {
+        byte[] info = (INFO_PREFIX + direction).getBytes(StandardCharsets.UTF_8);
+        byte[] block = Arrays.copyOf(info, info.length + 1);
+        block[info.length] = 1;
+        return new SecretKeySpec(hmac(prk, block), HMAC);
+    }
+
+    private static byte[] hmac(byte[] key, byte[] data) throws GeneralSecurityException {
+        Mac mac = Mac.getInstance(HMAC);
+        mac.init(new SecretKeySpec(key, HMAC));
+        return mac.doFinal(data);
+    }
+
+    // X25519 scalar = first half of SHA-512(seed); X25519 clamps it
+    private static PrivateKey toX25519(PrivateKey ed25519) throws GeneralSecurityException {
+        byte[] seed = ((EdECPrivateKey) ed25519).getBytes()
+                .orElseThrow(() -> new GeneralSecurityException("Ed25519 private key has no seed"));
+        byte[] scalar = Arrays.copyOf(MessageDigest.getInstance("SHA-512").digest(seed), 32);
+        return KeyFactory.getInstance("XDH").generatePrivate(new XECPrivateKeySpec(NamedParameterSpec.X25519, scalar));
+    }
+
+    // Birational map from Edwards y to Montgomery u: u = (1 + y) / (1 - y)
+    private static PublicKey toX25519(PublicKey ed25519) throws GeneralSecurityException {
+        BigInteger y = ((EdECPublicKey) ed25519).getPoint().getY();
+        BigInteger u = BigInteger.ONE.add(y).multiply(BigInteger.ONE.subtract(y).modInverse(CURVE25519_P)).mod(CURVE25519_P);
+        return KeyFactory.getInstance("XDH").generatePublic(new XECPublicKeySpec(NamedParameterSpec.X25519, u));
+    }
+}
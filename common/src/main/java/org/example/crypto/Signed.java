@@ -0,0 +1,21 @@
+package org.example.crypto;
+
+import com.google.protobuf.ByteString;
+import com.google.protobuf.Message;
+import org.example.MessageServiceOuterClass;
+
+/**
+ * A message whose envelope signature (or session-key MAC) has been verified, together with that envelope so it can
+ * be relayed or kept as transferable proof without re-signing. Only signed envelopes are relayed: MessageAuthenticator
+ * accepts a MAC just for types that never are.
+ */
+public record Signed<T extends Message>(T message, MessageServiceOuterClass.SignedMessage envelope) {
+
+    public String signerId() {
+        return envelope.getSignerId();
+    }
+
+    public ByteString signature() {
+        return envelope.getSignature();
+    }
+}
@@ -1,33 +1,126 @@
 package org.example.crypto;
 
+import com.google.protobuf.ByteString;
+import org.example.crypto.bls.Bls;
+import org.example.crypto.bls.G2Point;
+
+import java.math.BigInteger;
 import java.security.GeneralSecurityException;
 import java.security.PrivateKey;
 import java.security.PublicKey;
 import java.security.Signature;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 
 public final class SignerVerifier {
+    public static final int ED25519_SIGNATURE_LENGTH = 64;
+    public static final int BLS_SIGNATURE_LENGTH = Bls.SIGNATURE_LENGTH;
+    private static final String ED25519 = "Ed25519";
+
     private SignerVerifier() {
     }
 
-    public static byte[] signEd25519(byte[] message, PrivateKey privateKey) {
+    // Initialized engines are reused per thread: Signature resets to its initialized state after
+    // sign()/verify(), so only a change of key needs a new init, and provider lookup happens once.
+    private static final ThreadLocal<Engines> ENGINES = ThreadLocal.withInitial(Engines::new);
+
+    /**
+     * Sign domain || payload without concatenating them; the payload is read in place.
+     */
+    public static byte[] signEd25519(byte[] domain, ByteString payload, PrivateKey privateKey) {
         try {
-            Signature sig = Signature.getInstance("Ed25519");
-            sig.initSign(privateKey);
-            sig.update(message);
-            return sig.sign();
+            return sign(ENGINES.get().signer(privateKey), domain, payload);
         } catch (GeneralSecurityException e) {
+            ENGINES.get().discardSigner();
             throw new RuntimeException("Signing failed", e);
         }
     }
 
-    public static boolean verifyEd25519(byte[] message, byte[] signature, PublicKey publicKey) {
+    public static boolean verifyEd25519(byte[] domain, ByteString payload, byte[] signature, PublicKey publicKey) {
         try {
-            Signature sig = Signature.getInstance("Ed25519");
-            sig.initVerify(publicKey);
-            sig.update(message);
-            return sig.verify(signature);
+            return verify(ENGINES.get().verifier(publicKey), domain, payload, signature);
         } catch (GeneralSecurityException e) {
+            ENGINES.get().discardVerifier(publicKey);
             return false;
         }
     }
+
+    private static byte[] sign(Signature sig, byte[] domain, ByteString payload) throws GeneralSecurityException {
+        sig.update(domain);
+        sig.update(payload.asReadOnlyByteBuffer());
+        return sig.sign();
+    }
+
+    private static boolean verify(Signature sig, byte[] domain, ByteString payload, byte[] signature) throws GeneralSecurityException {
+        sig.update(domain);
+        sig.update(payload.asReadOnlyByteBuffer());
+        return sig.verify(signature);
+    }
+
+    public static byte[] signBls(byte[] message, BigInteger secretKey) {
+        return Bls.sign(message, secretKey);
+    }
+
+    public static boolean verifyBls(byte[] message, byte[] signature, G2Point publicKey) {
+        return Bls.verify(message, signature, publicKey);
+    }
+
+    /**
+     * Combine BLS signatures on the same message into one constant-size signature.
+     */
+    public static byte[] aggregateBls(List<byte[]> signatures) {
+        return Bls.aggregate(signatures);
+    }
+
+    public static boolean verifyBlsAggregate(byte[] message, byte[] aggregateSignature, List<G2Point> publicKeys) {
+        return Bls.verifyAggregate(message, aggregateSignature, publicKeys);
+    }
+
+    /**
+     * Per-thread Ed25519 engines: one signer for the node's own key and a bounded LRU of
+     * verifiers keyed by public key (replicas plus recently seen clients). An engine whose
+     * operation threw is dropped, since its state is then unspecified.
+     */
+    private static final class Engines {
+        private static final int MAX_VERIFIERS = 256;
+
+        private Signature signer;
+        private PrivateKey signerKey;
+        private final Map<PublicKey, Signature> verifiers = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<PublicKey, Signature> eldest) {
+                return size() > MAX_VERIFIERS;
+            }
+        };
+
+        Signature signer(PrivateKey privateKey) throws GeneralSecurityException {
+            if (signer == null || signerKey != privateKey) {
+                Signature sig = Signature.getInstance(ED25519);
+                sig.initSign(privateKey);
+                signer = sig;
+                signerKey = privateKey;
+            }
+            return signer;
+        }
+
+        void discardSigner() {
+            signer = null;
+            signerKey = null;
+        }
+
+        Signature verifier(PublicKey publicKey) throws GeneralSecurityException {
+            Signature sig = verifiers.get(publicKey);
+            if (sig == null) {
+                sig = Signature.getInstance(ED25519);
+                sig.initVerify(publicKey);
+                verifiers.put(publicKey, sig);
+            }
+            return sig;
+        }
+
+        void discardVerifier(PublicKey publicKey) {
+            verifiers.remove(publicKey);
+        }
+    }
 }
@@ -0,0 +1,155 @@
+package org.example.crypto;
+
+import com.google.protobuf.Message;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.example.ExecutorManager;
+import org.example.MessageServiceOuterClass;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+
+/**
+ * Signature verification stage between the gRPC handlers and the node logic.
+ *
+ * Incoming messages are verified on the verification pool of the ExecutorManager (bounded
+ * queue, one worker per core by default) and only verified messages are handed on. Batches of
+ * independent checks, such as the requests of a PrePrepare or the signatures of a quorum
+ * certificate, are split across the workers.
+ */
+public class VerificationStage {
+
+    private static final Logger logger = LogManager.getLogger(VerificationStage.class);
+
+    private final ExecutorManager executorManager;
+    private final MessageAuthenticator auth;
+
+    public VerificationStage(ExecutorManager executorManager, MessageAuthenticator auth) {
+        this.executorManager = executorManager;
+        this.auth = auth;
+    }
+
+    /**
+     * Verify and parse an envelope off the calling thread. Exactly one of onVerified and
+     * onRejected runs, on a verification worker, or on the caller when the queue is full.
+     */
+    public <T extends Message> void submit(MessageServiceOuterClass.SignedMessage envelope,
+                                           T defaultInstance,
+                                           Consumer<Signed<T>> onVerified,
+                                           Consumer<MessageServiceOuterClass.SignedMessage> onRejected) {
+        executorManager.submitVerification(() -> {
+            try {
+                Signed<T> signed = auth.open(envelope, defaultInstance);
+                if (signed != null) {
+                    onVerified.accept(signed);
+                } else {
+                    onRejected.accept(envelope);
+                }
+            } catch (RuntimeException e) {
+                logger.error("Failed to process verified {}", defaultInstance.getDescriptorForType().getName(), e);
+            }
+        });
+    }
+
+    /**
+     * Verify and parse a batch of envelopes concurrently, e.g. the client requests of a
+     * PrePrepare. Returns them in order, or null if any one fails.
+     */
+    public <T extends Message> List<Signed<T>> openAll(List<MessageServiceOuterClass.SignedMessage> envelopes, T defaultInstance) {
+        List<Signed<T>> opened = new ArrayList<>(Collections.nCopies(envelopes.size(), null));
+        List<BooleanSupplier> checks = new ArrayList<>(envelopes.size());
+        for (int i = 0; i < envelopes.size(); i++) {
+            int index = i;
+            checks.add(() -> {
+                Signed<T> signed = auth.open(envelopes.get(index), defaultInstance);
+                opened.set(index, signed);
+                return signed != null;
+            });
+        }
+        return verifyAll(checks) ? opened : null;
+    }
+
+    /**
+     * Run independent checks across the verification workers and wait for them; true only if
+     * every check passes. Stops early on the first failure.
+     *
+     * Safe to call from a verification worker: the caller runs every chunk that no worker has
+     * picked up yet, so it only ever waits on chunks that are already running.
+     */
+    public boolean verifyAll(List<BooleanSupplier> checks) {
+        if (checks.size() <= 1) {
+            return checks.isEmpty() || checks.get(0).getAsBoolean();
+        }
+        AtomicBoolean failed = new AtomicBoolean();
+        int chunkCount = Math.min(executorManager.getVerificationParallelism(), checks.size());
+        List<Chunk> chunks = new ArrayList<>(chunkCount);
+        for (int i = 0; i < chunkCount; i++) {
+            int from = checks.size() * i / chunkCount;
+            int to = checks.size() * (i + 1) / chunkCount;
+            chunks.add(new Chunk(checks.subList(from, to), failed));
+        }
+        for (int i = 1; i < chunks.size(); i++) {
+            executorManager.submitVerification(chunks.get(i)::tryRun);
+        }
+        for (Chunk chunk : chunks) {
+            chunk.tryRun();
+        }
+        for (Chunk chunk : chunks) {
+            chunk.awaitDone();
+        }
+        return !failed.get();
+    }
+
+    private static final class Chunk {
+        private final List<BooleanSupplier> checks;
+        private final AtomicBoolean failed;
+        private final AtomicBoolean claimed = new AtomicBoolean();
+        private final CountDownLatch done = new CountDownLatch(1);
+
+        Chunk(List<BooleanSupplier> checks, AtomicBoolean failed) {
+            this.checks = checks;
+            this.failed = failed;
+        }
+
+        void tryRun() {
+            if (!claimed.compareAndSet(false, true)) {
+                return;
+            }
+            try {
+                for (BooleanSupplier check : checks) {
+                    if (failed.get()) {
+                        return;
+                    }
+                    if (!check.getAsBoolean()) {
+                        failed.set(true);
+                        return;
+                    }
+                }
+            } catch (RuntimeException e) {
+                failed.set(true);
+            } finally {
+                done.countDown();
+            }
+        }
+
+        void awaitDone() {
+            boolean interrupted = false;
+            while (true) {
+                try {
+                    done.await();
+                    break;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package org.example.crypto;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.protobuf.ByteString;
+import org.example.MessageServiceOuterClass;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Bounded, concurrent record of client request envelopes whose signature has already been
+ * verified, so the copy relayed in a PrePrepare or a client retransmission is accepted without
+ * another Ed25519 verification.
+ *
+ * Entries are keyed by SHA-256 over signer id, signature and payload, so a hit means exactly this
+ * signer signed exactly these bytes. Least recently used entries are evicted beyond maxEntries;
+ * a maxEntries of 0 disables the cache.
+ */
+public class VerifiedRequestCache {
+
+    // One digest per verification worker, like the per-thread Ed25519 engines: digest() resets it for the next key
+    private static final ThreadLocal<MessageDigest> SHA256 = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException("SHA-256 not available", e);
+        }
+    });
+
+    private final Cache<ByteString, Boolean> verified;
+
+    public VerifiedRequestCache(int maxEntries) {
+        this.verified = maxEntries > 0
+                ? CacheBuilder.newBuilder().maximumSize(maxEntries).build()
+                : null;
+    }
+
+    public boolean contains(MessageServiceOuterClass.SignedMessage envelope) {
+        return verified != null && verified.getIfPresent(key(envelope)) != null;
+    }
+
+    public void add(MessageServiceOuterClass.SignedMessage envelope) {
+        if (verified != null) {
+            verified.put(key(envelope), Boolean.TRUE);
+        }
+    }
+
+    private static ByteString key(MessageServiceOuterClass.SignedMessage envelope) {
+        MessageDigest sha = SHA256.get();
+        sha.update(envelope.getSignerId().getBytes(StandardCharsets.UTF_8));
+        sha.update((byte) 0);
+        sha.update(envelope.getSignature().asReadOnlyByteBuffer());
+        sha.update(envelope.getPayload().asReadOnlyByteBuffer());
+        return ByteString.copyFrom(sha.digest());
+    }
+}
@@ -0,0 +1,137 @@
+package org.example.crypto.bls;
+
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.List;
+
+/**
+ * BLS signatures over BN254: secret key sk in Z_r, public key sk * G2 (128 bytes), signature
+ * sk * H(m) in G1 (64 bytes). Signatures on the same message add up into one 64-byte aggregate
+ * that verifies against the sum of the signers' public keys with a single two-pairing check.
+ *
+ * Same-message aggregation is only safe against rogue-key attacks when every public key is
+ * known to belong to its holder; here that is the trusted key manifest produced together with
+ * the Ed25519 keys, not keys announced over the wire.
+ *
+ * Pure BigInteger arithmetic: correct but slow. Signing takes over 10 ms, and a verification,
+ * single or aggregate, is one two-pairing check of about 150 ms. Decoding a public key costs
+ * another 15 ms of subgroup check, so callers decode each key once and keep the point. That is
+ * why BLS is an opt-in alternative to bundling Ed25519 signatures, and why collectors verify one
+ * aggregate instead of every share.
+ */
+public final class Bls {
+
+    public static final int SIGNATURE_LENGTH = G1Point.ENCODED_LENGTH;
+    public static final int PUBLIC_KEY_LENGTH = G2Point.ENCODED_LENGTH;
+
+    private static final byte[] HASH_DOMAIN = "BLS_SIG_BN254G1_TAI_".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] KEYGEN_DOMAIN = "BLS_KEYGEN_BN254_".getBytes(StandardCharsets.US_ASCII);
+
+    private Bls() {
+    }
+
+    /**
+     * Deterministically derive a secret key in [1, r) from secret seed material, e.g. the
+     * encoded Ed25519 private key of the same node.
+     */
+    public static BigInteger deriveSecretKey(byte[] seed) {
+        MessageDigest sha = sha256();
+        sha.update(KEYGEN_DOMAIN);
+        byte[] first = sha.digest(seed);
+        sha.update(first);
+        byte[] second = sha.digest(seed);
+        // 512 bits reduced mod r - 1 keeps the bias negligible
+        byte[] wide = new byte[first.length + second.length];
+        System.arraycopy(first, 0, wide, 0, first.length);
+        System.arraycopy(second, 0, wide, first.length, second.length);
+        return new BigInteger(1, wide).mod(Bn254.R.subtract(BigInteger.ONE)).add(BigInteger.ONE);
+    }
+
+    public static byte[] publicKey(BigInteger secretKey) {
+        return G2Point.GENERATOR.multiply(secretKey).encode();
+    }
+
+    public static byte[] sign(byte[] message, BigInteger secretKey) {
+        return hashToG1(message).multiply(secretKey).encode();
+    }
+
+    public static boolean verify(byte[] message, byte[] signature, G2Point publicKey) {
+        return verifyAggregate(message, signature, List.of(publicKey));
+    }
+
+    /** Sum signatures on the same message into one. */
+    public static byte[] aggregate(List<byte[]> signatures) {
+        G1Point sum = G1Point.INFINITY;
+        for (byte[] signature : signatures) {
+            sum = sum.add(G1Point.decode(signature));
+        }
+        return sum.encode();
+    }
+
+    /**
+     * Check an aggregate of signatures on one message: e(sigma, G2) == e(H(m), sum(pk)),
+     * evaluated as e(sigma, -G2) * e(H(m), sum(pk)) == 1.
+     */
+    public static boolean verifyAggregate(byte[] message, byte[] aggregateSignature, List<G2Point> publicKeys) {
+        if (publicKeys.isEmpty()) {
+            return false;
+        }
+        try {
+            G1Point sigma = G1Point.decode(aggregateSignature);
+            if (sigma.isInfinity()) {
+                return false;
+            }
+            G2Point aggregateKey = G2Point.INFINITY;
+            for (G2Point publicKey : publicKeys) {
+                aggregateKey = aggregateKey.add(publicKey);
+            }
+            return Pairing.productIsOne(
+                    List.of(sigma, hashToG1(message)),
+                    List.of(G2Point.GENERATOR.negate(), aggregateKey));
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Decode and validate a public key (on the twist, in the order-r subgroup, not infinity).
+     *
+     * @throws IllegalArgumentException if it is not a valid public key
+     */
+    public static G2Point decodePublicKey(byte[] publicKey) {
+        G2Point point = G2Point.decode(publicKey);
+        if (point.isInfinity()) {
+            throw new IllegalArgumentException("Public key is the point at infinity");
+        }
+        return point;
+    }
+
+    /** Try-and-increment hash onto E(Fp); the cofactor is 1 so no clearing is needed. */
+    static G1Point hashToG1(byte[] message) {
+        MessageDigest sha = sha256();
+        for (int counter = 0; ; counter++) {
+            sha.update(HASH_DOMAIN);
+            sha.update(ByteBuffer.allocate(Integer.BYTES).putInt(counter).array());
+            BigInteger x = new BigInteger(1, sha.digest(message)).mod(Bn254.P);
+            BigInteger rhs = x.pow(3).add(Bn254.B).mod(Bn254.P);
+            BigInteger y = rhs.modPow(Bn254.SQRT_EXPONENT, Bn254.P);
+            if (y.multiply(y).mod(Bn254.P).equals(rhs)) {
+                if (y.testBit(0)) {
+                    y = Bn254.P.subtract(y);
+                }
+                return new G1Point(x, y);
+            }
+        }
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package org.example.crypto.bls;
+
+import java.math.BigInteger;
+
+/**
+ * Parameters of the BN254 (alt_bn128) pairing-friendly curve.
+ *
+ * E(Fp):    y^2 = x^3 + 3, generator (1, 2), prime order r
+ * E'(Fp2):  y^2 = x^3 + 3 / xi, xi = 9 + i (D-type sextic twist), generator G2
+ * Fp12:     Fp2[w] / (w^6 - xi)
+ */
+final class Bn254 {
+    private Bn254() {
+    }
+
+    static final BigInteger P = new BigInteger("21888242871839275222246405745257275088696311157297823662689037894645226208583");
+    static final BigInteger R = new BigInteger("21888242871839275222246405745257275088548364400416034343698204186575808495617");
+
+    // BN parameter u; the optimal ate Miller loop runs over 6u + 2
+    static final BigInteger U = new BigInteger("4965661367192848881");
+    static final BigInteger ATE_LOOP_COUNT = U.multiply(BigInteger.valueOf(6)).add(BigInteger.TWO);
+
+    static final BigInteger B = BigInteger.valueOf(3);
+
+    // Final exponentiation hard part: (p^4 - p^2 + 1) / r
+    static final BigInteger HARD_EXPONENT = P.pow(4).subtract(P.pow(2)).add(BigInteger.ONE).divide(R);
+
+    static final BigInteger SQRT_EXPONENT = P.add(BigInteger.ONE).shiftRight(2); // p = 3 mod 4
+
+    static final int FIELD_BYTES = 32;
+}
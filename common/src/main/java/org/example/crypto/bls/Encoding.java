@@ -0,0 +1,24 @@
+package org.example.crypto.bls;
+
+import java.math.BigInteger;
+
+final class Encoding {
+    private Encoding() {
+    }
+
+    static void writeField(BigInteger value, byte[] out, int offset) {
+        byte[] raw = value.toByteArray();
+        int length = Math.min(raw.length, Bn254.FIELD_BYTES);
+        System.arraycopy(raw, raw.length - length, out, offset + Bn254.FIELD_BYTES - length, length);
+    }
+
+    static BigInteger readField(byte[] in, int offset) {
+        byte[] raw = new byte[Bn254.FIELD_BYTES];
+        System.arraycopy(in, offset, raw, 0, Bn254.FIELD_BYTES);
+        BigInteger value = new BigInteger(1, raw);
+        if (value.compareTo(Bn254.P) >= 0) {
+            throw new IllegalArgumentException("Field element out of range");
+        }
+        return value;
+    }
+}
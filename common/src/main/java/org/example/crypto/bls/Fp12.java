@@ -0,0 +1,136 @@
+package org.example.crypto.bls;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+
+/**
+ * Element sum(c[k] * w^k, k = 0..5) of Fp12 = Fp2[w] / (w^6 - xi). Immutable.
+ *
+ * Inversion goes through the Fp6 = Fp2[v] / (v^3 - xi) subfield with v = w^2, writing the
+ * element as A + B w.
+ */
+final class Fp12 {
+
+    static final Fp12 ONE = new Fp12(new Fp2[]{Fp2.ONE, Fp2.ZERO, Fp2.ZERO, Fp2.ZERO, Fp2.ZERO, Fp2.ZERO});
+
+    // gamma[k] = xi^(k (p - 1) / 6), so that (c w^k)^p = conj(c) * gamma[k] * w^k
+    private static final Fp2[] FROBENIUS_COEFFICIENTS = new Fp2[6];
+
+    static {
+        BigInteger sixth = Bn254.P.subtract(BigInteger.ONE).divide(BigInteger.valueOf(6));
+        for (int k = 0; k < 6; k++) {
+            FROBENIUS_COEFFICIENTS[k] = Fp2.XI.pow(sixth.multiply(BigInteger.valueOf(k)));
+        }
+    }
+
+    private final Fp2[] c;
+
+    private Fp12(Fp2[] c) {
+        this.c = c;
+    }
+
+    /** Sparse element c0 + c1 w + c3 w^3, the shape of every Miller loop line. */
+    static Fp12 line(Fp2 c0, Fp2 c1, Fp2 c3) {
+        return new Fp12(new Fp2[]{c0, c1, Fp2.ZERO, c3, Fp2.ZERO, Fp2.ZERO});
+    }
+
+    Fp12 mul(Fp12 o) {
+        Fp2[] product = new Fp2[11];
+        Arrays.fill(product, Fp2.ZERO);
+        for (int i = 0; i < 6; i++) {
+            if (c[i].isZero()) continue;
+            for (int j = 0; j < 6; j++) {
+                if (o.c[j].isZero()) continue;
+                product[i + j] = product[i + j].add(c[i].mul(o.c[j]));
+            }
+        }
+        Fp2[] reduced = new Fp2[6];
+        for (int k = 0; k < 6; k++) {
+            reduced[k] = k + 6 < 11 ? product[k].add(product[k + 6].mulByXi()) : product[k];
+        }
+        return new Fp12(reduced);
+    }
+
+    Fp12 square() {
+        return mul(this);
+    }
+
+    Fp12 frobenius() {
+        Fp2[] r = new Fp2[6];
+        for (int k = 0; k < 6; k++) {
+            r[k] = c[k].conjugate().mul(FROBENIUS_COEFFICIENTS[k]);
+        }
+        return new Fp12(r);
+    }
+
+    Fp12 frobenius(int times) {
+        Fp12 r = this;
+        for (int i = 0; i < times; i++) {
+            r = r.frobenius();
+        }
+        return r;
+    }
+
+    Fp12 inverse() {
+        Fp2[] a = {c[0], c[2], c[4]};
+        Fp2[] b = {c[1], c[3], c[5]};
+        // (A + B w)^-1 = (A - B w) / (A^2 - v B^2)
+        Fp2[] norm = fp6Sub(fp6Mul(a, a), fp6MulByV(fp6Mul(b, b)));
+        Fp2[] normInverse = fp6Inverse(norm);
+        Fp2[] ra = fp6Mul(a, normInverse);
+        Fp2[] rb = fp6Mul(b, normInverse);
+        return new Fp12(new Fp2[]{ra[0], rb[0].negate(), ra[1], rb[1].negate(), ra[2], rb[2].negate()});
+    }
+
+    Fp12 pow(BigInteger exponent) {
+        Fp12 result = ONE;
+        for (int i = exponent.bitLength() - 1; i >= 0; i--) {
+            result = result.square();
+            if (exponent.testBit(i)) {
+                result = result.mul(this);
+            }
+        }
+        return result;
+    }
+
+    boolean isOne() {
+        return equals(ONE);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof Fp12 other && Arrays.equals(c, other.c);
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(c);
+    }
+
+    // ---- Fp6 = Fp2[v] / (v^3 - xi), as coefficient triples ----
+
+    private static Fp2[] fp6Mul(Fp2[] a, Fp2[] b) {
+        return new Fp2[]{
+                a[0].mul(b[0]).add(a[1].mul(b[2]).add(a[2].mul(b[1])).mulByXi()),
+                a[0].mul(b[1]).add(a[1].mul(b[0])).add(a[2].mul(b[2]).mulByXi()),
+                a[0].mul(b[2]).add(a[1].mul(b[1])).add(a[2].mul(b[0]))
+        };
+    }
+
+    private static Fp2[] fp6Sub(Fp2[] a, Fp2[] b) {
+        return new Fp2[]{a[0].sub(b[0]), a[1].sub(b[1]), a[2].sub(b[2])};
+    }
+
+    private static Fp2[] fp6MulByV(Fp2[] a) {
+        return new Fp2[]{a[2].mulByXi(), a[0], a[1]};
+    }
+
+    private static Fp2[] fp6Inverse(Fp2[] a) {
+        Fp2 t0 = a[0].square().sub(a[1].mul(a[2]).mulByXi());
+        Fp2 t1 = a[2].square().mulByXi().sub(a[0].mul(a[1]));
+        Fp2 t2 = a[1].square().sub(a[0].mul(a[2]));
+        Fp2 denominator = a[0].mul(t0).add(a[2].mul(t1).add(a[1].mul(t2)).mulByXi());
+        Fp2 inverse = denominator.inverse();
+        return new Fp2[]{t0.mul(inverse), t1.mul(inverse), t2.mul(inverse)};
+    }
+}
@@ -0,0 +1,96 @@
+package org.example.crypto.bls;
+
+import java.math.BigInteger;
+
+/**
+ * Element c0 + c1 * i of Fp2 = Fp[i] / (i^2 + 1). Immutable; coefficients are kept reduced.
+ */
+final class Fp2 {
+
+    private static final BigInteger P = Bn254.P;
+
+    static final Fp2 ZERO = new Fp2(BigInteger.ZERO, BigInteger.ZERO);
+    static final Fp2 ONE = new Fp2(BigInteger.ONE, BigInteger.ZERO);
+    static final Fp2 XI = new Fp2(BigInteger.valueOf(9), BigInteger.ONE);
+
+    final BigInteger c0;
+    final BigInteger c1;
+
+    Fp2(BigInteger c0, BigInteger c1) {
+        this.c0 = c0.mod(P);
+        this.c1 = c1.mod(P);
+    }
+
+    static Fp2 of(BigInteger c0) {
+        return new Fp2(c0, BigInteger.ZERO);
+    }
+
+    Fp2 add(Fp2 o) {
+        return new Fp2(c0.add(o.c0), c1.add(o.c1));
+    }
+
+    Fp2 sub(Fp2 o) {
+        return new Fp2(c0.subtract(o.c0), c1.subtract(o.c1));
+    }
+
+    Fp2 negate() {
+        return new Fp2(c0.negate(), c1.negate());
+    }
+
+    Fp2 mul(Fp2 o) {
+        BigInteger a = c0.multiply(o.c0);
+        BigInteger b = c1.multiply(o.c1);
+        BigInteger cross = c0.add(c1).multiply(o.c0.add(o.c1)).subtract(a).subtract(b);
+        return new Fp2(a.subtract(b), cross);
+    }
+
+    Fp2 mul(BigInteger scalar) {
+        return new Fp2(c0.multiply(scalar), c1.multiply(scalar));
+    }
+
+    Fp2 square() {
+        return mul(this);
+    }
+
+    Fp2 mulByXi() {
+        // (9 + i)(c0 + c1 i) = (9 c0 - c1) + (c0 + 9 c1) i
+        BigInteger nine = BigInteger.valueOf(9);
+        return new Fp2(c0.multiply(nine).subtract(c1), c0.add(c1.multiply(nine)));
+    }
+
+    Fp2 conjugate() {
+        return new Fp2(c0, c1.negate());
+    }
+
+    Fp2 inverse() {
+        BigInteger norm = c0.multiply(c0).add(c1.multiply(c1)).mod(P);
+        if (norm.signum() == 0) throw new ArithmeticException("inverse of zero");
+        BigInteger t = norm.modInverse(P);
+        return new Fp2(c0.multiply(t), c1.negate().multiply(t));
+    }
+
+    Fp2 pow(BigInteger exponent) {
+        Fp2 result = ONE;
+        for (int i = exponent.bitLength() - 1; i >= 0; i--) {
+            result = result.square();
+            if (exponent.testBit(i)) {
+                result = result.mul(this);
+            }
+        }
+        return result;
+    }
+
+    boolean isZero() {
+        return c0.signum() == 0 && c1.signum() == 0;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof Fp2 other && c0.equals(other.c0) && c1.equals(other.c1);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * c0.hashCode() + c1.hashCode();
+    }
+}
@@ -0,0 +1,106 @@
+package org.example.crypto.bls;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+
+/**
+ * Affine point on E(Fp): y^2 = x^3 + 3. The group has prime order r (cofactor 1), so any
+ * point on the curve is in the signature group. Encoded as x || y, 32 bytes each, big-endian;
+ * the point at infinity is all zeros.
+ */
+final class G1Point {
+
+    private static final BigInteger P = Bn254.P;
+
+    static final G1Point INFINITY = new G1Point(null, null);
+    static final G1Point GENERATOR = new G1Point(BigInteger.ONE, BigInteger.TWO);
+    static final int ENCODED_LENGTH = 2 * Bn254.FIELD_BYTES;
+
+    final BigInteger x;
+    final BigInteger y;
+
+    G1Point(BigInteger x, BigInteger y) {
+        this.x = x;
+        this.y = y;
+    }
+
+    boolean isInfinity() {
+        return x == null;
+    }
+
+    boolean isOnCurve() {
+        return isInfinity() || y.multiply(y).subtract(x.pow(3)).subtract(Bn254.B).mod(P).signum() == 0;
+    }
+
+    G1Point negate() {
+        return isInfinity() ? this : new G1Point(x, P.subtract(y).mod(P));
+    }
+
+    G1Point doubled() {
+        if (isInfinity() || y.signum() == 0) return INFINITY;
+        BigInteger lambda = x.multiply(x).multiply(BigInteger.valueOf(3))
+                .multiply(y.shiftLeft(1).modInverse(P)).mod(P);
+        return fromSlope(lambda, x);
+    }
+
+    G1Point add(G1Point o) {
+        if (isInfinity()) return o;
+        if (o.isInfinity()) return this;
+        if (x.equals(o.x)) {
+            return y.equals(o.y) ? doubled() : INFINITY;
+        }
+        BigInteger lambda = o.y.subtract(y).multiply(o.x.subtract(x).modInverse(P)).mod(P);
+        return fromSlope(lambda, o.x);
+    }
+
+    private G1Point fromSlope(BigInteger lambda, BigInteger otherX) {
+        BigInteger x3 = lambda.multiply(lambda).subtract(x).subtract(otherX).mod(P);
+        BigInteger y3 = lambda.multiply(x.subtract(x3)).subtract(y).mod(P);
+        return new G1Point(x3, y3);
+    }
+
+    G1Point multiply(BigInteger scalar) {
+        G1Point result = INFINITY;
+        for (int i = scalar.bitLength() - 1; i >= 0; i--) {
+            result = result.doubled();
+            if (scalar.testBit(i)) {
+                result = result.add(this);
+            }
+        }
+        return result;
+    }
+
+    byte[] encode() {
+        byte[] out = new byte[ENCODED_LENGTH];
+        if (!isInfinity()) {
+            Encoding.writeField(x, out, 0);
+            Encoding.writeField(y, out, Bn254.FIELD_BYTES);
+        }
+        return out;
+    }
+
+    /** @throws IllegalArgumentException if the bytes are not a point on the curve */
+    static G1Point decode(byte[] encoded) {
+        if (encoded == null || encoded.length != ENCODED_LENGTH) {
+            throw new IllegalArgumentException("G1 point must be " + ENCODED_LENGTH + " bytes");
+        }
+        if (Arrays.equals(encoded, new byte[ENCODED_LENGTH])) {
+            return INFINITY;
+        }
+        G1Point point = new G1Point(Encoding.readField(encoded, 0), Encoding.readField(encoded, Bn254.FIELD_BYTES));
+        if (!point.isOnCurve()) {
+            throw new IllegalArgumentException("G1 point is not on the curve");
+        }
+        return point;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof G1Point other && Arrays.equals(encode(), other.encode());
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(encode());
+    }
+}
@@ -0,0 +1,133 @@
+package org.example.crypto.bls;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+
+/**
+ * Affine point on the sextic twist E'(Fp2): y^2 = x^3 + 3 / xi. Encoded as
+ * x.c0 || x.c1 || y.c0 || y.c1, 32 bytes each, big-endian; the point at infinity is all zeros.
+ *
+ * Unlike G1 the twist has a large cofactor, so decoding also checks membership in the order-r
+ * subgroup. That check is a full scalar multiplication, so public keys are decoded once (see
+ * Bls.decodePublicKey) and held as points; outside this package the type is an opaque handle.
+ */
+public final class G2Point {
+
+    static final G2Point INFINITY = new G2Point(null, null);
+    static final G2Point GENERATOR = new G2Point(
+            new Fp2(new BigInteger("10857046999023057135944570762232829481370756359578518086990519993285655852781"),
+                    new BigInteger("11559732032986387107991004021392285783925812861821192530917403151452391805634")),
+            new Fp2(new BigInteger("8495653923123431417604973247489272438418190587263600148770280649306958101930"),
+                    new BigInteger("4082367875863433681332203403145435568316851327593401208105741076214120093531")));
+    static final int ENCODED_LENGTH = 4 * Bn254.FIELD_BYTES;
+
+    private static final Fp2 TWIST_B = Fp2.of(Bn254.B).mul(Fp2.XI.inverse());
+
+    // Frobenius endomorphism on the twist: (x, y) -> (conj(x) * xi^((p-1)/3), conj(y) * xi^((p-1)/2))
+    private static final Fp2 FROBENIUS_X = Fp2.XI.pow(Bn254.P.subtract(BigInteger.ONE).divide(BigInteger.valueOf(3)));
+    private static final Fp2 FROBENIUS_Y = Fp2.XI.pow(Bn254.P.subtract(BigInteger.ONE).divide(BigInteger.TWO));
+
+    final Fp2 x;
+    final Fp2 y;
+
+    G2Point(Fp2 x, Fp2 y) {
+        this.x = x;
+        this.y = y;
+    }
+
+    boolean isInfinity() {
+        return x == null;
+    }
+
+    boolean isOnCurve() {
+        return isInfinity() || y.square().equals(x.square().mul(x).add(TWIST_B));
+    }
+
+    G2Point negate() {
+        return isInfinity() ? this : new G2Point(x, y.negate());
+    }
+
+    G2Point doubled() {
+        if (isInfinity() || y.isZero()) return INFINITY;
+        return fromSlope(tangentSlope(), x);
+    }
+
+    G2Point add(G2Point o) {
+        if (isInfinity()) return o;
+        if (o.isInfinity()) return this;
+        if (x.equals(o.x)) {
+            return y.equals(o.y) ? doubled() : INFINITY;
+        }
+        return fromSlope(chordSlope(o), o.x);
+    }
+
+    Fp2 tangentSlope() {
+        return x.square().mul(BigInteger.valueOf(3)).mul(y.add(y).inverse());
+    }
+
+    Fp2 chordSlope(G2Point o) {
+        return o.y.sub(y).mul(o.x.sub(x).inverse());
+    }
+
+    private G2Point fromSlope(Fp2 lambda, Fp2 otherX) {
+        Fp2 x3 = lambda.square().sub(x).sub(otherX);
+        Fp2 y3 = lambda.mul(x.sub(x3)).sub(y);
+        return new G2Point(x3, y3);
+    }
+
+    G2Point multiply(BigInteger scalar) {
+        G2Point result = INFINITY;
+        for (int i = scalar.bitLength() - 1; i >= 0; i--) {
+            result = result.doubled();
+            if (scalar.testBit(i)) {
+                result = result.add(this);
+            }
+        }
+        return result;
+    }
+
+    G2Point frobenius() {
+        return isInfinity() ? this : new G2Point(x.conjugate().mul(FROBENIUS_X), y.conjugate().mul(FROBENIUS_Y));
+    }
+
+    byte[] encode() {
+        byte[] out = new byte[ENCODED_LENGTH];
+        if (!isInfinity()) {
+            Encoding.writeField(x.c0, out, 0);
+            Encoding.writeField(x.c1, out, Bn254.FIELD_BYTES);
+            Encoding.writeField(y.c0, out, 2 * Bn254.FIELD_BYTES);
+            Encoding.writeField(y.c1, out, 3 * Bn254.FIELD_BYTES);
+        }
+        return out;
+    }
+
+    /** @throws IllegalArgumentException if the bytes are not a point of the order-r subgroup */
+    static G2Point decode(byte[] encoded) {
+        if (encoded == null || encoded.length != ENCODED_LENGTH) {
+            throw new IllegalArgumentException("G2 point must be " + ENCODED_LENGTH + " bytes");
+        }
+        if (Arrays.equals(encoded, new byte[ENCODED_LENGTH])) {
+            return INFINITY;
+        }
+        G2Point point = new G2Point(
+                new Fp2(Encoding.readField(encoded, 0), Encoding.readField(encoded, Bn254.FIELD_BYTES)),
+                new Fp2(Encoding.readField(encoded, 2 * Bn254.FIELD_BYTES), Encoding.readField(encoded, 3 * Bn254.FIELD_BYTES)));
+        if (!point.isOnCurve()) {
+            throw new IllegalArgumentException("G2 point is not on the twist");
+        }
+        if (!point.multiply(Bn254.R).isInfinity()) {
+            throw new IllegalArgumentException("G2 point is not in the order-r subgroup");
+        }
+        return point;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof G2Point other && Arrays.equals(encode(), other.encode());
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(encode());
+    }
+}
@@ -0,0 +1,77 @@
+package org.example.crypto.bls;
+
+import java.math.BigInteger;
+import java.util.List;
+
+/**
+ * Optimal ate pairing on BN254.
+ *
+ * Points of the twist are mapped into E(Fp12) by (x, y) -> (x w^2, y w^3), so the line through
+ * T with slope lambda (computed in Fp2), evaluated at P = (xP, yP), is the sparse element
+ * yP - lambda xP w + (lambda xT - yT) w^3. Vertical lines lie in Fp6 and are erased by the
+ * final exponentiation, so they are skipped.
+ */
+final class Pairing {
+    private Pairing() {
+    }
+
+    /** Whether prod e(g1[k], g2[k]) == 1, sharing one final exponentiation across all pairs. */
+    static boolean productIsOne(List<G1Point> g1, List<G2Point> g2) {
+        if (g1.size() != g2.size()) throw new IllegalArgumentException("mismatched pairing inputs");
+        Fp12 f = Fp12.ONE;
+        for (int k = 0; k < g1.size(); k++) {
+            f = f.mul(millerLoop(g1.get(k), g2.get(k)));
+        }
+        return finalExponentiation(f).isOne();
+    }
+
+    static Fp12 pairing(G1Point p, G2Point q) {
+        return finalExponentiation(millerLoop(p, q));
+    }
+
+    static Fp12 millerLoop(G1Point p, G2Point q) {
+        if (p.isInfinity() || q.isInfinity()) {
+            return Fp12.ONE;
+        }
+        BigInteger loop = Bn254.ATE_LOOP_COUNT;
+        Fp12 f = Fp12.ONE;
+        G2Point t = q;
+        for (int i = loop.bitLength() - 2; i >= 0; i--) {
+            f = f.square().mul(line(t, t, p));
+            t = t.doubled();
+            if (loop.testBit(i)) {
+                f = f.mul(line(t, q, p));
+                t = t.add(q);
+            }
+        }
+        G2Point q1 = q.frobenius();
+        G2Point q2 = q1.frobenius().negate();
+        f = f.mul(line(t, q1, p));
+        t = t.add(q1);
+        return f.mul(line(t, q2, p));
+    }
+
+    private static Fp12 line(G2Point t, G2Point q, G1Point p) {
+        Fp2 lambda;
+        if (t.x.equals(q.x)) {
+            if (!t.y.equals(q.y) || t.y.isZero()) {
+                return Fp12.ONE; // vertical
+            }
+            lambda = t.tangentSlope();
+        } else {
+            lambda = t.chordSlope(q);
+        }
+        return Fp12.line(
+                Fp2.of(p.y),
+                lambda.mul(p.x).negate(),
+                lambda.mul(t.x).sub(t.y));
+    }
+
+    static Fp12 finalExponentiation(Fp12 f) {
+        // Easy part: f^((p^6 - 1)(p^2 + 1)), leaving an element of the cyclotomic subgroup
+        Fp12 easy = f.frobenius(6).mul(f.inverse());
+        easy = easy.frobenius(2).mul(easy);
+        // Hard part: ^((p^4 - p^2 + 1) / r)
+        return easy.pow(Bn254.HARD_EXPONENT);
+    }
+}
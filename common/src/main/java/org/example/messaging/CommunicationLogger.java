@@ -1,9 +1,11 @@
 package org.example.messaging;
 
+import com.google.protobuf.ByteString;
 import org.example.MessageServiceOuterClass;
 
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HexFormat;
 import java.util.List;
 
 import static java.lang.System.currentTimeMillis;
@@ -11,6 +13,7 @@ import static java.lang.System.currentTimeMillis;
 public class CommunicationLogger {
 
     private final List<String> logs;
+    private int mark; // lines logged before the last truncate()
 
     public CommunicationLogger() {
         this.logs = Collections.synchronizedList(new ArrayList<>());
@@ -54,8 +57,111 @@ public class CommunicationLogger {
         }
     }
 
+    public void add(MessageServiceOuterClass.PrePrepareMessage prePrepare, String senderId) {
+        add(String.format("<PRE-PREPARE, %d, %d, %s, %d requests> received from server %s",
+                prePrepare.getViewNumber(),
+                prePrepare.getSequenceNumber(),
+                shortDigest(prePrepare.getDigest()),
+                prePrepare.getRequestsCount(),
+                senderId));
+    }
+
+    public void add(MessageServiceOuterClass.PrepareMessage prepare, String senderId) {
+        add(String.format("<PREPARE, %d, %d, %s, %s> received from server %s",
+                prepare.getViewNumber(),
+                prepare.getSequenceNumber(),
+                shortDigest(prepare.getDigest()),
+                prepare.getReplicaId(),
+                senderId));
+    }
+
+    public void add(MessageServiceOuterClass.PrepareCertificate prepared, String senderId) {
+        MessageServiceOuterClass.QuorumCertificate certificate = prepared.getCertificate();
+        add(String.format("<PREPARED, %d, %d, %s, %d votes> received from server %s",
+                certificate.getViewNumber(),
+                certificate.getSequenceNumber(),
+                shortDigest(certificate.getDigest()),
+                Long.bitCount(certificate.getSignerBitmap()),
+                senderId));
+    }
+
+    public void add(MessageServiceOuterClass.CommitMessage commit, String senderId) {
+        add(String.format("<COMMIT, %d, %d, %s, %s> received from server %s",
+                commit.getViewNumber(),
+                commit.getSequenceNumber(),
+                shortDigest(commit.getDigest()),
+                commit.getReplicaId(),
+                senderId));
+    }
+
+    public void add(MessageServiceOuterClass.CommitCertificate committed, String senderId) {
+        MessageServiceOuterClass.QuorumCertificate certificate = committed.getCertificate();
+        add(String.format("<COMMITTED, %d, %d, %s, %d votes> received from server %s",
+                certificate.getViewNumber(),
+                certificate.getSequenceNumber(),
+                shortDigest(certificate.getDigest()),
+                Long.bitCount(certificate.getSignerBitmap()),
+                senderId));
+    }
+
+    // First 8 hex characters are enough to tell digests apart in the CLI log
+    private static String shortDigest(ByteString digest) {
+        String hex = HexFormat.of().formatHex(digest.toByteArray());
+        return hex.length() > 8 ? hex.substring(0, 8) : hex;
+    }
+
+    public void add(MessageServiceOuterClass.CheckpointMessage checkpoint, String senderId) {
+        add(String.format("<CHECKPOINT, %d, %s, %s> received from server %s",
+                checkpoint.getSequenceNumber(),
+                shortDigest(checkpoint.getStateDigest()),
+                checkpoint.getReplicaId(),
+                senderId));
+    }
+
+    public void add(MessageServiceOuterClass.CheckpointCertificate checkpointed, String senderId) {
+        MessageServiceOuterClass.QuorumCertificate certificate = checkpointed.getCertificate();
+        add(String.format("<CHECKPOINTED, %d, %s, %d votes> received from server %s",
+                certificate.getSequenceNumber(),
+                shortDigest(certificate.getDigest()),
+                Long.bitCount(certificate.getSignerBitmap()),
+                senderId));
+    }
+
+    public void add(MessageServiceOuterClass.ViewChangeMessage viewChange, String senderId) {
+        add(String.format("<VIEW-CHANGE, %d, checkpoint %d, %d prepared, %s> received from server %s",
+                viewChange.getNewViewNumber(),
+                viewChange.getCheckpoint().getCertificate().getSequenceNumber(),
+                viewChange.getPreparedCount(),
+                viewChange.getReplicaId(),
+                senderId));
+    }
+
+    public void add(MessageServiceOuterClass.NewViewMessage newView, String senderId) {
+        add(String.format("<NEW-VIEW, %d, %d view changes, seq %d to %d> received from server %s",
+                newView.getViewNumber(),
+                newView.getViewChangesCount(),
+                newView.getMinSequenceNumber() + 1,
+                newView.getMaxSequenceNumber(),
+                senderId));
+    }
+
+    /**
+     * Drop the lines logged before the previous call, so a node keeps roughly the messages of
+     * its last two checkpoint intervals instead of everything since startup.
+     */
+    public void truncate() {
+        synchronized (logs) {
+            int drop = Math.min(mark, logs.size());
+            logs.subList(0, drop).clear();
+            mark = logs.size();
+        }
+    }
+
     public void clearLogs() {
-        logs.clear();
+        synchronized (logs) {
+            logs.clear();
+            mark = 0;
+        }
     }
 
     public List<String> getLogs() {
@@ -1,10 +1,18 @@
 package org.example.messaging;
 
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.protobuf.ByteString;
 import com.google.protobuf.Message;
 import org.example.MessageServiceGrpc;
+import org.example.MessageServiceOuterClass;
 import org.example.crypto.MessageAuthenticator;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
 import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
 
 public class MessageSender {
 
@@ -24,11 +32,48 @@ public class MessageSender {
         // needed for subclass overrides
     }
 
-    // Generic method to sign and send a message using the provided gRPC method
-    protected void signAndSend(String targetNodeId, Message message, BiConsumer<MessageServiceGrpc.MessageServiceFutureStub, Message> method) {
-        Message signedMessage = auth.sign(message);
+    // Generic method to sign (or MAC, between replicas) and send a message using the provided gRPC method
+    protected void signAndSend(String targetNodeId, Message message, BiConsumer<MessageServiceGrpc.MessageServiceFutureStub, MessageServiceOuterClass.SignedMessage> method) {
+        send(targetNodeId, auth.seal(message, targetNodeId), method);
+    }
+
+    /**
+     * Serialize the message once and sign it once, handing the same envelope to every target;
+     * for session-key MAC'ed types only the per-target HMAC differs. Future stub calls return
+     * immediately, so the sends proceed concurrently on their channels.
+     *
+     * @return completes once every send has completed; failed sends appear as null entries
+     */
+    protected <R> ListenableFuture<List<R>> broadcast(Collection<String> targetNodeIds,
+                                                      Message message,
+                                                      BiFunction<MessageServiceGrpc.MessageServiceFutureStub, MessageServiceOuterClass.SignedMessage, ListenableFuture<R>> method) {
+        ByteString payload = message.toByteString();
+        MessageServiceOuterClass.SignedMessage signed = null;
+        List<ListenableFuture<R>> sends = new ArrayList<>(targetNodeIds.size());
+        for (String targetNodeId : targetNodeIds) {
+            MessageServiceOuterClass.SignedMessage envelope;
+            if (auth.usesMac(message.getDescriptorForType(), targetNodeId)) {
+                envelope = auth.macSeal(payload, message.getDescriptorForType(), targetNodeId);
+            } else {
+                if (signed == null) {
+                    signed = auth.seal(payload, message.getDescriptorForType());
+                }
+                envelope = signed;
+            }
+            sends.add(method.apply(stubManager.getFutureStub(targetNodeId), envelope));
+        }
+        return Futures.successfulAsList(sends);
+    }
+
+    // Sign (or MAC) a request to a single target and return its response
+    protected <R> ListenableFuture<R> call(String targetNodeId, Message message, BiFunction<MessageServiceGrpc.MessageServiceFutureStub, MessageServiceOuterClass.SignedMessage, ListenableFuture<R>> method) {
+        return method.apply(stubManager.getFutureStub(targetNodeId), auth.seal(message, targetNodeId));
+    }
+
+    // Send an envelope as-is, e.g. when relaying a message already signed by its originator
+    protected void send(String targetNodeId, MessageServiceOuterClass.SignedMessage envelope, BiConsumer<MessageServiceGrpc.MessageServiceFutureStub, MessageServiceOuterClass.SignedMessage> method) {
         MessageServiceGrpc.MessageServiceFutureStub stub = stubManager.getFutureStub(targetNodeId);
-        method.accept(stub, signedMessage);
+        method.accept(stub, envelope);
     }
 
     public void shutdown() {
@@ -2,9 +2,15 @@ package org.example.messaging;
 
 import org.example.MessageServiceGrpc;
 
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
 public class StubManager {
 
     private final ChannelManager channelManager;
+    // Stubs are immutable and thread-safe, so one per target is enough
+    private final Map<String, MessageServiceGrpc.MessageServiceFutureStub> futureStubs = new ConcurrentHashMap<>();
+    private final Map<String, MessageServiceGrpc.MessageServiceStub> asyncStubs = new ConcurrentHashMap<>();
 
     public StubManager() {
         this.channelManager = new ChannelManager();
@@ -19,7 +25,12 @@ public class StubManager {
     }
 
     public MessageServiceGrpc.MessageServiceFutureStub getFutureStub(String nodeId) {
-        return MessageServiceGrpc.newFutureStub(channelManager.getChannel(nodeId));
+        return futureStubs.computeIfAbsent(nodeId, id -> MessageServiceGrpc.newFutureStub(channelManager.getChannel(id)));
+    }
+
+    // Client-streaming calls are only available on the async stub
+    public MessageServiceGrpc.MessageServiceStub getAsyncStub(String nodeId) {
+        return asyncStubs.computeIfAbsent(nodeId, id -> MessageServiceGrpc.newStub(channelManager.getChannel(id)));
     }
 
     public void shutdown() {
@@ -0,0 +1,117 @@
+package org.example.crypto;
+
+import com.google.protobuf.ByteString;
+import org.example.MessageServiceOuterClass;
+import org.example.config.Config;
+import org.example.crypto.bls.Bls;
+import org.example.crypto.bls.G2Point;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class QuorumCertificatesTest {
+
+    private static final ByteString DIGEST = ByteString.copyFromUtf8("batch digest");
+
+    private static List<String> serverIds;
+
+    @BeforeAll
+    static void loadCluster() {
+        Config.initialize();
+        serverIds = Config.getSortedServerIds();
+    }
+
+    private static ByteString signature(String serverId) {
+        byte[] signature = new byte[SignerVerifier.ED25519_SIGNATURE_LENGTH];
+        signature[0] = (byte) serverIds.indexOf(serverId);
+        return ByteString.copyFrom(signature);
+    }
+
+    @Test
+    void serverIndexesFollowTheSortedIds() {
+        for (int i = 0; i < serverIds.size(); i++) {
+            assertEquals(i, Config.getServerIndex(serverIds.get(i)));
+        }
+        assertEquals(-1, Config.getServerIndex("not-a-server"));
+        assertTrue(serverIds.size() <= QuorumCertificates.MAX_REPLICAS);
+    }
+
+    @Test
+    void bitmapMarksTheSignersAndSignaturesFollowBitOrder() {
+        Map<String, ByteString> signatures = new HashMap<>();
+        for (int i : new int[]{4, 0, 2}) {
+            signatures.put(serverIds.get(i), signature(serverIds.get(i)));
+        }
+        signatures.put("not-a-server", signature(serverIds.get(1)));
+
+        MessageServiceOuterClass.QuorumCertificate certificate = QuorumCertificates.assemble(3L, 42L, DIGEST, signatures);
+
+        assertEquals(3L, certificate.getViewNumber());
+        assertEquals(42L, certificate.getSequenceNumber());
+        assertEquals(DIGEST, certificate.getDigest());
+        assertEquals(0b10101L, certificate.getSignerBitmap());
+        assertEquals(3, QuorumCertificates.signerCount(certificate));
+        assertEquals(List.of(serverIds.get(0), serverIds.get(2), serverIds.get(4)), QuorumCertificates.signers(certificate));
+        assertEquals(signature(serverIds.get(0))
+                        .concat(signature(serverIds.get(2)))
+                        .concat(signature(serverIds.get(4))),
+                certificate.getSignatures());
+        assertTrue(certificate.getAggregateSignature().isEmpty());
+    }
+
+    @Test
+    void everyReplicaSigningSetsEveryBit() {
+        Map<String, ByteString> signatures = new HashMap<>();
+        serverIds.forEach(id -> signatures.put(id, signature(id)));
+
+        MessageServiceOuterClass.QuorumCertificate certificate = QuorumCertificates.assemble(1L, 1L, DIGEST, signatures);
+
+        assertEquals((1L << serverIds.size()) - 1, certificate.getSignerBitmap());
+        assertEquals(serverIds, QuorumCertificates.signers(certificate));
+        assertEquals(serverIds.size() * SignerVerifier.ED25519_SIGNATURE_LENGTH, certificate.getSignatures().size());
+    }
+
+    @Test
+    void emptyBitmapHasNoSigners() {
+        MessageServiceOuterClass.QuorumCertificate certificate = QuorumCertificates.assemble(1L, 1L, DIGEST, Map.of());
+
+        assertEquals(0L, certificate.getSignerBitmap());
+        assertEquals(0, QuorumCertificates.signerCount(certificate));
+        assertEquals(List.of(), QuorumCertificates.signers(certificate));
+        assertTrue(certificate.getSignatures().isEmpty());
+    }
+
+    @Test
+    void aggregateCertificateVerifiesAgainstTheSignersInTheBitmap() {
+        byte[] message = "vote v=2 seq=9".getBytes(StandardCharsets.UTF_8);
+        Map<String, ByteString> shares = new HashMap<>();
+        Map<String, G2Point> publicKeys = new HashMap<>();
+        for (int i : new int[]{1, 3, 5}) {
+            String id = serverIds.get(i);
+            BigInteger secretKey = Bls.deriveSecretKey(("seed-" + id).getBytes(StandardCharsets.UTF_8));
+            shares.put(id, ByteString.copyFrom(Bls.sign(message, secretKey)));
+            publicKeys.put(id, Bls.decodePublicKey(Bls.publicKey(secretKey)));
+        }
+
+        MessageServiceOuterClass.QuorumCertificate certificate = QuorumCertificates.assembleAggregate(2L, 9L, DIGEST, shares);
+
+        assertEquals(0b101010L, certificate.getSignerBitmap());
+        assertTrue(certificate.getSignatures().isEmpty());
+        assertEquals(SignerVerifier.BLS_SIGNATURE_LENGTH, certificate.getAggregateSignature().size());
+        List<G2Point> signerKeys = new ArrayList<>();
+        QuorumCertificates.signers(certificate).forEach(id -> signerKeys.add(publicKeys.get(id)));
+        assertTrue(SignerVerifier.verifyBlsAggregate(message, certificate.getAggregateSignature().toByteArray(), signerKeys));
+        assertFalse(SignerVerifier.verifyBlsAggregate(message, certificate.getAggregateSignature().toByteArray(),
+                signerKeys.subList(0, 2)));
+    }
+}
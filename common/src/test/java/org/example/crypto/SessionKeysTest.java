@@ -0,0 +1,74 @@
+package org.example.crypto;
+
+import com.google.protobuf.ByteString;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.PublicKey;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SessionKeysTest {
+
+    private static final byte[] DOMAIN = "org.example.PrePrepareMessage\0".getBytes(StandardCharsets.UTF_8);
+    private static final ByteString PAYLOAD = ByteString.copyFromUtf8("pre-prepare v=1 seq=7");
+
+    private static SessionKeys a;
+    private static SessionKeys b;
+    private static SessionKeys c;
+
+    @BeforeAll
+    static void deriveKeys() throws Exception {
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("Ed25519");
+        KeyPair n1 = generator.generateKeyPair();
+        KeyPair n2 = generator.generateKeyPair();
+        KeyPair n3 = generator.generateKeyPair();
+        Map<String, PublicKey> publicKeys = Map.of("n1", n1.getPublic(), "n2", n2.getPublic(), "n3", n3.getPublic());
+        a = SessionKeys.derive("n1", n1.getPrivate(), publicKeys);
+        b = SessionKeys.derive("n2", n2.getPrivate(), publicKeys);
+        c = SessionKeys.derive("n3", n3.getPrivate(), publicKeys);
+    }
+
+    @Test
+    void peersAgreeOnTheirKeys() {
+        assertTrue(b.verify("n1", DOMAIN, PAYLOAD, a.mac("n2", DOMAIN, PAYLOAD)));
+        assertTrue(a.verify("n2", DOMAIN, PAYLOAD, b.mac("n1", DOMAIN, PAYLOAD)));
+        assertTrue(c.verify("n1", DOMAIN, PAYLOAD, a.mac("n3", DOMAIN, PAYLOAD)));
+    }
+
+    @Test
+    void macCannotBeReflectedToItsSender() {
+        byte[] toB = a.mac("n2", DOMAIN, PAYLOAD);
+        assertFalse(a.verify("n2", DOMAIN, PAYLOAD, toB));
+    }
+
+    @Test
+    void macOnlyVerifiesForItsReceiver() {
+        byte[] toB = a.mac("n2", DOMAIN, PAYLOAD);
+        assertFalse(c.verify("n1", DOMAIN, PAYLOAD, toB));
+        assertFalse(b.verify("n3", DOMAIN, PAYLOAD, toB));
+    }
+
+    @Test
+    void macCoversDomainAndPayload() {
+        byte[] toB = a.mac("n2", DOMAIN, PAYLOAD);
+        byte[] otherDomain = "org.example.RequestFetch\0".getBytes(StandardCharsets.UTF_8);
+        assertFalse(b.verify("n1", otherDomain, PAYLOAD, toB));
+        assertFalse(b.verify("n1", DOMAIN, PAYLOAD.concat(ByteString.copyFromUtf8("!")), toB));
+    }
+
+    @Test
+    void unknownPeersHaveNoKey() {
+        assertFalse(a.hasPeer("n1")); // itself
+        assertFalse(a.hasPeer("c1"));
+        assertTrue(a.hasPeer("n2"));
+        assertFalse(a.verify("c1", DOMAIN, PAYLOAD, new byte[32]));
+        assertThrows(IllegalStateException.class, () -> a.mac("c1", DOMAIN, PAYLOAD));
+    }
+}
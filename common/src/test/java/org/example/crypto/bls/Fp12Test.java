@@ -0,0 +1,46 @@
+package org.example.crypto.bls;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class Fp12Test {
+
+    private static final Fp12 X = Fp12.line(new Fp2(BigInteger.valueOf(7), BigInteger.ONE),
+            new Fp2(BigInteger.TWO, BigInteger.valueOf(11)), new Fp2(BigInteger.valueOf(5), BigInteger.valueOf(13)));
+    private static final Fp12 Y = Fp12.line(Fp2.XI, Fp2.ONE, new Fp2(BigInteger.valueOf(17), BigInteger.valueOf(19)));
+    private static final Fp12 Z = X.mul(Y).mul(Y); // dense: all six coefficients set
+
+    @Test
+    void multiplicationIsCommutativeAndAssociative() {
+        assertEquals(X.mul(Y), Y.mul(X));
+        assertEquals(X.mul(Y).mul(Z), X.mul(Y.mul(Z)));
+    }
+
+    @Test
+    void elementTimesInverseIsOne() {
+        assertTrue(X.mul(X.inverse()).isOne());
+        assertTrue(Z.mul(Z.inverse()).isOne());
+        assertFalse(Z.isOne());
+    }
+
+    @Test
+    void frobeniusIsPowerOfP() {
+        assertEquals(Z.pow(Bn254.P), Z.frobenius());
+    }
+
+    @Test
+    void twelveFrobeniusStepsAreTheIdentity() {
+        assertEquals(Z, Z.frobenius(12));
+    }
+
+    @Test
+    void powerAddsExponents() {
+        assertEquals(Z.pow(BigInteger.valueOf(5)).mul(Z.pow(BigInteger.valueOf(7))), Z.pow(BigInteger.valueOf(12)));
+        assertEquals(Fp12.ONE, Z.pow(BigInteger.ZERO));
+    }
+}
@@ -0,0 +1,59 @@
+package org.example.crypto.bls;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class Fp2Test {
+
+    private static final Fp2 A = new Fp2(BigInteger.valueOf(3), BigInteger.valueOf(5));
+    private static final Fp2 B = new Fp2(new BigInteger("123456789123456789"), Bn254.P.subtract(BigInteger.TEN));
+
+    @Test
+    void coefficientsAreReduced() {
+        assertEquals(new Fp2(BigInteger.ONE, Bn254.P.subtract(BigInteger.ONE)),
+                new Fp2(Bn254.P.add(BigInteger.ONE), BigInteger.ONE.negate()));
+    }
+
+    @Test
+    void iSquaredIsMinusOne() {
+        assertEquals(Fp2.of(BigInteger.ONE.negate()), new Fp2(BigInteger.ZERO, BigInteger.ONE).square());
+    }
+
+    @Test
+    void multiplicationMatchesSchoolbook() {
+        // (3 + 5i)(3 + 5i) = 9 - 25 + 30i
+        assertEquals(new Fp2(BigInteger.valueOf(-16), BigInteger.valueOf(30)), A.square());
+        assertEquals(B.mul(A), A.mul(B));
+    }
+
+    @Test
+    void elementTimesInverseIsOne() {
+        assertEquals(Fp2.ONE, A.mul(A.inverse()));
+        assertEquals(Fp2.ONE, B.mul(B.inverse()));
+    }
+
+    @Test
+    void inverseOfZeroThrows() {
+        assertThrows(ArithmeticException.class, Fp2.ZERO::inverse);
+    }
+
+    @Test
+    void mulByXiMatchesMultiplyingByXi() {
+        assertEquals(B.mul(Fp2.XI), B.mulByXi());
+    }
+
+    @Test
+    void powerOfPIsConjugate() {
+        assertEquals(B.conjugate(), B.pow(Bn254.P));
+    }
+
+    @Test
+    void subtractionUndoesAddition() {
+        assertEquals(A, A.add(B).sub(B));
+        assertEquals(Fp2.ZERO, B.add(B.negate()));
+    }
+}
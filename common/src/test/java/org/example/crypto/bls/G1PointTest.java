@@ -0,0 +1,60 @@
+package org.example.crypto.bls;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigInteger;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class G1PointTest {
+
+    private static final BigInteger A = new BigInteger("987654321987654321");
+    private static final BigInteger B = new BigInteger("123456789");
+
+    @Test
+    void generatorHasOrderR() {
+        assertTrue(G1Point.GENERATOR.isOnCurve());
+        assertTrue(G1Point.GENERATOR.multiply(Bn254.R).isInfinity());
+    }
+
+    @Test
+    void scalarMultiplicationDistributesOverAddition() {
+        G1Point sum = G1Point.GENERATOR.multiply(A).add(G1Point.GENERATOR.multiply(B));
+        assertEquals(G1Point.GENERATOR.multiply(A.add(B)), sum);
+        assertTrue(sum.isOnCurve());
+    }
+
+    @Test
+    void doublingMatchesAddingToItself() {
+        G1Point p = G1Point.GENERATOR.multiply(A);
+        assertEquals(p.add(p), p.doubled());
+        assertEquals(p.multiply(BigInteger.TWO), p.doubled());
+    }
+
+    @Test
+    void pointPlusNegationIsInfinity() {
+        G1Point p = G1Point.GENERATOR.multiply(B);
+        assertTrue(p.add(p.negate()).isInfinity());
+        assertEquals(p, p.add(G1Point.INFINITY));
+    }
+
+    @Test
+    void encodingRoundTrips() {
+        G1Point p = G1Point.GENERATOR.multiply(A);
+        assertEquals(G1Point.ENCODED_LENGTH, p.encode().length);
+        assertEquals(p, G1Point.decode(p.encode()));
+        assertArrayEquals(new byte[G1Point.ENCODED_LENGTH], G1Point.INFINITY.encode());
+        assertTrue(G1Point.decode(new byte[G1Point.ENCODED_LENGTH]).isInfinity());
+    }
+
+    @Test
+    void decodeRejectsPointsOffTheCurve() {
+        byte[] encoded = G1Point.GENERATOR.encode();
+        encoded[encoded.length - 1] ^= 1;
+        assertThrows(IllegalArgumentException.class, () -> G1Point.decode(encoded));
+        assertThrows(IllegalArgumentException.class, () -> G1Point.decode(new byte[G1Point.ENCODED_LENGTH - 1]));
+    }
+}
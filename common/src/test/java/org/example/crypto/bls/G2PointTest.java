@@ -0,0 +1,90 @@
+package org.example.crypto.bls;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class G2PointTest {
+
+    private static final BigInteger A = new BigInteger("31415926535897932384");
+    private static final BigInteger B = BigInteger.valueOf(271828);
+
+    @Test
+    void generatorHasOrderR() {
+        assertTrue(G2Point.GENERATOR.isOnCurve());
+        assertTrue(G2Point.GENERATOR.multiply(Bn254.R).isInfinity());
+    }
+
+    @Test
+    void scalarMultiplicationDistributesOverAddition() {
+        G2Point sum = G2Point.GENERATOR.multiply(A).add(G2Point.GENERATOR.multiply(B));
+        assertEquals(G2Point.GENERATOR.multiply(A.add(B)), sum);
+        assertTrue(sum.isOnCurve());
+    }
+
+    @Test
+    void pointPlusNegationIsInfinity() {
+        G2Point q = G2Point.GENERATOR.multiply(B);
+        assertTrue(q.add(q.negate()).isInfinity());
+    }
+
+    @Test
+    void frobeniusActsAsMultiplicationByP() {
+        G2Point q = G2Point.GENERATOR.multiply(B);
+        assertEquals(q.multiply(Bn254.P.mod(Bn254.R)), q.frobenius());
+    }
+
+    @Test
+    void encodingRoundTrips() {
+        G2Point q = G2Point.GENERATOR.multiply(A);
+        assertEquals(G2Point.ENCODED_LENGTH, q.encode().length);
+        assertEquals(q, G2Point.decode(q.encode()));
+        assertTrue(G2Point.decode(new byte[G2Point.ENCODED_LENGTH]).isInfinity());
+    }
+
+    @Test
+    void decodeRejectsPointsOffTheTwist() {
+        byte[] encoded = G2Point.GENERATOR.encode();
+        encoded[encoded.length - 1] ^= 1;
+        assertThrows(IllegalArgumentException.class, () -> G2Point.decode(encoded));
+    }
+
+    @Test
+    void decodeRejectsPointsOutsideTheSubgroup() {
+        // The twist has cofactor > 1, so a point found by solving its equation is almost surely not in G2
+        G2Point outside = pointOnTwist();
+        assertTrue(outside.isOnCurve());
+        assertThrows(IllegalArgumentException.class, () -> G2Point.decode(outside.encode()));
+    }
+
+    private static G2Point pointOnTwist() {
+        Fp2 b = Fp2.of(Bn254.B).mul(Fp2.XI.inverse());
+        // sqrt in Fp2 (p = 3 mod 4), following the standard complex method
+        for (long k = 1; ; k++) {
+            Fp2 x = new Fp2(BigInteger.valueOf(k), BigInteger.ONE);
+            Fp2 rhs = x.square().mul(x).add(b);
+            Fp2 y = sqrt(rhs);
+            if (y != null) {
+                return new G2Point(x, y);
+            }
+        }
+    }
+
+    private static Fp2 sqrt(Fp2 a) {
+        BigInteger p = Bn254.P;
+        Fp2 a1 = a.pow(p.subtract(BigInteger.valueOf(3)).shiftRight(2));
+        Fp2 alpha = a1.mul(a1.mul(a));
+        Fp2 x0 = a1.mul(a);
+        if (alpha.equals(Fp2.of(BigInteger.ONE.negate()))) {
+            Fp2 root = new Fp2(BigInteger.ZERO, BigInteger.ONE).mul(x0);
+            return root.square().equals(a) ? root : null;
+        }
+        Fp2 b = alpha.add(Fp2.ONE).pow(p.subtract(BigInteger.ONE).shiftRight(1));
+        Fp2 root = b.mul(x0);
+        return root.square().equals(a) ? root : null;
+    }
+}
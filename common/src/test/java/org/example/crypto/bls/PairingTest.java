@@ -0,0 +1,50 @@
+package org.example.crypto.bls;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigInteger;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PairingTest {
+
+    private static final BigInteger A = BigInteger.valueOf(6);
+    private static final BigInteger B = BigInteger.valueOf(35);
+
+    @Test
+    void pairingIsNonDegenerate() {
+        assertFalse(Pairing.pairing(G1Point.GENERATOR, G2Point.GENERATOR).isOne());
+    }
+
+    @Test
+    void pairingIsBilinear() {
+        Fp12 left = Pairing.pairing(G1Point.GENERATOR.multiply(A), G2Point.GENERATOR.multiply(B));
+        Fp12 right = Pairing.pairing(G1Point.GENERATOR.multiply(A.multiply(B)), G2Point.GENERATOR);
+        assertEquals(right, left);
+        assertEquals(Pairing.pairing(G1Point.GENERATOR, G2Point.GENERATOR).pow(A.multiply(B)), left);
+    }
+
+    @Test
+    void pairingHasOrderR() {
+        assertTrue(Pairing.pairing(G1Point.GENERATOR, G2Point.GENERATOR).pow(Bn254.R).isOne());
+    }
+
+    @Test
+    void productOfInversePairingsIsOne() {
+        G1Point p = G1Point.GENERATOR.multiply(A);
+        G2Point q = G2Point.GENERATOR.multiply(B);
+        assertTrue(Pairing.productIsOne(List.of(p, p.negate()), List.of(q, q)));
+        assertTrue(Pairing.productIsOne(List.of(p.multiply(B), G1Point.GENERATOR.negate()),
+                List.of(G2Point.GENERATOR, q.multiply(A))));
+        assertFalse(Pairing.productIsOne(List.of(p, p), List.of(q, q)));
+    }
+
+    @Test
+    void infinityPairsToOne() {
+        assertTrue(Pairing.pairing(G1Point.INFINITY, G2Point.GENERATOR).isOne());
+        assertTrue(Pairing.pairing(G1Point.GENERATOR, G2Point.INFINITY).isOne());
+    }
+}
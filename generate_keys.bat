@@ -54,5 +54,13 @@ for %%N in (%nodes%) do (
 
 echo } >> keys\manifest.json
 
+REM BLS public keys for aggregate quorum certificates (signature.aggregate.enabled), derived from the node keys
+set common_jar=common\target\common-1.0-SNAPSHOT-jar-with-dependencies.jar
+if exist %common_jar% (
+    java -cp %common_jar% org.example.crypto.BlsKeyTool keys\private keys\bls_manifest.json %nodes%
+) else (
+    echo Build the project and rerun to also write keys\bls_manifest.json
+)
+
 echo Key generation complete. Private keys in keys\private\, manifest.json with public keys in keys\
 endlocal
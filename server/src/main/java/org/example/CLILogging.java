@@ -1,6 +1,7 @@
 package org.example;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.protobuf.InvalidProtocolBufferException;
 
 import java.util.List;
 
@@ -15,16 +16,16 @@ public class CLILogging {
         return sb.toString();
     }
 
-//    public static String formatState(ClientState state) {
-//        // create JSON string out of hashmap state.getClientState() using jackson
-//
-//        ObjectMapper objectMapper = new ObjectMapper();
-//        try {
-//            return objectMapper.writerWithDefaultPrettyPrinter().writeValueAsString(state.getClientState());
-//        } catch (Exception e) {
-//            throw new RuntimeException(e);
-//        }
-//    }
+    public static String formatState(ClientState state) {
+        // create JSON string out of hashmap state.getClientState() using jackson
+
+        ObjectMapper objectMapper = new ObjectMapper();
+        try {
+            return objectMapper.writerWithDefaultPrettyPrinter().writeValueAsString(state.getClientState());
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
 
     public static String mapStatus(TransactionStatus status) {
         return switch (status) {
@@ -36,23 +37,25 @@ public class CLILogging {
         };
     }
 
-//    public static String formatNewViews(List<MessageServiceOuterClass.NewViewMessage> newViews) {
-//        StringBuilder sb = new StringBuilder();
-//        for (MessageServiceOuterClass.NewViewMessage newView : newViews) {
-//            sb.append(String.format("\n\nNewView: ballot=%s\n",
-//                    Ballot.fromProtoBallot(newView.getBallot())));
-//            for (MessageServiceOuterClass.AcceptMessage acceptMessage : newView.getAcceptLogList()) {
-//
-//                //bring in same string.format as present in communication logging
-//                sb.append(String.format("<ACCEPT, <%d, %s>, %d, (%s, %s, %f)>\n",
-//                        acceptMessage.getBallot().getInstance(),
-//                        acceptMessage.getBallot().getSenderId(),
-//                        acceptMessage.getSequenceNumber(),
-//                        acceptMessage.getRequest().getTransaction().getSender(),
-//                        acceptMessage.getRequest().getTransaction().getReceiver(),
-//                        acceptMessage.getRequest().getTransaction().getAmount()));
-//            }
-//        }
-//        return sb.toString();
-//    }
+    public static String formatNewViews(List<MessageServiceOuterClass.NewViewMessage> newViews) {
+        StringBuilder sb = new StringBuilder();
+        for (MessageServiceOuterClass.NewViewMessage newView : newViews) {
+            sb.append(String.format("\n\nNewView: view=%d, re-issued seq %d to %d\n",
+                    newView.getViewNumber(), newView.getMinSequenceNumber() + 1, newView.getMaxSequenceNumber()));
+            for (MessageServiceOuterClass.SignedMessage envelope : newView.getViewChangesList()) {
+                try {
+                    MessageServiceOuterClass.ViewChangeMessage viewChange = MessageServiceOuterClass.ViewChangeMessage.parseFrom(envelope.getPayload());
+                    // same format as the communication log
+                    sb.append(String.format("<VIEW-CHANGE, %d, checkpoint %d, %d prepared, %s>\n",
+                            viewChange.getNewViewNumber(),
+                            viewChange.getCheckpoint().getCertificate().getSequenceNumber(),
+                            viewChange.getPreparedCount(),
+                            viewChange.getReplicaId()));
+                } catch (InvalidProtocolBufferException e) {
+                    sb.append(String.format("<VIEW-CHANGE from %s, unreadable>\n", envelope.getSignerId()));
+                }
+            }
+        }
+        return sb.toString();
+    }
 }
@@ -0,0 +1,60 @@
+package org.example;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Replicated banking state. Mutated only by the in-order execution of committed (or, with
+ * tentative execution, prepared) sequence numbers; reads from CLI threads see a consistent
+ * per-account value.
+ */
+public class ClientState {
+
+    private final Map<String, Double> balances;
+
+    public ClientState(Map<String, Double> initialBalances) {
+        this.balances = new ConcurrentHashMap<>(initialBalances);
+    }
+
+    /**
+     * Apply a transfer if both accounts exist and the sender has sufficient funds.
+     *
+     * @return true if the transfer was applied
+     */
+    public boolean transfer(String sender, String receiver, double amount) {
+        Double senderBalance = balances.get(sender);
+        if (senderBalance == null || !balances.containsKey(receiver) || amount <= 0 || senderBalance < amount) {
+            return false;
+        }
+        balances.put(sender, senderBalance - amount);
+        balances.merge(receiver, amount, Double::sum);
+        return true;
+    }
+
+    public Double getBalance(String accountId) {
+        return balances.get(accountId);
+    }
+
+    /**
+     * Replace every balance with those of a transferred checkpoint snapshot.
+     */
+    public void restore(Map<String, Double> snapshot) {
+        balances.keySet().retainAll(snapshot.keySet());
+        balances.putAll(snapshot);
+    }
+
+    /**
+     * Put back balances overwritten by execution that is being undone.
+     */
+    public void revert(Map<String, Double> previous) {
+        balances.putAll(previous);
+    }
+
+    /**
+     * Sorted copy of all balances, for display.
+     */
+    public Map<String, Double> getClientState() {
+        return new TreeMap<>(balances);
+    }
+}
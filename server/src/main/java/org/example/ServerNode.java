@@ -1,61 +1,1793 @@
 package org.example;
 
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.protobuf.ByteString;
+import com.google.protobuf.InvalidProtocolBufferException;
+import com.google.protobuf.Message;
+import io.grpc.Status;
+import io.grpc.StatusRuntimeException;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.example.config.Config;
-import org.example.crypto.MessageAuthenticator;
-import org.example.messaging.CommunicationLogger;
+import org.example.consensus.AdaptiveBatchController;
+import org.example.consensus.Checkpoints;
+import org.example.consensus.Collectors;
+import org.example.consensus.ConsensusLog;
+import org.example.consensus.LogEntry;
+import org.example.consensus.PrimaryLease;
+import org.example.consensus.PrimaryMonitor;
+import org.example.consensus.RequestBatcher;
+import org.example.consensus.RequestStore;
+import org.example.consensus.Recovery;
+import org.example.consensus.StateTransfer;
+import org.example.consensus.ViewChangeCoordinator;
+import org.example.consensus.ViewChanges;
+import org.example.crypto.QuorumCertificateVerifier;
+import org.example.crypto.QuorumCertificates;
+import org.example.crypto.Signed;
 import org.example.messaging.MessageReceiver;
+import org.example.messaging.MessageSender;
+import org.example.messaging.PacedStreamObserver;
 import org.example.messaging.ServerMessageReceiver;
 import org.example.messaging.ServerMessageSender;
+import org.example.storage.SegmentedLogStore;
+import org.example.storage.StartupReport;
+import org.example.storage.WriteAheadLog;
 
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
 
 public class ServerNode extends Node {
 
     private static final Logger logger = LogManager.getLogger(ServerNode.class);
 
-    private final int MAJORITY_COUNT = 4;
-    private final int OTHER_SERVER_COUNT = 6;
-    private final long REQUEST_TIMEOUT_MILLIS = 1000;
+    private final long REQUEST_FETCH_RETRY_MILLIS = 50;
+    private final long STATE_TRANSFER_GRACE_MILLIS = 1000; // time to reach a checkpoint stable elsewhere before transferring
 
-    private boolean isPrimary;
+    // Protocol state below is only mutated from the state executor. The CLI RPCs read a few parts
+    // of it from gRPC threads without hopping onto it, each safe to read there: the slots' sequence
+    // number and status (ConsensusLog.getStatus), the stable checkpoint and the balances (volatile
+    // or concurrent), the batching decision, the NewView history and lastReplies
+    private final ConsensusLog log;
+    private final Checkpoints checkpoints;
+    private final ClientState clientState;
+    private final TentativeExecutions tentative; // executed once prepared, not yet committed
+    private final boolean tentativeExecution;
+    private long nextSequenceNumber = 1L; // primary only
+    private long lastExecuted = 0L;
+    private final ViewChangeCoordinator views; // the view, and how the replica moves to the next one
+    private boolean replaying; // re-executing from the write-ahead log at startup: nothing is sent
+    private final RequestBatcher batcher; // primary
+    private final AdaptiveBatchController batchController; // primary
+    private final PrimaryMonitor primaryMonitor; // backup
+    private final PrimaryLease lease; // primary
+    private final Collectors collectors;
+    private long leaseRenewalSequenceNumber; // primary: empty batch ordered to renew an idle lease
+    private final Queue<List<Signed<MessageServiceOuterClass.ClientRequest>>> pendingBatches = new ArrayDeque<>(); // primary, waiting for window space
+    private final Set<String> orderedRequestIds = new HashSet<>(); // primary, assigned but not yet executed
+    private final WriteAheadLog wal;
+    private final SegmentedLogStore logStore; // executed entries, serving status queries, request fetches and state transfer
+    private final StartupReport startupReport;
+    private final RequestStore requestStore; // digest-only ordering: verified request bodies by payload digest
+    private final Map<Long, MessageServiceOuterClass.PrePrepareMessage> awaitingBodies = new HashMap<>(); // digest-only PrePrepares missing bodies
+
+    // Snapshot transfer progress; only touched by the transfer thread holding stateTransferRunning
+    private final StateTransfer stateTransfer = new StateTransfer();
+    private final AtomicBoolean stateTransferRunning = new AtomicBoolean();
+
+    // Last reply per client, used to answer retransmissions without re-executing
+    private final Map<String, MessageServiceOuterClass.ClientReply> lastReplies = new ConcurrentHashMap<>();
+
+    private final QuorumCertificateVerifier certificateVerifier;
+    private final boolean aggregateSignatures; // certificates carry one BLS aggregate instead of 2f+1 Ed25519 signatures
+    private final boolean digestOrdering; // PrePrepares carry request digests; clients send bodies to every replica
+    private final boolean fastPath; // a PrepareCertificate signed by all n replicas commits on its own; off by default, since one slow replica delays every slot by the timeout
+    private final long fastPathTimeoutMillis;
 
     private final ServerMessageSender sender;
     private final ServerMessageReceiver receiver;
 
     public ServerNode(String nodeId) {
         super(nodeId);
+        this.certificateVerifier = new QuorumCertificateVerifier(auth, verificationStage);
+        this.aggregateSignatures = Config.isAggregateSignaturesEnabled();
+        this.digestOrdering = Config.isDigestOrderingEnabled();
+        this.fastPath = Config.isFastPathEnabled();
+        this.fastPathTimeoutMillis = Config.getFastPathTimeoutMillis();
+        this.requestStore = new RequestStore(Config.getRequestStoreCapacity());
+        Path walPath = Path.of(Config.getWalDir(), nodeId);
+        try {
+            this.wal = new WriteAheadLog(walPath, WriteAheadLog.Durability.parse(Config.getWalDurability()), executorManager);
+        } catch (IOException e) {
+            logger.error("Node {}: failed to open write-ahead log {} : {}", nodeId, walPath, e.getMessage());
+            throw new RuntimeException(e);
+        }
+        Path segmentPath = Path.of(Config.getLogSegmentDir(), nodeId);
+        try {
+            this.logStore = new SegmentedLogStore(segmentPath, Config.getLogSegmentBytes());
+        } catch (IOException e) {
+            logger.error("Node {}: failed to open log segments in {} : {}", nodeId, segmentPath, e.getMessage());
+            throw new RuntimeException(e);
+        }
+        this.log = new ConsensusLog(Config.getWindowSize());
+        if (Config.getCheckpointInterval() > Config.getWindowSize()) {
+            throw new IllegalStateException("checkpoint.interval must not exceed consensus.window.size");
+        }
+        this.checkpoints = new Checkpoints(Config.getCheckpointInterval());
+        this.clientState = new ClientState(Config.getClientBalances());
+        this.tentative = new TentativeExecutions(clientState);
+        this.tentativeExecution = Config.isTentativeExecutionEnabled();
+        this.batcher = new RequestBatcher(executorManager,
+                Config.getBatchMaxRequests(),
+                Config.getBatchMaxBytes(),
+                Config.getBatchTimeoutMillis(),
+                this::onBatch);
+        this.batchController = new AdaptiveBatchController(batcher,
+                Config.isBatchAdaptiveEnabled(),
+                Config.getBatchAdaptiveMinRequests(),
+                Config.getBatchAdaptiveWindow(),
+                Config.getBatchAdaptiveTargetP50Millis());
+        this.primaryMonitor = new PrimaryMonitor(Config.isPrimaryMonitorEnabled(),
+                Config.getPrimaryMonitorIntervalMillis(),
+                Config.getPrimaryMonitorMinFraction(),
+                Config.getPrimaryMonitorWindow(),
+                Config.getBatchMaxRequests(),
+                Config.getBatchMaxBytes());
+        this.lease = new PrimaryLease(Config.isLeaseReadEnabled(), Config.getLeaseMillis(), quorumCount(), nodeId);
+        this.collectors = new Collectors(Config.isCollectorRotationEnabled(), Config.getCollectorCount(),
+                Config.getCollectorTimeoutMillis());
         this.sender = new ServerMessageSender(nodeId, commLogger, auth);
-        this.receiver = new ServerMessageReceiver(this, commLogger, auth);
+        this.receiver = new ServerMessageReceiver(this, commLogger, verificationStage);
+        this.views = new ViewChangeCoordinator(nodeId, quorumCount(), maxFaulty() + 1, fastPath, log, checkpoints,
+                primaryMonitor, wal, sender, auth, verificationStage, executorManager, new ViewChangeCallbacks());
+        try {
+            this.startupReport = recover(walPath);
+        } catch (IOException e) {
+            logger.error("Node {}: failed to replay write-ahead log {} : {}", nodeId, walPath, e.getMessage());
+            throw new RuntimeException(e);
+        }
+        if (lease.isEnabled() && views.isViewActive() && !isPrimary()) {
+            // A Prepare sent just before the crash may still count towards the primary's lease; the
+            // promise is not logged, so keep it for a full lease from now
+            views.promiseLeaseUntil(System.nanoTime() + lease.getLeaseNanos());
+        }
+        logger.info("Node {} started: {}", nodeId, startupReport);
+        views.start();
+        if (batchController.isEnabled()) {
+            scheduleBatchTuning();
+        }
     }
 
     public void setActive(boolean active) {
+        boolean wasActive = sender.isActive();
         sender.setActive(active);
         receiver.setActive(active);
+        if (active && !wasActive) {
+            // Whatever was ordered while inactive never reached this node
+            executorManager.submitStateTransition(this::startStateTransfer);
+        }
     }
 
-    public void handleClientRequest(MessageServiceOuterClass.ClientRequest request) {
+    public boolean isPrimary() {
+        return nodeId.equals(primaryIdFor(views.getViewNumber()));
+    }
+
+    public long getViewNumber() {
+        return views.getViewNumber();
+    }
+
+    /**
+     * Replicas that aggregate votes for a sequence number in a view.
+     */
+    private List<String> collectorsFor(long viewNumber, long sequenceNumber) {
+        return collectors.collectorsFor(viewNumber, sequenceNumber, primaryIdFor(viewNumber));
+    }
+
+    // One of the sequence number's collectors, or the primary they fall back to
+    private boolean mayCollect(long viewNumber, long sequenceNumber, String replicaId) {
+        return collectors.mayCollect(viewNumber, sequenceNumber, primaryIdFor(viewNumber), replicaId);
+    }
+
+    public long getStableCheckpoint() {
+        return checkpoints.getStableSequenceNumber();
+    }
+
+    /**
+     * Safe to call from any thread. Sequence numbers below the window are looked up in the log
+     * segments: EXECUTED if stored there, NONE if this replica never logged them (they came with a
+     * transferred snapshot) or their segment went with a later stable checkpoint.
+     */
+    public TransactionStatus getStatus(long sequenceNumber) {
+        TransactionStatus status = log.getStatus(sequenceNumber);
+        if (status != TransactionStatus.NONE || sequenceNumber <= 0 || sequenceNumber > log.getLowWatermark()) {
+            return status;
+        }
+        try {
+            return logStore.read(sequenceNumber) != null ? TransactionStatus.EXECUTED : TransactionStatus.NONE;
+        } catch (IOException e) {
+            logger.warn("Failed to read seq={} from the log segments: {}", sequenceNumber, e.getMessage());
+            return TransactionStatus.NONE;
+        }
+    }
+
+    public ClientState getClientState() {
+        return clientState;
+    }
+
+    public AdaptiveBatchController.Decision getBatchingDecision() {
+        return batchController.getLastDecision();
+    }
+
+    public StartupReport getStartupReport() {
+        return startupReport;
+    }
+
+    public List<MessageServiceOuterClass.NewViewMessage> getNewViews() {
+        return views.getNewViews();
+    }
+
+    // ================= Restart =================
+
+    /**
+     * Rebuild protocol state from local storage rather than from the initial balances: install
+     * the latest stable checkpoint in the write-ahead log and replay the records after it (see
+     * Recovery). Committed entries are executed again without replying to clients; entries still
+     * in flight resume at the phase they reached, and a view change that was pending stays pending.
+     * Peers are only contacted later, if a checkpoint certificate shows this replica has fallen behind.
+     * Runs in the constructor, before any task reaches the state executor.
+     */
+    private StartupReport recover(Path walPath) throws IOException {
+        long started = System.nanoTime();
+        List<MessageServiceOuterClass.WalRecord> records = WriteAheadLog.read(walPath);
+
+        MessageServiceOuterClass.StableCheckpoint checkpoint = Recovery.latestCheckpoint(records);
+        long snapshotSequenceNumber = 0L;
+        if (checkpoint != null) {
+            MessageServiceOuterClass.StateSnapshot snapshot = checkpoint.getSnapshot();
+            snapshotSequenceNumber = snapshot.getSequenceNumber();
+            restoreSnapshot(snapshot);
+            checkpoints.recordOwn(snapshot);
+            checkpoints.stabilize(checkpoint.getCertificate(), snapshot);
+            log.truncateThrough(snapshotSequenceNumber);
+        }
+
+        Recovery recovery = new Recovery(log, maxFaulty() + 1);
+        recovery.replay(records);
+        views.restore(recovery);
+        nextSequenceNumber = recovery.getNextSequenceNumber();
+        replaying = true;
+        executeCommitted();
+        replaying = false;
+        nextSequenceNumber = Math.max(nextSequenceNumber, lastExecuted + 1);
+
+        return new StartupReport(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started),
+                ManagementFactory.getRuntimeMXBean().getUptime(), snapshotSequenceNumber, recovery.getReplayed(),
+                lastExecuted - snapshotSequenceNumber, lastExecuted, views.getViewNumber());
+    }
+
+    // ================= Client requests =================
+
+    public void handleClientRequest(Signed<MessageServiceOuterClass.ClientRequest> signed) {
+        if (!signed.signerId().equals(signed.message().getClientId())) {
+            logger.warn("Request for client {} signed by {}", signed.message().getClientId(), signed.signerId());
+            return;
+        }
+        executorManager.submitStateTransition(() -> onClientRequest(signed));
+    }
+
+    private void onClientRequest(Signed<MessageServiceOuterClass.ClientRequest> signed) {
+        MessageServiceOuterClass.ClientRequest request = signed.message();
         String clientId = request.getClientId();
-        long timestamp = request.getTimestamp();
 
-        // initiate PBFT protocol
-        // await consensus
-        // execute operation in request
-        // send ClientReply
+        if (request.getReadOnly()) {
+            onReadOnlyRequest(request);
+            return;
+        }
 
-        int serverNumber = Integer.parseInt(nodeId.substring(1));
-        MessageServiceOuterClass.ClientReply reply = MessageServiceOuterClass.ClientReply.newBuilder()
-                .setViewNumber(1L)
-                .setTimestamp(timestamp)
-                .setClientId(clientId)
+        MessageServiceOuterClass.ClientReply cached = lastReplies.get(clientId);
+        if (cached != null && cached.getTimestamp() >= request.getTimestamp()) {
+            // Already executed; resend the reply for a retransmission, drop anything older
+            if (cached.getTimestamp() == request.getTimestamp()) {
+                sender.sendClientReply(clientId, cached);
+            }
+            return;
+        }
+
+        if (digestOrdering) {
+            requestStore.put(signed);
+            acceptAwaitingBodies();
+            if (!isPrimary()) {
+                views.watchRequest(request, requestIdFor(clientId, request.getTimestamp()));
+                return; // the client sent the primary its own copy
+            }
+        } else if (!isPrimary()) {
+            sender.forwardRequest(primaryIdFor(views.getViewNumber()), signed);
+            views.watchRequest(request, requestIdFor(clientId, request.getTimestamp()));
+            return;
+        }
+
+        if (!orderedRequestIds.add(requestIdFor(clientId, request.getTimestamp()))) {
+            logger.info("Request {} is already being ordered", requestIdFor(clientId, request.getTimestamp()));
+            return;
+        }
+        batcher.add(signed);
+    }
+
+    /**
+     * Answer a read straight from the executed state, on every replica, without ordering it. The
+     * client accepts 2f+1 matching answers and otherwise resends the read as an ordered request.
+     * The reply is not remembered in lastReplies: a read does not advance the client's timestamp.
+     * A lease read is answered the same way, with the lease attached if this is the primary and
+     * holds one (see PrimaryLease); the client then needs no other reply.
+     */
+    private void onReadOnlyRequest(MessageServiceOuterClass.ClientRequest request) {
+        if (request.getOperation().getOpCase() != MessageServiceOuterClass.Operation.OpCase.BALANCE_REQUEST) {
+            logger.warn("Request {} marked read-only is a {}, ignoring", requestIdFor(request.getClientId(), request.getTimestamp()),
+                    request.getOperation().getOpCase());
+            return;
+        }
+        Double balance = tentative.committedBalance(request.getOperation().getBalanceRequest().getAccountId());
+        MessageServiceOuterClass.ClientReply.Builder reply = MessageServiceOuterClass.ClientReply.newBuilder()
+                .setViewNumber(views.getViewNumber())
+                .setTimestamp(request.getTimestamp())
+                .setClientId(request.getClientId())
                 .setServerId(nodeId)
-                .setResult(serverNumber % 2 == 1)
+                .setResult(balance != null)
+                .setBalance(balance == null ? 0.0 : balance);
+        if (request.getLeaseRead()) {
+            long remaining = views.isViewActive() && isPrimary() ? lease.remainingNanos() : 0L;
+            if (remaining > 0) {
+                reply.setLeaseRemainingMillis(Math.max(1L, TimeUnit.NANOSECONDS.toMillis(remaining)))
+                        .setExecutedSequenceNumber(lastExecuted);
+            }
+            renewLease(remaining);
+        }
+        logger.debug("Read-only request {} answered at seq={}: balance={}, lease={} ms", requestIdFor(request.getClientId(), request.getTimestamp()),
+                lastExecuted, balance, reply.getLeaseRemainingMillis());
+        sender.sendClientReply(request.getClientId(), reply.build());
+    }
+
+    /**
+     * Primary: a lease read found the lease expired or past half its length. If nothing is being
+     * ordered that would renew it, order an empty batch so backups vote, and promise, again.
+     */
+    private void renewLease(long remaining) {
+        if (!lease.isEnabled() || !views.isViewActive() || !isPrimary() || remaining > lease.getLeaseNanos() / 2
+                || leaseRenewalSequenceNumber > lastExecuted || !pendingBatches.isEmpty() || !orderedRequestIds.isEmpty()) {
+            return;
+        }
+        leaseRenewalSequenceNumber = nextSequenceNumber;
+        logger.info("Renewing the read lease with an empty batch at seq={}", leaseRenewalSequenceNumber);
+        pendingBatches.add(List.of());
+        assignSequenceNumbers();
+    }
+
+    /**
+     * Primary: let the batch controller decide on a timer too, so it still shrinks back when
+     * nothing commits. Checked every tick on the state executor.
+     */
+    private void scheduleBatchTuning() {
+        try {
+            executorManager.schedule(() -> executorManager.submitStateTransition(() -> {
+                if (views.isViewActive() && isPrimary()) {
+                    batchController.onTick(pendingBatches.size());
+                }
+                scheduleBatchTuning();
+            }), batchController.getTickMillis(), TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            // shutting down
+        }
+    }
+
+    private void onBatch(List<Signed<MessageServiceOuterClass.ClientRequest>> batch) {
+        if (!isPrimary()) {
+            return; // cut after a view change moved the primary elsewhere; clients retransmit
+        }
+        batchController.onBatchCut();
+        pendingBatches.add(batch);
+        assignSequenceNumbers();
+    }
+
+    /**
+     * Primary: order every pending batch that fits in the watermark window. Each assignment
+     * starts a consensus instance immediately, without waiting for earlier instances to finish.
+     */
+    private void assignSequenceNumbers() {
+        if (!isPrimary() || !views.isViewActive()) {
+            return; // batches wait for the NewView
+        }
+        while (!pendingBatches.isEmpty() && log.inWindow(nextSequenceNumber)) {
+            List<Signed<MessageServiceOuterClass.ClientRequest>> batch = pendingBatches.poll();
+            long sequenceNumber = nextSequenceNumber++;
+
+            List<MessageServiceOuterClass.SignedMessage> envelopes = batch.stream().map(Signed::envelope).toList();
+            MessageServiceOuterClass.PrePrepareMessage.Builder builder = MessageServiceOuterClass.PrePrepareMessage.newBuilder()
+                    .setViewNumber(views.getViewNumber())
+                    .setSequenceNumber(sequenceNumber);
+            if (digestOrdering) {
+                // Backups already hold (or will fetch) the bodies, so only their digests leave the primary
+                List<ByteString> digests = envelopes.stream().map(RequestStore::digestOf).toList();
+                builder.setDigest(RequestBatcher.batchDigestOf(digests)).addAllRequestDigests(digests);
+            } else {
+                builder.setDigest(RequestBatcher.batchDigest(envelopes)).addAllRequests(envelopes);
+            }
+            MessageServiceOuterClass.PrePrepareMessage prePrepare = builder.build();
+            logger.debug("Assigned seq={} to batch of {} requests in view {}", sequenceNumber, batch.size(), views.getViewNumber());
+            batchController.onOrdered(sequenceNumber);
+            lease.onProposed(sequenceNumber);
+
+            acceptPrePrepare(prePrepare, batch); // broadcasts it once logged
+
+        }
+        if (!pendingBatches.isEmpty()) {
+            logger.info("Window full (high watermark {}), {} batches waiting", log.getHighWatermark(), pendingBatches.size());
+        }
+    }
+
+    // ================= PrePrepare =================
+
+    public void handlePrePrepare(Signed<MessageServiceOuterClass.PrePrepareMessage> signed) {
+        MessageServiceOuterClass.PrePrepareMessage prePrepare = signed.message();
+        if (!primaryIdFor(prePrepare.getViewNumber()).equals(signed.signerId())) {
+            logger.warn("PrePrepare for seq={} signed by {} who is not primary of view {}",
+                    prePrepare.getSequenceNumber(), signed.signerId(), prePrepare.getViewNumber());
+            return;
+        }
+        admitPrePrepare(prePrepare);
+    }
+
+    /**
+     * Check a PrePrepare's batch against its digest and verify the client requests it carries,
+     * then accept it on the state executor. Runs on a verification worker.
+     */
+    private void admitPrePrepare(MessageServiceOuterClass.PrePrepareMessage prePrepare) {
+        if (prePrepare.getRequestsCount() == 0) {
+            if (!RequestBatcher.batchDigestOf(prePrepare.getRequestDigestsList()).equals(prePrepare.getDigest())) {
+                logger.warn("PrePrepare for seq={} has a digest that does not match its request digests", prePrepare.getSequenceNumber());
+                return;
+            }
+            executorManager.submitStateTransition(() -> onDigestPrePrepare(prePrepare));
+            return;
+        }
+        if (!RequestBatcher.batchDigest(prePrepare.getRequestsList()).equals(prePrepare.getDigest())) {
+            logger.warn("PrePrepare for seq={} has a digest that does not match its batch", prePrepare.getSequenceNumber());
+            return;
+        }
+        List<Signed<MessageServiceOuterClass.ClientRequest>> requests = verificationStage.openAll(
+                prePrepare.getRequestsList(), MessageServiceOuterClass.ClientRequest.getDefaultInstance());
+        if (requests == null || requests.stream().anyMatch(r -> !r.signerId().equals(r.message().getClientId()))) {
+            logger.warn("PrePrepare for seq={} carries a request with an invalid client signature", prePrepare.getSequenceNumber());
+            return;
+        }
+        executorManager.submitStateTransition(() -> acceptPrePrepare(prePrepare, requests));
+    }
+
+    /**
+     * Digest-only PrePrepare: accepted once every named body is held locally, so each correct
+     * replica in a prepare quorum can serve the bodies to the others. Missing bodies are fetched.
+     */
+    private void onDigestPrePrepare(MessageServiceOuterClass.PrePrepareMessage prePrepare) {
+        long sequenceNumber = prePrepare.getSequenceNumber();
+        if (prePrepare.getViewNumber() != views.getViewNumber() || !views.isViewActive() || !log.inWindow(sequenceNumber)) {
+            logger.info("Ignoring PrePrepare v={} seq={} (view {}, window ({}, {}])", prePrepare.getViewNumber(),
+                    sequenceNumber, views.getViewNumber(), log.getLowWatermark(), log.getHighWatermark());
+            return;
+        }
+        List<Signed<MessageServiceOuterClass.ClientRequest>> bodies = requestStore.resolve(prePrepare.getRequestDigestsList());
+        if (bodies != null) {
+            acceptPrePrepare(prePrepare, bodies);
+            return;
+        }
+        if (awaitingBodies.putIfAbsent(sequenceNumber, prePrepare) == null) {
+            fetchMissingBodies(sequenceNumber, 0);
+        }
+    }
+
+    /**
+     * Accept every parked PrePrepare whose bodies have all arrived; drop those the view or
+     * window has moved past.
+     */
+    private void acceptAwaitingBodies() {
+        if (awaitingBodies.isEmpty()) {
+            return;
+        }
+        List<MessageServiceOuterClass.PrePrepareMessage> ready = new ArrayList<>();
+        Iterator<MessageServiceOuterClass.PrePrepareMessage> waiting = awaitingBodies.values().iterator();
+        while (waiting.hasNext()) {
+            MessageServiceOuterClass.PrePrepareMessage prePrepare = waiting.next();
+            if (prePrepare.getViewNumber() != views.getViewNumber() || !log.inWindow(prePrepare.getSequenceNumber())) {
+                waiting.remove();
+            } else if (requestStore.missing(prePrepare.getRequestDigestsList()).isEmpty()) {
+                waiting.remove();
+                ready.add(prePrepare);
+            }
+        }
+        for (MessageServiceOuterClass.PrePrepareMessage prePrepare : ready) {
+            acceptPrePrepare(prePrepare, requestStore.resolve(prePrepare.getRequestDigestsList()));
+        }
+    }
+
+    /**
+     * Ask one peer for the bodies a parked PrePrepare still misses, starting with the primary
+     * that ordered them and moving on to the other replicas until they are all in.
+     */
+    private void fetchMissingBodies(long sequenceNumber, int attempt) {
+        MessageServiceOuterClass.PrePrepareMessage prePrepare = awaitingBodies.get(sequenceNumber);
+        if (prePrepare == null) {
+            return;
+        }
+        List<ByteString> missing = requestStore.missing(prePrepare.getRequestDigestsList());
+        List<String> peers = new ArrayList<>(Config.getServerIdsExcept(nodeId));
+        peers.sort(null);
+        String primaryId = primaryIdFor(prePrepare.getViewNumber());
+        if (peers.remove(primaryId)) {
+            peers.add(0, primaryId);
+        }
+        String peerId = peers.get(attempt % peers.size());
+
+        ListenableFuture<MessageServiceOuterClass.RequestBodies> response = sender.fetchRequests(peerId,
+                MessageServiceOuterClass.RequestFetch.newBuilder().addAllDigests(missing).setSequenceNumber(sequenceNumber).build());
+        response.addListener(() -> onFetchedBodies(sequenceNumber, attempt, peerId, Set.copyOf(missing), response),
+                executorManager::submitVerification);
+    }
+
+    // Runs on a verification worker: fetched bodies are checked like any client request
+    private void onFetchedBodies(long sequenceNumber,
+                                 int attempt,
+                                 String peerId,
+                                 Set<ByteString> requested,
+                                 ListenableFuture<MessageServiceOuterClass.RequestBodies> response) {
+        List<Signed<MessageServiceOuterClass.ClientRequest>> fetched = List.of();
+        try {
+            List<MessageServiceOuterClass.SignedMessage> envelopes = Futures.getDone(response).getRequestsList().stream()
+                    .filter(envelope -> requested.contains(RequestStore.digestOf(envelope)))
+                    .toList();
+            List<Signed<MessageServiceOuterClass.ClientRequest>> opened = verificationStage.openAll(envelopes,
+                    MessageServiceOuterClass.ClientRequest.getDefaultInstance());
+            if (opened == null || opened.stream().anyMatch(r -> !r.signerId().equals(r.message().getClientId()))) {
+                logger.warn("Request bodies fetched from {} carry an invalid client signature", peerId);
+            } else {
+                fetched = opened;
+            }
+        } catch (ExecutionException e) {
+            logger.info("Fetching request bodies from {} failed: {}", peerId, e.getCause().toString());
+        }
+
+        List<Signed<MessageServiceOuterClass.ClientRequest>> bodies = fetched;
+        executorManager.submitStateTransition(() -> {
+            bodies.forEach(requestStore::put);
+            acceptAwaitingBodies();
+            if (awaitingBodies.containsKey(sequenceNumber)) {
+                executorManager.schedule(
+                        () -> executorManager.submitStateTransition(() -> fetchMissingBodies(sequenceNumber, attempt + 1)),
+                        REQUEST_FETCH_RETRY_MILLIS, TimeUnit.MILLISECONDS);
+            }
+        });
+    }
+
+    /**
+     * Serve a peer's fetch from the local request store. Bodies it no longer holds are read from
+     * the log segments if this replica already executed the batch, on the streaming executor
+     * since that parses the entry out of the mapping; any still missing are simply left out.
+     */
+    public void handleRequestFetch(Signed<MessageServiceOuterClass.RequestFetch> signed,
+                                   Consumer<MessageServiceOuterClass.RequestBodies> respond) {
+        if (!Config.hasServer(signed.signerId())) {
+            logger.warn("Request fetch from {} who is not a replica", signed.signerId());
+            respond.accept(MessageServiceOuterClass.RequestBodies.getDefaultInstance());
+            return;
+        }
+        MessageServiceOuterClass.RequestFetch fetch = signed.message();
+        executorManager.submitStateTransition(() -> {
+            MessageServiceOuterClass.RequestBodies.Builder bodies = MessageServiceOuterClass.RequestBodies.newBuilder();
+            Set<ByteString> missing = new HashSet<>();
+            for (ByteString digest : fetch.getDigestsList()) {
+                Signed<MessageServiceOuterClass.ClientRequest> body = requestStore.get(digest);
+                if (body != null) {
+                    bodies.addRequests(body.envelope());
+                } else {
+                    missing.add(digest);
+                }
+            }
+            long sequenceNumber = fetch.getSequenceNumber();
+            if (missing.isEmpty() || sequenceNumber <= 0 || sequenceNumber > lastExecuted) {
+                respond.accept(bodies.build());
+                return;
+            }
+            executorManager.submitStreamingIO(() -> {
+                try {
+                    MessageServiceOuterClass.CommittedEntry executed = logStore.read(sequenceNumber);
+                    if (executed != null) {
+                        for (MessageServiceOuterClass.SignedMessage request : executed.getRequestsList()) {
+                            if (missing.remove(RequestStore.digestOf(request))) {
+                                bodies.addRequests(request);
+                            }
+                        }
+                    }
+                } catch (IOException e) {
+                    logger.warn("Failed to read seq={} from the log segments for {}: {}", sequenceNumber, signed.signerId(), e.getMessage());
+                }
+                respond.accept(bodies.build());
+            });
+        });
+    }
+
+    private void acceptPrePrepare(MessageServiceOuterClass.PrePrepareMessage prePrepare,
+                                  List<Signed<MessageServiceOuterClass.ClientRequest>> requests) {
+        long sequenceNumber = prePrepare.getSequenceNumber();
+        if (prePrepare.getViewNumber() != views.getViewNumber() || !views.isViewActive() || !log.inWindow(sequenceNumber)) {
+            logger.info("Ignoring PrePrepare v={} seq={} (view {}, window ({}, {}])", prePrepare.getViewNumber(),
+                    sequenceNumber, views.getViewNumber(), log.getLowWatermark(), log.getHighWatermark());
+            return;
+        }
+        ByteString reissued = views.reissuedDigest(sequenceNumber);
+        if (reissued != null && !reissued.equals(prePrepare.getDigest())) {
+            logger.warn("PrePrepare for seq={} in view {} differs from the one its NewView re-issues", sequenceNumber, views.getViewNumber());
+            return;
+        }
+        LogEntry entry = log.getOrCreate(sequenceNumber);
+        if (entry.hasPrePrepare()) {
+            if (entry.getPrePrepare().getViewNumber() == views.getViewNumber()) {
+                if (!entry.getDigest().equals(prePrepare.getDigest())) {
+                    logger.warn("Conflicting PrePrepare for seq={} in view {}", sequenceNumber, views.getViewNumber());
+                }
+                return;
+            }
+            if (isDecided(entry) && !entry.getDigest().equals(prePrepare.getDigest())) {
+                logger.warn("PrePrepare for committed seq={} in view {} names a different batch", sequenceNumber, views.getViewNumber());
+                return;
+            }
+            entry.reissue(prePrepare, requests); // ordered again in this view; a decided batch is only re-voted
+        } else {
+            entry.setPrePrepare(prePrepare, requests);
+        }
+        if (!isDecided(entry)) {
+            entry.setStatus(TransactionStatus.PREPREPARED);
+        }
+        if (reissued == null && !isPrimary()) {
+            primaryMonitor.onOrdered(requests.stream()
+                    .map(request -> requestIdFor(request.message().getClientId(), request.message().getTimestamp()))
+                    .toList(),
+                    requests.stream().mapToInt(request -> request.envelope().getSerializedSize()).sum());
+        }
+
+        MessageServiceOuterClass.PrepareMessage.Builder vote = MessageServiceOuterClass.PrepareMessage.newBuilder()
+                .setViewNumber(views.getViewNumber())
+                .setSequenceNumber(sequenceNumber)
+                .setDigest(prePrepare.getDigest());
+        if (aggregateSignatures) {
+            vote.setAggregateShare(ByteString.copyFrom(auth.signShare(vote.build())));
+        }
+        MessageServiceOuterClass.PrepareMessage prepare = vote.setReplicaId(nodeId).build();
+        afterLogging(Recovery.loggedPrePrepare(prePrepare, requests), () -> {
+            if (primaryIdFor(prePrepare.getViewNumber()).equals(nodeId) && reissued == null) {
+                sender.broadcastPrePrepare(prePrepare); // re-issued ones went out in the NewView stream
+            }
+            if (lease.isEnabled() && !primaryIdFor(prePrepare.getViewNumber()).equals(nodeId)) {
+                views.promiseLeaseUntil(System.nanoTime() + lease.getLeaseNanos()); // the vote is a lease promise
+            }
+            List<String> collectorIds = collectorsFor(prePrepare.getViewNumber(), sequenceNumber);
+            collectorIds.forEach(collectorId -> sendPrepare(collectorId, prepare));
+            fallBackToPrimary(prePrepare.getViewNumber(), sequenceNumber, collectorIds,
+                    prepared -> prepared.getPrepareCertificate() != null, primaryId -> sendPrepare(primaryId, prepare));
+        });
+        advance(entry);
+    }
+
+    private void sendPrepare(String collectorId, MessageServiceOuterClass.PrepareMessage prepare) {
+        if (collectorId.equals(nodeId)) {
+            onPrepare(new Signed<>(prepare, auth.seal(prepare)));
+        } else {
+            sender.sendPrepare(collectorId, prepare);
+        }
+    }
+
+    /**
+     * Rotating collectors: if none of them has sent a certificate for the vote by their deadline,
+     * hand the vote to the primary, which may collect for every sequence number.
+     */
+    private void fallBackToPrimary(long view, long sequenceNumber, List<String> collectorIds,
+                                   Predicate<LogEntry> certified, Consumer<String> vote) {
+        String primaryId = primaryIdFor(view);
+        if (!collectors.isRotating() || collectorIds.contains(primaryId)) {
+            return;
+        }
+        executorManager.schedule(() -> executorManager.submitStateTransition(() -> {
+            LogEntry entry = log.get(sequenceNumber);
+            if (views.getViewNumber() != view || entry == null || entry.getSequenceNumber() != sequenceNumber || certified.test(entry)) {
+                return;
+            }
+            logger.info("No certificate for seq={} from collectors {} within {} ms, voting to primary {}", sequenceNumber,
+                    collectorIds, collectors.getTimeoutMillis(), primaryId);
+            vote.accept(primaryId);
+        }), collectors.getTimeoutMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    private static boolean isDecided(LogEntry entry) {
+        return entry.getStatus() == TransactionStatus.COMMITTED || entry.getStatus() == TransactionStatus.EXECUTED;
+    }
+
+    /**
+     * Append a record to the write-ahead log, then run the step that reveals it to peers.
+     * With sync durability the step waits for the record's group commit and resumes on the state
+     * executor; otherwise it runs straight away and the record reaches disk in the background.
+     */
+    private void afterLogging(MessageServiceOuterClass.WalRecord record, Runnable then) {
+        CompletableFuture<Void> written = wal.append(record);
+        if (wal.getDurability() != WriteAheadLog.Durability.SYNC) {
+            then.run();
+            return;
+        }
+        written.whenComplete((ignored, failure) -> {
+            if (failure != null) {
+                logger.error("Withholding a vote whose {} record could not be logged", record.getRecordCase());
+                return;
+            }
+            executorManager.submitStateTransition(then);
+        });
+    }
+
+    // ================= Prepare (collector) =================
+
+    public void handlePrepare(Signed<MessageServiceOuterClass.PrepareMessage> signed) {
+        MessageServiceOuterClass.PrepareMessage prepare = signed.message();
+        if (!signed.signerId().equals(prepare.getReplicaId())) {
+            logger.warn("Prepare for seq={} signed by {} on behalf of {}", prepare.getSequenceNumber(),
+                    signed.signerId(), prepare.getReplicaId());
+            return;
+        }
+        // A BLS share is not checked here: a pairing per share would cost n pairings per phase, so
+        // the collector checks the aggregate instead (see certifyAggregate)
+        executorManager.submitStateTransition(() -> onPrepare(signed));
+    }
+
+    private void onPrepare(Signed<MessageServiceOuterClass.PrepareMessage> signed) {
+        MessageServiceOuterClass.PrepareMessage prepare = signed.message();
+        long sequenceNumber = prepare.getSequenceNumber();
+        if (prepare.getViewNumber() != views.getViewNumber() || !log.inWindow(sequenceNumber)
+                || !mayCollect(prepare.getViewNumber(), sequenceNumber, nodeId)) {
+            return;
+        }
+        if (isPrimary()) {
+            lease.onGrant(prepare.getReplicaId(), sequenceNumber);
+        }
+        LogEntry entry = log.getOrCreate(sequenceNumber);
+        // Kept after the certificate too: if its aggregate turns out spoiled, late votes replace the bad shares
+        entry.addPrepare(prepare.getViewNumber(), prepare.getReplicaId(), prepare.getDigest(), aggregateSignatures ? prepare.getAggregateShare() : signed.signature());
+        if (entry.isPrepareCertificateSent() || !entry.hasPrePrepare()) {
+            return;
+        }
+        if (!fastPath) {
+            formPrepareCertificate(entry);
+            return;
+        }
+
+        Map<String, ByteString> all = entry.prepareQuorum(getServerCount());
+        if (all != null) {
+            formFastCommitCertificate(entry, all);
+            return;
+        }
+        if (entry.isFastPathPending() || entry.prepareQuorum(quorumCount()) == null) {
+            return;
+        }
+        // A quorum is in: give the stragglers a moment to make it all n before taking the two-phase path
+        entry.markFastPathPending();
+        long view = views.getViewNumber();
+        executorManager.schedule(() -> executorManager.submitStateTransition(() -> {
+            LogEntry pending = log.get(sequenceNumber);
+            if (views.getViewNumber() == view && pending != null && pending.getSequenceNumber() == sequenceNumber) {
+                formPrepareCertificate(pending);
+            }
+        }), fastPathTimeoutMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * SBFT fast path: every replica prepared the same batch, so any quorum of a later view's
+     * ViewChanges has f+1 of them reporting it (see ViewChanges) and the batch is committed
+     * without a commit round. The certificate of all n prepare votes is sent as the commit
+     * certificate, and doubles as the prepare certificate.
+     */
+    private void formFastCommitCertificate(LogEntry entry, Map<String, ByteString> signatures) {
+        long sequenceNumber = entry.getSequenceNumber();
+        MessageServiceOuterClass.CommitCertificate certificate = MessageServiceOuterClass.CommitCertificate.newBuilder()
+                .setCertificate(assembleCertificate(sequenceNumber, entry.getDigest(), signatures))
+                .setFast(true)
+                .build();
+        entry.markPrepareCertificateSent();
+        Runnable send = () -> {
+            entry.markCommitCertificateSent();
+            logger.debug("Formed fast CommitCertificate for seq={} in view {} from all {} prepares", sequenceNumber, views.getViewNumber(), signatures.size());
+            sender.broadcastCommitCertificate(certificate);
+            onCommitCertificate(certificate);
+        };
+        if (!aggregateSignatures) {
+            send.run();
+            return;
+        }
+        // With a bad share among them not all n votes are good: carry on with the two-phase path
+        certifyAggregate(certificate.getCertificate(), signatures, unsignedPrepare(certificate.getCertificate()),
+                send, bad -> {
+                    entry.rejectPrepares(bad);
+                    formPrepareCertificate(entry);
+                });
+    }
+
+    private void formPrepareCertificate(LogEntry entry) {
+        if (entry.isPrepareCertificateSent() || !entry.hasPrePrepare()) {
+            return;
+        }
+        long sequenceNumber = entry.getSequenceNumber();
+        Map<String, ByteString> signatures = entry.prepareQuorum(quorumCount());
+        if (signatures == null) {
+            return;
+        }
+        MessageServiceOuterClass.PrepareCertificate certificate = MessageServiceOuterClass.PrepareCertificate.newBuilder()
+                .setCertificate(assembleCertificate(sequenceNumber, entry.getDigest(), signatures))
+                .build();
+        entry.markPrepareCertificateSent();
+        Runnable send = () -> {
+            logger.debug("Formed PrepareCertificate for seq={} in view {}", sequenceNumber, views.getViewNumber());
+            sender.broadcastPrepareCertificate(certificate);
+            onPrepareCertificate(certificate);
+        };
+        if (!aggregateSignatures) {
+            send.run();
+            return;
+        }
+        certifyAggregate(certificate.getCertificate(), signatures, unsignedPrepare(certificate.getCertificate()),
+                send, bad -> {
+                    entry.rejectPrepares(bad);
+                    formPrepareCertificate(entry);
+                });
+    }
+
+    /**
+     * BLS collector: shares are not checked as they arrive, so check the aggregate they make, one
+     * pairing, on a verification worker before sending the certificate. Only if it fails are the
+     * shares checked one by one, and the bad ones handed to reject to drop and try again. Both
+     * continuations run on the state executor, and only while the slot is still this certificate's.
+     */
+    private void certifyAggregate(MessageServiceOuterClass.QuorumCertificate certificate,
+                                  Map<String, ByteString> shares,
+                                  Message unsigned,
+                                  Runnable send,
+                                  Consumer<List<String>> reject) {
+        executorManager.submitVerification(() -> {
+            boolean valid = auth.verifyAggregate(List.copyOf(shares.keySet()), unsigned,
+                    certificate.getAggregateSignature().toByteArray());
+            List<String> bad = valid ? List.of() : shares.entrySet().stream()
+                    .filter(share -> !auth.verifyShare(share.getKey(), unsigned, share.getValue().toByteArray()))
+                    .map(Map.Entry::getKey)
+                    .toList();
+            executorManager.submitStateTransition(() -> {
+                LogEntry entry = log.get(certificate.getSequenceNumber());
+                if (views.getViewNumber() != certificate.getViewNumber() || entry == null
+                        || entry.getSequenceNumber() != certificate.getSequenceNumber()
+                        || !certificate.getDigest().equals(entry.getDigest())) {
+                    return;
+                }
+                if (valid) {
+                    send.run();
+                } else if (bad.isEmpty()) {
+                    logger.error("Aggregate for seq={} in view {} failed though every share verifies", certificate.getSequenceNumber(), certificate.getViewNumber());
+                } else {
+                    logger.warn("Invalid aggregate shares for seq={} in view {} from {}", certificate.getSequenceNumber(), certificate.getViewNumber(), bad);
+                    reject.accept(bad);
+                }
+            });
+        });
+    }
+
+    // The common message behind the prepare shares of a certificate
+    private static MessageServiceOuterClass.PrepareMessage unsignedPrepare(MessageServiceOuterClass.QuorumCertificate certificate) {
+        return MessageServiceOuterClass.PrepareMessage.newBuilder()
+                .setViewNumber(certificate.getViewNumber())
+                .setSequenceNumber(certificate.getSequenceNumber())
+                .setDigest(certificate.getDigest())
+                .build();
+    }
+
+    private MessageServiceOuterClass.QuorumCertificate assembleCertificate(long sequenceNumber,
+                                                                           ByteString digest,
+                                                                           Map<String, ByteString> signatures) {
+        return aggregateSignatures
+                ? QuorumCertificates.assembleAggregate(views.getViewNumber(), sequenceNumber, digest, signatures)
+                : QuorumCertificates.assemble(views.getViewNumber(), sequenceNumber, digest, signatures);
+    }
+
+    // ================= Prepared =================
+
+    public void handlePrepareCertificate(Signed<MessageServiceOuterClass.PrepareCertificate> signed) {
+        MessageServiceOuterClass.PrepareCertificate prepared = signed.message();
+        MessageServiceOuterClass.QuorumCertificate certificate = prepared.getCertificate();
+        if (!mayCollect(certificate.getViewNumber(), certificate.getSequenceNumber(), signed.signerId())) {
+            logger.warn("PrepareCertificate for seq={} from {} who is not the collector", certificate.getSequenceNumber(), signed.signerId());
+            return;
+        }
+        if (!verifyPrepareCertificate(certificate)) {
+            logger.warn("Invalid PrepareCertificate for seq={} from {}", certificate.getSequenceNumber(), signed.signerId());
+            return;
+        }
+        executorManager.submitStateTransition(() -> onPrepareCertificate(prepared));
+    }
+
+    private boolean verifyPrepareCertificate(MessageServiceOuterClass.QuorumCertificate certificate) {
+        return certificateVerifier.verify(certificate, quorumCount(),
+                replicaId -> MessageServiceOuterClass.PrepareMessage.newBuilder()
+                        .setViewNumber(certificate.getViewNumber())
+                        .setSequenceNumber(certificate.getSequenceNumber())
+                        .setDigest(certificate.getDigest())
+                        .setReplicaId(replicaId)
+                        .build());
+    }
+
+    private void onPrepareCertificate(MessageServiceOuterClass.PrepareCertificate prepared) {
+        MessageServiceOuterClass.QuorumCertificate certificate = prepared.getCertificate();
+        if (certificate.getViewNumber() != views.getViewNumber() || !log.inWindow(certificate.getSequenceNumber())) {
+            return;
+        }
+        LogEntry entry = log.getOrCreate(certificate.getSequenceNumber());
+        if (entry.getPrepareCertificate() == null) {
+            entry.setPrepareCertificate(prepared);
+            grantLease(certificate);
+            advance(entry);
+        }
+    }
+
+    /**
+     * Primary: every prepare vote in a certificate is a lease promise, whichever collector it went to.
+     */
+    private void grantLease(MessageServiceOuterClass.QuorumCertificate certificate) {
+        if (lease.isEnabled() && isPrimary()) {
+            QuorumCertificates.signers(certificate).forEach(replicaId -> lease.onGrant(replicaId, certificate.getSequenceNumber()));
+        }
+    }
+
+    // ================= Commit (collector) =================
+
+    public void handleCommit(Signed<MessageServiceOuterClass.CommitMessage> signed) {
+        MessageServiceOuterClass.CommitMessage commit = signed.message();
+        if (!signed.signerId().equals(commit.getReplicaId())) {
+            logger.warn("Commit for seq={} signed by {} on behalf of {}", commit.getSequenceNumber(),
+                    signed.signerId(), commit.getReplicaId());
+            return;
+        }
+        executorManager.submitStateTransition(() -> onCommit(signed));
+    }
+
+    private void onCommit(Signed<MessageServiceOuterClass.CommitMessage> signed) {
+        MessageServiceOuterClass.CommitMessage commit = signed.message();
+        long sequenceNumber = commit.getSequenceNumber();
+        if (commit.getViewNumber() != views.getViewNumber() || !log.inWindow(sequenceNumber)
+                || !mayCollect(commit.getViewNumber(), sequenceNumber, nodeId)) {
+            return;
+        }
+        LogEntry entry = log.getOrCreate(sequenceNumber);
+        entry.addCommit(commit.getViewNumber(), commit.getReplicaId(), commit.getDigest(), aggregateSignatures ? commit.getAggregateShare() : signed.signature());
+        formCommitCertificate(entry);
+    }
+
+    private void formCommitCertificate(LogEntry entry) {
+        if (entry.isCommitCertificateSent() || !entry.hasPrePrepare()) {
+            return;
+        }
+        long sequenceNumber = entry.getSequenceNumber();
+        Map<String, ByteString> signatures = entry.commitQuorum(quorumCount());
+        if (signatures == null) {
+            return;
+        }
+        MessageServiceOuterClass.CommitCertificate certificate = MessageServiceOuterClass.CommitCertificate.newBuilder()
+                .setCertificate(assembleCertificate(sequenceNumber, entry.getDigest(), signatures))
                 .build();
-        sender.sendClientReply(clientId, reply);
+        entry.markCommitCertificateSent();
+        Runnable send = () -> {
+            logger.debug("Formed CommitCertificate for seq={} in view {}", sequenceNumber, views.getViewNumber());
+            sender.broadcastCommitCertificate(certificate);
+            onCommitCertificate(certificate);
+        };
+        if (!aggregateSignatures) {
+            send.run();
+            return;
+        }
+        MessageServiceOuterClass.QuorumCertificate aggregate = certificate.getCertificate();
+        certifyAggregate(aggregate, signatures,
+                MessageServiceOuterClass.CommitMessage.newBuilder()
+                        .setViewNumber(aggregate.getViewNumber())
+                        .setSequenceNumber(aggregate.getSequenceNumber())
+                        .setDigest(aggregate.getDigest())
+                        .build(),
+                send, bad -> {
+                    entry.rejectCommits(bad);
+                    formCommitCertificate(entry);
+                });
+    }
+
+    // ================= Committed =================
+
+    public void handleCommitCertificate(Signed<MessageServiceOuterClass.CommitCertificate> signed) {
+        MessageServiceOuterClass.CommitCertificate committed = signed.message();
+        MessageServiceOuterClass.QuorumCertificate certificate = committed.getCertificate();
+        if (!mayCollect(certificate.getViewNumber(), certificate.getSequenceNumber(), signed.signerId())) {
+            logger.warn("CommitCertificate for seq={} from {} who is not the collector", certificate.getSequenceNumber(), signed.signerId());
+            return;
+        }
+        if (!verifyCommitCertificate(committed)) {
+            logger.warn("Invalid CommitCertificate for seq={} from {}", certificate.getSequenceNumber(), signed.signerId());
+            return;
+        }
+        executorManager.submitStateTransition(() -> onCommitCertificate(committed));
+    }
+
+    private boolean verifyCommitCertificate(MessageServiceOuterClass.CommitCertificate committed) {
+        MessageServiceOuterClass.QuorumCertificate certificate = committed.getCertificate();
+        if (committed.getFast()) {
+            return certificateVerifier.verify(certificate, getServerCount(),
+                    replicaId -> MessageServiceOuterClass.PrepareMessage.newBuilder()
+                            .setViewNumber(certificate.getViewNumber())
+                            .setSequenceNumber(certificate.getSequenceNumber())
+                            .setDigest(certificate.getDigest())
+                            .setReplicaId(replicaId)
+                            .build());
+        }
+        return certificateVerifier.verify(certificate, quorumCount(),
+                replicaId -> MessageServiceOuterClass.CommitMessage.newBuilder()
+                        .setViewNumber(certificate.getViewNumber())
+                        .setSequenceNumber(certificate.getSequenceNumber())
+                        .setDigest(certificate.getDigest())
+                        .setReplicaId(replicaId)
+                        .build());
+    }
+
+    private void onCommitCertificate(MessageServiceOuterClass.CommitCertificate committed) {
+        MessageServiceOuterClass.QuorumCertificate certificate = committed.getCertificate();
+        if (certificate.getViewNumber() != views.getViewNumber() || !log.inWindow(certificate.getSequenceNumber())) {
+            return;
+        }
+        LogEntry entry = log.getOrCreate(certificate.getSequenceNumber());
+        if (entry.getCommitCertificate() == null) {
+            entry.setCommitCertificate(committed);
+            if (committed.getFast() && entry.getPrepareCertificate() == null) {
+                entry.setPrepareCertificate(MessageServiceOuterClass.PrepareCertificate.newBuilder().setCertificate(certificate).build());
+                grantLease(certificate);
+            }
+            advance(entry);
+        }
+    }
+
+    // ================= Phase transitions and execution =================
+
+    /**
+     * Move an entry through PREPARED and COMMITTED as far as the certificates it holds allow.
+     * Certificates may arrive before the PrePrepare, so they are parked on the entry until it does.
+     * A batch already decided in an earlier view is re-voted in the new one, so replicas that had
+     * not committed it can, but its status stays where it is.
+     */
+    private void advance(LogEntry entry) {
+        MessageServiceOuterClass.PrepareCertificate prepared = entry.getPrepareCertificate();
+        if (entry.hasPrePrepare() && prepared != null && !entry.isCommitVoteSent()
+                && prepared.getCertificate().getViewNumber() == entry.getPrePrepare().getViewNumber()) {
+            if (!prepared.getCertificate().getDigest().equals(entry.getDigest())) {
+                logger.warn("PrepareCertificate for seq={} does not match the accepted PrePrepare", entry.getSequenceNumber());
+                entry.setPrepareCertificate(null);
+                return;
+            }
+            entry.markCommitVoteSent();
+            if (entry.getStatus() == TransactionStatus.PREPREPARED) {
+                entry.setStatus(TransactionStatus.PREPARED);
+            }
+            if (!isFastCommitted(entry)) { // all n prepared: the certificate already commits it
+                sendCommitVote(entry);
+                executeTentatively();
+            }
+        }
+        if (entry.getStatus() == TransactionStatus.PREPARED && entry.getCommitCertificate() != null) {
+            if (!entry.getCommitCertificate().getCertificate().getDigest().equals(entry.getDigest())) {
+                logger.warn("CommitCertificate for seq={} does not match the accepted PrePrepare", entry.getSequenceNumber());
+                entry.setCommitCertificate(null);
+                return;
+            }
+            entry.setStatus(TransactionStatus.COMMITTED);
+            afterLogging(MessageServiceOuterClass.WalRecord.newBuilder().setCommitCertificate(entry.getCommitCertificate()).build(),
+                    this::executeCommitted);
+        }
+    }
+
+    private void sendCommitVote(LogEntry entry) {
+        MessageServiceOuterClass.CommitMessage.Builder vote = MessageServiceOuterClass.CommitMessage.newBuilder()
+                .setViewNumber(views.getViewNumber())
+                .setSequenceNumber(entry.getSequenceNumber())
+                .setDigest(entry.getDigest());
+        if (aggregateSignatures) {
+            vote.setAggregateShare(ByteString.copyFrom(auth.signShare(vote.build())));
+        }
+        MessageServiceOuterClass.CommitMessage commit = vote.setReplicaId(nodeId).build();
+        long view = views.getViewNumber();
+        long sequenceNumber = entry.getSequenceNumber();
+        List<String> collectorIds = collectorsFor(view, sequenceNumber);
+        afterLogging(MessageServiceOuterClass.WalRecord.newBuilder().setPrepareCertificate(entry.getPrepareCertificate()).build(), () -> {
+            collectorIds.forEach(collectorId -> sendCommit(collectorId, commit));
+            fallBackToPrimary(view, sequenceNumber, collectorIds,
+                    committed -> committed.getCommitCertificate() != null, primaryId -> sendCommit(primaryId, commit));
+        });
+    }
+
+    private void sendCommit(String collectorId, MessageServiceOuterClass.CommitMessage commit) {
+        if (collectorId.equals(nodeId)) {
+            onCommit(new Signed<>(commit, auth.seal(commit)));
+        } else {
+            sender.sendCommit(collectorId, commit);
+        }
+    }
+
+    // Committed by a fast certificate from the view of its current PrePrepare
+    private static boolean isFastCommitted(LogEntry entry) {
+        MessageServiceOuterClass.CommitCertificate committed = entry.getCommitCertificate();
+        return committed != null && committed.getFast()
+                && committed.getCertificate().getViewNumber() == entry.getPrePrepare().getViewNumber();
+    }
+
+    /**
+     * Execute committed entries strictly in sequence order, taking a checkpoint at every
+     * interval. The window itself only slides once a checkpoint becomes stable.
+     */
+    private void executeCommitted() {
+        LogEntry next;
+        while ((next = log.get(lastExecuted + 1)) != null && next.getStatus() == TransactionStatus.COMMITTED) {
+            execute(next);
+            next.setStatus(TransactionStatus.EXECUTED);
+            lastExecuted++;
+            try {
+                logStore.append(committedEntryOf(next));
+            } catch (IOException e) {
+                logger.error("Failed to store executed seq={} : {}", lastExecuted, e.getMessage());
+            }
+            batchController.onCommitted(lastExecuted, pendingBatches.size());
+            if (checkpoints.isCheckpoint(lastExecuted)) {
+                takeCheckpoint(lastExecuted);
+            }
+        }
+        MessageServiceOuterClass.CheckpointCertificate pending = checkpoints.takePending(lastExecuted);
+        if (pending != null) {
+            onCheckpointCertificate(pending);
+        }
+        executeTentatively();
+    }
+
+    /**
+     * Execute prepared entries ahead of their commit, in sequence order right after the committed
+     * ones, and send the clients tentative replies: 2f+1 matching ones are as good as committed
+     * replies unless a view change intervenes, saving the client the commit phase. A view change
+     * undoes them (see ViewChangeCallbacks.onViewLeft). They never run past the next checkpoint,
+     * so checkpoints always snapshot committed state only.
+     */
+    private void executeTentatively() {
+        if (!tentativeExecution || !views.isViewActive() || replaying) {
+            return;
+        }
+        long frontier = tentative.frontier(lastExecuted);
+        if (frontier > lastExecuted && checkpoints.isCheckpoint(frontier)) {
+            return;
+        }
+        LogEntry next;
+        while ((next = log.get(frontier + 1)) != null
+                && (next.getStatus() == TransactionStatus.PREPARED || next.getStatus() == TransactionStatus.COMMITTED)) {
+            long sequenceNumber = ++frontier;
+            tentative.begin(sequenceNumber);
+            for (Signed<MessageServiceOuterClass.ClientRequest> request : next.getRequests()) {
+                MessageServiceOuterClass.ClientReply reply = apply(sequenceNumber, request.message(), true);
+                if (reply != null) {
+                    tentative.addReply(sequenceNumber, reply);
+                    sender.sendClientReply(reply.getClientId(), reply);
+                }
+            }
+            if (checkpoints.isCheckpoint(sequenceNumber)) {
+                break;
+            }
+        }
+    }
+
+    // ================= Checkpoints =================
+
+    private void takeCheckpoint(long sequenceNumber) {
+        MessageServiceOuterClass.StateSnapshot snapshot = snapshotState(sequenceNumber);
+        checkpoints.recordOwn(snapshot);
+        if (replaying) {
+            return; // kept for when its certificate arrives; the vote went out before the restart
+        }
+
+        MessageServiceOuterClass.CheckpointMessage checkpoint = MessageServiceOuterClass.CheckpointMessage.newBuilder()
+                .setSequenceNumber(sequenceNumber)
+                .setStateDigest(Checkpoints.stateDigest(snapshot))
+                .setReplicaId(nodeId)
+                .build();
+        logger.info("Checkpoint at seq={}", sequenceNumber);
+        String collectorId = primaryIdFor(views.getViewNumber()); // one vote per interval: not worth spreading
+        if (collectorId.equals(nodeId)) {
+            onCheckpoint(new Signed<>(checkpoint, auth.seal(checkpoint)));
+        } else {
+            sender.sendCheckpoint(collectorId, checkpoint);
+        }
+    }
+
+    // Balances and last execution per client, sorted so every correct replica gets the same bytes
+    private MessageServiceOuterClass.StateSnapshot snapshotState(long sequenceNumber) {
+        MessageServiceOuterClass.StateSnapshot.Builder snapshot = MessageServiceOuterClass.StateSnapshot.newBuilder()
+                .setSequenceNumber(sequenceNumber);
+        clientState.getClientState().forEach((accountId, balance) -> snapshot.addBalances(
+                MessageServiceOuterClass.AccountBalance.newBuilder().setAccountId(accountId).setBalance(balance)));
+        new TreeMap<>(lastReplies).forEach((clientId, reply) -> snapshot.addLastExecutions(
+                MessageServiceOuterClass.ClientExecution.newBuilder()
+                        .setClientId(clientId)
+                        .setTimestamp(reply.getTimestamp())
+                        .setResult(reply.getResult())));
+        return snapshot.build();
+    }
+
+    public void handleCheckpoint(Signed<MessageServiceOuterClass.CheckpointMessage> signed) {
+        MessageServiceOuterClass.CheckpointMessage checkpoint = signed.message();
+        if (!signed.signerId().equals(checkpoint.getReplicaId())) {
+            logger.warn("Checkpoint for seq={} signed by {} on behalf of {}", checkpoint.getSequenceNumber(),
+                    signed.signerId(), checkpoint.getReplicaId());
+            return;
+        }
+        executorManager.submitStateTransition(() -> onCheckpoint(signed));
+    }
+
+    private void onCheckpoint(Signed<MessageServiceOuterClass.CheckpointMessage> signed) {
+        long sequenceNumber = signed.message().getSequenceNumber();
+        if (sequenceNumber <= checkpoints.getStableSequenceNumber() || !checkpoints.isCheckpoint(sequenceNumber)
+                || !isPrimary()) {
+            return;
+        }
+        List<Signed<MessageServiceOuterClass.CheckpointMessage>> matching = checkpoints.addVote(signed);
+        if (matching.size() < quorumCount() || !checkpoints.markCertificateSent(sequenceNumber)) {
+            return;
+        }
+        Map<String, ByteString> signatures = new LinkedHashMap<>();
+        for (Signed<MessageServiceOuterClass.CheckpointMessage> vote : matching.subList(0, quorumCount())) {
+            signatures.put(vote.message().getReplicaId(), vote.signature());
+        }
+        MessageServiceOuterClass.CheckpointCertificate certificate = MessageServiceOuterClass.CheckpointCertificate.newBuilder()
+                .setCertificate(QuorumCertificates.assemble(0L, sequenceNumber, signed.message().getStateDigest(), signatures))
+                .build();
+        logger.info("Formed CheckpointCertificate for seq={}", sequenceNumber);
+
+        sender.broadcastCheckpointCertificate(certificate);
+        onCheckpointCertificate(certificate);
+    }
+
+    public void handleCheckpointCertificate(Signed<MessageServiceOuterClass.CheckpointCertificate> signed) {
+        MessageServiceOuterClass.QuorumCertificate certificate = signed.message().getCertificate();
+        if (!verifyCheckpointCertificate(certificate)) {
+            logger.warn("Invalid CheckpointCertificate for seq={} from {}", certificate.getSequenceNumber(), signed.signerId());
+            return;
+        }
+        executorManager.submitStateTransition(() -> onCheckpointCertificate(signed.message()));
+    }
+
+    private boolean verifyCheckpointCertificate(MessageServiceOuterClass.QuorumCertificate certificate) {
+        // Checkpoint votes are always Ed25519-signed, so their certificates never carry a BLS aggregate
+        return certificate.getAggregateSignature().isEmpty()
+                && certificateVerifier.verify(certificate, quorumCount(),
+                replicaId -> MessageServiceOuterClass.CheckpointMessage.newBuilder()
+                        .setSequenceNumber(certificate.getSequenceNumber())
+                        .setStateDigest(certificate.getDigest())
+                        .setReplicaId(replicaId)
+                        .build());
+    }
+
+    private void onCheckpointCertificate(MessageServiceOuterClass.CheckpointCertificate checkpointed) {
+        MessageServiceOuterClass.QuorumCertificate certificate = checkpointed.getCertificate();
+        long sequenceNumber = certificate.getSequenceNumber();
+        if (sequenceNumber <= checkpoints.getStableSequenceNumber()) {
+            return;
+        }
+        if (sequenceNumber > lastExecuted) {
+            checkpoints.setPending(checkpointed);
+            executorManager.schedule(() -> executorManager.submitStateTransition(() -> {
+                if (lastExecuted < sequenceNumber) {
+                    logger.info("Still at seq={} while seq={} is stable elsewhere, transferring state", lastExecuted, sequenceNumber);
+                    startStateTransfer();
+                }
+            }), STATE_TRANSFER_GRACE_MILLIS, TimeUnit.MILLISECONDS);
+            return;
+        }
+        MessageServiceOuterClass.StateSnapshot own = checkpoints.getOwn(sequenceNumber);
+        if (own == null || !Checkpoints.stateDigest(own).equals(certificate.getDigest())) {
+            logger.error("Stable checkpoint at seq={} does not match the local state", sequenceNumber);
+            return;
+        }
+        checkpoints.stabilize(checkpointed, own);
+        log.truncateThrough(sequenceNumber);
+        lease.forgetThrough(sequenceNumber);
+        rotateWriteAheadLog(checkpointed, own);
+        commLogger.truncate();
+        try {
+            logStore.deleteThrough(sequenceNumber);
+        } catch (IOException e) {
+            logger.warn("Failed to delete log segments at or below seq={} : {}", sequenceNumber, e.getMessage());
+        }
+        logger.info("Checkpoint at seq={} is stable, window now ({}, {}]", sequenceNumber,
+                log.getLowWatermark(), log.getHighWatermark());
+        if (isPrimary()) {
+            assignSequenceNumbers();
+        }
+    }
+
+    /**
+     * Start a write-ahead log generation at a new stable checkpoint, carrying over everything
+     * logged for the entries still in the window, and the view this replica is in or asking for,
+     * so the older generations can go.
+     */
+    private void rotateWriteAheadLog(MessageServiceOuterClass.CheckpointCertificate checkpointed,
+                                     MessageServiceOuterClass.StateSnapshot snapshot) {
+        List<MessageServiceOuterClass.WalRecord> base = new ArrayList<>();
+        base.add(MessageServiceOuterClass.WalRecord.newBuilder()
+                .setCheckpoint(MessageServiceOuterClass.StableCheckpoint.newBuilder()
+                        .setCertificate(checkpointed)
+                        .setSnapshot(snapshot))
+                .build());
+        for (long seq = log.getLowWatermark() + 1; seq <= log.getHighWatermark(); seq++) {
+            LogEntry entry = log.get(seq);
+            if (entry == null) {
+                continue;
+            }
+            if (entry.hasPrePrepare()) {
+                base.add(Recovery.loggedPrePrepare(entry.getPrePrepare(), entry.getRequests()));
+            }
+            if (entry.getPrepareCertificate() != null) {
+                base.add(MessageServiceOuterClass.WalRecord.newBuilder().setPrepareCertificate(entry.getPrepareCertificate()).build());
+            }
+            if (entry.getCommitCertificate() != null) {
+                base.add(MessageServiceOuterClass.WalRecord.newBuilder().setCommitCertificate(entry.getCommitCertificate()).build());
+            }
+        }
+        base.addAll(views.walRecords());
+        wal.rotate(snapshot.getSequenceNumber(), base);
+    }
+
+    // ================= View change =================
+
+    public void handleViewChange(Signed<MessageServiceOuterClass.ViewChangeMessage> signed) {
+        views.handleViewChange(signed);
+    }
+
+    public boolean handleNewView(Signed<MessageServiceOuterClass.NewViewMessage> signed) {
+        return views.handleNewView(signed);
+    }
+
+    /**
+     * The replica as the view change protocol sees it (see ViewChangeCoordinator).
+     */
+    private final class ViewChangeCallbacks implements ViewChangeCoordinator.Replica {
+
+        @Override
+        public String primaryIdFor(long viewNumber) {
+            return ServerNode.this.primaryIdFor(viewNumber);
+        }
+
+        @Override
+        public boolean isActive() {
+            return sender.isActive();
+        }
+
+        @Override
+        public boolean hasExecuted(MessageServiceOuterClass.ClientRequest request) {
+            MessageServiceOuterClass.ClientReply reply = lastReplies.get(request.getClientId());
+            return reply != null && reply.getTimestamp() >= request.getTimestamp();
+        }
+
+        @Override
+        public void afterLogging(MessageServiceOuterClass.WalRecord record, Runnable then) {
+            ServerNode.this.afterLogging(record, then);
+        }
+
+        @Override
+        public boolean verifyCheckpointCertificate(MessageServiceOuterClass.QuorumCertificate certificate) {
+            return ServerNode.this.verifyCheckpointCertificate(certificate);
+        }
+
+        @Override
+        public boolean verifyPrepareCertificate(MessageServiceOuterClass.QuorumCertificate certificate) {
+            return ServerNode.this.verifyPrepareCertificate(certificate);
+        }
+
+        @Override
+        public boolean verifyCommitCertificate(MessageServiceOuterClass.CommitCertificate certificate) {
+            return ServerNode.this.verifyCommitCertificate(certificate);
+        }
+
+        // Whatever the primary had assigned but not yet ordered is either re-issued or retransmitted by its clients
+        @Override
+        public void onViewLeft() {
+            pendingBatches.clear();
+            orderedRequestIds.clear();
+            awaitingBodies.clear();
+            batchController.reset();
+            lease.reset();
+            leaseRenewalSequenceNumber = 0L;
+            int undone = tentative.rollback();
+            if (undone > 0) {
+                logger.info("Rolled back {} tentatively executed batches above seq={}", undone, lastExecuted);
+            }
+        }
+
+        @Override
+        public void onViewInstalled(ViewChanges.NewView newView) {
+            if (newView.checkpoint() != null) {
+                onCheckpointCertificate(newView.checkpoint());
+            }
+        }
+
+        @Override
+        public void reissue(ViewChanges.NewView newView) {
+            for (MessageServiceOuterClass.PrePrepareMessage prePrepare : newView.prePrepares()) {
+                executorManager.submitVerification(() -> admitPrePrepare(prePrepare));
+            }
+            nextSequenceNumber = Math.max(newView.maxSequenceNumber(), lastExecuted) + 1;
+            assignSequenceNumbers();
+        }
+    }
+
+    // ================= State transfer =================
+
+    /**
+     * Serve a lagging peer: the latest stable checkpoint (header, then snapshot chunks from where
+     * the peer left off) followed by every entry executed above what it has executed. The checkpoint
+     * is captured on the state executor; the streaming executor sends it and reads the executed
+     * entries out of the log segments.
+     */
+    public void handleStateTransfer(Signed<MessageServiceOuterClass.StateTransferRequest> signed,
+                                    PacedStreamObserver<MessageServiceOuterClass.StateTransferChunk> stream) {
+        if (!Config.hasServer(signed.signerId())) {
+            logger.warn("State transfer request from {} who is not a replica", signed.signerId());
+            stream.fail(Status.PERMISSION_DENIED.asRuntimeException());
+            return;
+        }
+        MessageServiceOuterClass.StateTransferRequest request = signed.message();
+        executorManager.submitStateTransition(() -> {
+            MessageServiceOuterClass.CheckpointCertificate checkpoint = checkpoints.getStableCertificate();
+            MessageServiceOuterClass.StateSnapshot snapshot = checkpoints.getStableSnapshot();
+            long stable = checkpoints.getStableSequenceNumber();
+            long from = Math.max(stable, request.getLastExecuted());
+            long through = lastExecuted;
+            executorManager.submitStreamingIO(() -> streamState(signed.signerId(), request, checkpoint, snapshot, from, through, stream));
+        });
+    }
+
+    private static MessageServiceOuterClass.CommittedEntry committedEntryOf(LogEntry entry) {
+        return MessageServiceOuterClass.CommittedEntry.newBuilder()
+                .setPrePrepare(entry.getPrePrepare())
+                .setCommitCertificate(entry.getCommitCertificate())
+                .addAllRequests(entry.getRequests().stream().map(Signed::envelope).toList())
+                .build();
+    }
+
+    private void streamState(String peerId,
+                             MessageServiceOuterClass.StateTransferRequest request,
+                             MessageServiceOuterClass.CheckpointCertificate checkpoint,
+                             MessageServiceOuterClass.StateSnapshot snapshot,
+                             long from,
+                             long through,
+                             PacedStreamObserver<MessageServiceOuterClass.StateTransferChunk> stream) {
+        try {
+            MessageServiceOuterClass.StateTransferHeader.Builder header = MessageServiceOuterClass.StateTransferHeader.newBuilder();
+            ByteString serialized = ByteString.EMPTY;
+            int fromChunk = 0;
+            if (checkpoint != null) {
+                header.setCheckpoint(checkpoint);
+                if (request.getLastExecuted() < checkpoint.getCertificate().getSequenceNumber()) {
+                    serialized = snapshot.toByteString();
+                    header.addAllChunkDigests(Checkpoints.chunkDigests(serialized));
+                    if (request.getCheckpointSequenceNumber() == checkpoint.getCertificate().getSequenceNumber()) {
+                        fromChunk = request.getFromChunk();
+                    }
+                }
+            }
+            if (!stream.send(MessageServiceOuterClass.StateTransferChunk.newBuilder().setHeader(header).build())) {
+                return;
+            }
+            int chunkCount = header.getChunkDigestsCount();
+            for (int index = Math.max(0, fromChunk); index < chunkCount; index++) {
+                MessageServiceOuterClass.SnapshotChunk chunk = MessageServiceOuterClass.SnapshotChunk.newBuilder()
+                        .setIndex(index)
+                        .setData(Checkpoints.chunk(serialized, index))
+                        .build();
+                if (!stream.send(MessageServiceOuterClass.StateTransferChunk.newBuilder().setSnapshotChunk(chunk).build())) {
+                    return;
+                }
+            }
+            long sent = 0;
+            for (long seq = from + 1; seq <= through; seq++) {
+                MessageServiceOuterClass.CommittedEntry entry = logStore.read(seq);
+                if (entry == null) {
+                    break; // its segment went with a newer stable checkpoint; the peer will ask again
+                }
+                if (!stream.send(MessageServiceOuterClass.StateTransferChunk.newBuilder().setCommittedEntry(entry).build())) {
+                    return;
+                }
+                sent++;
+            }
+            stream.complete();
+            logger.info("Transferred state to {}: {} snapshot chunks from chunk {}, {} committed entries",
+                    peerId, Math.max(0, chunkCount - fromChunk), fromChunk, sent);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            stream.fail(Status.CANCELLED.asRuntimeException());
+        } catch (IOException | RuntimeException e) {
+            logger.warn("State transfer to {} failed", peerId, e);
+            stream.fail(Status.INTERNAL.asRuntimeException());
+        }
+    }
+
+    /**
+     * Catch up from peers unless a transfer is already running. Called on the state executor.
+     */
+    private void startStateTransfer() {
+        if (!stateTransferRunning.compareAndSet(false, true)) {
+            return;
+        }
+        long executed = lastExecuted;
+        executorManager.submitStreamingIO(() -> {
+            try {
+                transferState(executed);
+            } finally {
+                stateTransferRunning.set(false);
+            }
+        });
+    }
+
+    /**
+     * Receive state from one peer after another until a stream completes. Snapshot chunks
+     * received before an interruption are kept, and the next request resumes after them.
+     */
+    private void transferState(long executed) {
+        List<String> peers = new ArrayList<>(Config.getServerIdsExcept(nodeId));
+        peers.sort(null);
+        for (String peerId : peers) {
+            MessageServiceOuterClass.StateTransferRequest request = MessageServiceOuterClass.StateTransferRequest.newBuilder()
+                    .setLastExecuted(executed)
+                    .setCheckpointSequenceNumber(stateTransfer.getSequenceNumber())
+                    .setFromChunk(stateTransfer.nextMissingChunk())
+                    .build();
+            try {
+                if (receiveState(peerId, sender.transferState(peerId, request))) {
+                    return;
+                }
+            } catch (StatusRuntimeException e) {
+                logger.info("State transfer from {} interrupted ({}), resuming elsewhere", peerId, e.getStatus());
+            }
+        }
+        logger.warn("State transfer failed with every peer");
+    }
+
+    /**
+     * @return true if the stream completed and everything in it checked out
+     */
+    private boolean receiveState(String peerId, Iterator<MessageServiceOuterClass.StateTransferChunk> stream) {
+        boolean headerSeen = false;
+        while (stream.hasNext()) {
+            MessageServiceOuterClass.StateTransferChunk chunk = stream.next();
+            switch (chunk.getPartCase()) {
+                case HEADER -> {
+                    MessageServiceOuterClass.StateTransferHeader header = chunk.getHeader();
+                    if (header.getChunkDigestsCount() > 0 && (!verifyCheckpointCertificate(header.getCheckpoint().getCertificate())
+                            || !stateTransfer.begin(header.getCheckpoint(), header.getChunkDigestsList()))) {
+                        logger.warn("State transfer header from {} does not match its checkpoint certificate", peerId);
+                        return false;
+                    }
+                    headerSeen = true;
+                }
+                case SNAPSHOT_CHUNK -> {
+                    if (!headerSeen || !stateTransfer.accept(chunk.getSnapshotChunk())) {
+                        logger.warn("Snapshot chunk {} from {} does not match the checkpoint digest", chunk.getSnapshotChunk().getIndex(), peerId);
+                        return false;
+                    }
+                    if (stateTransfer.isComplete() && !installTransferredSnapshot(peerId)) {
+                        return false;
+                    }
+                }
+                case COMMITTED_ENTRY -> {
+                    if (!headerSeen || !installTransferredEntry(peerId, chunk.getCommittedEntry())) {
+                        return false;
+                    }
+                }
+                default -> {
+                    return false;
+                }
+            }
+        }
+        return headerSeen;
+    }
+
+    private boolean installTransferredSnapshot(String peerId) {
+        MessageServiceOuterClass.CheckpointCertificate checkpoint = stateTransfer.getCheckpoint();
+        MessageServiceOuterClass.StateSnapshot snapshot;
+        try {
+            snapshot = stateTransfer.assemble();
+        } catch (InvalidProtocolBufferException e) {
+            logger.warn("Snapshot from {} does not parse", peerId);
+            stateTransfer.clear();
+            return false;
+        }
+        stateTransfer.clear();
+        if (snapshot.getSequenceNumber() != checkpoint.getCertificate().getSequenceNumber()) {
+            logger.warn("Snapshot from {} is for seq={}, not the certified seq={}", peerId,
+                    snapshot.getSequenceNumber(), checkpoint.getCertificate().getSequenceNumber());
+            return false;
+        }
+        executorManager.submitStateTransition(() -> installSnapshot(checkpoint, snapshot));
+        return true;
+    }
+
+    private void installSnapshot(MessageServiceOuterClass.CheckpointCertificate checkpoint,
+                                 MessageServiceOuterClass.StateSnapshot snapshot) {
+        long sequenceNumber = snapshot.getSequenceNumber();
+        if (sequenceNumber <= lastExecuted) {
+            return; // caught up by other means in the meantime
+        }
+        restoreSnapshot(snapshot);
+        checkpoints.recordOwn(snapshot);
+        logger.info("Installed transferred snapshot at seq={}", sequenceNumber);
+        onCheckpointCertificate(checkpoint);
+        executeCommitted();
+    }
+
+    private void restoreSnapshot(MessageServiceOuterClass.StateSnapshot snapshot) {
+        Map<String, Double> balances = new HashMap<>();
+        snapshot.getBalancesList().forEach(balance -> balances.put(balance.getAccountId(), balance.getBalance()));
+        clientState.restore(balances);
+        tentative.clear();
+        lastReplies.clear();
+        for (MessageServiceOuterClass.ClientExecution execution : snapshot.getLastExecutionsList()) {
+            lastReplies.put(execution.getClientId(), MessageServiceOuterClass.ClientReply.newBuilder()
+                    .setViewNumber(views.getViewNumber())
+                    .setTimestamp(execution.getTimestamp())
+                    .setClientId(execution.getClientId())
+                    .setServerId(nodeId)
+                    .setResult(execution.getResult())
+                    .build());
+        }
+        lastExecuted = snapshot.getSequenceNumber();
+        nextSequenceNumber = Math.max(nextSequenceNumber, lastExecuted + 1);
+    }
+
+    // Runs on the transfer thread: a committed entry is proven by its commit certificate alone
+    private boolean installTransferredEntry(String peerId, MessageServiceOuterClass.CommittedEntry committed) {
+        MessageServiceOuterClass.PrePrepareMessage prePrepare = committed.getPrePrepare();
+        MessageServiceOuterClass.QuorumCertificate certificate = committed.getCommitCertificate().getCertificate();
+        if (certificate.getSequenceNumber() != prePrepare.getSequenceNumber()
+                || !certificate.getDigest().equals(prePrepare.getDigest())
+                || !RequestBatcher.batchDigest(committed.getRequestsList()).equals(prePrepare.getDigest())
+                || !verifyCommitCertificate(committed.getCommitCertificate())) {
+            logger.warn("Committed entry seq={} from {} is not proven by its certificate", prePrepare.getSequenceNumber(), peerId);
+            return false;
+        }
+        List<Signed<MessageServiceOuterClass.ClientRequest>> requests = verificationStage.openAll(
+                committed.getRequestsList(), MessageServiceOuterClass.ClientRequest.getDefaultInstance());
+        if (requests == null || requests.stream().anyMatch(r -> !r.signerId().equals(r.message().getClientId()))) {
+            logger.warn("Committed entry seq={} from {} carries an invalid client signature", prePrepare.getSequenceNumber(), peerId);
+            return false;
+        }
+        executorManager.submitStateTransition(() -> {
+            long sequenceNumber = prePrepare.getSequenceNumber();
+            if (sequenceNumber <= lastExecuted || !log.inWindow(sequenceNumber)) {
+                return;
+            }
+            LogEntry entry = log.getOrCreate(sequenceNumber);
+            entry.setPrePrepare(prePrepare, requests);
+            entry.setCommitCertificate(committed.getCommitCertificate());
+            entry.setStatus(TransactionStatus.COMMITTED);
+            executeCommitted();
+        });
+        return true;
+    }
+
+    private void execute(LogEntry entry) {
+        for (Signed<MessageServiceOuterClass.ClientRequest> request : entry.getRequests()) {
+            String requestId = requestIdFor(request.message().getClientId(), request.message().getTimestamp());
+            orderedRequestIds.remove(requestId);
+            primaryMonitor.onExecuted(requestId);
+        }
+        List<MessageServiceOuterClass.ClientReply> executedAhead = tentative.commit(entry.getSequenceNumber());
+        if (executedAhead != null) {
+            // Applied when it prepared. The committed replies still go out: a client counts them apart
+            // from tentative ones, so this replica counts towards the request even if a tentative
+            // reply it sent for it earlier was rolled back
+            for (MessageServiceOuterClass.ClientReply tentativeReply : executedAhead) {
+                MessageServiceOuterClass.ClientReply reply = tentativeReply.toBuilder().setTentative(false).build();
+                lastReplies.put(reply.getClientId(), reply);
+                if (!replaying) {
+                    sender.sendClientReply(reply.getClientId(), reply);
+                }
+            }
+            return;
+        }
+        for (Signed<MessageServiceOuterClass.ClientRequest> request : entry.getRequests()) {
+            MessageServiceOuterClass.ClientReply reply = apply(entry.getSequenceNumber(), request.message(), false);
+            if (reply == null) {
+                continue;
+            }
+            lastReplies.put(reply.getClientId(), reply);
+            if (!replaying) {
+                sender.sendClientReply(reply.getClientId(), reply);
+            }
+        }
+    }
+
+    /**
+     * Run one request against the state.
+     *
+     * @return its reply, or null if the client's request was already executed
+     */
+    private MessageServiceOuterClass.ClientReply apply(long sequenceNumber, MessageServiceOuterClass.ClientRequest request,
+                                                       boolean tentatively) {
+        String clientId = request.getClientId();
+        MessageServiceOuterClass.ClientReply cached = lastReplies.get(clientId);
+        if ((cached != null && cached.getTimestamp() >= request.getTimestamp())
+                || tentative.latestTimestamp(clientId) >= request.getTimestamp()) {
+            logger.info("Request {} at seq={} was already executed, skipping", requestIdFor(clientId, request.getTimestamp()), sequenceNumber);
+            return null;
+        }
+
+        Double balance = null;
+        boolean result = switch (request.getOperation().getOpCase()) {
+            case TRANSFER -> {
+                MessageServiceOuterClass.Transaction transfer = request.getOperation().getTransfer();
+                if (tentatively) {
+                    tentative.beforeWrite(sequenceNumber, transfer.getSender());
+                    tentative.beforeWrite(sequenceNumber, transfer.getReceiver());
+                }
+                yield clientState.transfer(transfer.getSender(), transfer.getReceiver(), transfer.getAmount());
+            }
+            case BALANCE_REQUEST -> {
+                balance = clientState.getBalance(request.getOperation().getBalanceRequest().getAccountId());
+                yield balance != null;
+            }
+            default -> false;
+        };
+        logger.debug("Executed seq={} for request {}{}: result={}", sequenceNumber,
+                requestIdFor(clientId, request.getTimestamp()), tentatively ? " tentatively" : "", result);
+
+        MessageServiceOuterClass.ClientReply.Builder reply = MessageServiceOuterClass.ClientReply.newBuilder()
+                .setViewNumber(views.getViewNumber())
+                .setTimestamp(request.getTimestamp())
+                .setClientId(clientId)
+                .setServerId(nodeId)
+                .setResult(result)
+                .setTentative(tentatively);
+        if (balance != null) {
+            reply.setBalance(balance);
+        }
+        return reply.build();
+    }
+
+    @Override
+    public void shutdown(MessageSender sender, MessageReceiver receiver) {
+        super.shutdown(sender, receiver);
+        wal.close(); // the log executor has stopped, so this writes out the last queued records
+        logStore.close();
     }
 
     public static void main(String[] args) {
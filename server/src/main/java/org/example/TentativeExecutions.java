@@ -0,0 +1,111 @@
+package org.example;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/**
+ * Batches executed as soon as they prepared, ahead of their commit, with what it takes to undo
+ * them: per sequence number, the balances its transfers overwrote and the replies it produced.
+ * They always form a contiguous run just above the last committed execution.
+ *
+ * A committed batch leaves the run with its replies (commit()); a view change undoes the whole run,
+ * newest first (rollback()), and the batches are executed again once the new view orders them.
+ *
+ * Not thread-safe: used from the state executor only.
+ */
+public class TentativeExecutions {
+
+    private record Executed(Map<String, Double> overwritten, List<MessageServiceOuterClass.ClientReply> replies) {
+    }
+
+    private final ClientState state;
+    private final NavigableMap<Long, Executed> executed = new TreeMap<>();
+
+    public TentativeExecutions(ClientState state) {
+        this.state = state;
+    }
+
+    /**
+     * @return the highest sequence number whose effects the state holds, committed or not
+     */
+    public long frontier(long lastExecuted) {
+        return executed.isEmpty() ? lastExecuted : executed.lastKey();
+    }
+
+    public void begin(long sequenceNumber) {
+        executed.put(sequenceNumber, new Executed(new HashMap<>(), new ArrayList<>()));
+    }
+
+    /** Remember an account's balance before a tentative batch first changes it. */
+    public void beforeWrite(long sequenceNumber, String accountId) {
+        Double balance = state.getBalance(accountId);
+        if (balance != null) {
+            executed.get(sequenceNumber).overwritten().putIfAbsent(accountId, balance);
+        }
+    }
+
+    public void addReply(long sequenceNumber, MessageServiceOuterClass.ClientReply reply) {
+        executed.get(sequenceNumber).replies().add(reply);
+    }
+
+    /**
+     * The batch at this sequence number committed: it stays applied and needs no undo.
+     *
+     * @return the replies it produced, or null if it was not executed tentatively
+     */
+    public List<MessageServiceOuterClass.ClientReply> commit(long sequenceNumber) {
+        Executed committed = executed.remove(sequenceNumber);
+        return committed == null ? null : committed.replies();
+    }
+
+    /**
+     * Undo every tentative batch, newest first, leaving the state as of the last commit.
+     *
+     * @return the number of batches undone
+     */
+    public int rollback() {
+        int undone = executed.size();
+        for (Executed batch : executed.descendingMap().values()) {
+            state.revert(batch.overwritten());
+        }
+        executed.clear();
+        return undone;
+    }
+
+    /** Drop the run without undoing it, when the state has been replaced wholesale. */
+    public void clear() {
+        executed.clear();
+    }
+
+    /**
+     * @return the account's balance as of the last commit, ignoring tentative batches
+     */
+    public Double committedBalance(String accountId) {
+        for (Executed batch : executed.values()) {
+            Double before = batch.overwritten().get(accountId);
+            if (before != null) {
+                return before;
+            }
+        }
+        return state.getBalance(accountId);
+    }
+
+    /**
+     * @return the timestamp of the client's latest tentatively executed request, or -1 if none
+     */
+    public long latestTimestamp(String clientId) {
+        for (Executed batch : executed.descendingMap().values()) {
+            for (int i = batch.replies().size() - 1; i >= 0; i--) {
+                MessageServiceOuterClass.ClientReply reply = batch.replies().get(i);
+                if (reply.getClientId().equals(clientId)) {
+                    return reply.getTimestamp();
+                }
+            }
+        }
+        return -1L;
+    }
+}
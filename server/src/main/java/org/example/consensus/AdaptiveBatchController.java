@@ -0,0 +1,219 @@
+package org.example.consensus;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Retunes the primary's batch size and batch timeout from a moving window of commit
+ * latencies and the ordering queue depth.
+ *
+ * - p50 above target: shrink the batch size by a quarter and halve the timeout, whatever the
+ *   load, so the latency target bounds growth.
+ * - Backlog (batches waiting for window space, or batches filled under load, i.e. cut by size less
+ *   than a timeout after the previous cut): double the batch size and lengthen the timeout by
+ *   1 ms, amortizing each round over more requests. A size cut after a quiet spell says nothing
+ *   about load: at batch size 1 every cut is a size cut.
+ * - Light load (batches cut by timeout): shrink as above, so lone requests stop waiting for
+ *   company that is not coming.
+ * - Idle (no batch cut and nothing in flight for a whole tick): drop straight back to the minimum
+ *   batch size and timeout, and forget the latency window, which no longer describes the cluster.
+ *
+ * Decisions are taken every EVALUATION_INTERVAL commits, and on a periodic tick (onTick), since
+ * an idle primary commits nothing and would otherwise never decide.
+ *
+ * Called from the state executor only; the latest decision is published for the CLI.
+ */
+public class AdaptiveBatchController {
+
+    private static final Logger logger = LogManager.getLogger(AdaptiveBatchController.class);
+    private static final int EVALUATION_INTERVAL = 8; // commit samples between decisions
+    private static final long MIN_TIMEOUT_MILLIS = 1L;
+    private static final long MIN_TICK_MILLIS = 100L;
+
+    public record Decision(int maxRequests, long timeoutMillis, double p50LatencyMillis,
+                           int queueDepth, int samples, String action) {
+        @Override
+        public String toString() {
+            return String.format("action=%s batchSize=%d batchTimeoutMs=%d p50LatencyMs=%.2f queueDepth=%d samples=%d",
+                    action, maxRequests, timeoutMillis, p50LatencyMillis, queueDepth, samples);
+        }
+    }
+
+    private final RequestBatcher batcher;
+    private final boolean enabled;
+    private final int minRequests;
+    private final int maxRequests;
+    private final long maxTimeoutMillis;
+    private final double targetP50Millis;
+    private final long tickMillis;
+
+    private final long[] latencies; // nanos, ring buffer
+    private int sampleCount;
+    private int nextSample;
+    private int samplesSinceEvaluation;
+    private int loadedSizeCuts;
+    private int timeoutCuts;
+    private long lastCutAt; // nanoTime
+    private int cutsSinceTick;
+    private final Map<Long, Long> orderedAt = new HashMap<>(); // seq -> nanoTime
+
+    private volatile Decision lastDecision;
+
+    public AdaptiveBatchController(RequestBatcher batcher,
+                                   boolean enabled,
+                                   int minRequests,
+                                   int window,
+                                   double targetP50Millis) {
+        if (window <= 0) throw new IllegalArgumentException("window must be > 0");
+        this.batcher = batcher;
+        this.enabled = enabled;
+        this.maxRequests = batcher.getMaxRequests();
+        this.minRequests = Math.max(1, Math.min(minRequests, maxRequests));
+        this.maxTimeoutMillis = Math.max(MIN_TIMEOUT_MILLIS, batcher.getTimeoutMillis());
+        this.targetP50Millis = targetP50Millis;
+        this.tickMillis = Math.max(MIN_TICK_MILLIS, 2 * maxTimeoutMillis); // long enough for any batch to be cut within it
+        this.latencies = new long[window];
+
+        if (enabled) {
+            // Start small: a lightly loaded cluster should not pay the full timeout on its first requests
+            batcher.setMaxRequests(this.minRequests);
+            batcher.setTimeoutMillis(MIN_TIMEOUT_MILLIS);
+        }
+        this.lastDecision = new Decision(batcher.getMaxRequests(), batcher.getTimeoutMillis(), 0.0, 0, 0,
+                enabled ? "INIT" : "FIXED");
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * How often onTick should be called.
+     */
+    public long getTickMillis() {
+        return tickMillis;
+    }
+
+    public void onBatchCut() {
+        cutsSinceTick++;
+        long now = System.nanoTime();
+        if (batcher.wasLastCutOnTimeout()) {
+            timeoutCuts++;
+        } else if (now - lastCutAt < TimeUnit.MILLISECONDS.toNanos(batcher.getTimeoutMillis())) {
+            loadedSizeCuts++;
+        }
+        lastCutAt = now;
+    }
+
+    public void onOrdered(long sequenceNumber) {
+        orderedAt.put(sequenceNumber, System.nanoTime());
+    }
+
+    /**
+     * Record the commit of a sequence number ordered by this node.
+     *
+     * @param queueDepth batches waiting for window space at the primary
+     */
+    public void onCommitted(long sequenceNumber, int queueDepth) {
+        Long start = orderedAt.remove(sequenceNumber);
+        if (start == null) {
+            return;
+        }
+        latencies[nextSample] = System.nanoTime() - start;
+        nextSample = (nextSample + 1) % latencies.length;
+        sampleCount = Math.min(sampleCount + 1, latencies.length);
+
+        if (++samplesSinceEvaluation >= EVALUATION_INTERVAL) {
+            evaluate(queueDepth);
+        }
+    }
+
+    /**
+     * Periodic check while this node is primary. Drops back to the minimum when nothing was cut
+     * since the last tick and nothing is in flight; otherwise decides on whatever commits arrived
+     * since the last decision, so light load is not left waiting for EVALUATION_INTERVAL of them.
+     *
+     * @param queueDepth batches waiting for window space at the primary
+     */
+    public void onTick(int queueDepth) {
+        if (!enabled) {
+            return;
+        }
+        if (cutsSinceTick == 0 && queueDepth == 0 && orderedAt.isEmpty()) {
+            settleIdle();
+        } else if (samplesSinceEvaluation > 0) {
+            evaluate(queueDepth);
+        }
+        cutsSinceTick = 0;
+    }
+
+    /** Forget latency bookkeeping for sequence numbers that will never commit in this view. */
+    public void reset() {
+        orderedAt.clear();
+    }
+
+    public Decision getLastDecision() {
+        return lastDecision;
+    }
+
+    private void evaluate(int queueDepth) {
+        samplesSinceEvaluation = 0;
+        double p50 = p50LatencyMillis();
+        int size = batcher.getMaxRequests();
+        long timeout = batcher.getTimeoutMillis();
+        String action = "HOLD";
+        boolean backlogged = queueDepth > 0 || loadedSizeCuts > timeoutCuts;
+
+        if (!enabled) {
+            action = "FIXED";
+        } else if (p50 > targetP50Millis || (!backlogged && timeoutCuts > 0)) {
+            size = Math.max(minRequests, size - Math.max(1, size / 4));
+            timeout = Math.max(MIN_TIMEOUT_MILLIS, timeout / 2);
+            action = "SHRINK";
+        } else if (backlogged) {
+            size = Math.min(maxRequests, size * 2);
+            timeout = Math.min(maxTimeoutMillis, timeout + 1);
+            action = "GROW";
+        }
+        loadedSizeCuts = 0;
+        timeoutCuts = 0;
+
+        if (size != batcher.getMaxRequests() || timeout != batcher.getTimeoutMillis()) {
+            batcher.setMaxRequests(size);
+            batcher.setTimeoutMillis(timeout);
+            logger.info("Batching retuned: batchSize={} batchTimeoutMs={} (p50={}ms, queueDepth={})",
+                    size, timeout, String.format("%.2f", p50), queueDepth);
+        }
+        lastDecision = new Decision(size, timeout, p50, queueDepth, sampleCount, action);
+    }
+
+    private void settleIdle() {
+        if (batcher.getMaxRequests() != minRequests || batcher.getTimeoutMillis() != MIN_TIMEOUT_MILLIS) {
+            batcher.setMaxRequests(minRequests);
+            batcher.setTimeoutMillis(MIN_TIMEOUT_MILLIS);
+            logger.info("Batching idle: back to batchSize={} batchTimeoutMs={}", minRequests, MIN_TIMEOUT_MILLIS);
+        }
+        sampleCount = 0;
+        nextSample = 0;
+        samplesSinceEvaluation = 0;
+        loadedSizeCuts = 0;
+        timeoutCuts = 0;
+        if (!"IDLE".equals(lastDecision.action())) {
+            lastDecision = new Decision(minRequests, MIN_TIMEOUT_MILLIS, 0.0, 0, 0, "IDLE");
+        }
+    }
+
+    private double p50LatencyMillis() {
+        if (sampleCount == 0) {
+            return 0.0;
+        }
+        long[] sorted = Arrays.copyOf(latencies, sampleCount);
+        Arrays.sort(sorted);
+        return sorted[sampleCount / 2] / 1_000_000.0;
+    }
+}
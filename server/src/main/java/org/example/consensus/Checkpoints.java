@@ -0,0 +1,154 @@
+package org.example.consensus;
+
+import com.google.protobuf.ByteString;
+import org.example.MessageServiceOuterClass;
+import org.example.crypto.Digests;
+import org.example.crypto.Signed;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Checkpoint bookkeeping for one replica: its own snapshots awaiting stability, the collector's
+ * checkpoint votes, and the latest stable checkpoint with its certificate.
+ *
+ * A checkpoint becomes stable once 2f+1 replicas have signed the same state digest for it;
+ * everything at or below it is then discarded. Not thread-safe: used from the state executor
+ * only, except for the stable sequence number, which the CLI reads.
+ */
+public class Checkpoints {
+
+    public static final int CHUNK_SIZE = 64 * 1024; // state transfer chunk, fixed cluster-wide since it shapes the digest
+
+    private final int interval;
+
+    private final NavigableMap<Long, MessageServiceOuterClass.StateSnapshot> ownSnapshots = new TreeMap<>();
+    private final NavigableMap<Long, Map<String, Signed<MessageServiceOuterClass.CheckpointMessage>>> votes = new TreeMap<>(); // collector
+    private final Set<Long> certificateSent = new HashSet<>(); // collector
+
+    private volatile long stableSequenceNumber = 0L;
+    private MessageServiceOuterClass.StateSnapshot stableSnapshot;
+    private MessageServiceOuterClass.CheckpointCertificate stableCertificate;
+    private MessageServiceOuterClass.CheckpointCertificate pendingCertificate; // stable elsewhere, not yet executed here
+
+    public Checkpoints(int interval) {
+        if (interval <= 0) throw new IllegalArgumentException("interval must be > 0");
+        this.interval = interval;
+    }
+
+    public boolean isCheckpoint(long sequenceNumber) {
+        return sequenceNumber % interval == 0;
+    }
+
+    public void recordOwn(MessageServiceOuterClass.StateSnapshot snapshot) {
+        ownSnapshots.put(snapshot.getSequenceNumber(), snapshot);
+    }
+
+    public MessageServiceOuterClass.StateSnapshot getOwn(long sequenceNumber) {
+        return ownSnapshots.get(sequenceNumber);
+    }
+
+    /** Collector: add a vote and return the votes that agree with its digest. */
+    public List<Signed<MessageServiceOuterClass.CheckpointMessage>> addVote(Signed<MessageServiceOuterClass.CheckpointMessage> vote) {
+        MessageServiceOuterClass.CheckpointMessage checkpoint = vote.message();
+        Map<String, Signed<MessageServiceOuterClass.CheckpointMessage>> forSequence =
+                votes.computeIfAbsent(checkpoint.getSequenceNumber(), s -> new LinkedHashMap<>());
+        forSequence.putIfAbsent(checkpoint.getReplicaId(), vote);
+
+        List<Signed<MessageServiceOuterClass.CheckpointMessage>> matching = new ArrayList<>();
+        for (Signed<MessageServiceOuterClass.CheckpointMessage> other : forSequence.values()) {
+            if (other.message().getStateDigest().equals(checkpoint.getStateDigest())) {
+                matching.add(other);
+            }
+        }
+        return matching;
+    }
+
+    /** Collector: true the first time it is called for a sequence number. */
+    public boolean markCertificateSent(long sequenceNumber) {
+        return certificateSent.add(sequenceNumber);
+    }
+
+    public long getStableSequenceNumber() {
+        return stableSequenceNumber;
+    }
+
+    public MessageServiceOuterClass.StateSnapshot getStableSnapshot() {
+        return stableSnapshot;
+    }
+
+    public MessageServiceOuterClass.CheckpointCertificate getStableCertificate() {
+        return stableCertificate;
+    }
+
+    /** Remember the highest certificate for a checkpoint this replica has not executed yet. */
+    public void setPending(MessageServiceOuterClass.CheckpointCertificate certificate) {
+        if (pendingCertificate == null
+                || certificate.getCertificate().getSequenceNumber() > pendingCertificate.getCertificate().getSequenceNumber()) {
+            pendingCertificate = certificate;
+        }
+    }
+
+    /** The pending certificate once execution has reached it, removing it; otherwise null. */
+    public MessageServiceOuterClass.CheckpointCertificate takePending(long lastExecuted) {
+        MessageServiceOuterClass.CheckpointCertificate pending = pendingCertificate;
+        if (pending == null || pending.getCertificate().getSequenceNumber() > lastExecuted) {
+            return null;
+        }
+        pendingCertificate = null;
+        return pending;
+    }
+
+    /**
+     * Make the checkpoint stable and drop every snapshot and vote it supersedes.
+     */
+    public void stabilize(MessageServiceOuterClass.CheckpointCertificate certificate,
+                          MessageServiceOuterClass.StateSnapshot snapshot) {
+        long sequenceNumber = certificate.getCertificate().getSequenceNumber();
+        stableCertificate = certificate;
+        stableSnapshot = snapshot;
+        stableSequenceNumber = sequenceNumber;
+        ownSnapshots.headMap(sequenceNumber, true).clear();
+        votes.headMap(sequenceNumber, true).clear();
+        certificateSent.removeIf(s -> s <= sequenceNumber);
+        if (pendingCertificate != null && pendingCertificate.getCertificate().getSequenceNumber() <= sequenceNumber) {
+            pendingCertificate = null;
+        }
+    }
+
+    /**
+     * SHA-256 over the per-chunk digests of the serialized snapshot, so state transfer can check
+     * every chunk on arrival against the certified digest.
+     */
+    public static ByteString stateDigest(MessageServiceOuterClass.StateSnapshot snapshot) {
+        return stateDigestOf(chunkDigests(snapshot.toByteString()));
+    }
+
+    public static ByteString stateDigestOf(List<ByteString> chunkDigests) {
+        ByteArrayOutputStream concatenated = new ByteArrayOutputStream(chunkDigests.size() * 32);
+        for (ByteString digest : chunkDigests) {
+            concatenated.writeBytes(digest.toByteArray());
+        }
+        return ByteString.copyFrom(Digests.sha256(concatenated.toByteArray()));
+    }
+
+    public static List<ByteString> chunkDigests(ByteString serializedSnapshot) {
+        List<ByteString> digests = new ArrayList<>();
+        for (int offset = 0; offset < serializedSnapshot.size(); offset += CHUNK_SIZE) {
+            digests.add(Digests.sha256(chunk(serializedSnapshot, offset / CHUNK_SIZE)));
+        }
+        return digests;
+    }
+
+    public static ByteString chunk(ByteString serializedSnapshot, int index) {
+        int offset = index * CHUNK_SIZE;
+        return serializedSnapshot.substring(offset, Math.min(serializedSnapshot.size(), offset + CHUNK_SIZE));
+    }
+}
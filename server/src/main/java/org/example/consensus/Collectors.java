@@ -0,0 +1,84 @@
+package org.example.consensus;
+
+import org.example.config.Config;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Which replicas aggregate the votes for a sequence number.
+ *
+ * Without rotation the primary collects every vote, so it carries the PrePrepare broadcast and
+ * all the certificate work. With rotation the role moves round the backups by sequence number
+ * (offset by the view, so a view change reshuffles it): consecutive batches are aggregated by
+ * different replicas and the load scales with the cluster. Each vote goes to `count` consecutive
+ * collectors, so a batch still gets its certificate while up to count - 1 of them are slow.
+ *
+ * The primary may always collect as well: a replica that sees no certificate from its collectors
+ * within the deadline sends its vote to the primary instead.
+ */
+public class Collectors {
+
+    private final boolean rotating;
+    private final int count;
+    private final long timeoutMillis;
+    private final List<String> serverIds;
+
+    public Collectors(boolean rotating, int count, long timeoutMillis) {
+        this.serverIds = Config.getSortedServerIds();
+        if (count < 1) throw new IllegalArgumentException("collector count must be > 0");
+        this.rotating = rotating && serverIds.size() > 1;
+        this.count = Math.min(count, serverIds.size() - 1);
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    public boolean isRotating() {
+        return rotating;
+    }
+
+    /**
+     * How long a replica waits for a certificate from its collectors before it falls back to the primary.
+     */
+    public long getTimeoutMillis() {
+        return timeoutMillis;
+    }
+
+    /**
+     * @return the replicas a vote for this sequence number goes to first, the primary alone
+     * without rotation
+     */
+    public List<String> collectorsFor(long viewNumber, long sequenceNumber, String primaryId) {
+        if (!rotating) {
+            return List.of(primaryId);
+        }
+        List<String> collectors = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            collectors.add(collector(viewNumber, sequenceNumber, primaryId, i));
+        }
+        return collectors;
+    }
+
+    /**
+     * Whether a replica may aggregate votes for this sequence number: one of its collectors, or
+     * the primary they fall back to.
+     */
+    public boolean mayCollect(long viewNumber, long sequenceNumber, String primaryId, String replicaId) {
+        if (replicaId.equals(primaryId)) {
+            return true;
+        }
+        for (int i = 0; rotating && i < count; i++) {
+            if (collector(viewNumber, sequenceNumber, primaryId, i).equals(replicaId)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // The i-th collector: backups are numbered in sorted id order, skipping the primary
+    private String collector(long viewNumber, long sequenceNumber, String primaryId, int i) {
+        int backups = serverIds.size() - 1;
+        int backup = (int) ((Math.floorMod(viewNumber + sequenceNumber, (long) backups) + i) % backups);
+        int primaryIndex = Config.getServerIndex(primaryId);
+        return serverIds.get(primaryIndex >= 0 && backup >= primaryIndex ? backup + 1 : backup);
+    }
+}
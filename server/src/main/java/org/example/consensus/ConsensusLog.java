@@ -0,0 +1,99 @@
+package org.example.consensus;
+
+import org.example.TransactionStatus;
+
+/**
+ * Sequence-number indexed log bounded by a low/high watermark window.
+ *
+ * Only sequence numbers in (low, low + windowSize] are accepted, which lets the
+ * primary keep many instances in flight while bounding how far it can run ahead
+ * of the slowest instance. The low watermark is the last stable checkpoint.
+ *
+ * The window is a preallocated ring: sequence number s lives in slot s % windowSize, and
+ * no two sequence numbers in the window share a slot. A slot is reset in place when the
+ * window has moved past its previous occupant, so ordering allocates no per-entry state.
+ */
+public class ConsensusLog {
+
+    private final LogEntry[] slots;
+    private final int windowSize;
+    private volatile long lowWatermark = 0L;
+
+    public ConsensusLog(int windowSize) {
+        if (windowSize <= 0) throw new IllegalArgumentException("windowSize must be > 0");
+        this.windowSize = windowSize;
+        this.slots = new LogEntry[windowSize];
+        for (int i = 0; i < windowSize; i++) {
+            slots[i] = new LogEntry();
+        }
+    }
+
+    public int getWindowSize() {
+        return windowSize;
+    }
+
+    public long getLowWatermark() {
+        return lowWatermark;
+    }
+
+    public long getHighWatermark() {
+        return lowWatermark + windowSize;
+    }
+
+    public boolean inWindow(long sequenceNumber) {
+        return sequenceNumber > lowWatermark && sequenceNumber <= getHighWatermark();
+    }
+
+    /**
+     * Move the low watermark to a stable checkpoint; never moves backwards. Slots at or below it
+     * become unreachable and are reset when the window reaches them again.
+     */
+    public void truncateThrough(long sequenceNumber) {
+        if (sequenceNumber > lowWatermark) {
+            lowWatermark = sequenceNumber;
+        }
+    }
+
+    public LogEntry get(long sequenceNumber) {
+        if (!inWindow(sequenceNumber)) {
+            return null;
+        }
+        LogEntry slot = slots[slotOf(sequenceNumber)];
+        return slot.getSequenceNumber() == sequenceNumber ? slot : null;
+    }
+
+    /**
+     * @throws IllegalArgumentException if the sequence number is outside the window
+     */
+    public LogEntry getOrCreate(long sequenceNumber) {
+        if (!inWindow(sequenceNumber)) {
+            throw new IllegalArgumentException("seq=" + sequenceNumber + " is outside the window (" + lowWatermark + ", " + getHighWatermark() + "]");
+        }
+        LogEntry slot = slots[slotOf(sequenceNumber)];
+        if (slot.getSequenceNumber() != sequenceNumber) {
+            slot.reset(sequenceNumber);
+        }
+        return slot;
+    }
+
+    /**
+     * Status of a sequence number in the window, NONE outside it. Safe to call from any thread:
+     * the slot's sequence number and status are volatile, and the status is discarded if the slot
+     * was taken over by another sequence number while it was read.
+     */
+    public TransactionStatus getStatus(long sequenceNumber) {
+        if (!inWindow(sequenceNumber)) {
+            return TransactionStatus.NONE;
+        }
+        LogEntry slot = slots[slotOf(sequenceNumber)];
+        if (slot.getSequenceNumber() != sequenceNumber) {
+            return TransactionStatus.NONE;
+        }
+        TransactionStatus status = slot.getStatus();
+        return slot.getSequenceNumber() == sequenceNumber ? status : TransactionStatus.NONE;
+    }
+
+    private int slotOf(long sequenceNumber) {
+        return (int) (sequenceNumber % windowSize);
+    }
+}
@@ -0,0 +1,326 @@
+package org.example.consensus;
+
+import com.google.protobuf.ByteString;
+import org.example.MessageServiceOuterClass;
+import org.example.TransactionStatus;
+import org.example.config.Config;
+import org.example.crypto.Signed;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Protocol state for one slot of the consensus window, reused for every sequence number that
+ * maps onto it (see ConsensusLog).
+ *
+ * Phase state is kept in primitives: the status as a byte, the collector's votes as a bitmap
+ * over the sorted server ids with per-replica digest and signature arrays, and the certificate
+ * flags as bits. reset() clears a slot for its next sequence number without allocating.
+ *
+ * After a view change the same sequence number is ordered again in the new view (reissue()).
+ * The slot then keeps its highest-view prepared proof for later ViewChanges, and its commit
+ * certificate, since a committed batch stays committed whatever view it is re-voted in.
+ *
+ * All mutation happens on the node's state executor; GetStatus reads the sequence number and
+ * status from other threads, so those two fields are volatile.
+ */
+public class LogEntry {
+
+    private static final TransactionStatus[] STATUSES = TransactionStatus.values();
+    private static final byte NONE = (byte) TransactionStatus.NONE.ordinal();
+    private static final int PREPARE_CERTIFICATE_SENT = 1;
+    private static final int COMMIT_CERTIFICATE_SENT = 2;
+    private static final int COMMIT_VOTE_SENT = 4;
+    private static final int FAST_PATH_PENDING = 8;
+
+    /**
+     * Collector-side votes for one phase: who voted, on which digest, with which signature (or
+     * aggregate share), all for one view. Kept until a certificate is formed; a vote for a later
+     * view discards those for earlier ones.
+     */
+    private static final class Votes {
+        private long viewNumber;
+        private long voted;
+        private final ByteString[] digests;
+        private final ByteString[] signatures;
+
+        private Votes(int replicas) {
+            this.digests = new ByteString[replicas];
+            this.signatures = new ByteString[replicas];
+        }
+
+        private void add(long viewNumber, String replicaId, ByteString digest, ByteString signature) {
+            if (viewNumber < this.viewNumber) {
+                return;
+            }
+            if (viewNumber > this.viewNumber) {
+                clear();
+                this.viewNumber = viewNumber;
+            }
+            int index = Config.getServerIndex(replicaId);
+            if (index < 0 || (voted & (1L << index)) != 0) {
+                return;
+            }
+            voted |= 1L << index;
+            digests[index] = digest;
+            signatures[index] = signature;
+        }
+
+        private void remove(String replicaId) {
+            int index = Config.getServerIndex(replicaId);
+            if (index < 0) {
+                return;
+            }
+            voted &= ~(1L << index);
+            digests[index] = null;
+            signatures[index] = null;
+        }
+
+        private Map<String, ByteString> quorum(long viewNumber, ByteString digest, int quorum) {
+            if (viewNumber != this.viewNumber) {
+                return null;
+            }
+            long matching = 0L;
+            for (long remaining = voted; remaining != 0; remaining &= remaining - 1) {
+                int index = Long.numberOfTrailingZeros(remaining);
+                if (digests[index].equals(digest)) {
+                    matching |= 1L << index;
+                }
+            }
+            if (Long.bitCount(matching) < quorum) {
+                return null;
+            }
+            List<String> serverIds = Config.getSortedServerIds();
+            Map<String, ByteString> signers = new LinkedHashMap<>();
+            for (long remaining = matching; signers.size() < quorum; remaining &= remaining - 1) {
+                int index = Long.numberOfTrailingZeros(remaining);
+                signers.put(serverIds.get(index), signatures[index]);
+            }
+            return signers;
+        }
+
+        private void clear() {
+            viewNumber = 0L;
+            voted = 0L;
+            Arrays.fill(digests, null);
+            Arrays.fill(signatures, null);
+        }
+    }
+
+    private volatile long sequenceNumber;
+    private volatile byte status = NONE;
+
+    private MessageServiceOuterClass.PrePrepareMessage prePrepare;
+    private List<Signed<MessageServiceOuterClass.ClientRequest>> requests = List.of(); // the batch, verified, with the clients' envelopes
+    private MessageServiceOuterClass.PrepareCertificate prepareCertificate;
+    private MessageServiceOuterClass.CommitCertificate commitCertificate;
+    private MessageServiceOuterClass.PreparedProof carriedProof; // prepared in an earlier view, before the PrePrepare was re-issued
+
+    private final Votes prepares;
+    private final Votes commits;
+    private int flags;
+
+    LogEntry() {
+        int replicas = Config.getSortedServerIds().size();
+        this.prepares = new Votes(replicas);
+        this.commits = new Votes(replicas);
+    }
+
+    /**
+     * Take the slot over for a new sequence number, dropping everything held for the previous one.
+     */
+    void reset(long sequenceNumber) {
+        status = NONE;
+        prePrepare = null;
+        requests = List.of();
+        prepareCertificate = null;
+        commitCertificate = null;
+        carriedProof = null;
+        prepares.clear();
+        commits.clear();
+        flags = 0;
+        this.sequenceNumber = sequenceNumber;
+    }
+
+    public long getSequenceNumber() {
+        return sequenceNumber;
+    }
+
+    public TransactionStatus getStatus() {
+        return STATUSES[status];
+    }
+
+    public void setStatus(TransactionStatus status) {
+        this.status = (byte) status.ordinal();
+    }
+
+    public MessageServiceOuterClass.PrePrepareMessage getPrePrepare() {
+        return prePrepare;
+    }
+
+    public void setPrePrepare(MessageServiceOuterClass.PrePrepareMessage prePrepare,
+                              List<Signed<MessageServiceOuterClass.ClientRequest>> requests) {
+        this.prePrepare = prePrepare;
+        this.requests = requests;
+    }
+
+    /**
+     * Take the PrePrepare re-issued for this sequence number by a later view's NewView. The
+     * certificates and votes of earlier views no longer advance the slot, except a commit
+     * certificate; the best prepared proof so far is kept for the next view change.
+     */
+    public void reissue(MessageServiceOuterClass.PrePrepareMessage prePrepare,
+                        List<Signed<MessageServiceOuterClass.ClientRequest>> requests) {
+        carriedProof = getPreparedProof();
+        if (prepareCertificate != null && prepareCertificate.getCertificate().getViewNumber() != prePrepare.getViewNumber()) {
+            prepareCertificate = null;
+        }
+        flags = 0;
+        setPrePrepare(prePrepare, requests);
+    }
+
+    /**
+     * @return proof that this slot was prepared, from the highest view it was prepared in, or
+     * null if it never was
+     */
+    public MessageServiceOuterClass.PreparedProof getPreparedProof() {
+        MessageServiceOuterClass.PreparedProof best = carriedProof;
+        if (prePrepare == null) {
+            return best;
+        }
+        if (prepareCertificate != null && prepareCertificate.getCertificate().getDigest().equals(prePrepare.getDigest())) {
+            best = higher(best, MessageServiceOuterClass.PreparedProof.newBuilder()
+                    .setPrePrepare(prePrepare)
+                    .setPrepareCertificate(prepareCertificate)
+                    .build());
+        }
+        if (commitCertificate != null && commitCertificate.getCertificate().getDigest().equals(prePrepare.getDigest())) {
+            best = higher(best, MessageServiceOuterClass.PreparedProof.newBuilder()
+                    .setPrePrepare(prePrepare)
+                    .setCommitCertificate(commitCertificate)
+                    .build());
+        }
+        return best;
+    }
+
+    private static MessageServiceOuterClass.PreparedProof higher(MessageServiceOuterClass.PreparedProof current,
+                                                                  MessageServiceOuterClass.PreparedProof candidate) {
+        return current == null || ViewChanges.certificateOf(candidate).getViewNumber() > ViewChanges.certificateOf(current).getViewNumber()
+                ? candidate : current;
+    }
+
+    public List<Signed<MessageServiceOuterClass.ClientRequest>> getRequests() {
+        return requests;
+    }
+
+    public boolean hasPrePrepare() {
+        return prePrepare != null;
+    }
+
+    public ByteString getDigest() {
+        return prePrepare == null ? null : prePrepare.getDigest();
+    }
+
+    public MessageServiceOuterClass.PrepareCertificate getPrepareCertificate() {
+        return prepareCertificate;
+    }
+
+    public void setPrepareCertificate(MessageServiceOuterClass.PrepareCertificate prepareCertificate) {
+        this.prepareCertificate = prepareCertificate;
+    }
+
+    public MessageServiceOuterClass.CommitCertificate getCommitCertificate() {
+        return commitCertificate;
+    }
+
+    public void setCommitCertificate(MessageServiceOuterClass.CommitCertificate commitCertificate) {
+        this.commitCertificate = commitCertificate;
+    }
+
+    /**
+     * Record a replica's prepare vote; only its first vote counts.
+     *
+     * @param signature what goes into the certificate: the vote's signature or its aggregate share
+     */
+    public void addPrepare(long viewNumber, String replicaId, ByteString digest, ByteString signature) {
+        prepares.add(viewNumber, replicaId, digest, signature);
+    }
+
+    public void addCommit(long viewNumber, String replicaId, ByteString digest, ByteString signature) {
+        commits.add(viewNumber, replicaId, digest, signature);
+    }
+
+    /**
+     * @return signatures of the first quorum replicas (in sorted id order) whose prepare matches
+     * the accepted PrePrepare in its view, or null while there are fewer
+     */
+    public Map<String, ByteString> prepareQuorum(int quorum) {
+        return prepares.quorum(prePrepare.getViewNumber(), getDigest(), quorum);
+    }
+
+    /**
+     * @return signatures of the first quorum replicas (in sorted id order) whose commit matches
+     * the accepted PrePrepare in its view, or null while there are fewer
+     */
+    public Map<String, ByteString> commitQuorum(int quorum) {
+        return commits.quorum(prePrepare.getViewNumber(), getDigest(), quorum);
+    }
+
+    /**
+     * Drop the prepare votes whose aggregate shares spoiled a certificate, so that one can be
+     * formed again from the remaining and later votes.
+     */
+    public void rejectPrepares(List<String> replicaIds) {
+        replicaIds.forEach(prepares::remove);
+        flags &= ~PREPARE_CERTIFICATE_SENT;
+    }
+
+    /**
+     * Drop the commit votes whose aggregate shares spoiled a certificate, so that one can be
+     * formed again from the remaining and later votes.
+     */
+    public void rejectCommits(List<String> replicaIds) {
+        replicaIds.forEach(commits::remove);
+        flags &= ~COMMIT_CERTIFICATE_SENT;
+    }
+
+    public boolean isPrepareCertificateSent() {
+        return (flags & PREPARE_CERTIFICATE_SENT) != 0;
+    }
+
+    public void markPrepareCertificateSent() {
+        flags |= PREPARE_CERTIFICATE_SENT;
+    }
+
+    public boolean isCommitCertificateSent() {
+        return (flags & COMMIT_CERTIFICATE_SENT) != 0;
+    }
+
+    public void markCommitCertificateSent() {
+        flags |= COMMIT_CERTIFICATE_SENT;
+    }
+
+    /**
+     * Whether this replica has sent its commit vote for the current PrePrepare's view.
+     */
+    public boolean isCommitVoteSent() {
+        return (flags & COMMIT_VOTE_SENT) != 0;
+    }
+
+    public void markCommitVoteSent() {
+        flags |= COMMIT_VOTE_SENT;
+    }
+
+    /**
+     * Whether the collector has a prepare quorum and is waiting out the fast-path timeout for the rest.
+     */
+    public boolean isFastPathPending() {
+        return (flags & FAST_PATH_PENDING) != 0;
+    }
+
+    public void markFastPathPending() {
+        flags |= FAST_PATH_PENDING;
+    }
+}
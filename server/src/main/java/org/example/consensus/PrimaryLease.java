@@ -0,0 +1,104 @@
+package org.example.consensus;
+
+import org.example.config.Config;
+
+import java.util.Arrays;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/**
+ * The primary's read lease: while at least 2f+1 replicas (the primary among them) have promised
+ * not to ask for a new view, no other view can be installed, so the primary's executed state is
+ * the latest and it may answer reads alone.
+ *
+ * With leases enabled, a Prepare vote in a view is itself the promise: its sender does not send or
+ * act on a ViewChange for leaseMillis after sending it. The primary cannot know when a vote left,
+ * only that it was not before the PrePrepare it answers, so it counts each promise from the moment
+ * it proposed that sequence number, shortened by CLOCK_MARGIN for drift between replica clocks.
+ * Ordinary traffic therefore keeps the lease renewed.
+ *
+ * The scheme assumes bounded clock drift: a promise is timed by the backup's clock and counted by
+ * the primary's, so the two may not run apart by more than CLOCK_MARGIN leaves over one lease.
+ * Only their rates matter, not their offsets, since each side measures with its own nanoTime.
+ * A backup that restarts keeps its promise for a full lease from startup, as it does not know
+ * when its last vote left.
+ *
+ * Not thread-safe: used from the state executor only.
+ */
+public class PrimaryLease {
+
+    private static final double CLOCK_MARGIN = 0.9; // fraction of a promise the primary relies on
+
+    private final boolean enabled;
+    private final long leaseNanos;
+    private final long heldNanos;
+    private final int quorum;
+    private final int selfIndex; // in the sorted server ids
+    private final long[] expiries; // nanoTime per replica, by index in the sorted server ids
+    private final NavigableMap<Long, Long> proposedAt = new TreeMap<>(); // seq -> nanoTime, this view
+
+    public PrimaryLease(boolean enabled, long leaseMillis, int quorum, String selfId) {
+        this.enabled = enabled;
+        this.leaseNanos = leaseMillis * 1_000_000L;
+        this.heldNanos = (long) (leaseNanos * CLOCK_MARGIN);
+        this.quorum = quorum;
+        this.selfIndex = Config.getServerIndex(selfId);
+        this.expiries = new long[Config.getSortedServerIds().size()];
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * How long a backup's promise lasts once it sends a Prepare.
+     */
+    public long getLeaseNanos() {
+        return leaseNanos;
+    }
+
+    /** The primary sent a PrePrepare for this sequence number. */
+    public void onProposed(long sequenceNumber) {
+        if (enabled) {
+            proposedAt.put(sequenceNumber, System.nanoTime());
+        }
+    }
+
+    /** A replica voted to prepare a sequence number this primary proposed in the current view. */
+    public void onGrant(String replicaId, long sequenceNumber) {
+        Long proposed = proposedAt.get(sequenceNumber);
+        int index = Config.getServerIndex(replicaId);
+        if (proposed == null || index < 0) {
+            return;
+        }
+        expiries[index] = Math.max(expiries[index], proposed + heldNanos);
+    }
+
+    /**
+     * @return nanos left on the lease, or 0 if fewer than a quorum of promises are still running
+     */
+    public long remainingNanos() {
+        if (!enabled) {
+            return 0L;
+        }
+        long now = System.nanoTime();
+        long[] sorted = new long[expiries.length];
+        for (int i = 0; i < expiries.length; i++) {
+            sorted[i] = i == selfIndex ? Long.MAX_VALUE : expiries[i] - now; // the primary does not give up its own view
+        }
+        Arrays.sort(sorted);
+        long remaining = sorted[sorted.length - quorum]; // quorum-th largest
+        return Math.max(0L, remaining);
+    }
+
+    /** Forget proposal times for sequence numbers below the stable checkpoint. */
+    public void forgetThrough(long sequenceNumber) {
+        proposedAt.headMap(sequenceNumber, true).clear();
+    }
+
+    /** The view is over: no promise made to this primary carries into the next one. */
+    public void reset() {
+        proposedAt.clear();
+        Arrays.fill(expiries, 0L);
+    }
+}
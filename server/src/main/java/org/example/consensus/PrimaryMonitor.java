@@ -0,0 +1,218 @@
+package org.example.consensus;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Backup-side check that the primary orders requests about as fast as the cluster has shown it
+ * can, so a primary that stays just inside the request timeout does not cap throughput forever.
+ *
+ * Clients normally send requests to the primary alone, so the backup judges the primary by what
+ * every backup sees: the PrePrepares. A full batch (cut at the configured request or byte limit)
+ * means the primary had a queue when it cut it. Every interval the backup compares against a
+ * rolling baseline:
+ * - throughput: requests ordered per second, against the median of recent loaded intervals;
+ * - service time: median gap between consecutive full batches, i.e. how long the primary takes per
+ *   batch while it has work queued, against the median of recent intervals' medians.
+ * An interval is judged only if it was loaded, so an idle cluster never looks slow: it ordered a
+ * full batch, or a request this backup saw itself (a retransmission, or any request under
+ * digest-only ordering) had been waiting since before it began. It is slow if throughput falls
+ * below minFraction of the baseline or service time rises above baseline / minFraction.
+ * Slow intervals stay out of the baseline; SUSPECT_INTERVALS slow intervals in a row make the
+ * primary suspect.
+ *
+ * If the primaries of two views in a row are suspected, the cluster as a whole has probably slowed
+ * down: the baseline is dropped and relearned from the next view rather than cycling primaries.
+ *
+ * Called from the state executor only.
+ */
+public class PrimaryMonitor {
+
+    private static final Logger logger = LogManager.getLogger(PrimaryMonitor.class);
+    private static final int SUSPECT_INTERVALS = 3;
+    private static final int MIN_BASELINE_SAMPLES = 4;
+    private static final int SUSPICIONS_BEFORE_RELEARNING = 2;
+
+    private final boolean enabled;
+    private final long intervalMillis;
+    private final double minFraction;
+    private final int fullBatchRequests;
+    private final int fullBatchBytes;
+
+    // Baseline rings over loaded, non-slow intervals
+    private final double[] throughputs; // requests per second
+    private final double[] latencies;   // service time millis, -1 when no two full batches came in a row
+    private int sampleCount;
+    private int nextSample;
+
+    private final Map<String, Long> waiting = new HashMap<>(); // requests seen, not yet ordered -> nanoTime first seen
+    private long intervalStart = System.nanoTime();
+    private int orderedInInterval;
+    private int fullBatchesInInterval;
+    private long lastFullBatchAt; // nanoTime of the latest PrePrepare if its batch was full, else 0
+    private final long[] intervalLatencies; // gaps between full batches in nanos, the first window's worth in this interval
+    private int intervalLatencyCount;
+    private boolean warmingUp = true; // first interval of a view: the primary is still draining the NewView
+    private int slowIntervals;
+    private boolean suspected;
+    private int suspicionsInARow;
+
+    /**
+     * @param fullBatchRequests batch size limit the primary cuts at (batch.max.requests)
+     * @param fullBatchBytes    batch byte limit the primary cuts at (batch.max.bytes)
+     */
+    public PrimaryMonitor(boolean enabled, long intervalMillis, double minFraction, int window,
+                          int fullBatchRequests, int fullBatchBytes) {
+        if (window <= 0) throw new IllegalArgumentException("window must be > 0");
+        if (minFraction <= 0.0 || minFraction >= 1.0) throw new IllegalArgumentException("minFraction must be in (0, 1)");
+        this.enabled = enabled;
+        this.intervalMillis = intervalMillis;
+        this.minFraction = minFraction;
+        this.fullBatchRequests = fullBatchRequests;
+        this.fullBatchBytes = fullBatchBytes;
+        this.throughputs = new double[window];
+        this.latencies = new double[window];
+        this.intervalLatencies = new long[window];
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public long getIntervalMillis() {
+        return intervalMillis;
+    }
+
+    /** A client request reached this backup itself and should now be ordered by the primary. */
+    public void onRequestSeen(String requestId) {
+        if (!enabled) {
+            return;
+        }
+        waiting.putIfAbsent(requestId, System.nanoTime());
+    }
+
+    /**
+     * The primary ordered a batch in the current view.
+     *
+     * @param batchBytes serialized size of the batch's requests
+     */
+    public void onOrdered(List<String> requestIds, int batchBytes) {
+        long now = System.nanoTime();
+        orderedInInterval += requestIds.size();
+        requestIds.forEach(waiting::remove);
+        if (requestIds.size() < fullBatchRequests && batchBytes < fullBatchBytes) {
+            lastFullBatchAt = 0L; // cut on its timeout: the primary's queue ran dry
+            return;
+        }
+        fullBatchesInInterval++;
+        if (lastFullBatchAt != 0L && intervalLatencyCount < intervalLatencies.length) {
+            intervalLatencies[intervalLatencyCount++] = now - lastFullBatchAt;
+        }
+        lastFullBatchAt = now;
+    }
+
+    /** A request this backup saw was executed, whichever view ordered it. */
+    public void onExecuted(String requestId) {
+        waiting.remove(requestId);
+    }
+
+    /**
+     * A new view was installed. What was waiting is either re-issued or retransmitted by its
+     * clients, so the count starts over, and the first interval is not judged.
+     */
+    public void onViewStarted() {
+        if (suspected) {
+            suspicionsInARow++;
+        } else {
+            suspicionsInARow = 0;
+        }
+        if (suspicionsInARow >= SUSPICIONS_BEFORE_RELEARNING) {
+            logger.warn("Primaries of {} views in a row looked slow, relearning the baseline", suspicionsInARow);
+            sampleCount = 0;
+            nextSample = 0;
+            suspicionsInARow = 0;
+        }
+        waiting.clear();
+        lastFullBatchAt = 0L;
+        startInterval(System.nanoTime());
+        warmingUp = true;
+        slowIntervals = 0;
+        suspected = false;
+    }
+
+    /**
+     * Close the current interval; call every intervalMillis while this replica is a backup in an
+     * active view.
+     *
+     * @return true once, when the primary has been slow for SUSPECT_INTERVALS intervals in a row
+     */
+    public boolean evaluate() {
+        long now = System.nanoTime();
+        double seconds = (now - intervalStart) / 1e9;
+        double throughput = orderedInInterval / seconds;
+        double latency = intervalLatencyCount == 0 ? -1.0 : medianMillis(intervalLatencies, intervalLatencyCount);
+        boolean loaded = fullBatchesInInterval > 0;
+        for (long seen : waiting.values()) {
+            if (seen < intervalStart) {
+                loaded = true;
+                break;
+            }
+        }
+        startInterval(now);
+        if (suspected || !loaded || seconds <= 0.0) {
+            return false;
+        }
+        if (warmingUp) {
+            warmingUp = false;
+            return false;
+        }
+
+        double baselineThroughput = sampleCount < MIN_BASELINE_SAMPLES ? 0.0 : median(throughputs, sampleCount);
+        double baselineLatency = sampleCount < MIN_BASELINE_SAMPLES ? -1.0 : median(latencies, sampleCount);
+        boolean slow = baselineThroughput > 0.0 && throughput < minFraction * baselineThroughput;
+        if (latency >= 0.0 && baselineLatency > 0.0 && latency * minFraction > baselineLatency) {
+            slow = true;
+        }
+        if (!slow) {
+            slowIntervals = 0;
+            throughputs[nextSample] = throughput;
+            latencies[nextSample] = latency;
+            nextSample = (nextSample + 1) % throughputs.length;
+            sampleCount = Math.min(sampleCount + 1, throughputs.length);
+            return false;
+        }
+        slowIntervals++;
+        logger.info("Slow ordering interval {}/{}: {} req/s (baseline {}), {} ms per full batch (baseline {} ms)", slowIntervals,
+                SUSPECT_INTERVALS, String.format("%.1f", throughput), String.format("%.1f", baselineThroughput),
+                String.format("%.2f", latency), String.format("%.2f", baselineLatency));
+        if (slowIntervals < SUSPECT_INTERVALS) {
+            return false;
+        }
+        suspected = true;
+        return true;
+    }
+
+    private void startInterval(long now) {
+        intervalStart = now;
+        orderedInInterval = 0;
+        fullBatchesInInterval = 0;
+        intervalLatencyCount = 0;
+    }
+
+    private static double medianMillis(long[] nanos, int count) {
+        long[] sorted = Arrays.copyOf(nanos, count);
+        Arrays.sort(sorted);
+        return sorted[(count - 1) / 2] / 1_000_000.0;
+    }
+
+    // Median of the non-negative samples, or -1 if there are none
+    private static double median(double[] samples, int count) {
+        double[] sorted = Arrays.stream(samples, 0, count).filter(sample -> sample >= 0.0).sorted().toArray();
+        return sorted.length == 0 ? -1.0 : sorted[(sorted.length - 1) / 2];
+    }
+}
@@ -0,0 +1,212 @@
+package org.example.consensus;
+
+import org.example.MessageServiceOuterClass;
+import org.example.TransactionStatus;
+import org.example.crypto.Signed;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Rebuilds the consensus log and the view from the write-ahead log at startup, on top of the
+ * latest stable checkpoint in it (see latestCheckpoint()), which the replica installs first.
+ *
+ * Records are applied in order: PrePrepares and certificates refill the slots in the window, a
+ * ViewChange this replica sent leaves its view pending, and an installed NewView enters its view
+ * again. The view is thus the latest one this replica logged a ViewChange for or installed, so a
+ * replica that asked to leave a view comes back with that view change still pending rather than
+ * voting in the view it gave up. Each slot is then marked with the phase its certificates reached,
+ * so the committed ones can be executed again.
+ *
+ * Our own log was verified before it was written, so envelopes are not checked again.
+ * Used once, before the state executor takes any task.
+ */
+public class Recovery {
+
+    private final ConsensusLog log;
+    private final int voteThreshold;
+    private long viewNumber = 1L;
+    private boolean viewActive = true;
+    private long lastActiveView = 1L;
+    private long nextSequenceNumber = 1L;
+    private ViewChanges.NewView currentNewView; // null until a NewView is replayed
+    private Signed<MessageServiceOuterClass.ViewChangeMessage> ownViewChange; // pending if !viewActive
+    private final List<MessageServiceOuterClass.NewViewMessage> newViews = new ArrayList<>(); // installed, in order
+    private int replayed;
+
+    /**
+     * @param log the log to refill, already truncated through the installed checkpoint
+     * @param voteThreshold reports of a vote that make its batch re-issued (f+1), as in ViewChanges
+     */
+    public Recovery(ConsensusLog log, int voteThreshold) {
+        this.log = log;
+        this.voteThreshold = voteThreshold;
+    }
+
+    /**
+     * @return the stable checkpoint with the highest sequence number, or null if none was logged
+     */
+    public static MessageServiceOuterClass.StableCheckpoint latestCheckpoint(List<MessageServiceOuterClass.WalRecord> records) {
+        MessageServiceOuterClass.StableCheckpoint checkpoint = null;
+        for (MessageServiceOuterClass.WalRecord record : records) {
+            if (record.hasCheckpoint() && (checkpoint == null || record.getCheckpoint().getSnapshot().getSequenceNumber()
+                    > checkpoint.getSnapshot().getSequenceNumber())) {
+                checkpoint = record.getCheckpoint();
+            }
+        }
+        return checkpoint;
+    }
+
+    public void replay(List<MessageServiceOuterClass.WalRecord> records) throws IOException {
+        for (MessageServiceOuterClass.WalRecord record : records) {
+            if (apply(record)) {
+                replayed++;
+            }
+        }
+        for (long seq = log.getLowWatermark() + 1; seq <= log.getHighWatermark(); seq++) {
+            LogEntry entry = log.get(seq);
+            if (entry == null || !entry.hasPrePrepare()) {
+                continue;
+            }
+            if (entry.getCommitCertificate() != null && entry.getCommitCertificate().getCertificate().getDigest().equals(entry.getDigest())) {
+                entry.setStatus(TransactionStatus.COMMITTED);
+            } else if (entry.getPrepareCertificate() != null && entry.getPrepareCertificate().getCertificate().getDigest().equals(entry.getDigest())) {
+                entry.setStatus(TransactionStatus.PREPARED);
+            }
+        }
+    }
+
+    private boolean apply(MessageServiceOuterClass.WalRecord record) throws IOException {
+        switch (record.getRecordCase()) {
+            case PRE_PREPARE -> {
+                MessageServiceOuterClass.PrePrepareMessage prePrepare = record.getPrePrepare().getPrePrepare();
+                long sequenceNumber = prePrepare.getSequenceNumber();
+                if (!log.inWindow(sequenceNumber)) {
+                    return false;
+                }
+                LogEntry entry = log.getOrCreate(sequenceNumber);
+                if (entry.hasPrePrepare() && entry.getPrePrepare().getViewNumber() >= prePrepare.getViewNumber()) {
+                    return false;
+                }
+                List<Signed<MessageServiceOuterClass.ClientRequest>> requests = new ArrayList<>();
+                for (MessageServiceOuterClass.SignedMessage envelope : record.getPrePrepare().getRequestsList()) {
+                    requests.add(new Signed<>(MessageServiceOuterClass.ClientRequest.parseFrom(envelope.getPayload()), envelope));
+                }
+                entry.setPrePrepare(prePrepare, requests);
+                entry.setStatus(TransactionStatus.PREPREPARED);
+                if (prePrepare.getViewNumber() > viewNumber) {
+                    // Accepted only in an active view; view 1 starts without a NewView to log
+                    viewNumber = prePrepare.getViewNumber();
+                    viewActive = true;
+                    lastActiveView = viewNumber;
+                }
+                nextSequenceNumber = Math.max(nextSequenceNumber, sequenceNumber + 1);
+                return true;
+            }
+            case PREPARE_CERTIFICATE -> {
+                long sequenceNumber = record.getPrepareCertificate().getCertificate().getSequenceNumber();
+                if (!log.inWindow(sequenceNumber)) {
+                    return false;
+                }
+                log.getOrCreate(sequenceNumber).setPrepareCertificate(record.getPrepareCertificate());
+                return true;
+            }
+            case COMMIT_CERTIFICATE -> {
+                long sequenceNumber = record.getCommitCertificate().getCertificate().getSequenceNumber();
+                if (!log.inWindow(sequenceNumber)) {
+                    return false;
+                }
+                log.getOrCreate(sequenceNumber).setCommitCertificate(record.getCommitCertificate());
+                return true;
+            }
+            case VIEW_CHANGE -> {
+                MessageServiceOuterClass.SignedMessage envelope = record.getViewChange();
+                MessageServiceOuterClass.ViewChangeMessage viewChange = MessageServiceOuterClass.ViewChangeMessage.parseFrom(envelope.getPayload());
+                if (viewChange.getNewViewNumber() <= viewNumber) {
+                    return false;
+                }
+                viewNumber = viewChange.getNewViewNumber();
+                viewActive = false;
+                ownViewChange = new Signed<>(viewChange, envelope);
+                return true;
+            }
+            case NEW_VIEW -> {
+                MessageServiceOuterClass.NewViewMessage header = record.getNewView();
+                long view = header.getViewNumber();
+                if (view < viewNumber || (view == viewNumber && viewActive)) {
+                    return false;
+                }
+                List<Signed<MessageServiceOuterClass.ViewChangeMessage>> viewChanges = new ArrayList<>();
+                for (MessageServiceOuterClass.SignedMessage envelope : header.getViewChangesList()) {
+                    viewChanges.add(new Signed<>(MessageServiceOuterClass.ViewChangeMessage.parseFrom(envelope.getPayload()), envelope));
+                }
+                currentNewView = ViewChanges.plan(view, viewChanges, voteThreshold);
+                viewNumber = view;
+                viewActive = true;
+                lastActiveView = view;
+                nextSequenceNumber = Math.max(nextSequenceNumber, currentNewView.maxSequenceNumber() + 1);
+                newViews.add(header);
+                return true;
+            }
+            default -> {
+                return false; // checkpoints are installed up front
+            }
+        }
+    }
+
+    /**
+     * @return records that changed the log or the view
+     */
+    public int getReplayed() {
+        return replayed;
+    }
+
+    public long getViewNumber() {
+        return viewNumber;
+    }
+
+    public boolean isViewActive() {
+        return viewActive;
+    }
+
+    public long getLastActiveView() {
+        return lastActiveView;
+    }
+
+    /**
+     * @return the sequence number after the highest one logged or re-issued
+     */
+    public long getNextSequenceNumber() {
+        return nextSequenceNumber;
+    }
+
+    public ViewChanges.NewView getCurrentNewView() {
+        return currentNewView;
+    }
+
+    public Signed<MessageServiceOuterClass.ViewChangeMessage> getOwnViewChange() {
+        return ownViewChange;
+    }
+
+    public List<MessageServiceOuterClass.NewViewMessage> getNewViews() {
+        return newViews;
+    }
+
+    public static MessageServiceOuterClass.WalRecord loggedPrePrepare(MessageServiceOuterClass.PrePrepareMessage prePrepare,
+                                                                      List<Signed<MessageServiceOuterClass.ClientRequest>> requests) {
+        return MessageServiceOuterClass.WalRecord.newBuilder()
+                .setPrePrepare(MessageServiceOuterClass.LoggedPrePrepare.newBuilder()
+                        .setPrePrepare(prePrepare)
+                        .addAllRequests(requests.stream().map(Signed::envelope).toList()))
+                .build();
+    }
+
+    public static MessageServiceOuterClass.WalRecord loggedViewChange(Signed<MessageServiceOuterClass.ViewChangeMessage> viewChange) {
+        return MessageServiceOuterClass.WalRecord.newBuilder().setViewChange(viewChange.envelope()).build();
+    }
+
+    public static MessageServiceOuterClass.WalRecord loggedNewView(ViewChanges.NewView newView) {
+        return MessageServiceOuterClass.WalRecord.newBuilder().setNewView(newView.header()).build();
+    }
+}
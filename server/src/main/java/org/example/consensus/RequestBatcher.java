@@ -0,0 +1,127 @@
+package org.example.consensus;
+
+import com.google.protobuf.ByteString;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.example.ExecutorManager;
+import org.example.MessageServiceOuterClass;
+import org.example.crypto.Digests;
+import org.example.crypto.Signed;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Primary-side accumulator that groups client requests into batches so that a single
+ * PrePrepare (and a single consensus instance) orders many requests.
+ *
+ * A batch is cut when it reaches maxRequests, maxBytes of serialized requests, or when its
+ * first request has waited timeoutMillis. Not thread-safe: add() must be called from the
+ * state executor, and the timeout is delivered back onto it.
+ */
+public class RequestBatcher {
+
+    private static final Logger logger = LogManager.getLogger(RequestBatcher.class);
+
+    private final ExecutorManager executorManager;
+    private final Consumer<List<Signed<MessageServiceOuterClass.ClientRequest>>> onBatch;
+
+    private volatile int maxRequests;
+    private final int maxBytes;
+    private volatile long timeoutMillis;
+
+    private final List<Signed<MessageServiceOuterClass.ClientRequest>> current = new ArrayList<>();
+    private int currentBytes;
+    private long generation; // bumped on every cut so stale timeouts are ignored
+    private boolean lastCutOnTimeout;
+
+    public RequestBatcher(ExecutorManager executorManager,
+                          int maxRequests,
+                          int maxBytes,
+                          long timeoutMillis,
+                          Consumer<List<Signed<MessageServiceOuterClass.ClientRequest>>> onBatch) {
+        if (maxRequests <= 0) throw new IllegalArgumentException("maxRequests must be > 0");
+        if (maxBytes <= 0) throw new IllegalArgumentException("maxBytes must be > 0");
+        this.executorManager = executorManager;
+        this.maxRequests = maxRequests;
+        this.maxBytes = maxBytes;
+        this.timeoutMillis = timeoutMillis;
+        this.onBatch = onBatch;
+    }
+
+    public void add(Signed<MessageServiceOuterClass.ClientRequest> request) {
+        current.add(request);
+        currentBytes += request.envelope().getSerializedSize();
+
+        if (current.size() >= maxRequests || currentBytes >= maxBytes) {
+            cut(false);
+        } else if (current.size() == 1) {
+            long batchGeneration = generation;
+            executorManager.schedule(
+                    () -> executorManager.submitStateTransition(() -> onTimeout(batchGeneration)),
+                    timeoutMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void onTimeout(long batchGeneration) {
+        if (batchGeneration == generation && !current.isEmpty()) {
+            cut(true);
+        }
+    }
+
+    public int getMaxRequests() {
+        return maxRequests;
+    }
+
+    /** Takes effect from the next request added. */
+    public void setMaxRequests(int maxRequests) {
+        if (maxRequests <= 0) throw new IllegalArgumentException("maxRequests must be > 0");
+        this.maxRequests = maxRequests;
+    }
+
+    public long getTimeoutMillis() {
+        return timeoutMillis;
+    }
+
+    /** Takes effect from the next batch started. */
+    public void setTimeoutMillis(long timeoutMillis) {
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    /** Whether the most recent batch was cut by its timeout rather than by a size limit. */
+    public boolean wasLastCutOnTimeout() {
+        return lastCutOnTimeout;
+    }
+
+    private void cut(boolean onTimeout) {
+        List<Signed<MessageServiceOuterClass.ClientRequest>> batch = List.copyOf(current);
+        logger.info("Cut batch of {} requests ({} bytes)", batch.size(), currentBytes);
+        current.clear();
+        currentBytes = 0;
+        generation++;
+        lastCutOnTimeout = onTimeout;
+        onBatch.accept(batch);
+    }
+
+    /**
+     * Batch digest: SHA-256 over the concatenated SHA-256 digests of the signed request
+     * payloads, in order.
+     */
+    public static ByteString batchDigest(List<MessageServiceOuterClass.SignedMessage> requests) {
+        return batchDigestOf(requests.stream().map(RequestStore::digestOf).toList());
+    }
+
+    /**
+     * Batch digest from the per-request digests, as carried by a digest-only PrePrepare.
+     */
+    public static ByteString batchDigestOf(List<ByteString> requestDigests) {
+        ByteArrayOutputStream digests = new ByteArrayOutputStream(requestDigests.size() * 32);
+        for (ByteString digest : requestDigests) {
+            digests.writeBytes(digest.toByteArray());
+        }
+        return ByteString.copyFrom(Digests.sha256(digests.toByteArray()));
+    }
+}
@@ -0,0 +1,64 @@
+package org.example.consensus;
+
+import com.google.protobuf.ByteString;
+import org.example.MessageServiceOuterClass;
+import org.example.crypto.Digests;
+import org.example.crypto.Signed;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Verified client request bodies keyed by the SHA-256 of their payload, for digest-only
+ * ordering: PrePrepares name requests by digest and each replica resolves them here.
+ *
+ * Bodies stay after execution so lagging peers can still fetch them; the oldest are evicted
+ * beyond capacity. Not thread-safe: used from the state executor only.
+ */
+public class RequestStore {
+
+    private final Map<ByteString, Signed<MessageServiceOuterClass.ClientRequest>> bodies;
+
+    public RequestStore(int capacity) {
+        if (capacity <= 0) throw new IllegalArgumentException("capacity must be > 0");
+        this.bodies = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<ByteString, Signed<MessageServiceOuterClass.ClientRequest>> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    public static ByteString digestOf(MessageServiceOuterClass.SignedMessage request) {
+        return Digests.sha256(request.getPayload());
+    }
+
+    public void put(Signed<MessageServiceOuterClass.ClientRequest> request) {
+        bodies.putIfAbsent(digestOf(request.envelope()), request);
+    }
+
+    public Signed<MessageServiceOuterClass.ClientRequest> get(ByteString digest) {
+        return bodies.get(digest);
+    }
+
+    /**
+     * Bodies for every digest, in order, or null if any is missing.
+     */
+    public List<Signed<MessageServiceOuterClass.ClientRequest>> resolve(List<ByteString> digests) {
+        List<Signed<MessageServiceOuterClass.ClientRequest>> resolved = new ArrayList<>(digests.size());
+        for (ByteString digest : digests) {
+            Signed<MessageServiceOuterClass.ClientRequest> body = bodies.get(digest);
+            if (body == null) {
+                return null;
+            }
+            resolved.add(body);
+        }
+        return resolved;
+    }
+
+    public List<ByteString> missing(List<ByteString> digests) {
+        return digests.stream().filter(digest -> !bodies.containsKey(digest)).distinct().toList();
+    }
+}
@@ -0,0 +1,99 @@
+package org.example.consensus;
+
+import com.google.protobuf.ByteString;
+import com.google.protobuf.InvalidProtocolBufferException;
+import org.example.MessageServiceOuterClass;
+import org.example.crypto.Digests;
+
+import java.util.List;
+
+/**
+ * Receiver-side progress of a snapshot transfer, kept across interrupted streams so a new
+ * attempt (to the same or another peer) resumes at the first missing chunk.
+ *
+ * Every chunk is checked against its digest from the header, and the header's digests are
+ * checked against the certified state digest, so no chunk is kept unless it is part of the
+ * certified state. Used by one transfer thread at a time.
+ */
+public class StateTransfer {
+
+    private MessageServiceOuterClass.CheckpointCertificate checkpoint;
+    private List<ByteString> chunkDigests = List.of();
+    private ByteString[] chunks = new ByteString[0];
+    private int received;
+
+    /**
+     * Start receiving the snapshot of a checkpoint, keeping the chunks already received if it is
+     * the checkpoint in progress.
+     *
+     * @return false if the chunk digests do not hash to the certified state digest
+     */
+    public boolean begin(MessageServiceOuterClass.CheckpointCertificate checkpoint, List<ByteString> chunkDigests) {
+        if (!Checkpoints.stateDigestOf(chunkDigests).equals(checkpoint.getCertificate().getDigest())) {
+            return false;
+        }
+        if (isResuming(checkpoint)) {
+            return true;
+        }
+        this.checkpoint = checkpoint;
+        this.chunkDigests = List.copyOf(chunkDigests);
+        this.chunks = new ByteString[chunkDigests.size()];
+        this.received = 0;
+        return true;
+    }
+
+    private boolean isResuming(MessageServiceOuterClass.CheckpointCertificate checkpoint) {
+        return this.checkpoint != null
+                && this.checkpoint.getCertificate().getSequenceNumber() == checkpoint.getCertificate().getSequenceNumber()
+                && this.checkpoint.getCertificate().getDigest().equals(checkpoint.getCertificate().getDigest());
+    }
+
+    /**
+     * @return false if the chunk does not belong to the snapshot in progress
+     */
+    public boolean accept(MessageServiceOuterClass.SnapshotChunk chunk) {
+        int index = chunk.getIndex();
+        if (checkpoint == null || index < 0 || index >= chunks.length
+                || !Digests.sha256(chunk.getData()).equals(chunkDigests.get(index))) {
+            return false;
+        }
+        if (chunks[index] == null) {
+            chunks[index] = chunk.getData();
+            received++;
+        }
+        return true;
+    }
+
+    public boolean isComplete() {
+        return checkpoint != null && received == chunks.length;
+    }
+
+    /** Checkpoint in progress, or 0 if none. */
+    public long getSequenceNumber() {
+        return checkpoint == null ? 0L : checkpoint.getCertificate().getSequenceNumber();
+    }
+
+    public int nextMissingChunk() {
+        for (int i = 0; i < chunks.length; i++) {
+            if (chunks[i] == null) {
+                return i;
+            }
+        }
+        return chunks.length;
+    }
+
+    public MessageServiceOuterClass.CheckpointCertificate getCheckpoint() {
+        return checkpoint;
+    }
+
+    public MessageServiceOuterClass.StateSnapshot assemble() throws InvalidProtocolBufferException {
+        return MessageServiceOuterClass.StateSnapshot.parseFrom(ByteString.copyFrom(List.of(chunks)));
+    }
+
+    public void clear() {
+        checkpoint = null;
+        chunkDigests = List.of();
+        chunks = new ByteString[0];
+        received = 0;
+    }
+}
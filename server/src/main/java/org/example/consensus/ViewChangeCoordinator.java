@@ -0,0 +1,525 @@
+package org.example.consensus;
+
+import com.google.protobuf.ByteString;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.example.ExecutorManager;
+import org.example.MessageServiceOuterClass;
+import org.example.config.Config;
+import org.example.crypto.MessageAuthenticator;
+import org.example.crypto.Signed;
+import org.example.crypto.VerificationStage;
+import org.example.messaging.ServerMessageSender;
+import org.example.storage.WriteAheadLog;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Moves a replica from view to view. A backup suspects the primary when a request it was handed
+ * does not execute in time or the primary orders too slowly (see PrimaryMonitor), and sends a
+ * ViewChange; the new view's primary forms the NewView from a quorum of them (see ViewChanges) and
+ * streams it to the backups, which check it before installing it.
+ *
+ * Owns the view state: the rest of the replica reads it through getViewNumber() and isViewActive(),
+ * and is told through Replica when a view is left or installed. A ViewChange is logged before it
+ * is sent and a NewView when it is installed, so a restart resumes at the same point (see Recovery).
+ *
+ * Not thread-safe: used from the state executor only, except for handleViewChange() and
+ * handleNewView(), which verify on the calling thread, and getViewNumber() and getNewViews().
+ */
+public class ViewChangeCoordinator {
+
+    private static final Logger logger = LogManager.getLogger(ViewChangeCoordinator.class);
+
+    /**
+     * What view changes need from the replica they run in. Called on the state executor, except
+     * the certificate checks, which run on the verification workers.
+     */
+    public interface Replica {
+
+        String primaryIdFor(long viewNumber);
+
+        /** False while the replica is deactivated, so it does not suspect anyone. */
+        boolean isActive();
+
+        /** Whether the client already has its reply to this request. */
+        boolean hasExecuted(MessageServiceOuterClass.ClientRequest request);
+
+        /** Append a record to the write-ahead log, then run the step that reveals it to peers. */
+        void afterLogging(MessageServiceOuterClass.WalRecord record, Runnable then);
+
+        boolean verifyCheckpointCertificate(MessageServiceOuterClass.QuorumCertificate certificate);
+
+        boolean verifyPrepareCertificate(MessageServiceOuterClass.QuorumCertificate certificate);
+
+        boolean verifyCommitCertificate(MessageServiceOuterClass.CommitCertificate certificate);
+
+        /** The view was left: drop whatever was in progress in it. */
+        void onViewLeft();
+
+        /** A NewView was installed; its checkpoint may be newer than the replica's. */
+        void onViewInstalled(ViewChanges.NewView newView);
+
+        /** New primary: order the re-issued PrePrepares, then assign new sequence numbers after them. */
+        void reissue(ViewChanges.NewView newView);
+    }
+
+    private final long REQUEST_TIMEOUT_MILLIS = 1000;
+    private final int VIEW_CHANGE_BACKOFF_LIMIT = 6; // NewView timeout doubles per failed view, up to 2^6 request timeouts
+    private final int NEW_VIEW_HISTORY = 8; // installed NewViews kept for the CLI
+
+    private final String nodeId;
+    private final int quorum;
+    private final int voteThreshold;
+    private final boolean fastPath;
+    private final ConsensusLog log;
+    private final Checkpoints checkpoints;
+    private final PrimaryMonitor primaryMonitor;
+    private final WriteAheadLog wal;
+    private final ServerMessageSender sender;
+    private final MessageAuthenticator auth;
+    private final VerificationStage verificationStage;
+    private final ExecutorManager executorManager;
+    private final Replica replica;
+
+    private volatile long viewNumber = 1L;
+    private boolean viewActive = true; // false from sending a ViewChange until the NewView is installed
+    private long lastActiveView = 1L;
+    private final ViewChanges viewChanges;
+    private ViewChanges.NewView currentNewView; // what the current view started from; null in view 1
+    private Signed<MessageServiceOuterClass.ViewChangeMessage> ownViewChange; // latest sent, kept in the write-ahead log while its view is pending
+    private long leasePromisedUntil; // backup: nanoTime before which it must not ask for a new view
+
+    // ViewChange envelopes already verified, by view, so a NewView naming them is not verified twice
+    private final Map<MessageServiceOuterClass.SignedMessage, Long> verifiedViewChanges = new ConcurrentHashMap<>();
+    private final Deque<MessageServiceOuterClass.NewViewMessage> newViews = new ConcurrentLinkedDeque<>(); // recently installed, for the CLI
+
+    /**
+     * @param voteThreshold reports of a vote that make its batch re-issued (f+1), also the number
+     *                      of replicas asking for a later view that makes this one join them
+     * @param fastPath      whether ViewChanges report votes, since a batch may commit on all n of them
+     */
+    public ViewChangeCoordinator(String nodeId, int quorum, int voteThreshold, boolean fastPath,
+                                 ConsensusLog log, Checkpoints checkpoints, PrimaryMonitor primaryMonitor,
+                                 WriteAheadLog wal, ServerMessageSender sender, MessageAuthenticator auth,
+                                 VerificationStage verificationStage, ExecutorManager executorManager, Replica replica) {
+        this.nodeId = nodeId;
+        this.quorum = quorum;
+        this.voteThreshold = voteThreshold;
+        this.fastPath = fastPath;
+        this.log = log;
+        this.checkpoints = checkpoints;
+        this.primaryMonitor = primaryMonitor;
+        this.wal = wal;
+        this.sender = sender;
+        this.auth = auth;
+        this.verificationStage = verificationStage;
+        this.executorManager = executorManager;
+        this.replica = replica;
+        this.viewChanges = new ViewChanges(quorum, voteThreshold);
+    }
+
+    /**
+     * Take over the view a restart recovered. Runs before start().
+     */
+    public void restore(Recovery recovery) {
+        viewNumber = recovery.getViewNumber();
+        viewActive = recovery.isViewActive();
+        lastActiveView = recovery.getLastActiveView();
+        currentNewView = recovery.getCurrentNewView();
+        ownViewChange = recovery.getOwnViewChange();
+        recovery.getNewViews().forEach(this::rememberNewView);
+    }
+
+    /**
+     * Start watching the primary, and resume a view change that was pending at a restart.
+     */
+    public void start() {
+        if (!viewActive) {
+            executorManager.submitStateTransition(this::resumeViewChange);
+        }
+        if (primaryMonitor.isEnabled()) {
+            scheduleMonitorPrimary();
+        }
+    }
+
+    /**
+     * Safe to call from any thread.
+     */
+    public long getViewNumber() {
+        return viewNumber;
+    }
+
+    public boolean isViewActive() {
+        return viewActive;
+    }
+
+    private boolean isPrimary() {
+        return nodeId.equals(replica.primaryIdFor(viewNumber));
+    }
+
+    /**
+     * Backup: it voted in the current view, so it must not ask for or help form a new view
+     * before this nanoTime (see PrimaryLease).
+     */
+    public void promiseLeaseUntil(long nanoTime) {
+        leasePromisedUntil = Math.max(leasePromisedUntil, nanoTime);
+    }
+
+    /**
+     * @return the digest the current view's NewView fixed for a sequence number, or null if the primary is free to assign it
+     */
+    public ByteString reissuedDigest(long sequenceNumber) {
+        return currentNewView != null && currentNewView.viewNumber() == viewNumber ? currentNewView.digestFor(sequenceNumber) : null;
+    }
+
+    /**
+     * Records a new write-ahead log generation carries over: the NewView the view started from,
+     * and this replica's ViewChange while it is pending.
+     */
+    public List<MessageServiceOuterClass.WalRecord> walRecords() {
+        List<MessageServiceOuterClass.WalRecord> records = new ArrayList<>(2);
+        if (currentNewView != null) {
+            records.add(Recovery.loggedNewView(currentNewView));
+        }
+        if (!viewActive && ownViewChange != null) {
+            records.add(Recovery.loggedViewChange(ownViewChange));
+        }
+        return records;
+    }
+
+    /**
+     * Safe to call from any thread.
+     */
+    public List<MessageServiceOuterClass.NewViewMessage> getNewViews() {
+        return List.copyOf(newViews);
+    }
+
+    /**
+     * Backup: suspect the primary if a request it was handed has not executed within the
+     * timeout and the view has not changed in the meantime.
+     */
+    public void watchRequest(MessageServiceOuterClass.ClientRequest request, String requestId) {
+        long view = viewNumber;
+        primaryMonitor.onRequestSeen(requestId);
+        executorManager.schedule(() -> executorManager.submitStateTransition(() -> {
+            if (viewNumber != view || !viewActive || !replica.isActive() || replica.hasExecuted(request)) {
+                return;
+            }
+            logger.warn("Request {} not executed within {} ms in view {}, starting a view change",
+                    requestId, REQUEST_TIMEOUT_MILLIS, view);
+            startViewChange(view + 1);
+        }), REQUEST_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Backup: suspect a primary that is live but orders well below the rate the cluster has
+     * sustained before (see PrimaryMonitor). Checked every monitor interval on the state executor.
+     */
+    private void scheduleMonitorPrimary() {
+        try {
+            executorManager.schedule(() -> executorManager.submitStateTransition(() -> {
+                if (viewActive && !isPrimary() && replica.isActive() && primaryMonitor.evaluate()) {
+                    logger.warn("Primary {} of view {} orders too slowly, starting a view change", replica.primaryIdFor(viewNumber), viewNumber);
+                    startViewChange(viewNumber + 1);
+                }
+                scheduleMonitorPrimary();
+            }), primaryMonitor.getIntervalMillis(), TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            // shutting down
+        }
+    }
+
+    /**
+     * Stop taking part in the current view and ask for a later one. The ViewChange carries the
+     * stable checkpoint and a prepared proof for each entry above it, so it is bounded by the
+     * window however long the log is. With the fast path it also reports each PrePrepare this
+     * replica voted for that no certificate from its view covers, since that batch may have
+     * committed on all n votes alone.
+     */
+    private void startViewChange(long newViewNumber) {
+        if (newViewNumber <= viewNumber) {
+            return;
+        }
+        if (holdForLease(() -> startViewChange(newViewNumber))) {
+            return;
+        }
+        leaveView(newViewNumber);
+
+        MessageServiceOuterClass.ViewChangeMessage.Builder viewChange = MessageServiceOuterClass.ViewChangeMessage.newBuilder()
+                .setNewViewNumber(newViewNumber)
+                .setReplicaId(nodeId);
+        MessageServiceOuterClass.CheckpointCertificate checkpoint = checkpoints.getStableCertificate();
+        if (checkpoint != null) {
+            viewChange.setCheckpoint(checkpoint);
+        }
+        for (long seq = log.getLowWatermark() + 1; seq <= log.getHighWatermark(); seq++) {
+            LogEntry entry = log.get(seq);
+            MessageServiceOuterClass.PreparedProof proof = entry == null ? null : entry.getPreparedProof();
+            if (proof != null) {
+                viewChange.addPrepared(proof);
+            }
+            if (fastPath && entry != null && entry.hasPrePrepare()
+                    && (proof == null || ViewChanges.certificateOf(proof).getViewNumber() < entry.getPrePrepare().getViewNumber())) {
+                viewChange.addVoted(entry.getPrePrepare());
+            }
+        }
+        MessageServiceOuterClass.ViewChangeMessage message = viewChange.build();
+        logger.info("Starting view change to view {}: checkpoint {}, {} prepared entries, {} voted", newViewNumber,
+                log.getLowWatermark(), message.getPreparedCount(), message.getVotedCount());
+        Signed<MessageServiceOuterClass.ViewChangeMessage> own = new Signed<>(message, auth.seal(message));
+        ownViewChange = own;
+        // Logged first: once sent, this replica must not vote in the old view again, even after a restart
+        replica.afterLogging(Recovery.loggedViewChange(own), () -> sender.broadcastViewChange(own));
+        awaitNewView(newViewNumber);
+        onViewChange(own);
+    }
+
+    /**
+     * Restarted with a view change pending: send the logged ViewChange again, since it may not have
+     * reached anyone before the crash, and wait for the NewView as if it had just been sent.
+     */
+    private void resumeViewChange() {
+        logger.info("Restarted with the view change to view {} pending", viewNumber);
+        sender.broadcastViewChange(ownViewChange);
+        awaitNewView(viewNumber);
+        onViewChange(ownViewChange);
+    }
+
+    // Move on to the next view if this one's primary does not deliver, waiting longer each time
+    private void awaitNewView(long newViewNumber) {
+        long timeout = REQUEST_TIMEOUT_MILLIS << Math.min(newViewNumber - lastActiveView - 1, VIEW_CHANGE_BACKOFF_LIMIT);
+        executorManager.schedule(() -> executorManager.submitStateTransition(() -> {
+            if (viewNumber == newViewNumber && !viewActive) {
+                logger.warn("No NewView for view {} within {} ms", newViewNumber, timeout);
+                startViewChange(newViewNumber + 1);
+            }
+        }), timeout, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Backup: while a lease promise to the current primary runs, do not ask for or help form a
+     * new view; run the step once the promise expires instead.
+     *
+     * @return true if the step was deferred
+     */
+    private boolean holdForLease(Runnable step) {
+        long remaining = leasePromisedUntil - System.nanoTime();
+        if (remaining <= 0) {
+            return false;
+        }
+        logger.info("Holding view change in view {} for {} ms: lease promised to primary {}", viewNumber,
+                TimeUnit.NANOSECONDS.toMillis(remaining), replica.primaryIdFor(viewNumber));
+        executorManager.schedule(() -> executorManager.submitStateTransition(step), remaining, TimeUnit.NANOSECONDS);
+        return true;
+    }
+
+    private void leaveView(long newViewNumber) {
+        viewNumber = newViewNumber;
+        viewActive = false;
+        leasePromisedUntil = 0L; // a new view is underway or installed; the old primary's lease no longer rests on this replica
+        replica.onViewLeft();
+    }
+
+    public void handleViewChange(Signed<MessageServiceOuterClass.ViewChangeMessage> signed) {
+        if (!verifyViewChange(signed)) {
+            logger.warn("Invalid ViewChange to view {} from {}", signed.message().getNewViewNumber(), signed.signerId());
+            return;
+        }
+        verifiedViewChanges.put(signed.envelope(), signed.message().getNewViewNumber());
+        executorManager.submitStateTransition(() -> onViewChange(signed));
+    }
+
+    /**
+     * Check everything a ViewChange claims: its checkpoint certificate, and for each proof that
+     * it lies in the window above that checkpoint, that its certificate is valid, from an earlier
+     * view and on the PrePrepare's digest, and that the digest matches the batch; and for each
+     * reported vote that it lies in the window, is from an earlier view and matches its batch. The
+     * certificates are checked in parallel across the verification workers.
+     */
+    private boolean verifyViewChange(Signed<MessageServiceOuterClass.ViewChangeMessage> signed) {
+        MessageServiceOuterClass.ViewChangeMessage viewChange = signed.message();
+        if (!signed.signerId().equals(viewChange.getReplicaId()) || !Config.hasServer(viewChange.getReplicaId())) {
+            return false;
+        }
+        List<BooleanSupplier> checks = new ArrayList<>();
+        long low = 0L;
+        if (viewChange.hasCheckpoint()) {
+            MessageServiceOuterClass.QuorumCertificate checkpoint = viewChange.getCheckpoint().getCertificate();
+            low = checkpoint.getSequenceNumber();
+            checks.add(() -> replica.verifyCheckpointCertificate(checkpoint));
+        }
+        Set<Long> sequenceNumbers = new HashSet<>();
+        for (MessageServiceOuterClass.PreparedProof proof : viewChange.getPreparedList()) {
+            MessageServiceOuterClass.PrePrepareMessage prePrepare = proof.getPrePrepare();
+            long sequenceNumber = prePrepare.getSequenceNumber();
+            if (proof.getCertificateCase() == MessageServiceOuterClass.PreparedProof.CertificateCase.CERTIFICATE_NOT_SET) {
+                return false;
+            }
+            MessageServiceOuterClass.QuorumCertificate certificate = ViewChanges.certificateOf(proof);
+            if (sequenceNumber <= low || sequenceNumber > low + log.getWindowSize() || !sequenceNumbers.add(sequenceNumber)
+                    || certificate.getSequenceNumber() != sequenceNumber
+                    || !certificate.getDigest().equals(prePrepare.getDigest())
+                    || certificate.getViewNumber() >= viewChange.getNewViewNumber()
+                    || !batchMatchesDigest(prePrepare)) {
+                return false;
+            }
+            checks.add(proof.hasPrepareCertificate()
+                    ? () -> replica.verifyPrepareCertificate(certificate)
+                    : () -> replica.verifyCommitCertificate(proof.getCommitCertificate()));
+        }
+        Set<Long> votedSequenceNumbers = new HashSet<>();
+        for (MessageServiceOuterClass.PrePrepareMessage prePrepare : viewChange.getVotedList()) {
+            long sequenceNumber = prePrepare.getSequenceNumber();
+            if (sequenceNumber <= low || sequenceNumber > low + log.getWindowSize() || !votedSequenceNumbers.add(sequenceNumber)
+                    || prePrepare.getViewNumber() >= viewChange.getNewViewNumber()
+                    || !batchMatchesDigest(prePrepare)) {
+                return false;
+            }
+        }
+        return verificationStage.verifyAll(checks);
+    }
+
+    private static boolean batchMatchesDigest(MessageServiceOuterClass.PrePrepareMessage prePrepare) {
+        ByteString digest = prePrepare.getRequestsCount() == 0
+                ? RequestBatcher.batchDigestOf(prePrepare.getRequestDigestsList())
+                : RequestBatcher.batchDigest(prePrepare.getRequestsList());
+        return digest.equals(prePrepare.getDigest());
+    }
+
+    private void onViewChange(Signed<MessageServiceOuterClass.ViewChangeMessage> signed) {
+        long requestedView = signed.message().getNewViewNumber();
+        if (requestedView < viewNumber || (requestedView == viewNumber && viewActive)) {
+            // Asking for a view that is already installed: the sender missed its NewView
+            if (viewActive && isPrimary() && currentNewView != null && !signed.signerId().equals(nodeId)) {
+                streamNewView(signed.signerId());
+            }
+            return;
+        }
+        if (viewActive && holdForLease(() -> onViewChange(signed))) {
+            return;
+        }
+        ViewChanges.NewView newView = viewChanges.add(signed);
+
+        long join = viewChanges.viewToJoin(viewNumber, voteThreshold);
+        if (join > viewNumber) {
+            logger.info("{} or more replicas asked for a view above {}, joining view {}", voteThreshold, viewNumber, join);
+            startViewChange(join);
+        }
+        if (newView != null && replica.primaryIdFor(newView.viewNumber()).equals(nodeId) && newView.viewNumber() >= viewNumber) {
+            startViewChange(newView.viewNumber()); // no-op unless this replica had not asked for the view itself
+            announceNewView(newView);
+        }
+    }
+
+    /**
+     * New primary: install the view computed from a quorum of ViewChanges, stream the NewView to
+     * every backup from the streaming executor, and re-issue its PrePrepares.
+     */
+    private void announceNewView(ViewChanges.NewView newView) {
+        logger.info("Formed NewView for view {}: checkpoint {}, re-issuing seq {} to {}", newView.viewNumber(),
+                newView.minSequenceNumber(), newView.minSequenceNumber() + 1, newView.maxSequenceNumber());
+        installNewView(newView);
+        for (String peerId : Config.getServerIdsExcept(nodeId)) {
+            streamNewView(peerId);
+        }
+        replica.reissue(newView);
+    }
+
+    private void streamNewView(String peerId) {
+        MessageServiceOuterClass.NewViewMessage header = currentNewView.header();
+        List<MessageServiceOuterClass.PrePrepareMessage> prePrepares = currentNewView.prePrepares();
+        executorManager.submitStreamingIO(() -> sender.streamNewView(peerId, header, prePrepares));
+    }
+
+    /**
+     * Backup: check the header of a NewView stream. Its ViewChanges must be a quorum of valid,
+     * distinct ones for the view (those already verified on arrival are not checked again), and
+     * recomputing from them must give the same re-issued range. The PrePrepares that follow in
+     * the stream are then checked against the recomputed ones as they are accepted.
+     * Runs on the stream's gRPC thread, so the view is installed before any PrePrepare after it.
+     *
+     * @return false if the NewView is invalid and the rest of the stream should be dropped
+     */
+    public boolean handleNewView(Signed<MessageServiceOuterClass.NewViewMessage> signed) {
+        MessageServiceOuterClass.NewViewMessage header = signed.message();
+        long view = header.getViewNumber();
+        if (!replica.primaryIdFor(view).equals(signed.signerId())) {
+            logger.warn("NewView for view {} from {} who is not its primary", view, signed.signerId());
+            return false;
+        }
+        List<MessageServiceOuterClass.SignedMessage> envelopes = header.getViewChangesList();
+        if (envelopes.size() < quorum || envelopes.size() > Config.getServerIds().size()) {
+            logger.warn("NewView for view {} carries {} ViewChanges", view, envelopes.size());
+            return false;
+        }
+        List<Signed<MessageServiceOuterClass.ViewChangeMessage>> opened = new ArrayList<>(Collections.nCopies(envelopes.size(), null));
+        List<BooleanSupplier> checks = new ArrayList<>(envelopes.size());
+        for (int i = 0; i < envelopes.size(); i++) {
+            int index = i;
+            checks.add(() -> {
+                MessageServiceOuterClass.SignedMessage envelope = envelopes.get(index);
+                Signed<MessageServiceOuterClass.ViewChangeMessage> viewChange =
+                        auth.open(envelope, MessageServiceOuterClass.ViewChangeMessage.getDefaultInstance());
+                opened.set(index, viewChange);
+                return viewChange != null && viewChange.message().getNewViewNumber() == view
+                        && (verifiedViewChanges.containsKey(envelope) || verifyViewChange(viewChange));
+            });
+        }
+        if (!verificationStage.verifyAll(checks)
+                || opened.stream().map(viewChange -> viewChange.message().getReplicaId()).distinct().count() != envelopes.size()) {
+            logger.warn("NewView for view {} from {} carries an invalid ViewChange", view, signed.signerId());
+            return false;
+        }
+        ViewChanges.NewView newView = ViewChanges.plan(view, opened, voteThreshold);
+        if (newView.minSequenceNumber() != header.getMinSequenceNumber() || newView.maxSequenceNumber() != header.getMaxSequenceNumber()) {
+            logger.warn("NewView for view {} from {} does not follow from its ViewChanges", view, signed.signerId());
+            return false;
+        }
+        executorManager.submitStateTransition(() -> installNewView(newView));
+        return true;
+    }
+
+    /**
+     * Enter a view from its NewView. A checkpoint newer than this replica's becomes stable
+     * here too, by state transfer if it has not executed that far.
+     */
+    private void installNewView(ViewChanges.NewView newView) {
+        long view = newView.viewNumber();
+        if (view < viewNumber || (view == viewNumber && viewActive)) {
+            return;
+        }
+        if (view > viewNumber) {
+            leaveView(view);
+        }
+        viewActive = true;
+        lastActiveView = view;
+        currentNewView = newView;
+        wal.append(Recovery.loggedNewView(newView)); // ahead of any vote in the view, which waits for its own later record
+        primaryMonitor.onViewStarted();
+        viewChanges.discardThrough(view);
+        verifiedViewChanges.values().removeIf(requested -> requested <= view);
+        rememberNewView(newView.header());
+        logger.info("Installed view {} (primary {}): checkpoint {}, {} PrePrepares re-issued", view, replica.primaryIdFor(view),
+                newView.minSequenceNumber(), newView.prePrepares().size());
+        replica.onViewInstalled(newView);
+    }
+
+    private void rememberNewView(MessageServiceOuterClass.NewViewMessage header) {
+        newViews.addLast(header);
+        while (newViews.size() > NEW_VIEW_HISTORY) {
+            newViews.pollFirst();
+        }
+    }
+}
@@ -0,0 +1,290 @@
+package org.example.consensus;
+
+import com.google.protobuf.ByteString;
+import org.example.MessageServiceOuterClass;
+import org.example.crypto.Signed;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/**
+ * Verified ViewChange messages, grouped by the view they ask for, and the NewView each group
+ * yields once it reaches a quorum.
+ *
+ * Every ViewChange is merged as it arrives: the highest stable checkpoint seen so far, and per
+ * sequence number above it the prepared proof from the highest view. Since each ViewChange
+ * only carries proofs above its sender's stable checkpoint, the merged state never exceeds a
+ * window of entries, and the NewView is read straight off it when the quorum-th ViewChange
+ * comes in. Backups recompute the same NewView from the ViewChanges it names via plan().
+ *
+ * With the fast path, a batch may commit on the prepare votes of all n replicas without any
+ * replica holding a certificate, so ViewChanges also report the PrePrepares their senders voted for.
+ * A quorum of ViewChanges then includes f+1 correct replicas that voted for a fast-committed batch,
+ * and no other batch of that view can gather f+1 reports. A batch reported by f+1 ViewChanges in
+ * a view above every certificate for its sequence number is re-issued like a prepared one.
+ *
+ * Only each replica's ViewChange for its highest requested view is kept, so the collection holds
+ * at most one message per replica. Not thread-safe: used from the state executor only.
+ */
+public class ViewChanges {
+
+    /**
+     * What a new view starts from: the stable checkpoint to install and the PrePrepare re-issued
+     * for every sequence number in (minSequenceNumber, maxSequenceNumber], in order.
+     */
+    public record NewView(long viewNumber,
+                          List<MessageServiceOuterClass.SignedMessage> viewChanges,
+                          MessageServiceOuterClass.CheckpointCertificate checkpoint, // null before the first stable checkpoint
+                          long minSequenceNumber,
+                          long maxSequenceNumber,
+                          List<MessageServiceOuterClass.PrePrepareMessage> prePrepares) {
+
+        public MessageServiceOuterClass.NewViewMessage header() {
+            return MessageServiceOuterClass.NewViewMessage.newBuilder()
+                    .setViewNumber(viewNumber)
+                    .addAllViewChanges(viewChanges)
+                    .setMinSequenceNumber(minSequenceNumber)
+                    .setMaxSequenceNumber(maxSequenceNumber)
+                    .build();
+        }
+
+        /**
+         * @return the digest the view must order at this sequence number, or null if it is free
+         */
+        public ByteString digestFor(long sequenceNumber) {
+            if (sequenceNumber <= minSequenceNumber || sequenceNumber > maxSequenceNumber) {
+                return null;
+            }
+            return prePrepares.get((int) (sequenceNumber - minSequenceNumber - 1)).getDigest();
+        }
+    }
+
+    // Reports of one PrePrepare (view and digest) voted for at a sequence number
+    private static final class Votes {
+        private final MessageServiceOuterClass.PrePrepareMessage prePrepare;
+        private int count;
+
+        private Votes(MessageServiceOuterClass.PrePrepareMessage prePrepare) {
+            this.prePrepare = prePrepare;
+        }
+    }
+
+    // The ViewChanges received for one view and their merge so far
+    private static final class Round {
+        private final long viewNumber;
+        private final int voteThreshold;
+        private final Map<String, Signed<MessageServiceOuterClass.ViewChangeMessage>> received = new LinkedHashMap<>();
+        private MessageServiceOuterClass.CheckpointCertificate checkpoint;
+        private final NavigableMap<Long, MessageServiceOuterClass.PreparedProof> prepared = new TreeMap<>();
+        private final NavigableMap<Long, List<Votes>> voted = new TreeMap<>(); // in order of first report
+
+        private Round(long viewNumber, int voteThreshold) {
+            this.viewNumber = viewNumber;
+            this.voteThreshold = voteThreshold;
+        }
+
+        private void add(Signed<MessageServiceOuterClass.ViewChangeMessage> viewChange) {
+            received.put(viewChange.message().getReplicaId(), viewChange);
+            merge(viewChange.message());
+        }
+
+        private void remove(String replicaId) {
+            if (received.remove(replicaId) == null) {
+                return;
+            }
+            checkpoint = null;
+            prepared.clear();
+            voted.clear();
+            received.values().forEach(viewChange -> merge(viewChange.message()));
+        }
+
+        private void merge(MessageServiceOuterClass.ViewChangeMessage viewChange) {
+            if (viewChange.hasCheckpoint() && (checkpoint == null
+                    || viewChange.getCheckpoint().getCertificate().getSequenceNumber() > checkpoint.getCertificate().getSequenceNumber())) {
+                checkpoint = viewChange.getCheckpoint();
+                prepared.headMap(checkpoint.getCertificate().getSequenceNumber(), true).clear();
+                voted.headMap(checkpoint.getCertificate().getSequenceNumber(), true).clear();
+            }
+            long low = checkpointSequenceNumber();
+            for (MessageServiceOuterClass.PreparedProof proof : viewChange.getPreparedList()) {
+                long sequenceNumber = proof.getPrePrepare().getSequenceNumber();
+                if (sequenceNumber <= low) {
+                    continue;
+                }
+                MessageServiceOuterClass.PreparedProof current = prepared.get(sequenceNumber);
+                if (current == null || certificateOf(proof).getViewNumber() > certificateOf(current).getViewNumber()) {
+                    prepared.put(sequenceNumber, proof);
+                }
+            }
+            // Reported PrePrepares carry no signature of their own (they are MAC'd under auth.mac.enabled),
+            // so a report is only as good as the signed ViewChange it arrives in. That is enough at f+1:
+            // at least one report comes from a correct replica, which votes only for the PrePrepare it
+            // accepted from that view's primary, and at most once per view and sequence number. A
+            // faulty primary may still have split its votes, but a batch needs all n votes to commit on
+            // the fast path, so no other digest of that view can have committed
+            for (MessageServiceOuterClass.PrePrepareMessage prePrepare : viewChange.getVotedList()) {
+                long sequenceNumber = prePrepare.getSequenceNumber();
+                if (sequenceNumber <= low) {
+                    continue;
+                }
+                List<Votes> reports = voted.computeIfAbsent(sequenceNumber, seq -> new ArrayList<>());
+                Votes same = reports.stream()
+                        .filter(v -> v.prePrepare.getViewNumber() == prePrepare.getViewNumber()
+                                && v.prePrepare.getDigest().equals(prePrepare.getDigest()))
+                        .findFirst()
+                        .orElse(null);
+                if (same == null) {
+                    same = new Votes(prePrepare);
+                    reports.add(same);
+                }
+                same.count++;
+            }
+        }
+
+        // The PrePrepare to re-issue at a sequence number: the proven one, unless f+1 replicas report
+        // voting for one in a later view, which may have committed on the fast path
+        private MessageServiceOuterClass.PrePrepareMessage chosen(long sequenceNumber) {
+            MessageServiceOuterClass.PreparedProof proof = prepared.get(sequenceNumber);
+            long provenView = proof == null ? 0L : certificateOf(proof).getViewNumber();
+            MessageServiceOuterClass.PrePrepareMessage best = null;
+            for (Votes votes : voted.getOrDefault(sequenceNumber, List.of())) {
+                if (votes.count >= voteThreshold && votes.prePrepare.getViewNumber() > provenView
+                        && (best == null || votes.prePrepare.getViewNumber() > best.getViewNumber())) {
+                    best = votes.prePrepare;
+                }
+            }
+            if (best != null) {
+                return best;
+            }
+            return proof == null ? null : proof.getPrePrepare();
+        }
+
+        private long checkpointSequenceNumber() {
+            return checkpoint == null ? 0L : checkpoint.getCertificate().getSequenceNumber();
+        }
+
+        private NewView newView() {
+            long min = checkpointSequenceNumber();
+            long max = prepared.isEmpty() ? min : Math.max(min, prepared.lastKey());
+            for (Map.Entry<Long, List<Votes>> reports : voted.descendingMap().entrySet()) {
+                if (reports.getKey() <= max) {
+                    break;
+                }
+                if (chosen(reports.getKey()) != null) {
+                    max = reports.getKey();
+                    break;
+                }
+            }
+            List<MessageServiceOuterClass.PrePrepareMessage> prePrepares = new ArrayList<>((int) (max - min));
+            for (long seq = min + 1; seq <= max; seq++) {
+                MessageServiceOuterClass.PrePrepareMessage prePrepare = chosen(seq);
+                prePrepares.add(prePrepare != null
+                        ? prePrepare.toBuilder().setViewNumber(viewNumber).build()
+                        : nullPrePrepare(viewNumber, seq));
+            }
+            return new NewView(viewNumber, received.values().stream().map(Signed::envelope).toList(),
+                    checkpoint, min, max, prePrepares);
+        }
+    }
+
+    private final int quorum;
+    private final int voteThreshold;
+    private final NavigableMap<Long, Round> rounds = new TreeMap<>();
+    private final Map<String, Long> requested = new HashMap<>(); // highest view each replica has asked for
+
+    /**
+     * @param voteThreshold reports of a vote that make its batch re-issued (f+1)
+     */
+    public ViewChanges(int quorum, int voteThreshold) {
+        this.quorum = quorum;
+        this.voteThreshold = voteThreshold;
+    }
+
+    /**
+     * Add a verified ViewChange. Ignored if its sender already asked for this or a later view;
+     * otherwise it replaces the sender's ViewChange for an earlier view. A round stops taking
+     * ViewChanges once it has a quorum, so its NewView does not change under the new primary.
+     *
+     * @return the NewView for the ViewChange's view if this ViewChange completed its quorum, else null
+     */
+    public NewView add(Signed<MessageServiceOuterClass.ViewChangeMessage> viewChange) {
+        String replicaId = viewChange.message().getReplicaId();
+        long viewNumber = viewChange.message().getNewViewNumber();
+        Long previous = requested.get(replicaId);
+        if (previous != null && previous >= viewNumber) {
+            return null;
+        }
+        requested.put(replicaId, viewNumber);
+        if (previous != null) {
+            Round earlier = rounds.get(previous);
+            if (earlier != null && earlier.received.size() < quorum) {
+                earlier.remove(replicaId);
+                if (earlier.received.isEmpty()) {
+                    rounds.remove(previous);
+                }
+            }
+        }
+        Round round = rounds.computeIfAbsent(viewNumber, view -> new Round(view, voteThreshold));
+        if (round.received.size() >= quorum) {
+            return null;
+        }
+        round.add(viewChange);
+        return round.received.size() == quorum ? round.newView() : null;
+    }
+
+    /**
+     * The smallest view above the current one that at least threshold replicas (f+1, so one of
+     * them is correct) have asked for, or 0 if there is none yet.
+     */
+    public long viewToJoin(long currentView, int threshold) {
+        long smallest = Long.MAX_VALUE;
+        int count = 0;
+        for (long viewNumber : requested.values()) {
+            if (viewNumber > currentView) {
+                count++;
+                smallest = Math.min(smallest, viewNumber);
+            }
+        }
+        return count >= threshold ? smallest : 0L;
+    }
+
+    /**
+     * Forget the rounds for views up to one that has been installed.
+     */
+    public void discardThrough(long viewNumber) {
+        rounds.headMap(viewNumber, true).clear();
+    }
+
+    /**
+     * Recompute the NewView for a view from a given set of verified ViewChanges, as a backup
+     * checks the one its new primary sent.
+     */
+    public static NewView plan(long viewNumber, List<Signed<MessageServiceOuterClass.ViewChangeMessage>> viewChanges,
+                               int voteThreshold) {
+        Round round = new Round(viewNumber, voteThreshold);
+        viewChanges.forEach(round::add);
+        return round.newView();
+    }
+
+    public static MessageServiceOuterClass.QuorumCertificate certificateOf(MessageServiceOuterClass.PreparedProof proof) {
+        return proof.hasPrepareCertificate()
+                ? proof.getPrepareCertificate().getCertificate()
+                : proof.getCommitCertificate().getCertificate();
+    }
+
+    /**
+     * Fills a sequence number no ViewChange proves prepared: an empty batch that executes as a no-op.
+     */
+    public static MessageServiceOuterClass.PrePrepareMessage nullPrePrepare(long viewNumber, long sequenceNumber) {
+        return MessageServiceOuterClass.PrePrepareMessage.newBuilder()
+                .setViewNumber(viewNumber)
+                .setSequenceNumber(sequenceNumber)
+                .setDigest(RequestBatcher.batchDigestOf(List.of()))
+                .build();
+    }
+}
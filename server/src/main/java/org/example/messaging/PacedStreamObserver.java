@@ -0,0 +1,83 @@
+package org.example.messaging;
+
+import io.grpc.stub.CallStreamObserver;
+import io.grpc.stub.ClientCallStreamObserver;
+import io.grpc.stub.ServerCallStreamObserver;
+import io.grpc.stub.StreamObserver;
+
+/**
+ * Outgoing stream that only hands gRPC a message when the transport is ready for it,
+ * so a long stream (e.g. a state snapshot) is not buffered in memory ahead of a slow receiver.
+ * Paces both server-streaming responses and client-streaming requests (e.g. a NewView).
+ *
+ * send() blocks the calling thread, so streams are produced on the streaming executor.
+ */
+public class PacedStreamObserver<T> {
+
+    private static final long READY_POLL_MILLIS = 100;
+
+    private final CallStreamObserver<T> observer;
+    private final Object readiness = new Object();
+    private volatile boolean cancelled;
+
+    /**
+     * Pace a response stream. Must be created inside the service method, before it returns.
+     */
+    public PacedStreamObserver(StreamObserver<T> responseObserver) {
+        ServerCallStreamObserver<T> server = (ServerCallStreamObserver<T>) responseObserver;
+        this.observer = server;
+        server.setOnReadyHandler(this::signal);
+        server.setOnCancelHandler(this::cancel);
+    }
+
+    /**
+     * Pace a request stream. Must be created in ClientResponseObserver.beforeStart(), whose
+     * onError() should then call cancel().
+     */
+    public PacedStreamObserver(ClientCallStreamObserver<T> requestObserver) {
+        this.observer = requestObserver;
+        requestObserver.setOnReadyHandler(this::signal);
+    }
+
+    private void signal() {
+        synchronized (readiness) {
+            readiness.notifyAll();
+        }
+    }
+
+    /**
+     * The call ended before the stream did; pending and later sends return false.
+     */
+    public void cancel() {
+        cancelled = true;
+        signal();
+    }
+
+    /**
+     * @return false if the call was cancelled
+     */
+    public boolean send(T value) throws InterruptedException {
+        synchronized (readiness) {
+            while (!observer.isReady() && !cancelled) {
+                readiness.wait(READY_POLL_MILLIS);
+            }
+        }
+        if (cancelled) {
+            return false;
+        }
+        observer.onNext(value);
+        return true;
+    }
+
+    public void complete() {
+        if (!cancelled) {
+            observer.onCompleted();
+        }
+    }
+
+    public void fail(Throwable t) {
+        if (!cancelled) {
+            observer.onError(t);
+        }
+    }
+}
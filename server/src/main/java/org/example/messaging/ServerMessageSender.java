@@ -1,15 +1,32 @@
 package org.example.messaging;
 
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.protobuf.Empty;
+import io.grpc.Status;
+import io.grpc.stub.ClientCallStreamObserver;
+import io.grpc.stub.ClientResponseObserver;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.example.MessageServiceGrpc;
 import org.example.MessageServiceOuterClass;
+import org.example.config.Config;
 import org.example.crypto.MessageAuthenticator;
+import org.example.crypto.Signed;
 
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
 
 public class ServerMessageSender extends MessageSender {
 
     private static final Logger logger = LogManager.getLogger(ServerMessageSender.class);
+    private static final long REQUEST_FETCH_TIMEOUT_MILLIS = 500;
+    private static final long STATE_TRANSFER_TIMEOUT_MILLIS = 30_000; // an interrupted transfer resumes where it stopped
+    private static final long NEW_VIEW_TIMEOUT_MILLIS = 10_000;
     private final AtomicBoolean active;
 
     public ServerMessageSender(String nodeId, CommunicationLogger commLogger, MessageAuthenticator auth) {
@@ -25,11 +42,146 @@ public class ServerMessageSender extends MessageSender {
         return active.get();
     }
 
-    public void sendClientReply(String clientId, MessageServiceOuterClass.ClientReply reply) {
+    private boolean canSend() {
         if (!isActive()) {
             logger.info("Node is inactive. Cannot send messages.");
+            return false;
         }
+        return true;
+    }
+
+    public void sendClientReply(String clientId, MessageServiceOuterClass.ClientReply reply) {
+        if (!canSend()) return;
         logger.info("Sending ClientReply to client {}: {}", clientId, reply.getResult());
-        signAndSend(clientId, reply, (stub, signed) -> stub.reply((MessageServiceOuterClass.ClientReply) signed));
+        signAndSend(clientId, reply, MessageServiceGrpc.MessageServiceFutureStub::reply);
+    }
+
+    public void forwardRequest(String primaryId, Signed<MessageServiceOuterClass.ClientRequest> request) {
+        if (!canSend()) return;
+        logger.info("Forwarding request from client {} at ts {} to primary {}", request.message().getClientId(), request.message().getTimestamp(), primaryId);
+        // Relayed unchanged so the primary can still verify the client's own signature
+        send(primaryId, request.envelope(), MessageServiceGrpc.MessageServiceFutureStub::forwardRequest);
+    }
+
+    public ListenableFuture<MessageServiceOuterClass.RequestBodies> fetchRequests(String peerId, MessageServiceOuterClass.RequestFetch fetch) {
+        if (!canSend()) return Futures.immediateFuture(MessageServiceOuterClass.RequestBodies.getDefaultInstance());
+        logger.info("Fetching {} request bodies from {}", fetch.getDigestsCount(), peerId);
+        return call(peerId, fetch, (stub, envelope) ->
+                stub.withDeadlineAfter(REQUEST_FETCH_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS).fetchRequests(envelope));
+    }
+
+    /**
+     * Open a state transfer stream from a peer; blocks on each next() until the peer sends.
+     */
+    public Iterator<MessageServiceOuterClass.StateTransferChunk> transferState(String peerId, MessageServiceOuterClass.StateTransferRequest request) {
+        if (!canSend()) return Collections.emptyIterator();
+        logger.info("Requesting state transfer from {} (last executed {}, resuming checkpoint {} at chunk {})",
+                peerId, request.getLastExecuted(), request.getCheckpointSequenceNumber(), request.getFromChunk());
+        return stubManager.getBlockingStub(peerId)
+                .withDeadlineAfter(STATE_TRANSFER_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)
+                .transferState(auth.seal(request, peerId));
+    }
+
+    public ListenableFuture<List<Empty>> broadcastPrePrepare(MessageServiceOuterClass.PrePrepareMessage prePrepare) {
+        if (!canSend()) return Futures.immediateFuture(List.of());
+        logger.info("Broadcasting PrePrepare v={} seq={}", prePrepare.getViewNumber(), prePrepare.getSequenceNumber());
+        return broadcast(Config.getServerIdsExcept(nodeId), prePrepare, MessageServiceGrpc.MessageServiceFutureStub::prePrepare);
+    }
+
+    public void sendPrepare(String collectorId, MessageServiceOuterClass.PrepareMessage prepare) {
+        if (!canSend()) return;
+        logger.info("Sending Prepare v={} seq={} to collector {}", prepare.getViewNumber(), prepare.getSequenceNumber(), collectorId);
+        signAndSend(collectorId, prepare, MessageServiceGrpc.MessageServiceFutureStub::prepare);
+    }
+
+    public ListenableFuture<List<Empty>> broadcastPrepareCertificate(MessageServiceOuterClass.PrepareCertificate certificate) {
+        if (!canSend()) return Futures.immediateFuture(List.of());
+        logger.info("Broadcasting PrepareCertificate v={} seq={}", certificate.getCertificate().getViewNumber(), certificate.getCertificate().getSequenceNumber());
+        return broadcast(Config.getServerIdsExcept(nodeId), certificate, MessageServiceGrpc.MessageServiceFutureStub::prepared);
+    }
+
+    public void sendCommit(String collectorId, MessageServiceOuterClass.CommitMessage commit) {
+        if (!canSend()) return;
+        logger.info("Sending Commit v={} seq={} to collector {}", commit.getViewNumber(), commit.getSequenceNumber(), collectorId);
+        signAndSend(collectorId, commit, MessageServiceGrpc.MessageServiceFutureStub::commit);
+    }
+
+    public ListenableFuture<List<Empty>> broadcastCommitCertificate(MessageServiceOuterClass.CommitCertificate certificate) {
+        if (!canSend()) return Futures.immediateFuture(List.of());
+        logger.info("Broadcasting CommitCertificate v={} seq={}", certificate.getCertificate().getViewNumber(), certificate.getCertificate().getSequenceNumber());
+        return broadcast(Config.getServerIdsExcept(nodeId), certificate, MessageServiceGrpc.MessageServiceFutureStub::committed);
+    }
+
+    public void sendCheckpoint(String collectorId, MessageServiceOuterClass.CheckpointMessage checkpoint) {
+        if (!canSend()) return;
+        logger.info("Sending Checkpoint seq={} to collector {}", checkpoint.getSequenceNumber(), collectorId);
+        signAndSend(collectorId, checkpoint, MessageServiceGrpc.MessageServiceFutureStub::checkpoint);
+    }
+
+    public ListenableFuture<List<Empty>> broadcastCheckpointCertificate(MessageServiceOuterClass.CheckpointCertificate certificate) {
+        if (!canSend()) return Futures.immediateFuture(List.of());
+        logger.info("Broadcasting CheckpointCertificate seq={}", certificate.getCertificate().getSequenceNumber());
+        return broadcast(Config.getServerIdsExcept(nodeId), certificate, MessageServiceGrpc.MessageServiceFutureStub::checkpointed);
+    }
+
+    public void broadcastViewChange(Signed<MessageServiceOuterClass.ViewChangeMessage> viewChange) {
+        if (!canSend()) return;
+        logger.info("Broadcasting ViewChange to view {} with {} prepared entries",
+                viewChange.message().getNewViewNumber(), viewChange.message().getPreparedCount());
+        // The same signed envelope goes to everyone, since the new primary relays it in its NewView
+        for (String targetNodeId : Config.getServerIdsExcept(nodeId)) {
+            send(targetNodeId, viewChange.envelope(), MessageServiceGrpc.MessageServiceFutureStub::viewChange);
+        }
+    }
+
+    /**
+     * Stream a NewView to one backup: the signed header, then the re-issued PrePrepares in
+     * sequence order, each handed to gRPC only once the stream is ready for it. Blocks while
+     * the backup reads, so it runs on the streaming executor; the stream is at most a window
+     * of PrePrepares long.
+     */
+    public void streamNewView(String peerId,
+                              MessageServiceOuterClass.NewViewMessage newView,
+                              List<MessageServiceOuterClass.PrePrepareMessage> prePrepares) {
+        if (!canSend()) return;
+        logger.info("Streaming NewView v={} to {} with {} re-issued PrePrepares", newView.getViewNumber(), peerId, prePrepares.size());
+        AtomicReference<PacedStreamObserver<MessageServiceOuterClass.SignedMessage>> paced = new AtomicReference<>();
+        stubManager.getAsyncStub(peerId)
+                .withDeadlineAfter(NEW_VIEW_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)
+                .newView(new ClientResponseObserver<MessageServiceOuterClass.SignedMessage, Empty>() {
+                    @Override
+                    public void beforeStart(ClientCallStreamObserver<MessageServiceOuterClass.SignedMessage> requestStream) {
+                        paced.set(new PacedStreamObserver<>(requestStream));
+                    }
+
+                    @Override
+                    public void onNext(Empty value) {
+                    }
+
+                    @Override
+                    public void onError(Throwable t) {
+                        logger.info("NewView v={} to {} failed: {}", newView.getViewNumber(), peerId, Status.fromThrowable(t));
+                        paced.get().cancel();
+                    }
+
+                    @Override
+                    public void onCompleted() {
+                    }
+                });
+        PacedStreamObserver<MessageServiceOuterClass.SignedMessage> stream = paced.get();
+        try {
+            if (!stream.send(auth.seal(newView, peerId))) {
+                return;
+            }
+            for (MessageServiceOuterClass.PrePrepareMessage prePrepare : prePrepares) {
+                if (!stream.send(auth.seal(prePrepare, peerId))) {
+                    return;
+                }
+            }
+            stream.complete();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            stream.fail(Status.CANCELLED.asRuntimeException());
+        }
     }
 }
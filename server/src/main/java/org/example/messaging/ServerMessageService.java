@@ -1,6 +1,8 @@
 package org.example.messaging;
 
 import com.google.protobuf.Empty;
+import com.google.protobuf.Message;
+import io.grpc.Status;
 import io.grpc.stub.StreamObserver;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -8,9 +10,12 @@ import org.example.CLILogging;
 import org.example.MessageServiceGrpc;
 import org.example.MessageServiceOuterClass;
 import org.example.ServerNode;
-import org.example.crypto.MessageAuthenticator;
+import org.example.crypto.Signed;
+import org.example.crypto.VerificationStage;
 
-//import static org.example.CLILogging.formatNewViews;
+import java.util.List;
+
+import static org.example.CLILogging.formatNewViews;
 
 
 public class ServerMessageService extends MessageServiceGrpc.MessageServiceImplBase {
@@ -18,35 +23,204 @@ public class ServerMessageService extends MessageServiceGrpc.MessageServiceImplB
     private static final Logger logger = LogManager.getLogger(ServerMessageService.class);
     private final ServerNode serverNode;
     private final CommunicationLogger communicationLogger;
-    private final MessageAuthenticator auth;
+    private final VerificationStage verificationStage;
 
-    public ServerMessageService(ServerNode serverNode, CommunicationLogger communicationLogger, MessageAuthenticator auth) {
+    public ServerMessageService(ServerNode serverNode, CommunicationLogger communicationLogger, VerificationStage verificationStage) {
         this.serverNode = serverNode;
         this.communicationLogger = communicationLogger;
-        this.auth = auth;
+        this.verificationStage = verificationStage;
     }
 
     // Output of the RPC executed on the server is added to the StreamObserver passed
 
     @Override
-    public void request(MessageServiceOuterClass.ClientRequest request, StreamObserver<Empty> responseObserver) {
-//        logger.info("MESSAGE: <REQUEST, ({}, {}, {}), {}, {}> received from client {}",
-//                request.getTransaction().getSender(),
-//                request.getTransaction().getReceiver(),
-//                request.getTransaction().getAmount(),
-//                request.getTimestamp(),
-//                request.getClientId(),
-//                request.getClientId()
-//        );
+    public void request(MessageServiceOuterClass.SignedMessage request, StreamObserver<Empty> responseObserver) {
+        // Verified off the gRPC thread; only verified requests reach the node
+        verificationStage.submit(request, MessageServiceOuterClass.ClientRequest.getDefaultInstance(), verified -> {
+            communicationLogger.add(verified.message());
+            logger.debug("Signature verified for client request from client {}", verified.message().getClientId());
+            serverNode.handleClientRequest(verified);
+        }, rejected -> logger.warn("Invalid signature for client request from {}", rejected.getSignerId()));
+
+        responseObserver.onNext(Empty.getDefaultInstance());
+        responseObserver.onCompleted();
+    }
+
+    @Override
+    public void forwardRequest(MessageServiceOuterClass.SignedMessage request, StreamObserver<Empty> responseObserver) {
+        verificationStage.submit(request, MessageServiceOuterClass.ClientRequest.getDefaultInstance(), verified -> {
+            communicationLogger.add(verified.message());
+            serverNode.handleClientRequest(verified);
+        }, rejected -> logger.warn("Invalid signature for forwarded request from {}", rejected.getSignerId()));
+
+        responseObserver.onNext(Empty.getDefaultInstance());
+        responseObserver.onCompleted();
+    }
+
+    @Override
+    public void prePrepare(MessageServiceOuterClass.SignedMessage request, StreamObserver<Empty> responseObserver) {
+        verificationStage.submit(request, MessageServiceOuterClass.PrePrepareMessage.getDefaultInstance(), verified -> {
+            communicationLogger.add(verified.message(), verified.signerId());
+            serverNode.handlePrePrepare(verified);
+        }, rejected -> logger.warn("Invalid signature on PrePrepare from {}", rejected.getSignerId()));
+
+        responseObserver.onNext(Empty.getDefaultInstance());
+        responseObserver.onCompleted();
+    }
+
+    @Override
+    public void prepare(MessageServiceOuterClass.SignedMessage request, StreamObserver<Empty> responseObserver) {
+        verificationStage.submit(request, MessageServiceOuterClass.PrepareMessage.getDefaultInstance(), verified -> {
+            communicationLogger.add(verified.message(), verified.signerId());
+            serverNode.handlePrepare(verified);
+        }, rejected -> logger.warn("Invalid signature on Prepare from {}", rejected.getSignerId()));
+
+        responseObserver.onNext(Empty.getDefaultInstance());
+        responseObserver.onCompleted();
+    }
+
+    @Override
+    public void prepared(MessageServiceOuterClass.SignedMessage request, StreamObserver<Empty> responseObserver) {
+        verificationStage.submit(request, MessageServiceOuterClass.PrepareCertificate.getDefaultInstance(), verified -> {
+            communicationLogger.add(verified.message(), verified.signerId());
+            serverNode.handlePrepareCertificate(verified);
+        }, rejected -> logger.warn("Invalid signature on PrepareCertificate from {}", rejected.getSignerId()));
+
+        responseObserver.onNext(Empty.getDefaultInstance());
+        responseObserver.onCompleted();
+    }
+
+    @Override
+    public void commit(MessageServiceOuterClass.SignedMessage request, StreamObserver<Empty> responseObserver) {
+        verificationStage.submit(request, MessageServiceOuterClass.CommitMessage.getDefaultInstance(), verified -> {
+            communicationLogger.add(verified.message(), verified.signerId());
+            serverNode.handleCommit(verified);
+        }, rejected -> logger.warn("Invalid signature on Commit from {}", rejected.getSignerId()));
+
+        responseObserver.onNext(Empty.getDefaultInstance());
+        responseObserver.onCompleted();
+    }
+
+    @Override
+    public void committed(MessageServiceOuterClass.SignedMessage request, StreamObserver<Empty> responseObserver) {
+        verificationStage.submit(request, MessageServiceOuterClass.CommitCertificate.getDefaultInstance(), verified -> {
+            communicationLogger.add(verified.message(), verified.signerId());
+            serverNode.handleCommitCertificate(verified);
+        }, rejected -> logger.warn("Invalid signature on CommitCertificate from {}", rejected.getSignerId()));
+
+        responseObserver.onNext(Empty.getDefaultInstance());
+        responseObserver.onCompleted();
+    }
+
+    @Override
+    public void checkpoint(MessageServiceOuterClass.SignedMessage request, StreamObserver<Empty> responseObserver) {
+        verificationStage.submit(request, MessageServiceOuterClass.CheckpointMessage.getDefaultInstance(), verified -> {
+            communicationLogger.add(verified.message(), verified.signerId());
+            serverNode.handleCheckpoint(verified);
+        }, rejected -> logger.warn("Invalid signature on Checkpoint from {}", rejected.getSignerId()));
+
+        responseObserver.onNext(Empty.getDefaultInstance());
+        responseObserver.onCompleted();
+    }
+
+    @Override
+    public void checkpointed(MessageServiceOuterClass.SignedMessage request, StreamObserver<Empty> responseObserver) {
+        verificationStage.submit(request, MessageServiceOuterClass.CheckpointCertificate.getDefaultInstance(), verified -> {
+            communicationLogger.add(verified.message(), verified.signerId());
+            serverNode.handleCheckpointCertificate(verified);
+        }, rejected -> logger.warn("Invalid signature on CheckpointCertificate from {}", rejected.getSignerId()));
+
+        responseObserver.onNext(Empty.getDefaultInstance());
+        responseObserver.onCompleted();
+    }
+
+    @Override
+    public void transferState(MessageServiceOuterClass.SignedMessage request, StreamObserver<MessageServiceOuterClass.StateTransferChunk> responseObserver) {
+        PacedStreamObserver<MessageServiceOuterClass.StateTransferChunk> stream = new PacedStreamObserver<>(responseObserver);
+        verificationStage.submit(request, MessageServiceOuterClass.StateTransferRequest.getDefaultInstance(),
+                verified -> serverNode.handleStateTransfer(verified, stream),
+                rejected -> {
+                    logger.warn("Invalid authenticator on state transfer request from {}", rejected.getSignerId());
+                    stream.fail(Status.PERMISSION_DENIED.asRuntimeException());
+                });
+    }
+
+    @Override
+    public void viewChange(MessageServiceOuterClass.SignedMessage request, StreamObserver<Empty> responseObserver) {
+        verificationStage.submit(request, MessageServiceOuterClass.ViewChangeMessage.getDefaultInstance(), verified -> {
+            communicationLogger.add(verified.message(), verified.signerId());
+            serverNode.handleViewChange(verified);
+        }, rejected -> logger.warn("Invalid signature on ViewChange from {}", rejected.getSignerId()));
+
+        responseObserver.onNext(Empty.getDefaultInstance());
+        responseObserver.onCompleted();
+    }
+
+    @Override
+    public StreamObserver<MessageServiceOuterClass.SignedMessage> newView(StreamObserver<Empty> responseObserver) {
+        // gRPC delivers one stream's messages in order, and each is handled before the next, so the
+        // view is installed before the re-issued PrePrepares that follow its header
+        return new StreamObserver<>() {
+            private boolean headerSeen;
+            private boolean accepted;
 
-        if (!auth.verify(request)) {
-            logger.warn("Invalid signature for client request from client {}", request.getClientId());
-            return;
-        }
-        communicationLogger.add(request);
-        logger.info("Signature verified for client request from client {}", request.getClientId());
-        // Handle the client request asynchronously
-        serverNode.handleClientRequest(request);
+            @Override
+            public void onNext(MessageServiceOuterClass.SignedMessage envelope) {
+                if (!headerSeen) {
+                    headerSeen = true;
+                    Signed<MessageServiceOuterClass.NewViewMessage> header = open(envelope, MessageServiceOuterClass.NewViewMessage.getDefaultInstance());
+                    if (header == null) {
+                        logger.warn("Invalid signature on NewView from {}", envelope.getSignerId());
+                        return;
+                    }
+                    communicationLogger.add(header.message(), header.signerId());
+                    accepted = serverNode.handleNewView(header);
+                    return;
+                }
+                if (!accepted) {
+                    return;
+                }
+                Signed<MessageServiceOuterClass.PrePrepareMessage> prePrepare = open(envelope, MessageServiceOuterClass.PrePrepareMessage.getDefaultInstance());
+                if (prePrepare == null) {
+                    logger.warn("Invalid authenticator on re-issued PrePrepare from {}", envelope.getSignerId());
+                    return;
+                }
+                communicationLogger.add(prePrepare.message(), prePrepare.signerId());
+                serverNode.handlePrePrepare(prePrepare);
+            }
+
+            @Override
+            public void onError(Throwable t) {
+                logger.info("NewView stream failed: {}", Status.fromThrowable(t));
+            }
+
+            @Override
+            public void onCompleted() {
+                responseObserver.onNext(Empty.getDefaultInstance());
+                responseObserver.onCompleted();
+            }
+        };
+    }
+
+    // Verified on the stream's own thread, unlike single messages, to keep the stream's order
+    private <T extends Message> Signed<T> open(MessageServiceOuterClass.SignedMessage envelope, T defaultInstance) {
+        List<Signed<T>> opened = verificationStage.openAll(List.of(envelope), defaultInstance);
+        return opened == null ? null : opened.get(0);
+    }
+
+    @Override
+    public void fetchRequests(MessageServiceOuterClass.SignedMessage request, StreamObserver<MessageServiceOuterClass.RequestBodies> responseObserver) {
+        // Answered once the node has looked up the bodies on its state executor
+        verificationStage.submit(request, MessageServiceOuterClass.RequestFetch.getDefaultInstance(),
+                verified -> serverNode.handleRequestFetch(verified, bodies -> {
+                    responseObserver.onNext(bodies);
+                    responseObserver.onCompleted();
+                }),
+                rejected -> {
+                    logger.warn("Invalid authenticator on request fetch from {}", rejected.getSignerId());
+                    responseObserver.onNext(MessageServiceOuterClass.RequestBodies.getDefaultInstance());
+                    responseObserver.onCompleted();
+                });
     }
 
     @Override
@@ -57,138 +231,6 @@ public class ServerMessageService extends MessageServiceGrpc.MessageServiceImplB
         responseObserver.onCompleted();
     }
 
-//    @Override
-//    public void prepare(MessageServiceOuterClass.PrepareMessage request, StreamObserver<MessageServiceOuterClass.PromiseMessage> responseObserver) {
-//        communicationLogger.add(
-//                String.format("MESSAGE: <PREPARE, <%d, %s>> received from server %s",
-//                        request.getBallot().getInstance(),
-//                        request.getBallot().getSenderId(),
-//                        request.getBallot().getSenderId()
-//                )
-//        );
-//        logger.info("MESSAGE: <PREPARE, <{}, {}>> received from server {}",
-//                request.getBallot().getInstance(),
-//                request.getBallot().getSenderId(),
-//                request.getBallot().getSenderId()
-//        );
-//        MessageServiceOuterClass.PromiseMessage promise = node.handlePrepare(request, responseObserver);
-//        if (promise == null) {
-////            do nothing
-//        } else {
-//            responseObserver.onNext(promise);
-//            responseObserver.onCompleted();
-//        }
-//    }
-//
-//    @Override
-//    public void newView(MessageServiceOuterClass.NewViewMessage request, StreamObserver<MessageServiceOuterClass.AcceptedMessage> responseObserver) {
-//        communicationLogger.add(
-//                String.format("MESSAGE: <NEW VIEW, <%d, %s>, acceptLog(%d messages)> received from server %s",
-//                        request.getBallot().getInstance(),
-//                        request.getBallot().getSenderId(),
-//                        request.getAcceptLogCount(),
-//                        request.getBallot().getSenderId())
-//        );
-//        logger.info("MESSAGE: <NEW VIEW, <{}, {}>, acceptLog({} messages)> received from server {}",
-//                request.getBallot().getInstance(),
-//                request.getBallot().getSenderId(),
-//                request.getAcceptLogCount(),
-//                request.getBallot().getSenderId());
-//        node.handleNewView(request, responseObserver);
-//    }
-//
-//    @Override
-//    public void accept(MessageServiceOuterClass.AcceptMessage request, StreamObserver<MessageServiceOuterClass.AcceptedMessage> responseObserver) {
-//        communicationLogger.add(
-//                String.format("MESSAGE: <ACCEPT, <%d, %s>, %d, (%s, %s, %f)> received from server %s",
-//                        request.getBallot().getInstance(),
-//                        request.getBallot().getSenderId(),
-//                        request.getSequenceNumber(),
-//                        request.getRequest().getTransaction().getSender(),
-//                        request.getRequest().getTransaction().getReceiver(),
-//                        request.getRequest().getTransaction().getAmount(),
-//                        request.getBallot().getSenderId())
-//        );
-//        logger.info("MESSAGE: <ACCEPT, <{}, {}>, {}, ({}, {}, {})> received from server {}",
-//                request.getBallot().getInstance(),
-//                request.getBallot().getSenderId(),
-//                request.getSequenceNumber(),
-//                request.getRequest().getTransaction().getSender(),
-//                request.getRequest().getTransaction().getReceiver(),
-//                request.getRequest().getTransaction().getAmount(),
-//                request.getBallot().getSenderId());
-//        responseObserver.onNext(node.handleAccept(request));
-//        responseObserver.onCompleted();
-//    }
-//
-//    @Override
-//    public void commit(MessageServiceOuterClass.CommitMessage request, StreamObserver<Empty> responseObserver) {
-//        communicationLogger.add(
-//                String.format("MESSAGE: <COMMIT, <%d, %s>, %d, (%s, %s, %f)> received from server %s",
-//                        request.getBallot().getInstance(),
-//                        request.getBallot().getSenderId(),
-//                        request.getSequenceNumber(),
-//                        request.getRequest().getTransaction().getSender(),
-//                        request.getRequest().getTransaction().getReceiver(),
-//                        request.getRequest().getTransaction().getAmount(),
-//                        request.getBallot().getSenderId())
-//        );
-//        logger.info("MESSAGE: <COMMIT <{}, {}>, {}, ({}, {}, {})> received from server {}",
-//                request.getBallot().getInstance(),
-//                request.getBallot().getSenderId(),
-//                request.getSequenceNumber(),
-//                request.getRequest().getTransaction().getSender(),
-//                request.getRequest().getTransaction().getReceiver(),
-//                request.getRequest().getTransaction().getAmount(),
-//                request.getBallot().getSenderId());
-//
-//        node.handleCommitMessage(request);
-//
-//        responseObserver.onNext(Empty.getDefaultInstance());
-//        responseObserver.onCompleted();
-//    }
-//
-//    @Override
-//    public void forwardClientRequest(MessageServiceOuterClass.ClientRequest request, StreamObserver<Empty> responseObserver) {
-//        communicationLogger.add(
-//                String.format("MESSAGE: <REQUEST, (%s, %s, %f), %d, %s> forwarded from another server",
-//                        request.getTransaction().getSender(),
-//                        request.getTransaction().getReceiver(),
-//                        request.getTransaction().getAmount(),
-//                        request.getTimestamp(),
-//                        request.getClientId()
-//                )
-//        );
-//        logger.info("MESSAGE: <REQUEST, ({}, {}, {}), {}, {}> forwarded from another server",
-//                request.getTransaction().getSender(),
-//                request.getTransaction().getReceiver(),
-//                request.getTransaction().getAmount(),
-//                request.getTimestamp(),
-//                request.getClientId()
-//        );
-//
-//        node.handleClientRequest(request, null);
-//
-//        responseObserver.onNext(Empty.getDefaultInstance());
-//        responseObserver.onCompleted();
-//    }
-//
-//    @Override
-//    public void failLeader(Empty request, StreamObserver<MessageServiceOuterClass.Acknowledgement> responseObserver) {
-//        logger.info("<FAIL LEADER> received from cli");
-//        MessageServiceOuterClass.Acknowledgement ack;
-//        if (node.getState().isLeader()) {
-//            node.setActive(false);
-//            logger.info("Node {} (leader) has been deactivated to simulate leader failure.", node.getServerId());
-//            ack = MessageServiceOuterClass.Acknowledgement.newBuilder().setStatus(true).build();
-//        } else {
-//            logger.info("Node {} is not the leader. Ignoring FAIL LEADER command.", node.getServerId());
-//            ack = MessageServiceOuterClass.Acknowledgement.newBuilder().setStatus(false).build();
-//        }
-//        responseObserver.onNext(ack);
-//        responseObserver.onCompleted();
-//    }
-
     @Override
     public void getLog(Empty request, StreamObserver<MessageServiceOuterClass.CLIResponse> responseObserver) {
         String logString = CLILogging.formatLog(communicationLogger.getLogs());
@@ -197,28 +239,44 @@ public class ServerMessageService extends MessageServiceGrpc.MessageServiceImplB
         responseObserver.onCompleted();
     }
 
-//    @Override
-//    public void getDB(Empty request, StreamObserver<MessageServiceOuterClass.CLIResponse> responseObserver) {
-//        String stateString = CLILogging.formatState(node.getClientState());
-//        MessageServiceOuterClass.CLIResponse response = MessageServiceOuterClass.CLIResponse.newBuilder().setCliResponse(stateString).build();
-//        responseObserver.onNext(response);
-//        responseObserver.onCompleted();
-//    }
-//
-//    @Override
-//    public void getStatus(MessageServiceOuterClass.SequenceNumber request, StreamObserver<MessageServiceOuterClass.CLIResponse> responseObserver) {
-//        String statusString = mapStatus(node.getLog().getStatus(request.getSequenceNumber()));
-//        MessageServiceOuterClass.CLIResponse response = MessageServiceOuterClass.CLIResponse.newBuilder().setCliResponse(statusString).build();
-//        responseObserver.onNext(response);
-//        responseObserver.onCompleted();
-//    }
-//
-//    @Override
-//    public void getNewViews(Empty request, StreamObserver<MessageServiceOuterClass.CLIResponse> responseObserver) {
-//        String newViewsString = formatNewViews(node.getNewViews());
-//        MessageServiceOuterClass.CLIResponse response = MessageServiceOuterClass.CLIResponse.newBuilder().setCliResponse(newViewsString).build();
-//        responseObserver.onNext(response);
-//        responseObserver.onCompleted();
-//    }
+    @Override
+    public void getDB(Empty request, StreamObserver<MessageServiceOuterClass.CLIResponse> responseObserver) {
+        String stateString = CLILogging.formatState(serverNode.getClientState());
+        MessageServiceOuterClass.CLIResponse response = MessageServiceOuterClass.CLIResponse.newBuilder().setCliResponse(stateString).build();
+        responseObserver.onNext(response);
+        responseObserver.onCompleted();
+    }
+
+    @Override
+    public void getStatus(MessageServiceOuterClass.SequenceNumber request, StreamObserver<MessageServiceOuterClass.CLIResponse> responseObserver) {
+        String statusString = CLILogging.mapStatus(serverNode.getStatus(request.getSequenceNumber()));
+        MessageServiceOuterClass.CLIResponse response = MessageServiceOuterClass.CLIResponse.newBuilder().setCliResponse(statusString).build();
+        responseObserver.onNext(response);
+        responseObserver.onCompleted();
+    }
+
+    @Override
+    public void getBatching(Empty request, StreamObserver<MessageServiceOuterClass.CLIResponse> responseObserver) {
+        String batchingString = serverNode.getBatchingDecision().toString();
+        MessageServiceOuterClass.CLIResponse response = MessageServiceOuterClass.CLIResponse.newBuilder().setCliResponse(batchingString).build();
+        responseObserver.onNext(response);
+        responseObserver.onCompleted();
+    }
+
+    @Override
+    public void getStartup(Empty request, StreamObserver<MessageServiceOuterClass.CLIResponse> responseObserver) {
+        String startupString = serverNode.getStartupReport().toString();
+        MessageServiceOuterClass.CLIResponse response = MessageServiceOuterClass.CLIResponse.newBuilder().setCliResponse(startupString).build();
+        responseObserver.onNext(response);
+        responseObserver.onCompleted();
+    }
+
+    @Override
+    public void getNewViews(Empty request, StreamObserver<MessageServiceOuterClass.CLIResponse> responseObserver) {
+        String newViewsString = formatNewViews(serverNode.getNewViews());
+        MessageServiceOuterClass.CLIResponse response = MessageServiceOuterClass.CLIResponse.newBuilder().setCliResponse(newViewsString).build();
+        responseObserver.onNext(response);
+        responseObserver.onCompleted();
+    }
 
 }
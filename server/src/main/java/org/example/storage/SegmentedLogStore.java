@@ -0,0 +1,229 @@
+package org.example.storage;
+
+import com.google.protobuf.InvalidProtocolBufferException;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.example.MessageServiceOuterClass;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.zip.CRC32C;
+
+/**
+ * Executed log entries, stored in fixed-size memory-mapped segment files.
+ *
+ * Each segment holds a contiguous run of sequence numbers starting at the one in its file name,
+ * framed as [int length][int CRC32C][serialized CommittedEntry] and followed by a zero length.
+ * A new segment is rolled when the current one is full or the next entry does not follow on
+ * (after a snapshot install). A sparse index keeps the offset of every INDEX_INTERVAL-th entry,
+ * so a read skips at most INDEX_INTERVAL - 1 frame headers to find its slot and parses straight
+ * out of the mapping.
+ *
+ * Durability comes from the write-ahead log; mapped pages reach disk when the OS writes them back
+ * or on close(). Appends and reads may come from different threads, so every method is synchronized.
+ */
+public class SegmentedLogStore implements AutoCloseable {
+
+    private static final Logger logger = LogManager.getLogger(SegmentedLogStore.class);
+    private static final int HEADER_BYTES = 8;
+    private static final int INDEX_INTERVAL = 32;
+    private static final String SUFFIX = ".log";
+
+    private static final class Segment {
+        private final Path path;
+        private final long baseSequenceNumber;
+        private final MappedByteBuffer buffer;
+        private final NavigableMap<Long, Integer> index = new TreeMap<>(); // sparse: sequence number -> frame offset
+        private long lastSequenceNumber;
+        private int end; // offset of the next frame
+
+        private Segment(Path path, long baseSequenceNumber, MappedByteBuffer buffer) {
+            this.path = path;
+            this.baseSequenceNumber = baseSequenceNumber;
+            this.buffer = buffer;
+            this.lastSequenceNumber = baseSequenceNumber - 1;
+        }
+
+        private boolean contains(long sequenceNumber) {
+            return sequenceNumber >= baseSequenceNumber && sequenceNumber <= lastSequenceNumber;
+        }
+
+        private boolean fits(int frameBytes) {
+            return end + frameBytes <= buffer.capacity();
+        }
+    }
+
+    private final Path directory;
+    private final int segmentBytes;
+    private final NavigableMap<Long, Segment> segments = new TreeMap<>(); // by base sequence number
+
+    public SegmentedLogStore(Path directory, int segmentBytes) throws IOException {
+        if (segmentBytes <= HEADER_BYTES) throw new IllegalArgumentException("segmentBytes must be > " + HEADER_BYTES);
+        this.directory = directory;
+        this.segmentBytes = segmentBytes;
+        Files.createDirectories(directory);
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + SUFFIX)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                long base = Long.parseLong(name.substring(0, name.length() - SUFFIX.length()));
+                Segment segment = new Segment(file, base, map(file, Files.size(file)));
+                recover(segment);
+                segments.put(base, segment);
+            }
+        }
+        if (!segments.isEmpty()) {
+            logger.info("Opened {} log segments holding seq {} to {}", segments.size(),
+                    getFirstSequenceNumber(), getLastSequenceNumber());
+        }
+    }
+
+    /**
+     * @return 0 when empty
+     */
+    public synchronized long getFirstSequenceNumber() {
+        for (Segment segment : segments.values()) {
+            if (segment.lastSequenceNumber >= segment.baseSequenceNumber) {
+                return segment.baseSequenceNumber;
+            }
+        }
+        return 0L;
+    }
+
+    /**
+     * @return 0 when empty
+     */
+    public synchronized long getLastSequenceNumber() {
+        Map.Entry<Long, Segment> last = segments.lastEntry();
+        return last == null ? 0L : Math.max(0L, last.getValue().lastSequenceNumber);
+    }
+
+    /**
+     * Store the next executed entry. Entries at or below the last one stored are ignored.
+     */
+    public synchronized void append(MessageServiceOuterClass.CommittedEntry entry) throws IOException {
+        long sequenceNumber = entry.getPrePrepare().getSequenceNumber();
+        if (sequenceNumber <= getLastSequenceNumber()) {
+            return;
+        }
+        byte[] payload = entry.toByteArray();
+        int frameBytes = HEADER_BYTES + payload.length;
+
+        Map.Entry<Long, Segment> last = segments.lastEntry();
+        Segment segment = last == null ? null : last.getValue();
+        if (segment == null || segment.lastSequenceNumber + 1 != sequenceNumber || !segment.fits(frameBytes)) {
+            segment = roll(sequenceNumber, frameBytes);
+        }
+
+        CRC32C crc = new CRC32C();
+        crc.update(payload);
+        MappedByteBuffer buffer = segment.buffer;
+        buffer.putInt(segment.end, payload.length);
+        buffer.putInt(segment.end + 4, (int) crc.getValue());
+        buffer.put(segment.end + HEADER_BYTES, payload);
+        if ((sequenceNumber - segment.baseSequenceNumber) % INDEX_INTERVAL == 0) {
+            segment.index.put(sequenceNumber, segment.end);
+        }
+        segment.end += frameBytes;
+        if (segment.end + 4 <= buffer.capacity()) {
+            buffer.putInt(segment.end, 0); // so frames left over from before a crash are never read as ours
+        }
+        segment.lastSequenceNumber = sequenceNumber;
+    }
+
+    /**
+     * @return the stored entry, or null if it was never stored or its segment has been deleted
+     */
+    public synchronized MessageServiceOuterClass.CommittedEntry read(long sequenceNumber) throws IOException {
+        Segment segment = segmentFor(sequenceNumber);
+        if (segment == null) {
+            return null;
+        }
+        Map.Entry<Long, Integer> indexed = segment.index.floorEntry(sequenceNumber);
+        int offset = indexed.getValue();
+        for (long seq = indexed.getKey(); seq < sequenceNumber; seq++) {
+            offset += HEADER_BYTES + segment.buffer.getInt(offset);
+        }
+        int length = segment.buffer.getInt(offset);
+        try {
+            return MessageServiceOuterClass.CommittedEntry.parseFrom(segment.buffer.slice(offset + HEADER_BYTES, length));
+        } catch (InvalidProtocolBufferException e) {
+            throw new IOException("Corrupt entry for seq=" + sequenceNumber + " in " + segment.path, e);
+        }
+    }
+
+    /**
+     * Delete every segment whose entries all lie at or below a stable checkpoint.
+     *
+     * @return the number of segments deleted
+     */
+    public synchronized int deleteThrough(long sequenceNumber) throws IOException {
+        int deleted = 0;
+        while (!segments.isEmpty() && segments.firstEntry().getValue().lastSequenceNumber <= sequenceNumber) {
+            Segment segment = segments.pollFirstEntry().getValue();
+            Files.deleteIfExists(segment.path);
+            deleted++;
+        }
+        if (deleted > 0) {
+            logger.info("Deleted {} log segments at or below seq={}", deleted, sequenceNumber);
+        }
+        return deleted;
+    }
+
+    @Override
+    public synchronized void close() {
+        segments.values().forEach(segment -> segment.buffer.force());
+    }
+
+    private Segment segmentFor(long sequenceNumber) {
+        Map.Entry<Long, Segment> floor = segments.floorEntry(sequenceNumber);
+        return floor != null && floor.getValue().contains(sequenceNumber) ? floor.getValue() : null;
+    }
+
+    private Segment roll(long baseSequenceNumber, int frameBytes) throws IOException {
+        Path path = directory.resolve(String.format("%020d%s", baseSequenceNumber, SUFFIX));
+        Files.deleteIfExists(path); // an empty segment already rolled at this base
+        Segment segment = new Segment(path, baseSequenceNumber, map(path, Math.max(segmentBytes, frameBytes + 4)));
+        segments.put(baseSequenceNumber, segment);
+        logger.info("Rolled log segment {}", path.getFileName());
+        return segment;
+    }
+
+    private static MappedByteBuffer map(Path path, long size) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            return channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        }
+    }
+
+    // Rebuild the sparse index and find the end of the intact frames
+    private static void recover(Segment segment) {
+        MappedByteBuffer buffer = segment.buffer;
+        int offset = 0;
+        long sequenceNumber = segment.baseSequenceNumber;
+        while (offset + HEADER_BYTES <= buffer.capacity()) {
+            int length = buffer.getInt(offset);
+            if (length <= 0 || offset + HEADER_BYTES + length > buffer.capacity()) {
+                break;
+            }
+            CRC32C crc = new CRC32C();
+            crc.update(buffer.slice(offset + HEADER_BYTES, length));
+            if ((int) crc.getValue() != buffer.getInt(offset + 4)) {
+                break;
+            }
+            if ((sequenceNumber - segment.baseSequenceNumber) % INDEX_INTERVAL == 0) {
+                segment.index.put(sequenceNumber, offset);
+            }
+            offset += HEADER_BYTES + length;
+            sequenceNumber++;
+        }
+        segment.end = offset;
+        segment.lastSequenceNumber = sequenceNumber - 1;
+    }
+}
@@ -0,0 +1,19 @@
+package org.example.storage;
+
+/**
+ * How a replica came up: what it restored from local storage and how long that took.
+ *
+ * @param recoveryMillis  time spent reading the write-ahead log and rebuilding state
+ * @param readyMillis     JVM uptime when the replica was ready to start serving
+ * @param snapshotSequenceNumber stable checkpoint restored, 0 for a fresh start
+ * @param replayedRecords write-ahead log records applied above that checkpoint
+ * @param reexecuted      committed entries executed again during replay
+ */
+public record StartupReport(long recoveryMillis, long readyMillis, long snapshotSequenceNumber,
+                            int replayedRecords, long reexecuted, long lastExecuted, long viewNumber) {
+    @Override
+    public String toString() {
+        return String.format("recoveryMs=%d readyMs=%d snapshotSeq=%d replayedRecords=%d reexecuted=%d lastExecuted=%d view=%d",
+                recoveryMillis, readyMillis, snapshotSequenceNumber, replayedRecords, reexecuted, lastExecuted, viewNumber);
+    }
+}
@@ -0,0 +1,307 @@
+package org.example.storage;
+
+import com.google.protobuf.InvalidProtocolBufferException;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.example.ExecutorManager;
+import org.example.MessageServiceOuterClass;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Queue;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import java.util.zip.CRC32C;
+
+/**
+ * Append-only log of the consensus records a replica must not forget across a crash:
+ * accepted PrePrepares, prepare and commit certificates, stable checkpoints, and the view changes
+ * it sent and NewViews it installed.
+ *
+ * Each record is framed as [int length][int CRC32C of the payload][serialized WalRecord].
+ * Appends are queued and written by the single-threaded log executor, which drains every
+ * record queued since its last pass into one gathering write and one fsync (group commit):
+ * while one fsync is in progress, further appends pile up and share the next.
+ *
+ * The log is a directory of generation files named by the stable checkpoint each begins at.
+ * rotate() starts a new generation holding the checkpoint and whatever is still in flight above
+ * it, and deletes the older ones, so a restart replays one checkpoint plus a bounded suffix.
+ *
+ * On open, a torn or corrupt tail left by a crash mid-write is cut off at the last intact record.
+ */
+public class WriteAheadLog implements AutoCloseable {
+
+    private static final Logger logger = LogManager.getLogger(WriteAheadLog.class);
+    private static final int HEADER_BYTES = 8;
+    private static final String SUFFIX = ".wal";
+
+    public enum Durability {
+        NONE,  // written to the page cache, never fsynced
+        ASYNC, // fsynced by group commit; the protocol does not wait for it
+        SYNC;  // fsynced by group commit; votes are held back until their record is durable
+
+        public static Durability parse(String value) {
+            return valueOf(value.trim().toUpperCase(Locale.ROOT));
+        }
+    }
+
+    // A framed record, or (rotation != null) a switch to a new generation at this point in the queue
+    private record Pending(ByteBuffer frame, Rotation rotation, CompletableFuture<Void> written) {
+    }
+
+    private record Rotation(long sequenceNumber, List<ByteBuffer> base) {
+    }
+
+    private final Path directory;
+    private final Durability durability;
+    private final ExecutorManager executorManager;
+    private Path path; // current generation; written only under the flush lock
+    private FileChannel channel;
+
+    private final Queue<Pending> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean flushScheduled = new AtomicBoolean();
+
+    public WriteAheadLog(Path directory, Durability durability, ExecutorManager executorManager) throws IOException {
+        this.directory = directory;
+        this.durability = durability;
+        this.executorManager = executorManager;
+        Files.createDirectories(directory);
+        TreeSet<Path> generations = generations(directory);
+        this.path = generations.isEmpty() ? generationPath(directory, 0L) : generations.last();
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+
+        long valid = scan(channel, record -> { });
+        if (valid < channel.size()) {
+            logger.warn("Truncating {} bytes of torn records from the end of {}", channel.size() - valid, path);
+            channel.truncate(valid);
+            channel.force(true);
+        }
+        channel.position(valid);
+    }
+
+    public Durability getDurability() {
+        return durability;
+    }
+
+    /**
+     * Queue a record for the next group commit.
+     *
+     * @return completes once the record is written, and also fsynced unless durability is NONE
+     */
+    public CompletableFuture<Void> append(MessageServiceOuterClass.WalRecord record) {
+        CompletableFuture<Void> written = new CompletableFuture<>();
+        queue.add(new Pending(frame(record), null, written));
+        scheduleFlush();
+        return written;
+    }
+
+    /**
+     * Start a new generation at a stable checkpoint, after every record appended so far. The new
+     * file holds base (the checkpoint and the records still needed above it) before any later
+     * append; once it is in place, the older generations are deleted.
+     */
+    public CompletableFuture<Void> rotate(long sequenceNumber, List<MessageServiceOuterClass.WalRecord> base) {
+        CompletableFuture<Void> rotated = new CompletableFuture<>();
+        queue.add(new Pending(null, new Rotation(sequenceNumber, base.stream().map(WriteAheadLog::frame).toList()), rotated));
+        scheduleFlush();
+        return rotated;
+    }
+
+    private static ByteBuffer frame(MessageServiceOuterClass.WalRecord record) {
+        byte[] payload = record.toByteArray();
+        CRC32C crc = new CRC32C();
+        crc.update(payload);
+        return ByteBuffer.allocate(HEADER_BYTES + payload.length)
+                .putInt(payload.length)
+                .putInt((int) crc.getValue())
+                .put(payload)
+                .flip();
+    }
+
+    private void scheduleFlush() {
+        if (flushScheduled.compareAndSet(false, true)) {
+            try {
+                executorManager.submitLogOperation(this::flushQueued);
+            } catch (RejectedExecutionException e) {
+                flushScheduled.set(false); // shutting down; close() writes whatever is left
+            }
+        }
+    }
+
+    private void flushQueued() {
+        flushScheduled.set(false);
+        flush();
+        if (!queue.isEmpty()) {
+            scheduleFlush();
+        }
+    }
+
+    // One group commit: everything queued so far, one write, one fsync (split only by rotations)
+    private synchronized void flush() {
+        List<Pending> group = new ArrayList<>();
+        Pending pending;
+        while ((pending = queue.poll()) != null) {
+            if (pending.rotation() == null) {
+                group.add(pending);
+                continue;
+            }
+            commit(group);
+            group.clear();
+            try {
+                rotateTo(pending.rotation());
+                pending.written().complete(null);
+            } catch (IOException e) {
+                logger.error("Write-ahead log {}: rotation at seq={} failed : {}", directory, pending.rotation().sequenceNumber(), e.getMessage());
+                pending.written().completeExceptionally(e);
+            }
+        }
+        commit(group);
+    }
+
+    private void commit(List<Pending> group) {
+        if (group.isEmpty()) {
+            return;
+        }
+        try {
+            write(channel, group.stream().map(Pending::frame).toArray(ByteBuffer[]::new));
+        } catch (IOException e) {
+            logger.error("Write-ahead log {}: group commit of {} records failed : {}", path, group.size(), e.getMessage());
+            group.forEach(p -> p.written().completeExceptionally(e));
+            return;
+        }
+        group.forEach(p -> p.written().complete(null));
+    }
+
+    private void write(FileChannel target, ByteBuffer[] frames) throws IOException {
+        if (frames.length > 0) {
+            while (frames[frames.length - 1].hasRemaining()) {
+                target.write(frames);
+            }
+        }
+        if (durability != Durability.NONE) {
+            target.force(false);
+        }
+    }
+
+    // The new generation is written aside and renamed into place, so a crash leaves either the old
+    // generations or a complete new one (and possibly stale old ones, which replay supersedes).
+    // The rename is made durable before any old generation is deleted.
+    private void rotateTo(Rotation rotation) throws IOException {
+        Path next = generationPath(directory, rotation.sequenceNumber());
+        if (next.compareTo(path) <= 0) {
+            return;
+        }
+        Path staging = directory.resolve(next.getFileName() + ".tmp");
+        try (FileChannel out = FileChannel.open(staging, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            write(out, rotation.base().toArray(ByteBuffer[]::new));
+        }
+        Files.move(staging, next, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        if (durability != Durability.NONE) {
+            try (FileChannel dir = FileChannel.open(directory, StandardOpenOption.READ)) {
+                dir.force(true);
+            }
+        }
+        channel.close();
+        channel = FileChannel.open(next, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        channel.position(channel.size());
+        path = next;
+        for (Path older : generations(directory).headSet(next)) {
+            Files.deleteIfExists(older);
+        }
+        logger.info("Write-ahead log rotated to {} ({} records carried over)", next.getFileName(), rotation.base().size());
+    }
+
+    /**
+     * Write out anything still queued and close the file. Call once the log executor has stopped.
+     */
+    @Override
+    public void close() {
+        flush();
+        try {
+            channel.close();
+        } catch (IOException e) {
+            logger.error("Write-ahead log {}: close failed : {}", path, e.getMessage());
+        }
+    }
+
+    /**
+     * Read every intact record of a log in append order, generation by generation, stopping each
+     * generation at its first torn or corrupt record.
+     */
+    public static List<MessageServiceOuterClass.WalRecord> read(Path directory) throws IOException {
+        List<MessageServiceOuterClass.WalRecord> records = new ArrayList<>();
+        if (Files.isDirectory(directory)) {
+            for (Path generation : generations(directory)) {
+                try (FileChannel channel = FileChannel.open(generation, StandardOpenOption.READ)) {
+                    scan(channel, records::add);
+                }
+            }
+        }
+        return records;
+    }
+
+    private static Path generationPath(Path directory, long sequenceNumber) {
+        return directory.resolve(String.format("%020d%s", sequenceNumber, SUFFIX));
+    }
+
+    private static TreeSet<Path> generations(Path directory) throws IOException {
+        TreeSet<Path> generations = new TreeSet<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + SUFFIX)) {
+            files.forEach(generations::add);
+        }
+        return generations;
+    }
+
+    /**
+     * @return the length of the intact prefix of the log
+     */
+    private static long scan(FileChannel channel, Consumer<MessageServiceOuterClass.WalRecord> consumer) throws IOException {
+        long size = channel.size();
+        long position = 0;
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+        while (position + HEADER_BYTES <= size) {
+            header.clear();
+            readFully(channel, header, position);
+            int length = header.getInt(0);
+            int checksum = header.getInt(4);
+            if (length < 0 || position + HEADER_BYTES + length > size) {
+                break;
+            }
+            ByteBuffer payload = ByteBuffer.allocate(length);
+            readFully(channel, payload, position + HEADER_BYTES);
+            CRC32C crc = new CRC32C();
+            crc.update(payload.array());
+            if ((int) crc.getValue() != checksum) {
+                break;
+            }
+            try {
+                consumer.accept(MessageServiceOuterClass.WalRecord.parseFrom(payload.array()));
+            } catch (InvalidProtocolBufferException e) {
+                break;
+            }
+            position += HEADER_BYTES + length;
+        }
+        return position;
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Unexpected end of write-ahead log");
+            }
+        }
+    }
+}
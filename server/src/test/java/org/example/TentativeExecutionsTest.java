@@ -0,0 +1,124 @@
+package org.example;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class TentativeExecutionsTest {
+
+    private ClientState state;
+    private TentativeExecutions tentative;
+
+    @BeforeEach
+    void setUp() {
+        state = new ClientState(Map.of("A", 10.0, "B", 10.0, "C", 10.0));
+        tentative = new TentativeExecutions(state);
+    }
+
+    private static MessageServiceOuterClass.ClientReply reply(String clientId, long timestamp) {
+        return MessageServiceOuterClass.ClientReply.newBuilder()
+                .setClientId(clientId)
+                .setTimestamp(timestamp)
+                .setResult(true)
+                .setTentative(true)
+                .build();
+    }
+
+    // Execute one transfer tentatively the way ServerNode does: save both balances, then apply
+    private void execute(long sequenceNumber, String sender, String receiver, double amount, long timestamp) {
+        tentative.beforeWrite(sequenceNumber, sender);
+        tentative.beforeWrite(sequenceNumber, receiver);
+        state.transfer(sender, receiver, amount);
+        tentative.addReply(sequenceNumber, reply(sender, timestamp));
+    }
+
+    @Test
+    void frontierFollowsTheTentativeRun() {
+        assertEquals(4L, tentative.frontier(4L));
+
+        tentative.begin(5L);
+        tentative.begin(6L);
+
+        assertEquals(6L, tentative.frontier(4L));
+    }
+
+    @Test
+    void rollbackRestoresTheStateAsOfTheLastCommit() {
+        tentative.begin(1L);
+        execute(1L, "A", "B", 4.0, 100L);
+        tentative.begin(2L);
+        execute(2L, "B", "C", 7.0, 200L);
+        execute(2L, "A", "C", 1.0, 101L);
+
+        assertEquals(2, tentative.rollback());
+
+        assertEquals(Map.of("A", 10.0, "B", 10.0, "C", 10.0), state.getClientState());
+        assertEquals(0L, tentative.frontier(0L));
+        assertEquals(0, tentative.rollback());
+    }
+
+    @Test
+    void rollbackKeepsCommittedBatches() {
+        tentative.begin(1L);
+        execute(1L, "A", "B", 4.0, 100L);
+        tentative.begin(2L);
+        execute(2L, "B", "C", 7.0, 200L);
+
+        assertEquals(List.of(reply("A", 100L)), tentative.commit(1L));
+        assertEquals(1, tentative.rollback());
+
+        assertEquals(Map.of("A", 6.0, "B", 14.0, "C", 10.0), state.getClientState());
+    }
+
+    @Test
+    void commitOfABatchNeverExecutedTentativelyReturnsNull() {
+        assertNull(tentative.commit(3L));
+    }
+
+    @Test
+    void committedBalanceIgnoresTentativeWrites() {
+        tentative.begin(1L);
+        execute(1L, "A", "B", 4.0, 100L);
+        tentative.begin(2L);
+        execute(2L, "B", "C", 7.0, 200L);
+
+        assertEquals(6.0, state.getBalance("A"));
+        assertEquals(10.0, tentative.committedBalance("A"));
+        assertEquals(10.0, tentative.committedBalance("B"));
+        assertEquals(10.0, tentative.committedBalance("C"));
+        assertNull(tentative.committedBalance("Z"));
+
+        tentative.commit(1L);
+
+        assertEquals(14.0, tentative.committedBalance("B"));
+    }
+
+    @Test
+    void latestTimestampIsTheClientsNewestTentativeReply() {
+        tentative.begin(1L);
+        execute(1L, "A", "B", 1.0, 100L);
+        execute(1L, "A", "C", 1.0, 101L);
+        tentative.begin(2L);
+        execute(2L, "B", "C", 1.0, 200L);
+
+        assertEquals(101L, tentative.latestTimestamp("A"));
+        assertEquals(200L, tentative.latestTimestamp("B"));
+        assertEquals(-1L, tentative.latestTimestamp("C"));
+    }
+
+    @Test
+    void clearDropsTheRunWithoutUndoingIt() {
+        tentative.begin(1L);
+        execute(1L, "A", "B", 4.0, 100L);
+
+        tentative.clear();
+
+        assertEquals(0, tentative.rollback());
+        assertEquals(6.0, state.getBalance("A"));
+    }
+}
@@ -0,0 +1,156 @@
+package org.example.consensus;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class AdaptiveBatchControllerTest {
+
+    private static final int MAX_REQUESTS = 64;
+    private static final long MAX_TIMEOUT_MILLIS = 20L;
+    private static final int EVALUATION_INTERVAL = 8;
+    private static final double LOOSE_TARGET_MILLIS = 60_000.0;
+
+    // The controller only retunes the batcher; no request is ever added, so no executor is needed
+    private static RequestBatcher batcher() {
+        return new RequestBatcher(null, MAX_REQUESTS, 1 << 20, MAX_TIMEOUT_MILLIS, batch -> { });
+    }
+
+    private static void commitRound(AdaptiveBatchController controller, long firstSequenceNumber, int queueDepth) {
+        for (long seq = firstSequenceNumber; seq < firstSequenceNumber + EVALUATION_INTERVAL; seq++) {
+            controller.onOrdered(seq);
+            controller.onCommitted(seq, queueDepth);
+        }
+    }
+
+    @Test
+    void rejectsAnEmptyWindow() {
+        assertThrows(IllegalArgumentException.class, () -> new AdaptiveBatchController(batcher(), true, 1, 0, LOOSE_TARGET_MILLIS));
+    }
+
+    @Test
+    void enabledControllerStartsAtTheMinimum() {
+        RequestBatcher batcher = batcher();
+        AdaptiveBatchController controller = new AdaptiveBatchController(batcher, true, 2, 64, LOOSE_TARGET_MILLIS);
+
+        assertEquals(2, batcher.getMaxRequests());
+        assertEquals(1L, batcher.getTimeoutMillis());
+        assertEquals("INIT", controller.getLastDecision().action());
+        assertEquals(100L, controller.getTickMillis());
+    }
+
+    @Test
+    void minimumIsClampedToTheConfiguredBatchSize() {
+        RequestBatcher batcher = batcher();
+        new AdaptiveBatchController(batcher, true, MAX_REQUESTS * 2, 64, LOOSE_TARGET_MILLIS);
+        assertEquals(MAX_REQUESTS, batcher.getMaxRequests());
+
+        RequestBatcher other = batcher();
+        new AdaptiveBatchController(other, true, 0, 64, LOOSE_TARGET_MILLIS);
+        assertEquals(1, other.getMaxRequests());
+    }
+
+    @Test
+    void disabledControllerKeepsTheConfiguredBatching() {
+        RequestBatcher batcher = batcher();
+        AdaptiveBatchController controller = new AdaptiveBatchController(batcher, false, 2, 64, LOOSE_TARGET_MILLIS);
+
+        commitRound(controller, 1L, 5);
+        controller.onTick(0);
+
+        assertEquals(MAX_REQUESTS, batcher.getMaxRequests());
+        assertEquals(MAX_TIMEOUT_MILLIS, batcher.getTimeoutMillis());
+        assertEquals("FIXED", controller.getLastDecision().action());
+    }
+
+    @Test
+    void backlogGrowsTheBatchUpToTheConfiguredSize() {
+        RequestBatcher batcher = batcher();
+        AdaptiveBatchController controller = new AdaptiveBatchController(batcher, true, 2, 64, LOOSE_TARGET_MILLIS);
+
+        commitRound(controller, 1L, 3);
+
+        assertEquals("GROW", controller.getLastDecision().action());
+        assertEquals(4, batcher.getMaxRequests());
+        assertEquals(2L, batcher.getTimeoutMillis());
+        assertEquals(3, controller.getLastDecision().queueDepth());
+
+        for (int round = 1; round < 10; round++) {
+            commitRound(controller, 1L + round * EVALUATION_INTERVAL, 3);
+        }
+
+        assertEquals(MAX_REQUESTS, batcher.getMaxRequests());
+        assertEquals(11L, batcher.getTimeoutMillis());
+    }
+
+    @Test
+    void latencyAboveTargetShrinksEvenUnderBacklog() {
+        RequestBatcher batcher = batcher();
+        AdaptiveBatchController controller = new AdaptiveBatchController(batcher, true, 1, 64, -1.0);
+        batcher.setMaxRequests(32);
+        batcher.setTimeoutMillis(8L);
+
+        commitRound(controller, 1L, 3);
+
+        assertEquals("SHRINK", controller.getLastDecision().action());
+        assertEquals(24, batcher.getMaxRequests());
+        assertEquals(4L, batcher.getTimeoutMillis());
+    }
+
+    @Test
+    void noBacklogAndLowLatencyHolds() {
+        RequestBatcher batcher = batcher();
+        AdaptiveBatchController controller = new AdaptiveBatchController(batcher, true, 2, 64, LOOSE_TARGET_MILLIS);
+
+        commitRound(controller, 1L, 0);
+
+        assertEquals("HOLD", controller.getLastDecision().action());
+        assertEquals(2, batcher.getMaxRequests());
+        assertEquals(EVALUATION_INTERVAL, controller.getLastDecision().samples());
+    }
+
+    @Test
+    void idleTickDropsBackToTheMinimum() {
+        RequestBatcher batcher = batcher();
+        AdaptiveBatchController controller = new AdaptiveBatchController(batcher, true, 2, 64, LOOSE_TARGET_MILLIS);
+        commitRound(controller, 1L, 3);
+        commitRound(controller, 9L, 3);
+
+        controller.onTick(0);
+
+        assertEquals("IDLE", controller.getLastDecision().action());
+        assertEquals(2, batcher.getMaxRequests());
+        assertEquals(1L, batcher.getTimeoutMillis());
+        assertEquals(0, controller.getLastDecision().samples());
+    }
+
+    @Test
+    void tickWithBatchesInFlightDecidesOnThePartialRound() {
+        RequestBatcher batcher = batcher();
+        AdaptiveBatchController controller = new AdaptiveBatchController(batcher, true, 2, 64, LOOSE_TARGET_MILLIS);
+        controller.onOrdered(1L);
+        controller.onCommitted(1L, 0);
+        controller.onOrdered(2L);
+
+        controller.onTick(2);
+
+        assertEquals("GROW", controller.getLastDecision().action());
+        assertEquals(4, batcher.getMaxRequests());
+        assertEquals(1, controller.getLastDecision().samples());
+    }
+
+    @Test
+    void resetForgetsBatchesThatWillNeverCommit() {
+        RequestBatcher batcher = batcher();
+        AdaptiveBatchController controller = new AdaptiveBatchController(batcher, true, 2, 64, LOOSE_TARGET_MILLIS);
+        commitRound(controller, 1L, 3);
+        controller.onOrdered(9L);
+
+        controller.reset();
+        controller.onCommitted(9L, 3);
+        controller.onTick(0);
+
+        assertEquals("IDLE", controller.getLastDecision().action());
+    }
+}
@@ -0,0 +1,163 @@
+package org.example.consensus;
+
+import com.google.protobuf.ByteString;
+import org.example.MessageServiceOuterClass;
+import org.example.crypto.Digests;
+import org.example.crypto.Signed;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CheckpointsTest {
+
+    private static MessageServiceOuterClass.StateSnapshot snapshot(long sequenceNumber, int accounts) {
+        MessageServiceOuterClass.StateSnapshot.Builder snapshot = MessageServiceOuterClass.StateSnapshot.newBuilder()
+                .setSequenceNumber(sequenceNumber);
+        for (int i = 0; i < accounts; i++) {
+            snapshot.addBalances(MessageServiceOuterClass.AccountBalance.newBuilder()
+                    .setAccountId(String.format("account-%06d", i))
+                    .setBalance(i));
+        }
+        return snapshot.build();
+    }
+
+    private static MessageServiceOuterClass.CheckpointCertificate certificate(long sequenceNumber) {
+        return MessageServiceOuterClass.CheckpointCertificate.newBuilder()
+                .setCertificate(MessageServiceOuterClass.QuorumCertificate.newBuilder().setSequenceNumber(sequenceNumber))
+                .build();
+    }
+
+    private static Signed<MessageServiceOuterClass.CheckpointMessage> vote(String replicaId, long sequenceNumber, String state) {
+        MessageServiceOuterClass.CheckpointMessage vote = MessageServiceOuterClass.CheckpointMessage.newBuilder()
+                .setReplicaId(replicaId)
+                .setSequenceNumber(sequenceNumber)
+                .setStateDigest(ByteString.copyFromUtf8(state))
+                .build();
+        return new Signed<>(vote, MessageServiceOuterClass.SignedMessage.newBuilder()
+                .setSignerId(replicaId)
+                .setPayload(vote.toByteString())
+                .build());
+    }
+
+    @Test
+    void chunksCoverTheSerializedSnapshotInOrder() {
+        ByteString serialized = snapshot(10L, 10_000).toByteString();
+        assertTrue(serialized.size() > 2 * Checkpoints.CHUNK_SIZE);
+
+        List<ByteString> digests = Checkpoints.chunkDigests(serialized);
+
+        assertEquals((serialized.size() + Checkpoints.CHUNK_SIZE - 1) / Checkpoints.CHUNK_SIZE, digests.size());
+        ByteString reassembled = ByteString.EMPTY;
+        for (int i = 0; i < digests.size(); i++) {
+            ByteString chunk = Checkpoints.chunk(serialized, i);
+            assertEquals(Digests.sha256(chunk), digests.get(i));
+            assertTrue(chunk.size() <= Checkpoints.CHUNK_SIZE);
+            reassembled = reassembled.concat(chunk);
+        }
+        assertEquals(serialized, reassembled);
+    }
+
+    @Test
+    void stateDigestIsTheDigestOfTheChunkDigests() {
+        MessageServiceOuterClass.StateSnapshot snapshot = snapshot(10L, 10_000);
+        List<ByteString> digests = Checkpoints.chunkDigests(snapshot.toByteString());
+
+        ByteString concatenated = ByteString.EMPTY;
+        for (ByteString digest : digests) {
+            concatenated = concatenated.concat(digest);
+        }
+
+        assertEquals(Digests.sha256(concatenated), Checkpoints.stateDigest(snapshot));
+        assertEquals(Checkpoints.stateDigestOf(digests), Checkpoints.stateDigest(snapshot));
+    }
+
+    @Test
+    void smallSnapshotIsOneChunk() {
+        MessageServiceOuterClass.StateSnapshot snapshot = snapshot(10L, 3);
+
+        assertEquals(List.of(Digests.sha256(snapshot.toByteString())), Checkpoints.chunkDigests(snapshot.toByteString()));
+        assertEquals(List.of(), Checkpoints.chunkDigests(ByteString.EMPTY));
+    }
+
+    @Test
+    void anyChangedBalanceChangesTheStateDigest() {
+        MessageServiceOuterClass.StateSnapshot snapshot = snapshot(10L, 10_000);
+        MessageServiceOuterClass.StateSnapshot changed = snapshot.toBuilder()
+                .setBalances(9_999, snapshot.getBalances(9_999).toBuilder().setBalance(-1.0))
+                .build();
+
+        List<ByteString> before = Checkpoints.chunkDigests(snapshot.toByteString());
+        List<ByteString> after = Checkpoints.chunkDigests(changed.toByteString());
+
+        assertEquals(before.get(0), after.get(0));
+        assertNotEquals(before.get(before.size() - 1), after.get(after.size() - 1));
+        assertNotEquals(Checkpoints.stateDigest(snapshot), Checkpoints.stateDigest(changed));
+    }
+
+    @Test
+    void checkpointsFallOnTheInterval() {
+        assertThrows(IllegalArgumentException.class, () -> new Checkpoints(0));
+        Checkpoints checkpoints = new Checkpoints(10);
+
+        assertTrue(checkpoints.isCheckpoint(10L));
+        assertTrue(checkpoints.isCheckpoint(20L));
+        assertFalse(checkpoints.isCheckpoint(15L));
+    }
+
+    @Test
+    void votesAreGroupedByDigestOncePerReplica() {
+        Checkpoints checkpoints = new Checkpoints(10);
+
+        checkpoints.addVote(vote("n1", 10L, "s"));
+        checkpoints.addVote(vote("n2", 10L, "other"));
+        checkpoints.addVote(vote("n1", 10L, "other"));
+        List<Signed<MessageServiceOuterClass.CheckpointMessage>> matching = checkpoints.addVote(vote("n3", 10L, "s"));
+
+        assertEquals(List.of(vote("n1", 10L, "s"), vote("n3", 10L, "s")), matching);
+        assertEquals(List.of(vote("n4", 20L, "s")), checkpoints.addVote(vote("n4", 20L, "s")));
+        assertTrue(checkpoints.markCertificateSent(10L));
+        assertFalse(checkpoints.markCertificateSent(10L));
+    }
+
+    @Test
+    void stabilizeDropsWhatTheCheckpointSupersedes() {
+        Checkpoints checkpoints = new Checkpoints(10);
+        checkpoints.recordOwn(snapshot(10L, 1));
+        checkpoints.recordOwn(snapshot(20L, 1));
+        checkpoints.addVote(vote("n1", 10L, "s"));
+        checkpoints.markCertificateSent(10L);
+
+        checkpoints.stabilize(certificate(10L), snapshot(10L, 1));
+
+        assertEquals(10L, checkpoints.getStableSequenceNumber());
+        assertEquals(snapshot(10L, 1), checkpoints.getStableSnapshot());
+        assertEquals(certificate(10L), checkpoints.getStableCertificate());
+        assertNull(checkpoints.getOwn(10L));
+        assertEquals(snapshot(20L, 1), checkpoints.getOwn(20L));
+        assertEquals(List.of(vote("n2", 10L, "s")), checkpoints.addVote(vote("n2", 10L, "s")));
+        assertTrue(checkpoints.markCertificateSent(10L));
+    }
+
+    @Test
+    void pendingCertificateWaitsForExecution() {
+        Checkpoints checkpoints = new Checkpoints(10);
+        checkpoints.setPending(certificate(20L));
+        checkpoints.setPending(certificate(10L));
+
+        assertNull(checkpoints.takePending(19L));
+        assertEquals(certificate(20L), checkpoints.takePending(20L));
+        assertNull(checkpoints.takePending(20L));
+
+        checkpoints.setPending(certificate(30L));
+        checkpoints.stabilize(certificate(30L), snapshot(30L, 1));
+
+        assertNull(checkpoints.takePending(30L));
+    }
+}
@@ -0,0 +1,161 @@
+package org.example.consensus;
+
+import com.google.protobuf.ByteString;
+import org.example.ExecutorManager;
+import org.example.MessageServiceOuterClass;
+import org.example.config.Config;
+import org.example.crypto.Digests;
+import org.example.crypto.Signed;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RequestBatcherTest {
+
+    private static final long TIMEOUT_MILLIS = 100L;
+
+    private static ExecutorManager executorManager;
+
+    @BeforeAll
+    static void startExecutors() {
+        Config.initialize();
+        executorManager = new ExecutorManager(0);
+    }
+
+    @AfterAll
+    static void stopExecutors() {
+        executorManager.shutdown();
+    }
+
+    private static Signed<MessageServiceOuterClass.ClientRequest> request(String clientId, long timestamp) {
+        MessageServiceOuterClass.ClientRequest request = MessageServiceOuterClass.ClientRequest.newBuilder()
+                .setClientId(clientId)
+                .setTimestamp(timestamp)
+                .build();
+        return new Signed<>(request, MessageServiceOuterClass.SignedMessage.newBuilder()
+                .setSignerId(clientId)
+                .setPayload(request.toByteString())
+                .build());
+    }
+
+    // The batcher belongs to the state executor, as in ServerNode
+    private static void onState(Runnable task) {
+        CompletableFuture<Void> done = new CompletableFuture<>();
+        executorManager.submitStateTransition(() -> {
+            try {
+                task.run();
+                done.complete(null);
+            } catch (Throwable t) {
+                done.completeExceptionally(t);
+            }
+        });
+        done.join();
+    }
+
+    @Test
+    void rejectsNonPositiveLimits() {
+        assertThrows(IllegalArgumentException.class, () -> new RequestBatcher(executorManager, 0, 1024, TIMEOUT_MILLIS, batch -> { }));
+        assertThrows(IllegalArgumentException.class, () -> new RequestBatcher(executorManager, 4, 0, TIMEOUT_MILLIS, batch -> { }));
+        RequestBatcher batcher = new RequestBatcher(executorManager, 4, 1024, TIMEOUT_MILLIS, batch -> { });
+        assertThrows(IllegalArgumentException.class, () -> batcher.setMaxRequests(0));
+    }
+
+    @Test
+    void cutsWhenFullWithoutWaitingForTheTimeout() throws InterruptedException {
+        BlockingQueue<List<Signed<MessageServiceOuterClass.ClientRequest>>> batches = new LinkedBlockingQueue<>();
+        RequestBatcher batcher = new RequestBatcher(executorManager, 3, 1 << 20, TIMEOUT_MILLIS, batches::add);
+        List<Signed<MessageServiceOuterClass.ClientRequest>> requests = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            requests.add(request("c1", i));
+        }
+
+        onState(() -> {
+            requests.forEach(batcher::add);
+            assertEquals(requests, batches.poll());
+            assertFalse(batcher.wasLastCutOnTimeout());
+        });
+
+        // The first request's timeout belongs to the batch already cut
+        assertNull(batches.poll(3 * TIMEOUT_MILLIS, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    void cutsWhenTheBatchReachesMaxBytes() {
+        List<List<Signed<MessageServiceOuterClass.ClientRequest>>> batches = new ArrayList<>();
+        Signed<MessageServiceOuterClass.ClientRequest> first = request("c1", 1L);
+        int maxBytes = 2 * first.envelope().getSerializedSize();
+        RequestBatcher batcher = new RequestBatcher(executorManager, 100, maxBytes, TIMEOUT_MILLIS, batches::add);
+
+        onState(() -> {
+            batcher.add(first);
+            assertTrue(batches.isEmpty());
+            batcher.add(request("c1", 2L));
+        });
+
+        assertEquals(List.of(List.of(first, request("c1", 2L))), batches);
+    }
+
+    @Test
+    void cutsAPartialBatchOnTimeout() throws InterruptedException {
+        BlockingQueue<List<Signed<MessageServiceOuterClass.ClientRequest>>> batches = new LinkedBlockingQueue<>();
+        RequestBatcher batcher = new RequestBatcher(executorManager, 10, 1 << 20, TIMEOUT_MILLIS, batches::add);
+
+        onState(() -> {
+            batcher.add(request("c1", 1L));
+            batcher.add(request("c2", 1L));
+        });
+
+        assertEquals(List.of(request("c1", 1L), request("c2", 1L)), batches.poll(10, TimeUnit.SECONDS));
+        onState(() -> assertTrue(batcher.wasLastCutOnTimeout()));
+    }
+
+    @Test
+    void maxRequestsAppliesFromTheNextRequest() {
+        List<List<Signed<MessageServiceOuterClass.ClientRequest>>> batches = new ArrayList<>();
+        RequestBatcher batcher = new RequestBatcher(executorManager, 10, 1 << 20, TIMEOUT_MILLIS, batches::add);
+
+        onState(() -> {
+            batcher.add(request("c1", 1L));
+            batcher.setMaxRequests(2);
+            batcher.add(request("c1", 2L));
+        });
+
+        assertEquals(List.of(List.of(request("c1", 1L), request("c1", 2L))), batches);
+        assertEquals(2, batcher.getMaxRequests());
+    }
+
+    @Test
+    void batchDigestCoversEveryRequestInOrder() {
+        MessageServiceOuterClass.SignedMessage a = request("c1", 1L).envelope();
+        MessageServiceOuterClass.SignedMessage b = request("c2", 1L).envelope();
+
+        ByteString digest = RequestBatcher.batchDigest(List.of(a, b));
+
+        assertEquals(RequestBatcher.batchDigestOf(List.of(RequestStore.digestOf(a), RequestStore.digestOf(b))), digest);
+        assertNotEquals(digest, RequestBatcher.batchDigest(List.of(b, a)));
+        assertNotEquals(digest, RequestBatcher.batchDigest(List.of(a)));
+        assertEquals(ByteString.copyFrom(Digests.sha256(new byte[0])), RequestBatcher.batchDigestOf(List.of()));
+    }
+
+    @Test
+    void batchDigestIgnoresTheEnvelopeSignature() {
+        MessageServiceOuterClass.SignedMessage signed = request("c1", 1L).envelope();
+        MessageServiceOuterClass.SignedMessage resigned = signed.toBuilder().setSignature(ByteString.copyFromUtf8("other")).build();
+
+        assertEquals(RequestBatcher.batchDigest(List.of(signed)), RequestBatcher.batchDigest(List.of(resigned)));
+    }
+}
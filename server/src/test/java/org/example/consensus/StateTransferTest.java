@@ -0,0 +1,133 @@
+package org.example.consensus;
+
+import com.google.protobuf.ByteString;
+import org.example.MessageServiceOuterClass;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class StateTransferTest {
+
+    private static MessageServiceOuterClass.StateSnapshot snapshot(long sequenceNumber, double balance) {
+        MessageServiceOuterClass.StateSnapshot.Builder snapshot = MessageServiceOuterClass.StateSnapshot.newBuilder()
+                .setSequenceNumber(sequenceNumber);
+        for (int i = 0; i < 10_000; i++) {
+            snapshot.addBalances(MessageServiceOuterClass.AccountBalance.newBuilder()
+                    .setAccountId(String.format("account-%06d", i))
+                    .setBalance(balance));
+        }
+        return snapshot.build();
+    }
+
+    private static MessageServiceOuterClass.CheckpointCertificate certificate(MessageServiceOuterClass.StateSnapshot snapshot) {
+        return MessageServiceOuterClass.CheckpointCertificate.newBuilder()
+                .setCertificate(MessageServiceOuterClass.QuorumCertificate.newBuilder()
+                        .setSequenceNumber(snapshot.getSequenceNumber())
+                        .setDigest(Checkpoints.stateDigest(snapshot)))
+                .build();
+    }
+
+    private static MessageServiceOuterClass.SnapshotChunk chunk(MessageServiceOuterClass.StateSnapshot snapshot, int index) {
+        return MessageServiceOuterClass.SnapshotChunk.newBuilder()
+                .setIndex(index)
+                .setData(Checkpoints.chunk(snapshot.toByteString(), index))
+                .build();
+    }
+
+    private static List<ByteString> digests(MessageServiceOuterClass.StateSnapshot snapshot) {
+        return Checkpoints.chunkDigests(snapshot.toByteString());
+    }
+
+    @Test
+    void receivesAndAssemblesTheCertifiedSnapshot() throws Exception {
+        MessageServiceOuterClass.StateSnapshot snapshot = snapshot(10L, 1.0);
+        int chunks = digests(snapshot).size();
+        StateTransfer transfer = new StateTransfer();
+
+        assertTrue(transfer.begin(certificate(snapshot), digests(snapshot)));
+        assertEquals(10L, transfer.getSequenceNumber());
+        for (int i = chunks - 1; i >= 0; i--) {
+            assertFalse(transfer.isComplete());
+            assertTrue(transfer.accept(chunk(snapshot, i)));
+        }
+
+        assertTrue(transfer.isComplete());
+        assertEquals(chunks, transfer.nextMissingChunk());
+        assertEquals(snapshot, transfer.assemble());
+    }
+
+    @Test
+    void rejectsChunkDigestsThatDoNotMatchTheCertificate() {
+        MessageServiceOuterClass.StateSnapshot snapshot = snapshot(10L, 1.0);
+        StateTransfer transfer = new StateTransfer();
+
+        assertFalse(transfer.begin(certificate(snapshot), digests(snapshot(10L, 2.0))));
+        assertEquals(0L, transfer.getSequenceNumber());
+        assertFalse(transfer.accept(chunk(snapshot, 0)));
+    }
+
+    @Test
+    void rejectsChunksOutsideTheSnapshotOrWithTheWrongData() {
+        MessageServiceOuterClass.StateSnapshot snapshot = snapshot(10L, 1.0);
+        StateTransfer transfer = new StateTransfer();
+        transfer.begin(certificate(snapshot), digests(snapshot));
+
+        assertFalse(transfer.accept(chunk(snapshot, 1).toBuilder().setIndex(0).build()));
+        assertFalse(transfer.accept(chunk(snapshot, 0).toBuilder().setIndex(-1).build()));
+        assertFalse(transfer.accept(chunk(snapshot, 0).toBuilder().setIndex(digests(snapshot).size()).build()));
+        assertEquals(0, transfer.nextMissingChunk());
+    }
+
+    @Test
+    void aNewStreamForTheSameCheckpointResumesAtTheFirstMissingChunk() throws Exception {
+        MessageServiceOuterClass.StateSnapshot snapshot = snapshot(10L, 1.0);
+        StateTransfer transfer = new StateTransfer();
+        transfer.begin(certificate(snapshot), digests(snapshot));
+        transfer.accept(chunk(snapshot, 0));
+        transfer.accept(chunk(snapshot, 0));
+
+        assertTrue(transfer.begin(certificate(snapshot), digests(snapshot)));
+
+        assertEquals(1, transfer.nextMissingChunk());
+        for (int i = 1; i < digests(snapshot).size(); i++) {
+            transfer.accept(chunk(snapshot, i));
+        }
+        assertTrue(transfer.isComplete());
+        assertEquals(snapshot, transfer.assemble());
+    }
+
+    @Test
+    void aDifferentCheckpointStartsOver() {
+        MessageServiceOuterClass.StateSnapshot first = snapshot(10L, 1.0);
+        MessageServiceOuterClass.StateSnapshot later = snapshot(20L, 2.0);
+        StateTransfer transfer = new StateTransfer();
+        transfer.begin(certificate(first), digests(first));
+        transfer.accept(chunk(first, 0));
+
+        assertTrue(transfer.begin(certificate(later), digests(later)));
+
+        assertEquals(20L, transfer.getSequenceNumber());
+        assertEquals(0, transfer.nextMissingChunk());
+        assertFalse(transfer.accept(chunk(first, 1)));
+    }
+
+    @Test
+    void clearForgetsTheTransferInProgress() {
+        MessageServiceOuterClass.StateSnapshot snapshot = snapshot(10L, 1.0);
+        StateTransfer transfer = new StateTransfer();
+        transfer.begin(certificate(snapshot), digests(snapshot));
+        transfer.accept(chunk(snapshot, 0));
+
+        transfer.clear();
+
+        assertNull(transfer.getCheckpoint());
+        assertEquals(0L, transfer.getSequenceNumber());
+        assertFalse(transfer.isComplete());
+        assertFalse(transfer.accept(chunk(snapshot, 1)));
+    }
+}
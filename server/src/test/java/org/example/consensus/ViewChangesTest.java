@@ -0,0 +1,229 @@
+package org.example.consensus;
+
+import com.google.protobuf.ByteString;
+import org.example.MessageServiceOuterClass;
+import org.example.crypto.Signed;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class ViewChangesTest {
+
+    // n = 7, f = 2
+    private static final int QUORUM = 5;
+    private static final int VOTE_THRESHOLD = 3;
+
+    private static ByteString digest(String batch) {
+        return ByteString.copyFromUtf8(batch);
+    }
+
+    private static MessageServiceOuterClass.PrePrepareMessage prePrepare(long view, long seq, String batch) {
+        return MessageServiceOuterClass.PrePrepareMessage.newBuilder()
+                .setViewNumber(view)
+                .setSequenceNumber(seq)
+                .setDigest(digest(batch))
+                .build();
+    }
+
+    private static MessageServiceOuterClass.QuorumCertificate certificate(long view, long seq, String batch) {
+        return MessageServiceOuterClass.QuorumCertificate.newBuilder()
+                .setViewNumber(view)
+                .setSequenceNumber(seq)
+                .setDigest(digest(batch))
+                .build();
+    }
+
+    private static MessageServiceOuterClass.PreparedProof prepared(long view, long seq, String batch) {
+        return MessageServiceOuterClass.PreparedProof.newBuilder()
+                .setPrePrepare(prePrepare(view, seq, batch))
+                .setPrepareCertificate(MessageServiceOuterClass.PrepareCertificate.newBuilder()
+                        .setCertificate(certificate(view, seq, batch)))
+                .build();
+    }
+
+    private static MessageServiceOuterClass.CheckpointCertificate checkpoint(long seq) {
+        return MessageServiceOuterClass.CheckpointCertificate.newBuilder()
+                .setCertificate(certificate(0L, seq, "state-" + seq))
+                .build();
+    }
+
+    private static final class ViewChangeBuilder {
+        private final MessageServiceOuterClass.ViewChangeMessage.Builder message;
+
+        private ViewChangeBuilder(String replicaId, long newView) {
+            message = MessageServiceOuterClass.ViewChangeMessage.newBuilder()
+                    .setReplicaId(replicaId)
+                    .setNewViewNumber(newView);
+        }
+
+        private ViewChangeBuilder checkpoint(long seq) {
+            message.setCheckpoint(ViewChangesTest.checkpoint(seq));
+            return this;
+        }
+
+        private ViewChangeBuilder prepared(long view, long seq, String batch) {
+            message.addPrepared(ViewChangesTest.prepared(view, seq, batch));
+            return this;
+        }
+
+        private ViewChangeBuilder voted(long view, long seq, String batch) {
+            message.addVoted(prePrepare(view, seq, batch));
+            return this;
+        }
+
+        private Signed<MessageServiceOuterClass.ViewChangeMessage> build() {
+            MessageServiceOuterClass.ViewChangeMessage viewChange = message.build();
+            return new Signed<>(viewChange, MessageServiceOuterClass.SignedMessage.newBuilder()
+                    .setSignerId(viewChange.getReplicaId())
+                    .setPayload(viewChange.toByteString())
+                    .build());
+        }
+    }
+
+    private static ViewChangeBuilder viewChange(String replicaId, long newView) {
+        return new ViewChangeBuilder(replicaId, newView);
+    }
+
+    private static List<Signed<MessageServiceOuterClass.ViewChangeMessage>> plain(long newView, int count) {
+        List<Signed<MessageServiceOuterClass.ViewChangeMessage>> viewChanges = new ArrayList<>();
+        for (int i = 1; i <= count; i++) {
+            viewChanges.add(viewChange("n" + i, newView).build());
+        }
+        return viewChanges;
+    }
+
+    @Test
+    void planWithoutProofsReissuesNothing() {
+        ViewChanges.NewView newView = ViewChanges.plan(2L, plain(2L, QUORUM), VOTE_THRESHOLD);
+
+        assertEquals(2L, newView.viewNumber());
+        assertNull(newView.checkpoint());
+        assertEquals(0L, newView.minSequenceNumber());
+        assertEquals(0L, newView.maxSequenceNumber());
+        assertEquals(List.of(), newView.prePrepares());
+        assertEquals(QUORUM, newView.viewChanges().size());
+    }
+
+    @Test
+    void planReissuesProvenBatchesInTheNewViewAndFillsGaps() {
+        List<Signed<MessageServiceOuterClass.ViewChangeMessage>> viewChanges = plain(3L, QUORUM - 1);
+        viewChanges.add(viewChange("n5", 3L).prepared(1L, 1L, "a").prepared(2L, 3L, "c").build());
+
+        ViewChanges.NewView newView = ViewChanges.plan(3L, viewChanges, VOTE_THRESHOLD);
+
+        assertEquals(0L, newView.minSequenceNumber());
+        assertEquals(3L, newView.maxSequenceNumber());
+        assertEquals(List.of(prePrepare(3L, 1L, "a"), ViewChanges.nullPrePrepare(3L, 2L), prePrepare(3L, 3L, "c")),
+                newView.prePrepares());
+        assertEquals(digest("a"), newView.digestFor(1L));
+        assertEquals(RequestBatcher.batchDigestOf(List.of()), newView.digestFor(2L));
+        assertNull(newView.digestFor(0L));
+        assertNull(newView.digestFor(4L));
+    }
+
+    @Test
+    void planKeepsTheProofFromTheHighestView() {
+        List<Signed<MessageServiceOuterClass.ViewChangeMessage>> viewChanges = plain(4L, QUORUM - 2);
+        viewChanges.add(viewChange("n4", 4L).prepared(3L, 1L, "later").build());
+        viewChanges.add(viewChange("n5", 4L).prepared(2L, 1L, "earlier").build());
+
+        ViewChanges.NewView newView = ViewChanges.plan(4L, viewChanges, VOTE_THRESHOLD);
+
+        assertEquals(List.of(prePrepare(4L, 1L, "later")), newView.prePrepares());
+    }
+
+    @Test
+    void planStartsFromTheHighestCheckpointAndDropsProofsBelowIt() {
+        List<Signed<MessageServiceOuterClass.ViewChangeMessage>> viewChanges = plain(2L, QUORUM - 2);
+        viewChanges.add(viewChange("n4", 2L).prepared(1L, 5L, "old").prepared(1L, 12L, "kept").build());
+        viewChanges.add(viewChange("n5", 2L).checkpoint(10L).build());
+
+        ViewChanges.NewView newView = ViewChanges.plan(2L, viewChanges, VOTE_THRESHOLD);
+
+        assertEquals(checkpoint(10L), newView.checkpoint());
+        assertEquals(10L, newView.minSequenceNumber());
+        assertEquals(12L, newView.maxSequenceNumber());
+        assertEquals(List.of(ViewChanges.nullPrePrepare(2L, 11L), prePrepare(2L, 12L, "kept")), newView.prePrepares());
+    }
+
+    @Test
+    void batchVotedByFPlusOneInALaterViewOverridesAnOlderProof() {
+        List<Signed<MessageServiceOuterClass.ViewChangeMessage>> viewChanges = new ArrayList<>();
+        viewChanges.add(viewChange("n1", 3L).prepared(1L, 1L, "proven").build());
+        for (int i = 2; i < 2 + VOTE_THRESHOLD; i++) {
+            viewChanges.add(viewChange("n" + i, 3L).voted(2L, 1L, "fast").voted(2L, 2L, "fast-2").build());
+        }
+        viewChanges.add(viewChange("n5", 3L).build());
+
+        ViewChanges.NewView newView = ViewChanges.plan(3L, viewChanges, VOTE_THRESHOLD);
+
+        assertEquals(List.of(prePrepare(3L, 1L, "fast"), prePrepare(3L, 2L, "fast-2")), newView.prePrepares());
+    }
+
+    @Test
+    void votesBelowTheThresholdAreNotReissued() {
+        List<Signed<MessageServiceOuterClass.ViewChangeMessage>> viewChanges = new ArrayList<>();
+        viewChanges.add(viewChange("n1", 3L).prepared(1L, 1L, "proven").build());
+        for (int i = 2; i < 2 + VOTE_THRESHOLD - 1; i++) {
+            viewChanges.add(viewChange("n" + i, 3L).voted(2L, 1L, "fast").voted(2L, 2L, "fast-2").build());
+        }
+        viewChanges.add(viewChange("n4", 3L).voted(2L, 1L, "other").build());
+        viewChanges.add(viewChange("n5", 3L).build());
+
+        ViewChanges.NewView newView = ViewChanges.plan(3L, viewChanges, VOTE_THRESHOLD);
+
+        assertEquals(1L, newView.maxSequenceNumber());
+        assertEquals(List.of(prePrepare(3L, 1L, "proven")), newView.prePrepares());
+    }
+
+    @Test
+    void addYieldsTheNewViewOnTheQuorumthViewChange() {
+        ViewChanges viewChanges = new ViewChanges(QUORUM, VOTE_THRESHOLD);
+        List<Signed<MessageServiceOuterClass.ViewChangeMessage>> received = plain(2L, QUORUM + 1);
+        for (int i = 0; i < QUORUM - 1; i++) {
+            assertNull(viewChanges.add(received.get(i)));
+        }
+        assertNull(viewChanges.add(received.get(0)), "a second ViewChange from the same replica does not count");
+
+        ViewChanges.NewView newView = viewChanges.add(received.get(QUORUM - 1));
+
+        assertNotNull(newView);
+        assertEquals(ViewChanges.plan(2L, received.subList(0, QUORUM), VOTE_THRESHOLD), newView);
+        assertNull(viewChanges.add(received.get(QUORUM)), "a complete round takes no more ViewChanges");
+    }
+
+    @Test
+    void aLaterViewChangeWithdrawsTheReplicaFromItsEarlierRound() {
+        ViewChanges viewChanges = new ViewChanges(QUORUM, VOTE_THRESHOLD);
+        viewChanges.add(viewChange("n1", 2L).prepared(1L, 1L, "withdrawn").build());
+        viewChanges.add(viewChange("n1", 3L).build());
+        List<Signed<MessageServiceOuterClass.ViewChangeMessage>> others = plain(2L, QUORUM + 1).subList(1, QUORUM + 1);
+
+        ViewChanges.NewView newView = null;
+        for (Signed<MessageServiceOuterClass.ViewChangeMessage> viewChange : others) {
+            newView = viewChanges.add(viewChange);
+        }
+
+        assertNotNull(newView);
+        assertEquals(List.of(), newView.prePrepares());
+        assertNull(viewChanges.add(viewChange("n1", 2L).build()), "an earlier view than already requested is ignored");
+    }
+
+    @Test
+    void viewToJoinNeedsThresholdRequestsAboveTheCurrentView() {
+        ViewChanges viewChanges = new ViewChanges(QUORUM, VOTE_THRESHOLD);
+        viewChanges.add(viewChange("n1", 3L).build());
+        viewChanges.add(viewChange("n2", 4L).build());
+        assertEquals(0L, viewChanges.viewToJoin(1L, VOTE_THRESHOLD));
+
+        viewChanges.add(viewChange("n3", 5L).build());
+
+        assertEquals(3L, viewChanges.viewToJoin(1L, VOTE_THRESHOLD));
+        assertEquals(0L, viewChanges.viewToJoin(3L, VOTE_THRESHOLD));
+    }
+}
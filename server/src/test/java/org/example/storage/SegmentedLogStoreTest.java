@@ -0,0 +1,141 @@
+package org.example.storage;
+
+import com.google.protobuf.ByteString;
+import org.example.MessageServiceOuterClass;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SegmentedLogStoreTest {
+
+    // Room for a few dozen entries, so the tests below span several segments
+    private static final int SEGMENT_BYTES = 2048;
+
+    @TempDir
+    Path directory;
+
+    private static MessageServiceOuterClass.CommittedEntry entry(long sequenceNumber) {
+        return MessageServiceOuterClass.CommittedEntry.newBuilder()
+                .setPrePrepare(MessageServiceOuterClass.PrePrepareMessage.newBuilder()
+                        .setViewNumber(1L)
+                        .setSequenceNumber(sequenceNumber)
+                        .setDigest(ByteString.copyFromUtf8("digest-" + sequenceNumber)))
+                .build();
+    }
+
+    private long segmentFiles() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(file -> file.toString().endsWith(".log")).count();
+        }
+    }
+
+    @Test
+    void emptyStoreHasNoSequenceNumbers() throws IOException {
+        try (SegmentedLogStore store = new SegmentedLogStore(directory, SEGMENT_BYTES)) {
+            assertEquals(0L, store.getFirstSequenceNumber());
+            assertEquals(0L, store.getLastSequenceNumber());
+            assertNull(store.read(1L));
+        }
+    }
+
+    @Test
+    void rejectsSegmentsTooSmallForAHeader() {
+        assertThrows(IllegalArgumentException.class, () -> new SegmentedLogStore(directory, 8));
+    }
+
+    @Test
+    void everyEntryIsReadBackAcrossSegmentsAndIndexIntervals() throws IOException {
+        try (SegmentedLogStore store = new SegmentedLogStore(directory, SEGMENT_BYTES)) {
+            for (long seq = 1; seq <= 200; seq++) {
+                store.append(entry(seq));
+            }
+            assertEquals(1L, store.getFirstSequenceNumber());
+            assertEquals(200L, store.getLastSequenceNumber());
+            for (long seq = 1; seq <= 200; seq++) {
+                assertEquals(entry(seq), store.read(seq));
+            }
+            assertNull(store.read(201L));
+        }
+        assertTrue(segmentFiles() > 1);
+    }
+
+    @Test
+    void entriesAtOrBelowTheLastAreIgnored() throws IOException {
+        try (SegmentedLogStore store = new SegmentedLogStore(directory, SEGMENT_BYTES)) {
+            store.append(entry(1));
+            store.append(entry(2));
+            store.append(entry(2).toBuilder().setPrePrepare(entry(2).getPrePrepare().toBuilder().setViewNumber(9L)).build());
+            store.append(entry(1).toBuilder().setPrePrepare(entry(1).getPrePrepare().toBuilder().setViewNumber(9L)).build());
+
+            assertEquals(entry(1), store.read(1L));
+            assertEquals(entry(2), store.read(2L));
+            assertEquals(2L, store.getLastSequenceNumber());
+        }
+    }
+
+    @Test
+    void aGapStartsANewSegment() throws IOException {
+        try (SegmentedLogStore store = new SegmentedLogStore(directory, SEGMENT_BYTES)) {
+            store.append(entry(1));
+            store.append(entry(2));
+            store.append(entry(40));
+            store.append(entry(41));
+
+            assertNull(store.read(3L));
+            assertNull(store.read(39L));
+            assertEquals(entry(40), store.read(40L));
+            assertEquals(entry(41), store.read(41L));
+            assertEquals(1L, store.getFirstSequenceNumber());
+            assertEquals(41L, store.getLastSequenceNumber());
+        }
+        assertEquals(2L, segmentFiles());
+    }
+
+    @Test
+    void reopeningRecoversTheStoredEntries() throws IOException {
+        try (SegmentedLogStore store = new SegmentedLogStore(directory, SEGMENT_BYTES)) {
+            for (long seq = 1; seq <= 100; seq++) {
+                store.append(entry(seq));
+            }
+        }
+        try (SegmentedLogStore store = new SegmentedLogStore(directory, SEGMENT_BYTES)) {
+            assertEquals(1L, store.getFirstSequenceNumber());
+            assertEquals(100L, store.getLastSequenceNumber());
+            for (long seq = 1; seq <= 100; seq++) {
+                assertEquals(entry(seq), store.read(seq));
+            }
+            store.append(entry(101));
+            assertEquals(entry(101), store.read(101L));
+        }
+    }
+
+    @Test
+    void deleteThroughDropsOnlyWhollyCoveredSegments() throws IOException {
+        try (SegmentedLogStore store = new SegmentedLogStore(directory, SEGMENT_BYTES)) {
+            for (long seq = 1; seq <= 200; seq++) {
+                store.append(entry(seq));
+            }
+            long segments = segmentFiles();
+
+            int deleted = store.deleteThrough(150L);
+
+            assertEquals(segments - deleted, segmentFiles());
+            long first = store.getFirstSequenceNumber();
+            assertTrue(deleted > 0 && first > 1 && first <= 151);
+            assertNull(store.read(first - 1));
+            for (long seq = first; seq <= 200; seq++) {
+                assertEquals(entry(seq), store.read(seq));
+            }
+            assertEquals(0, store.deleteThrough(first - 1));
+        }
+    }
+}
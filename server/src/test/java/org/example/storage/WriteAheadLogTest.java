@@ -0,0 +1,147 @@
+package org.example.storage;
+
+import org.example.ExecutorManager;
+import org.example.MessageServiceOuterClass;
+import org.example.config.Config;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class WriteAheadLogTest {
+
+    private static ExecutorManager executorManager;
+
+    @TempDir
+    Path directory;
+
+    @BeforeAll
+    static void startExecutors() {
+        Config.initialize();
+        executorManager = new ExecutorManager(0);
+    }
+
+    @AfterAll
+    static void stopExecutors() {
+        executorManager.shutdown();
+    }
+
+    private static MessageServiceOuterClass.WalRecord prePrepare(long sequenceNumber) {
+        return MessageServiceOuterClass.WalRecord.newBuilder()
+                .setPrePrepare(MessageServiceOuterClass.LoggedPrePrepare.newBuilder()
+                        .setPrePrepare(MessageServiceOuterClass.PrePrepareMessage.newBuilder()
+                                .setViewNumber(1L)
+                                .setSequenceNumber(sequenceNumber)))
+                .build();
+    }
+
+    private static MessageServiceOuterClass.WalRecord checkpoint(long sequenceNumber) {
+        return MessageServiceOuterClass.WalRecord.newBuilder()
+                .setCheckpoint(MessageServiceOuterClass.StableCheckpoint.newBuilder()
+                        .setSnapshot(MessageServiceOuterClass.StateSnapshot.newBuilder().setSequenceNumber(sequenceNumber)))
+                .build();
+    }
+
+    private void write(WriteAheadLog.Durability durability, MessageServiceOuterClass.WalRecord... records) throws IOException {
+        try (WriteAheadLog wal = new WriteAheadLog(directory, durability, executorManager)) {
+            CompletableFuture.allOf(Stream.of(records).map(wal::append).toArray(CompletableFuture[]::new)).join();
+        }
+    }
+
+    private List<Path> generations() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(file -> file.toString().endsWith(".wal")).sorted().toList();
+        }
+    }
+
+    @Test
+    void recordsAreReadBackInAppendOrder() throws IOException {
+        write(WriteAheadLog.Durability.SYNC, prePrepare(1), prePrepare(2), prePrepare(3));
+
+        assertEquals(List.of(prePrepare(1), prePrepare(2), prePrepare(3)), WriteAheadLog.read(directory));
+    }
+
+    @Test
+    void appendsAfterReopeningFollowTheExistingRecords() throws IOException {
+        write(WriteAheadLog.Durability.NONE, prePrepare(1));
+        write(WriteAheadLog.Durability.NONE, prePrepare(2));
+
+        assertEquals(List.of(prePrepare(1), prePrepare(2)), WriteAheadLog.read(directory));
+    }
+
+    @Test
+    void tornTailIsCutOffOnOpen() throws IOException {
+        write(WriteAheadLog.Durability.SYNC, prePrepare(1), prePrepare(2));
+        Path file = generations().get(0);
+        long intact = Files.size(file);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.APPEND)) {
+            // A header promising more payload than made it to disk
+            channel.write(ByteBuffer.allocate(11).putInt(64).putInt(0).put(new byte[3]).flip());
+        }
+        assertEquals(List.of(prePrepare(1), prePrepare(2)), WriteAheadLog.read(directory));
+
+        write(WriteAheadLog.Durability.SYNC, prePrepare(3));
+
+        assertEquals(List.of(prePrepare(1), prePrepare(2), prePrepare(3)), WriteAheadLog.read(directory));
+        assertEquals(intact + 8 + prePrepare(3).getSerializedSize(), Files.size(file));
+    }
+
+    @Test
+    void checksumMismatchEndsTheIntactPrefix() throws IOException {
+        write(WriteAheadLog.Durability.SYNC, prePrepare(1), prePrepare(2), prePrepare(3));
+        Path file = generations().get(0);
+        int frame = 8 + prePrepare(1).getSerializedSize();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            // Flip the last payload byte of the second record
+            ByteBuffer last = ByteBuffer.allocate(1);
+            long position = 2L * frame - 1;
+            channel.read(last, position);
+            last.put(0, (byte) (last.get(0) ^ 0x01)).rewind();
+            channel.write(last, position);
+        }
+
+        assertEquals(List.of(prePrepare(1)), WriteAheadLog.read(directory));
+
+        write(WriteAheadLog.Durability.SYNC, prePrepare(4));
+
+        assertEquals(frame * 2L, Files.size(file));
+        assertEquals(List.of(prePrepare(1), prePrepare(4)), WriteAheadLog.read(directory));
+    }
+
+    @Test
+    void rotationStartsAGenerationFromItsBase() throws IOException {
+        try (WriteAheadLog wal = new WriteAheadLog(directory, WriteAheadLog.Durability.SYNC, executorManager)) {
+            wal.append(prePrepare(1));
+            wal.append(prePrepare(2));
+            wal.rotate(1L, List.of(checkpoint(1), prePrepare(2)));
+            wal.append(prePrepare(3)).join();
+        }
+
+        assertEquals(List.of(directory.resolve(String.format("%020d.wal", 1L))), generations());
+        assertEquals(List.of(checkpoint(1), prePrepare(2), prePrepare(3)), WriteAheadLog.read(directory));
+    }
+
+    @Test
+    void rotationToAnEarlierCheckpointIsIgnored() throws IOException {
+        try (WriteAheadLog wal = new WriteAheadLog(directory, WriteAheadLog.Durability.NONE, executorManager)) {
+            wal.rotate(5L, List.of(checkpoint(5)));
+            wal.rotate(3L, List.of(checkpoint(3))).join();
+            wal.append(prePrepare(6)).join();
+        }
+
+        assertEquals(List.of(directory.resolve(String.format("%020d.wal", 5L))), generations());
+        assertEquals(List.of(checkpoint(5), prePrepare(6)), WriteAheadLog.read(directory));
+    }
+}